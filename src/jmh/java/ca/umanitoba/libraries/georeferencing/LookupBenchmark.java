@@ -0,0 +1,133 @@
+package ca.umanitoba.libraries.georeferencing;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import ca.umanitoba.libraries.georeferencing.api.CountryCode;
+import ca.umanitoba.libraries.georeferencing.api.CountryCodeLookupService;
+import ca.umanitoba.libraries.georeferencing.api.NameLookupService;
+import ca.umanitoba.libraries.georeferencing.exceptions.MissingCountryCodeException;
+import ca.umanitoba.libraries.georeferencing.exceptions.NameLookupException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Measures the lookups behind a /lookup request, without the cache, in an application started on an embedded H2
+ * database: a place by {@link NameLookupService#lookup(LocationRequest)}, a country by
+ * {@link CountryCodeLookupService#lookupCountry(String)} and a province by
+ * {@link AdminCodes#findAdminCode(String, String)}.
+ * <p>
+ * The places are the test fixture or a synthetic file, see {@link BenchmarkDatasets}. To look up the full Canada file
+ * pass its location, e.g.
+ * {@code java -jar build/libs/GeoReference-1.0-SNAPSHOT-jmh.jar LookupBenchmark -p dataset=file:/path/to/CA.txt}.
+ * @author whikloj
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class LookupBenchmark {
+
+    private static final int QUERIES = 1024;
+
+    private static final String[] COUNTRIES = {"Canada", " canada ", "CA", "CAN", "124"};
+
+    private static final String[] PROVINCES = {"Manitoba", "manitoba", "Man.", "MB", "CA-MB", "Ontario",
+            "Nova Scotia", "N.S.", "Nunavut", "Atlantis"};
+
+    @Param({BenchmarkDatasets.FIXTURES, BenchmarkDatasets.SYNTHETIC})
+    private String dataset;
+
+    @Param({"300000"})
+    private int syntheticRows;
+
+    @Param({"sql"})
+    private String engine;
+
+    private ConfigurableApplicationContext context;
+
+    private NameLookupService nameLookup;
+
+    private CountryCodeLookupService ccLookup;
+
+    private AdminCodes adminCodes;
+
+    private LocationRequest[] requests;
+
+    private int next = 0;
+
+    @Setup
+    public void setUp() throws IOException {
+        final String location = BenchmarkDatasets.placesLocation(dataset, syntheticRows);
+        context = new SpringApplicationBuilder(DereferencingApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "database.jdbcUrl=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+                        "database.username=benchmark",
+                        "database.password=benchmark",
+                        "datahub.countrycodefile=classpath:test-country-codes.json",
+                        "datahub.locationfile=" + location,
+                        "lookup.engine=" + engine)
+                .run();
+        nameLookup = context.getBean(NameLookupService.class);
+        ccLookup = context.getBean(CountryCodeLookupService.class);
+        adminCodes = context.getBean(AdminCodes.class);
+
+        // Look up places of the file, by their city and province.
+        final Map<String, String> provinces = BenchmarkDatasets.readProvinceNames();
+        final List<GeoNamesPlace> places = BenchmarkDatasets.readPlaces(location, QUERIES * 4);
+        final Random random = new Random(42);
+        requests = new LocationRequest[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            final GeoNamesPlace place = places.get(random.nextInt(places.size()));
+            final LocationRequest request = new LocationRequest();
+            request.setCountry("Canada");
+            request.setIso3361Alpha2(place.getCountryCode());
+            request.setProvince(provinces.get(place.getCountryCode() + "." + place.getAdminCode1()));
+            request.setCity(place.getName());
+            requests[i] = request;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Coordinates nameLookup() {
+        try {
+            return nameLookup.lookup(requests[next++ & (QUERIES - 1)]);
+        } catch (final NameLookupException e) {
+            return null;
+        }
+    }
+
+    @Benchmark
+    public CountryCode lookupCountry() throws MissingCountryCodeException {
+        return ccLookup.lookupCountry(COUNTRIES[(next++ & Integer.MAX_VALUE) % COUNTRIES.length]);
+    }
+
+    @Benchmark
+    public String findAdminCode() {
+        return adminCodes.findAdminCode("CA", PROVINCES[(next++ & Integer.MAX_VALUE) % PROVINCES.length]);
+    }
+}
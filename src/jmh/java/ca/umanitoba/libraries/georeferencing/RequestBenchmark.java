@@ -0,0 +1,94 @@
+package ca.umanitoba.libraries.georeferencing;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the work done on every request before and after the lookups: hashing a {@link LocationRequest} for the
+ * cache, reading it from JSON and writing the {@link Coordinates} found as JSON.
+ * @author whikloj
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RequestBenchmark {
+
+    private static final byte[] REQUEST_JSON = ("{\"country\":\"Canada\",\"province\":\"Manitoba\"," +
+            "\"city\":\"Winnipeg Beach\"}").getBytes();
+
+    private static final byte[] COORDINATES_JSON = "{\"latitude\":50.5,\"longitude\":-96.98}".getBytes();
+
+    private ObjectReader requestReader;
+
+    private ObjectWriter requestWriter;
+
+    private ObjectReader coordinatesReader;
+
+    private ObjectWriter coordinatesWriter;
+
+    private LocationRequest request;
+
+    private Coordinates coordinates;
+
+    @Setup
+    public void setUp() throws IOException {
+        final ObjectMapper objectMapper = new ObjectMapper()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        requestReader = objectMapper.readerFor(LocationRequest.class);
+        requestWriter = objectMapper.writerFor(LocationRequest.class);
+        coordinatesReader = objectMapper.readerFor(Coordinates.class);
+        coordinatesWriter = objectMapper.writerFor(Coordinates.class);
+        request = requestReader.readValue(REQUEST_JSON);
+        coordinates = coordinatesReader.readValue(COORDINATES_JSON);
+    }
+
+    /**
+     * The hash is kept once calculated, so each request is new as they are in the application.
+     */
+    @Benchmark
+    public String hashString() {
+        final LocationRequest fresh = new LocationRequest();
+        fresh.setCountry(request.getCountry());
+        fresh.setProvince(request.getProvince());
+        fresh.setCity(request.getCity());
+        return fresh.getHashString();
+    }
+
+    @Benchmark
+    public LocationRequest readRequest() throws IOException {
+        return requestReader.readValue(REQUEST_JSON);
+    }
+
+    @Benchmark
+    public byte[] writeRequest() throws IOException {
+        return requestWriter.writeValueAsBytes(request);
+    }
+
+    @Benchmark
+    public Coordinates readCoordinates() throws IOException {
+        return coordinatesReader.readValue(COORDINATES_JSON);
+    }
+
+    @Benchmark
+    public byte[] writeCoordinates() throws IOException {
+        return coordinatesWriter.writeValueAsBytes(coordinates);
+    }
+}
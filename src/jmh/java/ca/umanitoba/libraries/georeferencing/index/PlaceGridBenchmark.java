@@ -0,0 +1,112 @@
+package ca.umanitoba.libraries.georeferencing.index;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import ca.umanitoba.libraries.georeferencing.GeoNamesPlace;
+import ca.umanitoba.libraries.georeferencing.ingest.GeoNamesTsvReader;
+import ca.umanitoba.libraries.georeferencing.ingest.TsvRow;
+import ca.umanitoba.libraries.georeferencing.utils.ResourceUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures searching a {@link PlaceGrid} within radii of different sizes, and inside boxes around the same circles.
+ * <p>
+ * To index the full Canada file pass its location, e.g.
+ * {@code java -jar build/libs/GeoReference-1.0-SNAPSHOT-jmh.jar PlaceGrid -p locationFile=file:/path/to/CA.txt},
+ * otherwise made up places are scattered over southern Canada, where most of the places in it are.
+ * @author whikloj
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PlaceGridBenchmark {
+
+    private static final int QUERIES = 1024;
+
+    @Param({""})
+    private String locationFile;
+
+    @Param({"300000"})
+    private int syntheticPlaces;
+
+    @Param({"1", "10", "50", "250"})
+    private double radiusKm;
+
+    private PlaceGrid grid;
+
+    private double[] latitudes;
+
+    private double[] longitudes;
+
+    private int next = 0;
+
+    @Setup
+    public void setUp() throws IOException {
+        final Random random = new Random(42);
+        final PlaceGrid.Builder builder = PlaceGrid.builder();
+        if (locationFile.isEmpty()) {
+            for (int i = 0; i < syntheticPlaces; i++) {
+                builder.add(place(i, 42 + random.nextDouble() * 14, -140 + random.nextDouble() * 88));
+            }
+        } else {
+            try (final GeoNamesTsvReader reader = new GeoNamesTsvReader(ResourceUtils.openLocation(locationFile))) {
+                final TsvRow row = new TsvRow();
+                while (reader.hasNext()) {
+                    final byte[] line = reader.next();
+                    builder.add(GeoNamesPlace.fromRow(row.reset(line, line.length)));
+                }
+            }
+        }
+        grid = builder.build();
+        // Search from places in the index so the searches are where the places are.
+        latitudes = new double[QUERIES];
+        longitudes = new double[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            final int row = random.nextInt(grid.size());
+            latitudes[i] = grid.getLatitude(row);
+            longitudes[i] = grid.getLongitude(row);
+        }
+    }
+
+    @Benchmark
+    public int[] within() {
+        final int query = next++ & (QUERIES - 1);
+        return grid.findWithin(latitudes[query], longitudes[query], radiusKm, null);
+    }
+
+    @Benchmark
+    public int[] box() {
+        final int query = next++ & (QUERIES - 1);
+        final double latitudeDegrees = radiusKm / 111.2;
+        final double longitudeDegrees = latitudeDegrees / Math.cos(Math.toRadians(latitudes[query]));
+        return grid.findInBox(latitudes[query] - latitudeDegrees, longitudes[query] - longitudeDegrees,
+                latitudes[query] + latitudeDegrees, longitudes[query] + longitudeDegrees, null);
+    }
+
+    private static GeoNamesPlace place(final int id, final double latitude, final double longitude) {
+        final GeoNamesPlace place = new GeoNamesPlace();
+        place.setGeonamesId(id);
+        place.setName("Place " + id);
+        place.setFeatureClass("P");
+        place.setFeature("PPL");
+        place.setCountryCode("CA");
+        place.setLatitude(latitude);
+        place.setLongitude(longitude);
+        return place;
+    }
+}
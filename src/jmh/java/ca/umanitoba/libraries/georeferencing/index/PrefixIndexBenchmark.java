@@ -0,0 +1,81 @@
+package ca.umanitoba.libraries.georeferencing.index;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import ca.umanitoba.libraries.georeferencing.GeoNamesPlace;
+import ca.umanitoba.libraries.georeferencing.SyntheticGeoNames;
+import ca.umanitoba.libraries.georeferencing.ingest.TsvRow;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures finding the top places for one and two letter prefixes in a {@link PrefixIndex} of synthetic places in
+ * Canada, the United States and Liechtenstein, without a filter, filtered to the few places of Liechtenstein and
+ * filtered to New York.
+ * @author whikloj
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PrefixIndexBenchmark {
+
+    private static final int LIMIT = 10;
+
+    @Param({"300000"})
+    private int syntheticPlaces;
+
+    @Param({"none", "country", "province"})
+    private String filter;
+
+    private PrefixIndex index;
+
+    private String[] prefixes;
+
+    private String countryCode;
+
+    private String adminCode1;
+
+    private int next = 0;
+
+    @Setup
+    public void setUp() throws IOException {
+        final StringWriter places = new StringWriter();
+        new SyntheticGeoNames(42, Set.of("CA", "US", "LI")).writePlaces(places, syntheticPlaces);
+        final PrefixIndex.Builder builder = PrefixIndex.builder();
+        final TsvRow row = new TsvRow();
+        for (final String line : places.toString().split("\n")) {
+            final byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+            builder.add(GeoNamesPlace.fromRow(row.reset(bytes, bytes.length)));
+        }
+        index = builder.build();
+        prefixes = new String[26 * 2];
+        for (char c = 'a'; c <= 'z'; c++) {
+            prefixes[(c - 'a') * 2] = String.valueOf(c);
+            prefixes[(c - 'a') * 2 + 1] = c + (c == 'a' ? "n" : "a");
+        }
+        countryCode = filter.equals("none") ? null : filter.equals("country") ? "LI" : "US";
+        adminCode1 = filter.equals("province") ? "NY" : null;
+    }
+
+    @Benchmark
+    public int[] findByPrefix() {
+        final String prefix = prefixes[next++ % prefixes.length];
+        return index.findByPrefix(prefix, countryCode, adminCode1, LIMIT);
+    }
+}
@@ -0,0 +1,129 @@
+package ca.umanitoba.libraries.georeferencing.index;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import ca.umanitoba.libraries.georeferencing.GeoNamesPlace;
+import ca.umanitoba.libraries.georeferencing.ingest.GeoNamesTsvReader;
+import ca.umanitoba.libraries.georeferencing.ingest.TsvRow;
+import ca.umanitoba.libraries.georeferencing.utils.ResourceUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures finding the candidates for a misspelled name in a {@link TrigramIndex}.
+ * <p>
+ * To index the full Canada file pass its location, e.g.
+ * {@code java -jar build/libs/GeoReference-1.0-SNAPSHOT-jmh.jar TrigramIndex -p locationFile=file:/path/to/CA.txt},
+ * otherwise made up names are indexed.
+ * @author whikloj
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TrigramIndexBenchmark {
+
+    private static final String SYLLABLES = "ka,ne,wi,pe,to,ri,sa,mo,lu,chi,ba,tor,ville,ton,burg,ford";
+
+    private static final int QUERIES = 1024;
+
+    @Param({""})
+    private String locationFile;
+
+    @Param({"300000"})
+    private int syntheticNames;
+
+    @Param({"2"})
+    private int maxEdits;
+
+    private TrigramIndex index;
+
+    private String[] queries;
+
+    private int next = 0;
+
+    @Setup
+    public void setUp() throws IOException {
+        final Random random = new Random(42);
+        final List<String> names = locationFile.isEmpty() ? madeUpNames(random) : readNames(locationFile);
+        final TrigramIndex.Builder builder = TrigramIndex.builder();
+        names.forEach(builder::add);
+        index = builder.build();
+        queries = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = misspell(names.get(random.nextInt(names.size())), random);
+        }
+    }
+
+    @Benchmark
+    public List<TrigramIndex.Match> search() {
+        final String query = queries[next++ & (QUERIES - 1)];
+        return index.search(query, maxEdits, 0.4, 5, System.nanoTime() + TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private List<String> madeUpNames(final Random random) {
+        final String[] syllables = SYLLABLES.split(",");
+        final List<String> names = new ArrayList<>(syntheticNames);
+        for (int i = 0; i < syntheticNames; i++) {
+            final StringBuilder name = new StringBuilder();
+            for (int j = 2 + random.nextInt(3); j > 0; j--) {
+                name.append(syllables[random.nextInt(syllables.length)]);
+            }
+            if (random.nextInt(4) == 0) {
+                name.append(" lake");
+            }
+            names.add(name.toString());
+        }
+        return names;
+    }
+
+    private static List<String> readNames(final String location) throws IOException {
+        final List<String> names = new ArrayList<>();
+        try (final GeoNamesTsvReader reader = new GeoNamesTsvReader(ResourceUtils.openLocation(location))) {
+            final TsvRow row = new TsvRow();
+            while (reader.hasNext()) {
+                final byte[] line = reader.next();
+                final GeoNamesPlace place = GeoNamesPlace.fromRow(row.reset(line, line.length));
+                names.add(place.getName());
+                names.add(place.getAsciiName());
+                for (final String alternateName : place.getAlternateNameList()) {
+                    names.add(alternateName);
+                }
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Drop, double or swap a character of a name.
+     */
+    private static String misspell(final String name, final Random random) {
+        if (name.length() < 3) {
+            return name;
+        }
+        final int at = 1 + random.nextInt(name.length() - 2);
+        switch (random.nextInt(3)) {
+            case 0:
+                return name.substring(0, at) + name.substring(at + 1);
+            case 1:
+                return name.substring(0, at) + name.charAt(at) + name.substring(at);
+            default:
+                return name.substring(0, at) + name.charAt(at + 1) + name.charAt(at) + name.substring(at + 2);
+        }
+    }
+}
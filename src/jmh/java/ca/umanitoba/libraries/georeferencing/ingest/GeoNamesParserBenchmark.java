@@ -0,0 +1,141 @@
+package ca.umanitoba.libraries.georeferencing.ingest;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import ca.umanitoba.libraries.georeferencing.GeoNamesPlace;
+import ca.umanitoba.libraries.georeferencing.utils.ResourceUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares parsing a GeoNames place file with {@link GeoNamesTsvReader} and {@link TsvRow} against reading lines
+ * and splitting them with {@link String#split(String)}, as the loaders used to.
+ * <p>
+ * To parse a GeoNames file, such as the test fixture or the full Canada file, pass its location, e.g.
+ * {@code java -jar build/libs/GeoReference-1.0-SNAPSHOT-jmh.jar GeoNamesParser -p locationFile=file:/path/to/CA.txt},
+ * otherwise made up rows are parsed.
+ * @author whikloj
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class GeoNamesParserBenchmark {
+
+    @Param({""})
+    private String locationFile;
+
+    @Param({"10000"})
+    private int rows;
+
+    private byte[] file;
+
+    @Setup
+    public void setUp() throws IOException {
+        if (!locationFile.isEmpty()) {
+            try (final InputStream input = ResourceUtils.openLocation(locationFile)) {
+                file = input.readAllBytes();
+            }
+            return;
+        }
+        final Random random = new Random(42);
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        for (int i = 0; i < rows; i++) {
+            final String line = String.join("\t",
+                    String.valueOf(6000000 + i),
+                    "Place " + i,
+                    "Place " + i,
+                    "Place " + i + ",Lieu " + i + ",Ort " + i,
+                    String.format(Locale.ROOT, "%.5f", random.nextDouble() * 180 - 90),
+                    String.format(Locale.ROOT, "%.5f", random.nextDouble() * 360 - 180),
+                    "P",
+                    "PPL",
+                    "CA",
+                    "",
+                    String.format(Locale.ROOT, "%02d", random.nextInt(14)),
+                    "4611",
+                    "",
+                    "",
+                    String.valueOf(random.nextInt(1000000)),
+                    "",
+                    String.valueOf(random.nextInt(3000)),
+                    "America/Winnipeg",
+                    "2019-09-05");
+            output.write(line.getBytes(StandardCharsets.UTF_8));
+            output.write('\n');
+        }
+        file = output.toByteArray();
+    }
+
+    @Benchmark
+    public void tsvReader(final Blackhole blackhole) throws IOException {
+        try (final GeoNamesTsvReader reader = new GeoNamesTsvReader(new ByteArrayInputStream(file))) {
+            final TsvRow row = new TsvRow();
+            while (reader.hasNext()) {
+                final byte[] line = reader.next();
+                blackhole.consume(GeoNamesPlace.fromRow(row.reset(line, line.length)));
+            }
+        }
+    }
+
+    @Benchmark
+    public void splitLines(final Blackhole blackhole) throws IOException {
+        try (final BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(file),
+                StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                blackhole.consume(splitLine(line));
+            }
+        }
+    }
+
+    /**
+     * The split based parsing the loaders used before {@link TsvRow}.
+     * @param line the line.
+     * @return the place.
+     */
+    private static GeoNamesPlace splitLine(final String line) {
+        final String[] p = line.split("\t", -1);
+        final GeoNamesPlace place = new GeoNamesPlace();
+        place.setGeonamesId(Integer.parseInt(p[0].trim()));
+        place.setName(p[1].trim());
+        place.setAsciiName(p[2].trim());
+        place.setAlternateNames(p[3]);
+        place.setLatitude(Float.valueOf(p[4]));
+        place.setLongitude(Float.valueOf(p[5]));
+        place.setFeatureClass(p[6].trim());
+        place.setFeature(p[7].trim());
+        place.setCountryCode(p[8].trim());
+        place.setAdminCode1(p[10].trim());
+        place.setAdminCode2(p[11].trim());
+        place.setAdminCode3(p[12].trim());
+        place.setAdminCode4(p[13].trim());
+        place.setPopulation(p[14].isEmpty() ? 0 : Long.parseLong(p[14]));
+        place.setElevation(p[15].isEmpty() ? 0 : Integer.parseInt(p[15]));
+        place.setDigitalElevationModel(p[16].isEmpty() ? 0 : Integer.parseInt(p[16]));
+        place.setTimezone(p[17].trim());
+        place.setLastModified(p[18].trim());
+        return place;
+    }
+}
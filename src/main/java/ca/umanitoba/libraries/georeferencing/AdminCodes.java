@@ -5,27 +5,34 @@ import static org.slf4j.LoggerFactory.getLogger;
 import javax.annotation.PostConstruct;
 import javax.sql.DataSource;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
 import java.util.Map;
-import java.util.Objects;
-import java.util.stream.Stream;
+import java.util.Set;
 
+import ca.umanitoba.libraries.georeferencing.api.DatasetState;
 import ca.umanitoba.libraries.georeferencing.exceptions.InternalApplicationError;
+import ca.umanitoba.libraries.georeferencing.index.AdminCodeIndex;
+import ca.umanitoba.libraries.georeferencing.ingest.GeoNamesTsvReader;
+import ca.umanitoba.libraries.georeferencing.ingest.IngestPipeline;
+import ca.umanitoba.libraries.georeferencing.ingest.ShadowTables;
+import ca.umanitoba.libraries.georeferencing.ingest.TsvRow;
 import ca.umanitoba.libraries.georeferencing.utils.DatabaseUtils;
 import ca.umanitoba.libraries.georeferencing.utils.DbPlatform;
+import ca.umanitoba.libraries.georeferencing.utils.NameNormalizer;
+import ca.umanitoba.libraries.georeferencing.utils.ResourceUtils;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
-import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Component;
 
 /**
@@ -41,132 +48,274 @@ public class AdminCodes {
     private JdbcTemplate jdbcTemplate;
 
     @Autowired
-    @Lazy
-    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private DataSource dataSource;
 
     @Autowired
-    private DataSource dataSource;
+    private IngestPipeline ingestPipeline;
+
+    @Autowired
+    private ShadowTables shadowTables;
 
-    private static String DEFAULT_GEONAMES_ADMIN_CODE_FILE = "admin1CodesASCII.txt";
+    @Autowired
+    private LookupMetrics lookupMetrics;
+
+    @Value("${datahub.admincodefile:classpath:admin1CodesASCII.txt}")
+    private String adminCodeFile;
 
-    private InputStream adminCodeInputStream;
+    private static final String DEFAULT_ADMIN_ALIAS_FILE = "admin1Aliases.txt";
 
     private static String TABLE_NAME = "admin1Codes";
 
     private static String COUNT_ALL_ROWS = String.format("SELECT count(*) FROM %s", TABLE_NAME);
 
-    private static String INSERT_RECORD = String.format("INSERT INTO %s VALUES (:country, :code, :name)", TABLE_NAME);
+    private static final String KEY_COLUMN = "nameKey";
+
+    private static String INSERT_RECORD = "INSERT INTO %s VALUES (:country, :code, :name, :nameKey)";
 
-    private static String SELECT_CODE_BY_COUNTRY_NAME = String.format("SELECT code FROM %s WHERE lower(country) = " +
-            ":country AND lower(name) = :name", TABLE_NAME);
+    private static final String SELECT_ALL = String.format("SELECT country, code, name FROM %s", TABLE_NAME);
+
+    /**
+     * Admin code used for provinces which are not found, so no city will match them.
+     */
+    private static final String UNKNOWN_ADMIN_CODE = "";
 
-    private static String TRUNCATE_TABLE = String.format("TRUNCATE TABLE %s", TABLE_NAME);
+    private volatile DatasetState state = DatasetState.LOADING;
 
-    private boolean tableExists = false;
-    private boolean tableFull = false;
+    private volatile AdminCodeIndex index;
 
     private static final Map<DbPlatform, String> DDL_MAP = Map.of(
             DbPlatform.MYSQL, "sql/adminCodes_mysql.sql",
             DbPlatform.H2, "sql/adminCodes_h2.sql");
 
     /**
-     * Check and create/load table data.
+     * Load the admin codes if they are not loaded yet, once they are this only reads the state.
      */
     @PostConstruct
     public void initialize() {
-        if (!tableExists) {
-            if (!DatabaseUtils.tableExists(dataSource, TABLE_NAME)) {
-                try {
-                    LOGGER.info("Table {} does not exist, creating", TABLE_NAME);
-                    DatabaseUtils.loadDDL(dataSource, DDL_MAP);
-                } catch (final DataAccessException e) {
-                    throw new InternalApplicationError(e);
-                }
+        if (state == DatasetState.LOADING) {
+            prepareTable();
+        }
+    }
+
+    /**
+     * @return where the admin codes are in their lifecycle.
+     */
+    public DatasetState getState() {
+        return state;
+    }
+
+    /**
+     * Create the table and load it if it is empty, then mark the admin codes ready.
+     */
+    private synchronized void prepareTable() {
+        if (state != DatasetState.LOADING) {
+            return;
+        }
+        try {
+            // A table from before the key column gets it added and filled in, then its index from the DDL.
+            if (DatabaseUtils.fillKeyColumn(jdbcTemplate, TABLE_NAME, "name", KEY_COLUMN) ||
+                    !DatabaseUtils.tableExists(dataSource, TABLE_NAME)) {
+                LOGGER.info("Table {} does not exist or its indexes are missing, creating", TABLE_NAME);
+                DatabaseUtils.loadDDL(dataSource, DDL_MAP);
             }
-            tableExists = true;
+        } catch (final DataAccessException e) {
+            throw new InternalApplicationError(e);
         }
-        if (!tableFull) {
-            if (DatabaseUtils.tableIsEmpty(jdbcTemplate, COUNT_ALL_ROWS)) {
-                try {
-                    adminCodeInputStream = Objects.requireNonNull(getClass().getClassLoader()
-                            .getResourceAsStream(DEFAULT_GEONAMES_ADMIN_CODE_FILE));
-                    LOGGER.info("Table {} is empty, parsing file {}", TABLE_NAME, adminCodeInputStream);
-                    loadAdminCodes();
-                } catch (final DataAccessException e) {
-                    throw new InternalApplicationError(e);
-                }
+        if (DatabaseUtils.tableIsEmpty(jdbcTemplate, COUNT_ALL_ROWS)) {
+            try {
+                LOGGER.info("Table {} is empty, parsing file {}", TABLE_NAME, adminCodeFile);
+                reloadTable();
+            } catch (final DataAccessException e) {
+                throw new InternalApplicationError(e);
             }
-            tableFull = true;
         }
+        loadIndex();
+        state = DatasetState.READY;
     }
 
     /**
-     * Load the admin codes from the file into the database.
+     * Read the admin codes from the table and the aliases from their file into a new index and swap it in.
      */
-    private void loadAdminCodes() {
-        final List<MapSqlParameterSource> parameterSourcesList = new ArrayList<>();
-        try (final BufferedReader reader = new BufferedReader(new InputStreamReader(adminCodeInputStream,
-                StandardCharsets.UTF_8));
-             final Stream<String> stream = reader.lines()) {
-            stream.forEach(l -> {
-                final String[] p = l.split("\t");
-                if (p.length < 2) {
-                    // Need two entries at least.
-                    throw new InternalApplicationError(String.format("Only received 1 part from line %s", p[0]));
+    private synchronized void loadIndex() {
+        final AdminCodeIndex.Builder builder = AdminCodeIndex.builder();
+        try {
+            jdbcTemplate.query(SELECT_ALL, (RowCallbackHandler) rs -> builder.add(rs.getString(1), rs.getString(2),
+                    rs.getString(3)));
+        } catch (final DataAccessException e) {
+            throw new InternalApplicationError(e);
+        }
+        try (final GeoNamesTsvReader reader = new GeoNamesTsvReader(
+                ResourceUtils.openLocation("classpath:" + DEFAULT_ADMIN_ALIAS_FILE))) {
+            final TsvRow row = new TsvRow();
+            while (reader.hasNext()) {
+                final byte[] line = reader.next();
+                row.reset(line, line.length);
+                if (row.getColumnCount() < 2 || row.getString(0).startsWith("#")) {
+                    continue;
                 }
-                final String name = p[1];
-                if (p[0].contains(".")) {
-                    final String[] f = p[0].split("\\.");
-                    final String country = f[0].trim();
-                    final String adminCode = f[1].trim();
-                    final MapSqlParameterSource ps = new MapSqlParameterSource();
-                    ps.addValue("country", country);
-                    ps.addValue("code", adminCode);
-                    ps.addValue("name", name);
-                    parameterSourcesList.add(ps);
-                } else {
-                    throw new InternalApplicationError(String.format("Country and code does not contain a period, %s",
-                            p[0]));
+                final String countryAndCode = row.getString(0);
+                final int period = countryAndCode.indexOf('.');
+                if (period > 0) {
+                    builder.alias(countryAndCode.substring(0, period), countryAndCode.substring(period + 1),
+                            row.getString(1));
                 }
-            });
-            final MapSqlParameterSource[] psArray = parameterSourcesList.toArray(new MapSqlParameterSource[0]);
-            namedParameterJdbcTemplate.batchUpdate(INSERT_RECORD, psArray);
-        } catch (final DataAccessException | IOException e) {
+            }
+        } catch (final IOException | UncheckedIOException e) {
             throw new InternalApplicationError(e);
         }
+        final AdminCodeIndex built = builder.build();
+        index = built;
+        LOGGER.info("Loaded {} admin codes under {} names, aliases and codes", built.size(), built.keyCount());
+    }
+
+    /**
+     * Load the file into a shadow table and swap it in, so the live table is either empty or complete even if the
+     * load fails or the application stops part way.
+     */
+    private void reloadTable() {
+        shadowTables.prepare(TABLE_NAME);
+        loadAdminCodes(ShadowTables.shadowOf(TABLE_NAME));
+        shadowTables.swap(TABLE_NAME);
+    }
+
+    /**
+     * Load the admin codes from the file into the database.
+     * @param table the table to load.
+     */
+    private void loadAdminCodes(final String table) {
+        final String insert = String.format(INSERT_RECORD, table);
+        try (final GeoNamesTsvReader reader = new GeoNamesTsvReader(
+                ResourceUtils.openLocation(adminCodeFile))) {
+            ingestPipeline.load(table, reader, AdminCodes::parseLine,
+                    (template, chunk) -> {
+                        template.batchUpdate(insert, chunk.toArray(new MapSqlParameterSource[0]));
+                        return chunk.size();
+                    });
+        } catch (final IOException | UncheckedIOException e) {
+            throw new InternalApplicationError(e);
+        }
+    }
+
+    /**
+     * Parse a line of the admin code file.
+     * @param line the bytes of the line.
+     * @return the parameters to insert it.
+     */
+    private static MapSqlParameterSource parseLine(final byte[] line) {
+        final TsvRow row = TsvRow.forThread(line);
+        if (row.getColumnCount() < 2) {
+            // Need two entries at least.
+            throw new InternalApplicationError(String.format("Only received 1 part from line %s", row));
+        }
+        final String countryAndCode = row.getString(0);
+        final int period = countryAndCode.indexOf('.');
+        if (period < 0) {
+            throw new InternalApplicationError(String.format("Country and code does not contain a period, %s",
+                    countryAndCode));
+        }
+        final MapSqlParameterSource ps = new MapSqlParameterSource();
+        ps.addValue("country", countryAndCode.substring(0, period).trim());
+        ps.addValue("code", countryAndCode.substring(period + 1).trim());
+        ps.addValue("name", row.getString(1));
+        ps.addValue("nameKey", NameNormalizer.normalize(row.getString(1)));
+        return ps;
     }
 
     /**
      * Retrieve an admin1 code for the country and place name.
      * @param countryCode the country code.
-     * @param name the administrative division name
-     * @return the admin1 code.
+     * @param name the administrative division name, abbreviation or ISO 3166-2 code.
+     * @return the admin1 code, or a code which matches nothing if the division is unknown.
      */
     public String findAdminCode(final String countryCode, final String name) {
-        try {
-            initialize();
-            final MapSqlParameterSource ps = new MapSqlParameterSource();
-            ps.addValue("country", countryCode.toLowerCase());
-            ps.addValue("name", name.toLowerCase());
-            return namedParameterJdbcTemplate.queryForObject(SELECT_CODE_BY_COUNTRY_NAME, ps,
-                    (rs, rowNum) -> rs.getString(1));
-        } catch (final DataAccessException e) {
-            throw new InternalApplicationError(e);
+        initialize();
+        final long start = System.nanoTime();
+        final String code = index.find(countryCode, name);
+        lookupMetrics.recordStage(LookupMetrics.Stage.ADMIN_CODE, start);
+        return code == null ? UNKNOWN_ADMIN_CODE : code;
+    }
+
+    /**
+     * Retrieve the admin1 codes for a group of countries and place names together.
+     * @param countryCodes the country codes.
+     * @param names the administrative division names, abbreviations or ISO 3166-2 codes.
+     * @return map of {@link #adminKey(String, String)} to admin1 code, for each pair that exists.
+     */
+    public Map<String, String> findAdminCodes(final Collection<String> countryCodes, final Collection<String> names) {
+        final Map<String, String> codes = new HashMap<>();
+        if (countryCodes.isEmpty() || names.isEmpty()) {
+            return codes;
+        }
+        initialize();
+        final long start = System.nanoTime();
+        final AdminCodeIndex current = index;
+        for (final String countryCode : countryCodes) {
+            for (final String name : names) {
+                final String code = current.find(countryCode, name);
+                if (code != null) {
+                    codes.put(adminKey(countryCode, name), code);
+                }
+            }
+        }
+        lookupMetrics.recordStage(LookupMetrics.Stage.ADMIN_CODE, start);
+        return codes;
+    }
+
+    /**
+     * Retrieve the admin1 codes needed to lookup a group of cities.
+     * @param locations the locations, only those with a city, country code and province are considered.
+     * @return map of {@link #adminKey(String, String)} to admin1 code, for each pair that exists.
+     */
+    public Map<String, String> findAdminCodes(final Collection<LocationRequest> locations) {
+        final Set<String> countries = new HashSet<>();
+        final Set<String> names = new HashSet<>();
+        for (final LocationRequest location : locations) {
+            if (location.getCity() != null && location.getIso3361Alpha2() != null &&
+                    location.getProvince() != null) {
+                countries.add(location.getIso3361Alpha2());
+                names.add(location.getProvince());
+            }
         }
+        return findAdminCodes(countries, names);
     }
 
     /**
-     * Truncate the table and reload.
+     * Get the admin1 code for a city request from a map returned by {@link #findAdminCodes(Collection)}.
+     * @param location the location.
+     * @param codes the admin codes.
+     * @return the admin1 code, null if the location has no province and a code which matches nothing if the
+     *     province is unknown.
      */
-    public void reset() {
+    public static String adminCodeFor(final LocationRequest location, final Map<String, String> codes) {
+        if (location.getCity() == null || location.getIso3361Alpha2() == null || location.getProvince() == null) {
+            return null;
+        }
+        return codes.getOrDefault(adminKey(location.getIso3361Alpha2(), location.getProvince()), UNKNOWN_ADMIN_CODE);
+    }
+
+    /**
+     * Key used to identify a country and admin division name pair.
+     * @param countryCode the country code.
+     * @param name the administrative division name.
+     * @return the key.
+     */
+    public static String adminKey(final String countryCode, final String name) {
+        return countryCode.toLowerCase(Locale.ROOT) + "|" + NameNormalizer.normalize(name);
+    }
+
+    /**
+     * Load the file into a shadow table and then swap it in, lookups are answered from the old codes until the new
+     * ones are read back into memory.
+     */
+    public synchronized void reset() {
+        LOGGER.info("Resetting Admin Codes");
+        initialize();
+        state = DatasetState.RELOADING;
         try {
-            LOGGER.info("Resetting Admin Codes");
-            jdbcTemplate.execute(TRUNCATE_TABLE);
-            tableFull = false;
-            loadAdminCodes();
-            tableFull = true;
-        } catch (final DataAccessException e) {
-            throw new InternalApplicationError(e);
+            reloadTable();
+            loadIndex();
+        } finally {
+            state = DatasetState.READY;
         }
     }
 }
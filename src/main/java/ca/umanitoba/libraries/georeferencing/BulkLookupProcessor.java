@@ -0,0 +1,178 @@
+package ca.umanitoba.libraries.georeferencing;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+import ca.umanitoba.libraries.georeferencing.utils.BoundedLineReader;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+/**
+ * Resolves a stream of newline delimited JSON LocationRequests into a stream of newline delimited JSON
+ * LookupResults.
+ * <p>
+ * Lines are read and resolved in chunks of a fixed size, so memory use does not depend on the length of the stream.
+ * Each chunk is written and flushed before the next is read, so a slow reader slows down the reading of the request.
+ * @author whikloj
+ */
+@Component
+public class BulkLookupProcessor {
+
+    private static final Logger LOGGER = getLogger(BulkLookupProcessor.class);
+
+    private static final byte NEWLINE = '\n';
+
+    @Inject
+    private LocationResolver locationResolver;
+
+    @Inject
+    private ObjectMapper objectMapper;
+
+    @Inject
+    private LookupMetrics lookupMetrics;
+
+    @Value("${lookup.stream.chunkSize:500}")
+    private int chunkSize;
+
+    @Value("${lookup.stream.maxConcurrent:4}")
+    private int maxConcurrent;
+
+    @Value("${lookup.stream.maxLineLength:65536}")
+    private int maxLineLength;
+
+    @Value("${lookup.stream.progressInterval:100000}")
+    private long progressInterval;
+
+    private Semaphore streamPermits;
+
+    private ObjectReader requestReader;
+
+    private ObjectWriter resultWriter;
+
+    private final BulkLookupStatistics statistics = new BulkLookupStatistics();
+
+    @PostConstruct
+    public void initialize() {
+        streamPermits = new Semaphore(maxConcurrent);
+        requestReader = objectMapper.readerFor(LocationRequest.class)
+                .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        resultWriter = objectMapper.writerFor(LookupResult.class);
+    }
+
+    /**
+     * Resolve every line of the input and write one result line per input line, in the same order. Blank lines are
+     * skipped, a line longer than the maximum line length is answered with a 413 without being held in memory.
+     * @param input the newline delimited LocationRequests.
+     * @param output where to write the newline delimited LookupResults.
+     * @return false without reading the input if the maximum number of streams are already running.
+     * @throws IOException if the input cannot be read or the output written.
+     */
+    public boolean process(final InputStream input, final OutputStream output) throws IOException {
+        if (!streamPermits.tryAcquire()) {
+            statistics.streamRejected();
+            return false;
+        }
+        final long start = System.nanoTime();
+        long lines = 0;
+        statistics.streamStarted();
+        try (final BufferedReader buffered = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            final BoundedLineReader reader = new BoundedLineReader(buffered, maxLineLength);
+            final List<LocationRequest> requests = new ArrayList<>(chunkSize);
+            final List<LookupResult> parseErrors = new ArrayList<>(chunkSize);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (reader.isTooLong()) {
+                    requests.add(null);
+                    parseErrors.add(LookupResult.error(HttpStatus.PAYLOAD_TOO_LARGE,
+                            String.format("Line %d is longer than %d characters", reader.getLineNumber(),
+                                    maxLineLength)));
+                } else if (line.isBlank()) {
+                    continue;
+                } else {
+                    try {
+                        requests.add(requestReader.readValue(line));
+                        parseErrors.add(null);
+                    } catch (final JsonProcessingException e) {
+                        requests.add(null);
+                        parseErrors.add(LookupResult.error(HttpStatus.BAD_REQUEST,
+                                String.format("Unable to parse line %d: %s", reader.getLineNumber(),
+                                        e.getOriginalMessage())));
+                    }
+                }
+                if (requests.size() == chunkSize) {
+                    lines += writeChunk(requests, parseErrors, output);
+                    logProgress(lines, start);
+                }
+            }
+            lines += writeChunk(requests, parseErrors, output);
+        } finally {
+            final long elapsed = System.nanoTime() - start;
+            statistics.streamFinished(lines, elapsed);
+            streamPermits.release();
+            LOGGER.info("Bulk lookup stream of {} lines finished in {} ms", lines, elapsed / 1_000_000);
+        }
+        return true;
+    }
+
+    /**
+     * @return the throughput counters.
+     */
+    public BulkLookupStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Resolve and write a chunk of requests then clear it.
+     * @param requests the parsed requests, null where the line could not be parsed.
+     * @param parseErrors the parse error for each line, null where the line was parsed.
+     * @param output where to write the results.
+     * @return the number of lines written.
+     * @throws IOException if the output cannot be written.
+     */
+    private int writeChunk(final List<LocationRequest> requests, final List<LookupResult> parseErrors,
+                           final OutputStream output) throws IOException {
+        if (requests.isEmpty()) {
+            return 0;
+        }
+        final List<LookupResult> results = locationResolver.resolveAll(requests);
+        for (int i = 0; i < results.size(); i++) {
+            final LookupResult result = parseErrors.get(i) != null ? parseErrors.get(i) : results.get(i);
+            statistics.lineProcessed(result);
+            lookupMetrics.countResult(LookupMetrics.Endpoint.STREAM, result);
+            output.write(resultWriter.writeValueAsBytes(result));
+            output.write(NEWLINE);
+        }
+        output.flush();
+        final int count = requests.size();
+        requests.clear();
+        parseErrors.clear();
+        return count;
+    }
+
+    private void logProgress(final long lines, final long start) {
+        if (progressInterval > 0 && lines % progressInterval < chunkSize) {
+            final long elapsed = System.nanoTime() - start;
+            LOGGER.info("Bulk lookup stream at {} lines, {} lines/sec", lines,
+                    elapsed == 0 ? 0 : lines * 1_000_000_000L / elapsed);
+        }
+    }
+}
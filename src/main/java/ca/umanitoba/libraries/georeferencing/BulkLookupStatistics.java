@@ -0,0 +1,106 @@
+package ca.umanitoba.libraries.georeferencing;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Throughput counters for streaming bulk lookups, shared by all streams since startup.
+ * @author whikloj
+ */
+public class BulkLookupStatistics {
+
+    private final AtomicLong activeStreams = new AtomicLong(0);
+    private final AtomicLong completedStreams = new AtomicLong(0);
+    private final AtomicLong rejectedStreams = new AtomicLong(0);
+    private final AtomicLong linesRead = new AtomicLong(0);
+    private final AtomicLong found = new AtomicLong(0);
+    private final AtomicLong notFound = new AtomicLong(0);
+    private final AtomicLong badRequests = new AtomicLong(0);
+    private final AtomicLong errors = new AtomicLong(0);
+    private final AtomicLong completedLines = new AtomicLong(0);
+    private final AtomicLong busyNanos = new AtomicLong(0);
+
+    /**
+     * Record the start of a stream.
+     */
+    void streamStarted() {
+        activeStreams.incrementAndGet();
+    }
+
+    /**
+     * Record the end of a stream.
+     * @param lines the number of lines in the stream.
+     * @param nanos the time the stream took.
+     */
+    void streamFinished(final long lines, final long nanos) {
+        activeStreams.decrementAndGet();
+        completedStreams.incrementAndGet();
+        completedLines.addAndGet(lines);
+        busyNanos.addAndGet(nanos);
+    }
+
+    /**
+     * Record a stream turned away because too many are running.
+     */
+    void streamRejected() {
+        rejectedStreams.incrementAndGet();
+    }
+
+    /**
+     * Record the outcome of a line.
+     * @param result the result written for the line.
+     */
+    void lineProcessed(final LookupResult result) {
+        linesRead.incrementAndGet();
+        if (result.getStatus() == HttpStatus.OK.value()) {
+            found.incrementAndGet();
+        } else if (result.getStatus() == HttpStatus.NOT_FOUND.value()) {
+            notFound.incrementAndGet();
+        } else if (result.getStatus() == HttpStatus.BAD_REQUEST.value()) {
+            badRequests.incrementAndGet();
+        } else {
+            errors.incrementAndGet();
+        }
+    }
+
+    public long getActiveStreams() {
+        return activeStreams.get();
+    }
+
+    public long getCompletedStreams() {
+        return completedStreams.get();
+    }
+
+    public long getRejectedStreams() {
+        return rejectedStreams.get();
+    }
+
+    public long getLinesRead() {
+        return linesRead.get();
+    }
+
+    public long getFound() {
+        return found.get();
+    }
+
+    public long getNotFound() {
+        return notFound.get();
+    }
+
+    public long getBadRequests() {
+        return badRequests.get();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    /**
+     * @return the average lines per second of completed streams.
+     */
+    public double getLinesPerSecond() {
+        final long nanos = busyNanos.get();
+        return nanos == 0 ? 0 : completedLines.get() * 1e9 / nanos;
+    }
+}
@@ -0,0 +1,51 @@
+package ca.umanitoba.libraries.georeferencing;
+
+import javax.inject.Inject;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import ca.umanitoba.libraries.georeferencing.api.CountryCodeLookupService;
+import ca.umanitoba.libraries.georeferencing.api.DatasetState;
+import ca.umanitoba.libraries.georeferencing.api.NameLookupService;
+import org.springframework.stereotype.Component;
+
+/**
+ * Whether the four datasets lookups need are loaded, so a node is only sent traffic once it can answer it.
+ * @author whikloj
+ */
+@Component
+public class DatasetReadiness {
+
+    @Inject
+    private NameLookupService nameLookup;
+
+    @Inject
+    private CountryCodeLookupService countryLookup;
+
+    @Inject
+    private AdminCodes adminCodes;
+
+    @Inject
+    private GeoNamesFeatureCodes featureCodes;
+
+    /**
+     * @return the state of each dataset by its name.
+     */
+    public Map<String, DatasetState> getStates() {
+        final Map<String, DatasetState> states = new LinkedHashMap<>();
+        states.put("places", nameLookup.getState());
+        states.put("countries", countryLookup.getState());
+        states.put("adminCodes", adminCodes.getState());
+        states.put("featureCodes", featureCodes.getState());
+        return states;
+    }
+
+    /**
+     * @return true if every dataset is loaded, including those being reloaded from which lookups are still answered.
+     */
+    public boolean isReady() {
+        return nameLookup.getState().isAvailable() && countryLookup.getState().isAvailable() &&
+                adminCodes.getState().isAvailable() && featureCodes.getState().isAvailable();
+    }
+}
@@ -0,0 +1,234 @@
+package ca.umanitoba.libraries.georeferencing;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import ca.umanitoba.libraries.georeferencing.api.NameLookupService;
+import ca.umanitoba.libraries.georeferencing.exceptions.InternalApplicationError;
+import ca.umanitoba.libraries.georeferencing.exceptions.NameLookupException;
+import ca.umanitoba.libraries.georeferencing.index.TrigramIndex;
+import ca.umanitoba.libraries.georeferencing.ingest.GeoNamesTsvReader;
+import ca.umanitoba.libraries.georeferencing.ingest.PlaceUpdates;
+import ca.umanitoba.libraries.georeferencing.ingest.TsvRow;
+import ca.umanitoba.libraries.georeferencing.utils.NameNormalizer;
+import ca.umanitoba.libraries.georeferencing.utils.ResourceUtils;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Finds places by names close to a misspelled one, using a trigram index of the names, ascii names and alternate
+ * names of the populated places and administrative divisions in the location file.
+ * <p>
+ * The closest names are looked up through the {@link NameLookupService} together and the first one found wins, so a
+ * fuzzy match is held to the same country and province rules as an exact one. Looking for close names stops once the
+ * time budget is spent, and no lookup of them or sound-alike fallback is started after it; a query already running
+ * is not cut short.
+ * @author whikloj
+ */
+@Component
+public class FuzzyNameMatcher {
+
+    private static final Logger LOGGER = getLogger(FuzzyNameMatcher.class);
+
+    private static final String NOT_FOUND = "Could not find a location close to the request.";
+
+    @Value("${datahub.locationfile}")
+    private String datahubLocationFileValue;
+
+    @Value("${lookup.fuzzy.enabled:true}")
+    private boolean enabled;
+
+    @Value("${lookup.fuzzy.maxEdits:2}")
+    private int maxEdits;
+
+    @Value("${lookup.fuzzy.minScore:0.4}")
+    private double minScore;
+
+    @Value("${lookup.fuzzy.maxCandidates:5}")
+    private int maxCandidates;
+
+    @Value("${lookup.fuzzy.timeBudgetMillis:50}")
+    private long timeBudgetMillis;
+
+    @Inject
+    private NameLookupService nameLookup;
+
+    @Inject
+    private LookupMetrics lookupMetrics;
+
+    private volatile Names names;
+
+    /**
+     * Basic constructor.
+     */
+    public FuzzyNameMatcher() {
+        // This constructor left intentionally blank.
+    }
+
+    /**
+     * Build the index from the location file.
+     */
+    @PostConstruct
+    public void initialize() {
+        if (enabled) {
+            names = loadNames();
+        }
+    }
+
+    /**
+     * @return true if fuzzy lookups are enabled.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Find the place with the name closest to a location's city, or its province if it has no city.
+     * @param location the location request, with its country code set.
+     * @return the coordinates.
+     * @throws NameLookupException if no close name is found.
+     */
+    public Coordinates lookup(final LocationRequest location) throws NameLookupException {
+        final Names current = names;
+        final String name = location.getCity() != null ? location.getCity() : location.getProvince();
+        if (current == null || name == null) {
+            throw new NameLookupException(NOT_FOUND);
+        }
+        final long start = System.nanoTime();
+        final long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeBudgetMillis);
+        final Set<String> candidates = new LinkedHashSet<>();
+        for (final TrigramIndex index : List.of(current.index, current.added)) {
+            for (final TrigramIndex.Match match : index.search(name, maxEdits, minScore, maxCandidates, deadline)) {
+                candidates.add(current.aliases.getOrDefault(match.getName(), match.getName()));
+            }
+        }
+        lookupMetrics.recordStage(LookupMetrics.Stage.FUZZY, start);
+        final List<LocationRequest> requests = new ArrayList<>(candidates.size());
+        for (final String candidate : candidates) {
+            requests.add(location.withPlaceName(candidate));
+        }
+        final Map<String, Coordinates> found = requests.isEmpty() ? Map.of() : nameLookup.lookupAll(requests, deadline);
+        for (final LocationRequest request : requests) {
+            final Coordinates coordinates = found.get(request.getHashString());
+            if (coordinates != null) {
+                LOGGER.debug("Matched {} to {}", name, location.getCity() != null ? request.getCity() :
+                        request.getProvince());
+                return coordinates;
+            }
+        }
+        throw new NameLookupException(NOT_FOUND);
+    }
+
+    /**
+     * Discard the index and re-build it from the location file.
+     */
+    public synchronized void reset() {
+        if (enabled) {
+            names = loadNames();
+        }
+    }
+
+    /**
+     * Add the names of places changed by a day of GeoNames changes. Names no longer in use are left in the index,
+     * as they are only candidates which the name lookup will not find.
+     * @param updates the changes.
+     */
+    public synchronized void update(final PlaceUpdates updates) {
+        final Names current = names;
+        if (current == null) {
+            return;
+        }
+        final List<String> addedNames = new ArrayList<>(current.addedNames);
+        final Map<String, String> aliases = new HashMap<>(current.aliases);
+        for (final GeoNamesPlace place : updates.getModified().values()) {
+            if (isSearched(place.getFeatureClass())) {
+                addPlace(place.getName(), place.getAsciiName(), place.getAlternateNameList(), addedNames::add,
+                        aliases);
+            }
+        }
+        updates.getAddedAlternateNames().forEach(n -> addedNames.add(n.getName()));
+        final TrigramIndex.Builder builder = TrigramIndex.builder();
+        addedNames.forEach(builder::add);
+        names = new Names(current.index, builder.build(), addedNames, aliases);
+    }
+
+    /**
+     * Parse the names in the location file into a new index.
+     */
+    private Names loadNames() {
+        final long start = System.currentTimeMillis();
+        final TrigramIndex.Builder builder = TrigramIndex.builder();
+        final Map<String, String> aliases = new HashMap<>();
+        try (final GeoNamesTsvReader reader = new GeoNamesTsvReader(
+                ResourceUtils.openLocation(datahubLocationFileValue))) {
+            final TsvRow row = new TsvRow();
+            while (reader.hasNext()) {
+                final byte[] line = reader.next();
+                final GeoNamesPlace place = GeoNamesPlace.fromRow(row.reset(line, line.length));
+                if (isSearched(place.getFeatureClass())) {
+                    addPlace(place.getName(), place.getAsciiName(), place.getAlternateNameList(), builder::add,
+                            aliases);
+                }
+            }
+        } catch (final IOException | UncheckedIOException e) {
+            throw new InternalApplicationError(e);
+        }
+        final TrigramIndex index = builder.build();
+        LOGGER.info("Indexed {} names for fuzzy lookups from {} in {} ms", index.size(), datahubLocationFileValue,
+                System.currentTimeMillis() - start);
+        return new Names(index, TrigramIndex.builder().build(), List.of(), aliases);
+    }
+
+    /**
+     * Add the names of a place. The ascii name is only a search key, it is looked up by the place's name.
+     */
+    private static void addPlace(final String name, final String asciiName, final String[] alternateNames,
+                                 final Consumer<String> index, final Map<String, String> aliases) {
+        index.accept(name);
+        for (final String alternateName : alternateNames) {
+            index.accept(alternateName);
+        }
+        final String asciiKey = NameNormalizer.normalize(asciiName);
+        final String key = NameNormalizer.normalize(name);
+        if (asciiKey != null && !asciiKey.isEmpty() && !asciiKey.equals(key)) {
+            index.accept(asciiName);
+            aliases.putIfAbsent(asciiKey, key);
+        }
+    }
+
+    private static boolean isSearched(final String featureClass) {
+        return "P".equals(featureClass) || "A".equals(featureClass);
+    }
+
+    /**
+     * The indexed names, replaced as a whole so lookups always see a consistent set.
+     */
+    private static class Names {
+        private final TrigramIndex index;
+        private final TrigramIndex added;
+        private final List<String> addedNames;
+        private final Map<String, String> aliases;
+
+        Names(final TrigramIndex index, final TrigramIndex added, final List<String> addedNames,
+              final Map<String, String> aliases) {
+            this.index = index;
+            this.added = added;
+            this.addedNames = addedNames;
+            this.aliases = aliases;
+        }
+    }
+}
@@ -7,26 +7,25 @@ import javax.sql.DataSource;
 
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
-import java.util.Objects;
-import java.util.stream.Stream;
 
+import ca.umanitoba.libraries.georeferencing.api.DatasetState;
 import ca.umanitoba.libraries.georeferencing.exceptions.InternalApplicationError;
+import ca.umanitoba.libraries.georeferencing.index.FeatureCodeTable;
+import ca.umanitoba.libraries.georeferencing.ingest.IngestPipeline;
+import ca.umanitoba.libraries.georeferencing.ingest.ShadowTables;
 import ca.umanitoba.libraries.georeferencing.utils.DatabaseUtils;
 import ca.umanitoba.libraries.georeferencing.utils.DbPlatform;
+import ca.umanitoba.libraries.georeferencing.utils.ResourceUtils;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
-import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Component;
 
 @Component
@@ -40,29 +39,28 @@ public class GeoNamesFeatureCodes {
 
     @Autowired
     @Lazy
-    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private DataSource dataSource;
 
     @Autowired
-    @Lazy
-    private DataSource dataSource;
+    private IngestPipeline ingestPipeline;
 
-    private static String DEFAULT_GEONAMES_FEATURE_CODE_FILE = "featureCodes_en.txt";
+    @Autowired
+    private ShadowTables shadowTables;
 
-    private InputStream featureCodeStream;
+    private static String DEFAULT_GEONAMES_FEATURE_CODE_FILE = "featureCodes_en.txt";
 
     private static String TABLE_NAME = "featureCodes";
 
     private static String COUNT_ALL_ROWS = String.format("SELECT count(*) FROM %s", TABLE_NAME);
 
-    private static String INSERT_RECORD = String.format("INSERT INTO %s VALUES (?, ?, ?, ?)", TABLE_NAME);
+    private static String INSERT_RECORD = "INSERT INTO %s VALUES (?, ?, ?, ?)";
 
-    private static String SELECT_BY_CLASS_CODE = String.format("SELECT * FROM %s WHERE featureClass = :class AND " +
-            "code = :code", TABLE_NAME);
+    private static final String SELECT_ALL = String.format("SELECT featureClass, code, name, description FROM %s",
+            TABLE_NAME);
 
-    private static String TRUNCATE_TABLE = String.format("TRUNCATE TABLE %s", TABLE_NAME);
+    private volatile DatasetState state = DatasetState.LOADING;
 
-    private boolean tableExists = false;
-    private boolean tableFull = false;
+    private volatile FeatureIndex index;
 
     private final static Map<DbPlatform, String> DDL_MAP = Map.of(DbPlatform.MYSQL, "sql/featureCodes_mysql.sql",
             DbPlatform.H2, "sql/featureCodes_h2.sql");
@@ -75,79 +73,134 @@ public class GeoNamesFeatureCodes {
     }
 
     /**
-     * Check and create/load table data.
+     * Load the features if they are not loaded yet, once they are this only reads the state.
      */
     @PostConstruct
     public void initialize() {
-        if (!tableExists) {
-            if (!DatabaseUtils.tableExists(dataSource, TABLE_NAME)) {
-                try {
-                    LOGGER.info("Table {} does not exist, creating", TABLE_NAME);
-                    DatabaseUtils.loadDDL(dataSource, DDL_MAP);
-                } catch (final DataAccessException e) {
-                    throw new InternalApplicationError(e);
-                }
-            }
-            tableExists = true;
-        }
-        if (!tableFull) {
-            if (DatabaseUtils.tableIsEmpty(jdbcTemplate, COUNT_ALL_ROWS)) {
-                featureCodeStream = Objects.requireNonNull(this.getClass().getClassLoader()
-                        .getResourceAsStream(DEFAULT_GEONAMES_FEATURE_CODE_FILE));
-                LOGGER.info("Table {} is empty, parsing file {}", TABLE_NAME, DEFAULT_GEONAMES_FEATURE_CODE_FILE);
-                loadFeatures();
+        if (state == DatasetState.LOADING) {
+            prepareTable();
+        }
+    }
+
+    /**
+     * @return where the features are in their lifecycle.
+     */
+    public DatasetState getState() {
+        return state;
+    }
+
+    /**
+     * Create the table and load it if it is empty, then mark the features ready.
+     */
+    private synchronized void prepareTable() {
+        if (state != DatasetState.LOADING) {
+            return;
+        }
+        if (!DatabaseUtils.tableExists(dataSource, TABLE_NAME)) {
+            try {
+                LOGGER.info("Table {} does not exist, creating", TABLE_NAME);
+                DatabaseUtils.loadDDL(dataSource, DDL_MAP);
+            } catch (final DataAccessException e) {
+                throw new InternalApplicationError(e);
             }
-            tableFull = true;
         }
+        if (DatabaseUtils.tableIsEmpty(jdbcTemplate, COUNT_ALL_ROWS)) {
+            LOGGER.info("Table {} is empty, parsing file {}", TABLE_NAME, DEFAULT_GEONAMES_FEATURE_CODE_FILE);
+            reloadTable();
+        }
+        loadIndex();
+        state = DatasetState.READY;
     }
 
     /**
-     * Load the tab separated file into the database.
+     * Read the features from the table into a new table of ids and swap it in.
      */
-    private void loadFeatures() {
+    private synchronized void loadIndex() {
+        final FeatureCodeTable.Builder builder = FeatureCodeTable.builder();
         try {
-            final List<Feature> inputData = new ArrayList<>();
-
-            try (final BufferedReader reader = new BufferedReader(new InputStreamReader(featureCodeStream,
-                    StandardCharsets.UTF_8));
-                 final Stream<String> stream = reader.lines()) {
-                stream.forEach(l -> {
-                    final String[] p = l.split("\t");
-                    if (p.length < 2) {
-                        // Need two entries at least.
-                        throw new InternalApplicationError(String.format("Only received 1 part from line %s", p[0]));
-                    }
-                    final String[] f = p[0].split("\\.");
-                    final Feature feature;
-                    try {
-                        if (p.length > 2) {
-                            feature = new Feature(f[0], f[1], p[1], p[2]);
-                        } else {
-                            feature = new Feature(f[0], f[1], p[1]);
-                        }
-                        inputData.add(feature);
-                    } catch (final IndexOutOfBoundsException e) {
-                        // Swallow the failure and don't load the record.
-                        LOGGER.warn("Unable to load feature {}, skipping", p[0]);
-                    }
-                });
-            }
-            jdbcTemplate.batchUpdate(
-                    INSERT_RECORD,
-                    inputData,
-                    50,
-                    (ps, arg) -> {
-                        ps.setString(1, arg.getFeatureClass());
-                        ps.setString(2, arg.getCode());
-                        ps.setString(3, arg.getName());
-                        ps.setString(4, arg.getDescription());
-                    }
-            );
+            jdbcTemplate.query(SELECT_ALL, (RowCallbackHandler) rs -> {
+                final String featureClass = rs.getString(1);
+                if (featureClass != null && featureClass.length() == 1) {
+                    builder.add(featureClass.charAt(0), rs.getString(2), rs.getString(3), rs.getString(4));
+                }
+            });
+        } catch (final DataAccessException e) {
+            throw new InternalApplicationError(e);
+        }
+        final FeatureCodeTable table = builder.build();
+        final Feature[] features = new Feature[table.size()];
+        for (int id = 0; id < features.length; id++) {
+            features[id] = new Feature(String.valueOf(table.getFeatureClass(id)), table.getCode(id),
+                    table.getName(id), table.getDescription(id));
+        }
+        index = new FeatureIndex(table, features);
+        LOGGER.info("Loaded {} feature codes", table.size());
+    }
+
+    /**
+     * Load the file into a shadow table and swap it in, so the live table is either empty or complete even if the
+     * load fails or the application stops part way.
+     */
+    private void reloadTable() {
+        shadowTables.prepare(TABLE_NAME);
+        loadFeatures(ShadowTables.shadowOf(TABLE_NAME));
+        shadowTables.swap(TABLE_NAME);
+    }
+
+    /**
+     * Load the tab separated file into the database.
+     * @param table the table to load.
+     */
+    private void loadFeatures(final String table) {
+        final String insert = String.format(INSERT_RECORD, table);
+        try (final BufferedReader reader = new BufferedReader(new InputStreamReader(
+                ResourceUtils.openLocation("classpath:" + DEFAULT_GEONAMES_FEATURE_CODE_FILE),
+                StandardCharsets.UTF_8))) {
+            ingestPipeline.load(table, reader.lines().iterator(), GeoNamesFeatureCodes::parseLine,
+                    (template, chunk) -> {
+                        template.getJdbcTemplate().batchUpdate(
+                                insert,
+                                chunk,
+                                50,
+                                (ps, arg) -> {
+                                    ps.setString(1, arg.getFeatureClass());
+                                    ps.setString(2, arg.getCode());
+                                    ps.setString(3, arg.getName());
+                                    ps.setString(4, arg.getDescription());
+                                }
+                        );
+                        return chunk.size();
+                    });
         } catch (final DataAccessException | IOException | UncheckedIOException e) {
             throw new InternalApplicationError(e);
         }
     }
 
+    /**
+     * Parse a line of the feature code file.
+     * @param line the line.
+     * @return the feature, or null if the line cannot be loaded.
+     */
+    private static Feature parseLine(final String line) {
+        final String[] p = line.split("\t");
+        if (p.length < 2) {
+            // Need two entries at least.
+            throw new InternalApplicationError(String.format("Only received 1 part from line %s", p[0]));
+        }
+        final String[] f = p[0].split("\\.");
+        try {
+            if (p.length > 2) {
+                return new Feature(f[0], f[1], p[1], p[2]);
+            } else {
+                return new Feature(f[0], f[1], p[1]);
+            }
+        } catch (final IndexOutOfBoundsException e) {
+            // Swallow the failure and don't load the record.
+            LOGGER.warn("Unable to load feature {}, skipping", p[0]);
+            return null;
+        }
+    }
+
     /**
      * Get the feature for a feature class and feature code
      * @param classCharacter feature class character identifier.
@@ -156,27 +209,45 @@ public class GeoNamesFeatureCodes {
      */
     public Feature getFeature(final Character classCharacter, final String featureCode) {
         initialize();
-        final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
-        parameterSource.addValue("class", String.valueOf(classCharacter));
-        parameterSource.addValue("code", featureCode);
-        final Feature feature = jdbcTemplate.queryForObject(SELECT_BY_CLASS_CODE,
-            new Object[]{parameterSource},
-                (rs, rowNum) -> new Feature(
-                        rs.getString(0),
-                        rs.getString(1),
-                        rs.getString(2),
-                        rs.getString(3)
-                )
-        );
-        return feature;
+        final FeatureIndex current = index;
+        final int id = classCharacter == null ? -1 : current.table.idOf(classCharacter, featureCode);
+        return id < 0 ? null : current.features[id];
     }
 
     /**
-     * Reset the tables.
+     * @return the feature classes and codes with their ids.
      */
-    public void reset() {
-        jdbcTemplate.execute(TRUNCATE_TABLE);
-        loadFeatures();
+    public FeatureCodeTable getFeatureCodes() {
+        initialize();
+        return index.table;
+    }
+
+    /**
+     * Load the file into a shadow table and then swap it in, lookups are answered from the old features until the
+     * new ones are read back into memory.
+     */
+    public synchronized void reset() {
+        initialize();
+        state = DatasetState.RELOADING;
+        try {
+            reloadTable();
+            loadIndex();
+        } finally {
+            state = DatasetState.READY;
+        }
+    }
+
+    /**
+     * The table of feature ids and the feature of each id, swapped together.
+     */
+    private static class FeatureIndex {
+        private final FeatureCodeTable table;
+        private final Feature[] features;
+
+        FeatureIndex(final FeatureCodeTable table, final Feature[] features) {
+            this.table = table;
+            this.features = features;
+        }
     }
 
     /**
@@ -0,0 +1,290 @@
+package ca.umanitoba.libraries.georeferencing;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+import ca.umanitoba.libraries.georeferencing.exceptions.InternalApplicationError;
+import ca.umanitoba.libraries.georeferencing.ingest.TsvRow;
+import ca.umanitoba.libraries.georeferencing.utils.NameNormalizer;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+
+/**
+ * A single row of a GeoNames place file.
+ * @author whikloj
+ */
+public class GeoNamesPlace {
+
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE;
+
+    /**
+     * Number of columns in a GeoNames place file.
+     */
+    public static final int COLUMN_COUNT = 19;
+
+    private int geonamesId;
+    private String name;
+    private String asciiName;
+    private String alternateNames;
+    private double latitude;
+    private double longitude;
+    private String featureClass;
+    private String feature;
+    private String countryCode;
+    private String adminCode1;
+    private String adminCode2;
+    private String adminCode3;
+    private String adminCode4;
+    private long population;
+    private int elevation;
+    private int digitalElevationModel;
+    private String timezone;
+    private String lastModified;
+
+    /**
+     * Parse a tab separated line of a GeoNames place file.
+     * @param line the line.
+     * @return the place.
+     */
+    public static GeoNamesPlace fromLine(final String line) {
+        return fromRow(new TsvRow(line.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Parse a row of a GeoNames place file.
+     * @param row the row.
+     * @return the place.
+     */
+    public static GeoNamesPlace fromRow(final TsvRow row) {
+        if (row.getColumnCount() < COLUMN_COUNT) {
+            throw new InternalApplicationError(String.format("Expected %d columns but found %d in line %s",
+                    COLUMN_COUNT, row.getColumnCount(), row));
+        }
+        final GeoNamesPlace place = new GeoNamesPlace();
+        place.geonamesId = row.getInt(0);
+        place.name = row.getString(1);
+        place.asciiName = row.getString(2);
+        place.alternateNames = row.getString(3);
+        place.latitude = row.getDouble(4);
+        place.longitude = row.getDouble(5);
+        place.featureClass = row.getString(6);
+        place.feature = row.getString(7);
+        place.countryCode = row.getString(8);
+        // Column 9 is country code 2, we are dumping it.
+        place.adminCode1 = row.getString(10);
+        place.adminCode2 = row.getString(11);
+        place.adminCode3 = row.getString(12);
+        place.adminCode4 = row.getString(13);
+        place.population = row.getLong(14, 0);
+        place.elevation = row.getInt(15, 0);
+        place.digitalElevationModel = row.getInt(16, 0);
+        place.timezone = row.getString(17);
+        place.lastModified = row.isEmpty(18) ? FORMATTER.format(LocalDate.now()) : row.getString(18);
+        return place;
+    }
+
+    /**
+     * Get the parameters to insert this place into the place table.
+     * @return the parameter source.
+     */
+    public MapSqlParameterSource toParameterSource() {
+        final MapSqlParameterSource ps = new MapSqlParameterSource();
+        ps.addValue("id", geonamesId);
+        ps.addValue("name", name);
+        ps.addValue("asciiname", asciiName);
+        ps.addValue("latitude", latitude);
+        ps.addValue("longitude", longitude);
+        ps.addValue("featureClass", featureClass);
+        ps.addValue("feature", feature);
+        ps.addValue("countryCode", countryCode);
+        ps.addValue("adminCode1", adminCode1);
+        ps.addValue("adminCode2", adminCode2);
+        ps.addValue("adminCode3", adminCode3);
+        ps.addValue("adminCode4", adminCode4);
+        ps.addValue("pop", population);
+        ps.addValue("elev", elevation);
+        ps.addValue("dem", digitalElevationModel);
+        ps.addValue("tz", timezone);
+        ps.addValue("modified", lastModified);
+        ps.addValue("nameKey", NameNormalizer.normalize(name));
+        return ps;
+    }
+
+    /**
+     * Is this place a populated place or administrative division, which lookups can find.
+     * @return true if lookups can find this place.
+     */
+    public boolean isLookupFeature() {
+        if ("P".equals(featureClass) && feature != null) {
+            return feature.equals("PPL") || feature.equals("PPLC") || feature.startsWith("PPLA");
+        }
+        return "A".equals(featureClass) && feature != null && feature.startsWith("ADM");
+    }
+
+    /**
+     * Does this place have any alternate names.
+     * @return true if there are alternate names.
+     */
+    public boolean hasAlternateNames() {
+        return alternateNames != null && !alternateNames.isEmpty();
+    }
+
+    /**
+     * Get the individual alternate names.
+     * @return array of trimmed alternate names, empty if there are none.
+     */
+    public String[] getAlternateNameList() {
+        if (!hasAlternateNames()) {
+            return new String[0];
+        }
+        final String[] names = alternateNames.split(",");
+        for (int i = 0; i < names.length; i++) {
+            names[i] = names[i].trim();
+        }
+        return names;
+    }
+
+    public int getGeonamesId() {
+        return geonamesId;
+    }
+
+    public void setGeonamesId(final int geonamesId) {
+        this.geonamesId = geonamesId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(final String name) {
+        this.name = name;
+    }
+
+    public String getAsciiName() {
+        return asciiName;
+    }
+
+    public void setAsciiName(final String asciiName) {
+        this.asciiName = asciiName;
+    }
+
+    public String getAlternateNames() {
+        return alternateNames;
+    }
+
+    public void setAlternateNames(final String alternateNames) {
+        this.alternateNames = alternateNames;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public void setLatitude(final double latitude) {
+        this.latitude = latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public void setLongitude(final double longitude) {
+        this.longitude = longitude;
+    }
+
+    public String getFeatureClass() {
+        return featureClass;
+    }
+
+    public void setFeatureClass(final String featureClass) {
+        this.featureClass = featureClass;
+    }
+
+    public String getFeature() {
+        return feature;
+    }
+
+    public void setFeature(final String feature) {
+        this.feature = feature;
+    }
+
+    public String getCountryCode() {
+        return countryCode;
+    }
+
+    public void setCountryCode(final String countryCode) {
+        this.countryCode = countryCode;
+    }
+
+    public String getAdminCode1() {
+        return adminCode1;
+    }
+
+    public void setAdminCode1(final String adminCode1) {
+        this.adminCode1 = adminCode1;
+    }
+
+    public String getAdminCode2() {
+        return adminCode2;
+    }
+
+    public void setAdminCode2(final String adminCode2) {
+        this.adminCode2 = adminCode2;
+    }
+
+    public String getAdminCode3() {
+        return adminCode3;
+    }
+
+    public void setAdminCode3(final String adminCode3) {
+        this.adminCode3 = adminCode3;
+    }
+
+    public String getAdminCode4() {
+        return adminCode4;
+    }
+
+    public void setAdminCode4(final String adminCode4) {
+        this.adminCode4 = adminCode4;
+    }
+
+    public long getPopulation() {
+        return population;
+    }
+
+    public void setPopulation(final long population) {
+        this.population = population;
+    }
+
+    public int getElevation() {
+        return elevation;
+    }
+
+    public void setElevation(final int elevation) {
+        this.elevation = elevation;
+    }
+
+    public int getDigitalElevationModel() {
+        return digitalElevationModel;
+    }
+
+    public void setDigitalElevationModel(final int digitalElevationModel) {
+        this.digitalElevationModel = digitalElevationModel;
+    }
+
+    public String getTimezone() {
+        return timezone;
+    }
+
+    public void setTimezone(final String timezone) {
+        this.timezone = timezone;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(final String lastModified) {
+        this.lastModified = lastModified;
+    }
+}
@@ -104,22 +104,41 @@ public class LocationRequest {
         }
     }
 
+    /**
+     * Copy this request with the name it is looked up by, its city or if it has none its province, replaced.
+     * @param name the new name.
+     * @return the copy.
+     */
+    public LocationRequest withPlaceName(final String name) {
+        final LocationRequest copy = new LocationRequest();
+        copy.country = country;
+        copy.province = city != null ? province : name;
+        copy.county = county;
+        copy.city = city != null ? name : null;
+        copy.citySection = citySection;
+        copy.iso3361Alpha2 = iso3361Alpha2;
+        return copy;
+    }
+
+    /**
+     * Hash the parts with their names, so a province and a city of the same name are different locations.
+     */
     private void calculateHash() {
         final List<String> hashList = new ArrayList<>();
         if (this.country != null) {
-            hashList.add(this.country);
+            hashList.add("country=" + this.country);
         }
         if (this.province != null) {
-            hashList.add(this.province);
+            hashList.add("province=" + this.province);
         }
         if (this.county != null) {
-            hashList.add(this.county);
+            hashList.add("county=" + this.county);
         }
         if (this.city != null) {
-            hashList.add(this.city);
+            hashList.add("city=" + this.city);
         }
         if (this.citySection != null) {
-            hashList.add(this.citySection);
+            hashList.add("citySection=" + this.citySection);
         }
         final String hashString = String.join("|", hashList);
         this.hash = DigestUtils.sha1Hex(hashString.toLowerCase());
@@ -0,0 +1,227 @@
+package ca.umanitoba.libraries.georeferencing;
+
+import javax.inject.Inject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ca.umanitoba.libraries.georeferencing.api.CountryCode;
+import ca.umanitoba.libraries.georeferencing.api.CountryCodeLookupService;
+import ca.umanitoba.libraries.georeferencing.api.NameLookupService;
+import ca.umanitoba.libraries.georeferencing.exceptions.InternalApplicationError;
+import ca.umanitoba.libraries.georeferencing.exceptions.LocationRequestException;
+import ca.umanitoba.libraries.georeferencing.exceptions.MissingCountryCodeException;
+import ca.umanitoba.libraries.georeferencing.exceptions.NameLookupException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+/**
+ * Resolves location requests to coordinates by validating them, looking up their country and then their place.
+ * Results of the lookups are cached by the hash of the request. Requests may opt in to falling back to the closest
+ * name when the name is not found.
+ * @author whikloj
+ */
+@Component
+public class LocationResolver {
+
+    private static final String NOT_FOUND = "Could not find a location to match the request.";
+
+    private static final String FUZZY_SUFFIX = "|fuzzy";
+
+    @Inject
+    private CountryCodeLookupService ccLookup;
+
+    @Inject
+    private NameLookupService nameLookup;
+
+    @Inject
+    private LookupCache lookupCache;
+
+    @Inject
+    private FuzzyNameMatcher fuzzyMatcher;
+
+    @Inject
+    private LookupMetrics lookupMetrics;
+
+    /**
+     * Resolve a single location.
+     * @param request the location request.
+     * @return the coordinates.
+     * @throws LocationRequestException if the request does not have enough parts.
+     * @throws MissingCountryCodeException if the country cannot be found.
+     * @throws NameLookupException if the place cannot be found.
+     */
+    public Coordinates resolve(final LocationRequest request) throws LocationRequestException,
+            MissingCountryCodeException, NameLookupException {
+        return resolve(request, false);
+    }
+
+    /**
+     * Resolve a single location, optionally falling back to the closest name when the name is not found.
+     * @param request the location request.
+     * @param fuzzy whether to look for the closest name if the name is not found.
+     * @return the coordinates.
+     * @throws LocationRequestException if the request does not have enough parts.
+     * @throws MissingCountryCodeException if the country cannot be found.
+     * @throws NameLookupException if the place cannot be found.
+     */
+    public Coordinates resolve(final LocationRequest request, final boolean fuzzy) throws LocationRequestException,
+            MissingCountryCodeException, NameLookupException {
+        request.validateLocation();
+        final String key = request.getHashString();
+        final boolean useFuzzy = fuzzy && fuzzyMatcher.isEnabled();
+        long start = System.nanoTime();
+        final LookupCache.CachedResult cached = lookupCache.get(key);
+        lookupMetrics.recordStage(LookupMetrics.Stage.CACHE, start);
+        if (cached != null && (cached.isFound() || !useFuzzy)) {
+            return cachedCoordinates(cached);
+        }
+        start = System.nanoTime();
+        final CountryCode countryCode;
+        try {
+            countryCode = ccLookup.lookupCountry(request.getCountry());
+        } finally {
+            lookupMetrics.recordStage(LookupMetrics.Stage.COUNTRY, start);
+        }
+
+        // Set the alpha country code.
+        request.setIso3361Alpha2(countryCode.getIso3316Alpha2());
+        if (cached == null) {
+            try {
+                final Coordinates coordinates = nameLookup.lookup(request);
+                if (coordinates != null) {
+                    lookupCache.putFound(key, LookupCache.nameOf(request), coordinates);
+                }
+                return coordinates;
+            } catch (final NameLookupException e) {
+                lookupCache.putNotFound(key, LookupCache.nameOf(request), e.getMessage());
+                if (!useFuzzy) {
+                    throw e;
+                }
+            }
+        }
+        return resolveFuzzy(request);
+    }
+
+    /**
+     * Resolve a location which was not found by the closest name. The results are cached without a name, so any
+     * change to the places drops them.
+     */
+    private Coordinates resolveFuzzy(final LocationRequest request) throws NameLookupException {
+        final String key = request.getHashString() + FUZZY_SUFFIX;
+        final LookupCache.CachedResult cached = lookupCache.get(key);
+        if (cached != null) {
+            return cachedCoordinates(cached);
+        }
+        try {
+            final Coordinates coordinates = fuzzyMatcher.lookup(request);
+            lookupCache.putFound(key, null, coordinates);
+            return coordinates;
+        } catch (final NameLookupException e) {
+            lookupCache.putNotFound(key, null, e.getMessage());
+            throw e;
+        }
+    }
+
+    private static Coordinates cachedCoordinates(final LookupCache.CachedResult cached) throws NameLookupException {
+        if (cached.isFound()) {
+            return cached.getCoordinates();
+        }
+        throw new NameLookupException(cached.getNotFoundMessage());
+    }
+
+    /**
+     * Resolve a group of locations together. Identical requests, by {@link LocationRequest#getHashString()} which
+     * names each part so a province never stands in for a city of the same name, are only resolved once and the
+     * countries, admin codes and places of the distinct requests are each looked up as a group.
+     * @param requests the location requests.
+     * @return one result per request, in the same order.
+     */
+    public List<LookupResult> resolveAll(final List<LocationRequest> requests) {
+        final LookupResult[] results = new LookupResult[requests.size()];
+        // Distinct valid requests and the positions they appear at.
+        final Map<String, LocationRequest> distinct = new LinkedHashMap<>();
+        final Map<String, List<Integer>> positions = new LinkedHashMap<>();
+        final long cacheStart = System.nanoTime();
+        for (int i = 0; i < requests.size(); i++) {
+            final LocationRequest request = requests.get(i);
+            try {
+                if (request == null) {
+                    throw new LocationRequestException("Request cannot be null");
+                }
+                request.validateLocation();
+                if (request.getCountry() == null || request.getCountry().isEmpty()) {
+                    throw new IllegalArgumentException("country name cannot be null or blank");
+                }
+                final LookupCache.CachedResult cached = lookupCache.get(request.getHashString());
+                if (cached != null) {
+                    results[i] = cached.isFound() ? LookupResult.found(cached.getCoordinates()) :
+                            LookupResult.error(HttpStatus.NOT_FOUND, cached.getNotFoundMessage());
+                    continue;
+                }
+                distinct.putIfAbsent(request.getHashString(), request);
+                positions.computeIfAbsent(request.getHashString(), k -> new ArrayList<>()).add(i);
+            } catch (final LocationRequestException | IllegalArgumentException e) {
+                results[i] = LookupResult.error(HttpStatus.BAD_REQUEST, e.getMessage());
+            }
+        }
+        lookupMetrics.recordStage(LookupMetrics.Stage.CACHE, cacheStart);
+
+        final Map<String, LookupResult> resolved = new LinkedHashMap<>();
+        try {
+            final Set<String> countryNames = new HashSet<>();
+            distinct.values().forEach(r -> countryNames.add(r.getCountry()));
+            final long countryStart = System.nanoTime();
+            final Map<String, CountryCode> countries;
+            try {
+                countries = ccLookup.lookupCountries(countryNames);
+            } finally {
+                lookupMetrics.recordStage(LookupMetrics.Stage.COUNTRY, countryStart);
+            }
+
+            final List<LocationRequest> located = new ArrayList<>();
+            for (final Map.Entry<String, LocationRequest> entry : distinct.entrySet()) {
+                final CountryCode countryCode = countries.get(entry.getValue().getCountry());
+                if (countryCode == null) {
+                    resolved.put(entry.getKey(), LookupResult.error(HttpStatus.BAD_REQUEST,
+                            String.format("Country (%s) not found", entry.getValue().getCountry().toLowerCase()
+                                    .trim())));
+                } else {
+                    entry.getValue().setIso3361Alpha2(countryCode.getIso3316Alpha2());
+                    located.add(entry.getValue());
+                }
+            }
+
+            final Map<String, Coordinates> found = located.isEmpty() ? Collections.emptyMap() :
+                    nameLookup.lookupAll(located);
+            for (final LocationRequest request : located) {
+                final Coordinates coordinates = found.get(request.getHashString());
+                if (coordinates == null) {
+                    lookupCache.putNotFound(request.getHashString(), LookupCache.nameOf(request), NOT_FOUND);
+                    resolved.put(request.getHashString(), LookupResult.error(HttpStatus.NOT_FOUND, NOT_FOUND));
+                } else {
+                    lookupCache.putFound(request.getHashString(), LookupCache.nameOf(request), coordinates);
+                    resolved.put(request.getHashString(), LookupResult.found(coordinates));
+                }
+            }
+        } catch (final InternalApplicationError error) {
+            for (final String hash : distinct.keySet()) {
+                resolved.putIfAbsent(hash, LookupResult.error(HttpStatus.INTERNAL_SERVER_ERROR,
+                        error.getMessage()));
+            }
+        }
+
+        for (final Map.Entry<String, List<Integer>> entry : positions.entrySet()) {
+            final LookupResult result = resolved.get(entry.getKey());
+            entry.getValue().forEach(i -> results[i] = result);
+        }
+        final List<LookupResult> resultList = new ArrayList<>(results.length);
+        Collections.addAll(resultList, results);
+        return resultList;
+    }
+}
@@ -0,0 +1,341 @@
+package ca.umanitoba.libraries.georeferencing;
+
+import javax.annotation.PostConstruct;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+import ca.umanitoba.libraries.georeferencing.utils.NameNormalizer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounded cache of resolved locations keyed on {@link LocationRequest#getHashString()}.
+ * <p>
+ * Entries are evicted least recently used first once the cache is full, and expire after a time to live. Locations
+ * which could not be found are cached with a shorter time to live. The cache is split into segments with their own
+ * lock so concurrent requests rarely wait on each other.
+ * @author whikloj
+ */
+@Component
+public class LookupCache {
+
+    private static final int SEGMENTS = 16;
+
+    @Value("${lookup.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${lookup.cache.maxSize:10000}")
+    private int maxSize;
+
+    @Value("${lookup.cache.ttlSeconds:3600}")
+    private long ttlSeconds;
+
+    @Value("${lookup.cache.negativeTtlSeconds:60}")
+    private long negativeTtlSeconds;
+
+    private LongSupplier clock = System::nanoTime;
+
+    private long ttlNanos;
+
+    private long negativeTtlNanos;
+
+    private Segment[] segments;
+
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong negativeHits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+    private final AtomicLong evictions = new AtomicLong(0);
+    private final AtomicLong expirations = new AtomicLong(0);
+
+    /**
+     * Basic constructor.
+     */
+    public LookupCache() {
+        // This constructor left intentionally blank.
+    }
+
+    /**
+     * Constructor for use outside of Spring.
+     * @param maxSize the maximum number of entries.
+     * @param ttlSeconds seconds a found location is kept.
+     * @param negativeTtlSeconds seconds a location which was not found is kept.
+     * @param clock source of nanosecond times.
+     */
+    LookupCache(final int maxSize, final long ttlSeconds, final long negativeTtlSeconds, final LongSupplier clock) {
+        this.enabled = true;
+        this.maxSize = maxSize;
+        this.ttlSeconds = ttlSeconds;
+        this.negativeTtlSeconds = negativeTtlSeconds;
+        this.clock = clock;
+        initialize();
+    }
+
+    @PostConstruct
+    public void initialize() {
+        ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        negativeTtlNanos = TimeUnit.SECONDS.toNanos(negativeTtlSeconds);
+        final int segmentSize = Math.max(1, (maxSize + SEGMENTS - 1) / SEGMENTS);
+        segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(segmentSize);
+        }
+    }
+
+    /**
+     * Get a cached result.
+     * @param key the location hash.
+     * @return the cached result, or null if there is none.
+     */
+    public CachedResult get(final String key) {
+        if (!enabled) {
+            return null;
+        }
+        final CachedResult entry = segmentFor(key).get(key, clock.getAsLong());
+        if (entry == null) {
+            misses.incrementAndGet();
+        } else if (entry.isFound()) {
+            hits.incrementAndGet();
+        } else {
+            negativeHits.incrementAndGet();
+        }
+        return entry;
+    }
+
+    /**
+     * Cache the coordinates found for a location.
+     * @param key the location hash.
+     * @param name the normalized place name the location was looked up by, see {@link #nameOf(LocationRequest)}.
+     * @param coordinates the coordinates.
+     */
+    public void putFound(final String key, final String name, final Coordinates coordinates) {
+        if (enabled) {
+            segmentFor(key).put(key, new CachedResult(coordinates.getLatitude(), coordinates.getLongitude(), null,
+                    name, clock.getAsLong() + ttlNanos));
+        }
+    }
+
+    /**
+     * Cache that a location could not be found.
+     * @param key the location hash.
+     * @param name the normalized place name the location was looked up by, see {@link #nameOf(LocationRequest)}.
+     * @param message the reason it was not found.
+     */
+    public void putNotFound(final String key, final String name, final String message) {
+        if (enabled && negativeTtlNanos > 0) {
+            segmentFor(key).put(key, new CachedResult(0, 0, message, name, clock.getAsLong() + negativeTtlNanos));
+        }
+    }
+
+    /**
+     * Remove every entry.
+     */
+    public void invalidateAll() {
+        for (final Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * Remove the entries for locations looked up by any of the names, found or not.
+     * @param names the normalized place names.
+     * @return the number of entries removed.
+     */
+    public int invalidateNames(final Set<String> names) {
+        return names.isEmpty() ? 0 : invalidateNames(names::contains);
+    }
+
+    /**
+     * Remove the entries for locations looked up by a name which passes a test, found or not.
+     * @param names the test of the normalized place names.
+     * @return the number of entries removed.
+     */
+    public int invalidateNames(final Predicate<String> names) {
+        int removed = 0;
+        for (final Segment segment : segments) {
+            removed += segment.removeNames(names);
+        }
+        return removed;
+    }
+
+    /**
+     * The name a location is looked up by, its city or if it has none its province.
+     * @param location the location request.
+     * @return the normalized name or null if the location has neither.
+     */
+    public static String nameOf(final LocationRequest location) {
+        final String name = location.getCity() != null ? location.getCity() : location.getProvince();
+        return name == null ? null : NameNormalizer.normalize(name);
+    }
+
+    /**
+     * @return the current statistics.
+     */
+    public Statistics getStatistics() {
+        long size = 0;
+        for (final Segment segment : segments) {
+            size += segment.size();
+        }
+        return new Statistics(size, hits.get(), negativeHits.get(), misses.get(), evictions.get(),
+                expirations.get());
+    }
+
+    private Segment segmentFor(final String key) {
+        return segments[(key.hashCode() & Integer.MAX_VALUE) % SEGMENTS];
+    }
+
+    /**
+     * A cached result, either coordinates or the reason the location was not found.
+     */
+    public static class CachedResult {
+        private final double latitude;
+        private final double longitude;
+        private final String notFoundMessage;
+        private final String name;
+        private final long expiresAt;
+
+        private CachedResult(final double latitude, final double longitude, final String notFoundMessage,
+                             final String name, final long expiresAt) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.notFoundMessage = notFoundMessage;
+            this.name = name;
+            this.expiresAt = expiresAt;
+        }
+
+        /**
+         * @return true if the location was found.
+         */
+        public boolean isFound() {
+            return notFoundMessage == null;
+        }
+
+        /**
+         * @return a new set of the cached coordinates.
+         */
+        public Coordinates getCoordinates() {
+            return new Coordinates(latitude, longitude);
+        }
+
+        /**
+         * @return the reason the location was not found.
+         */
+        public String getNotFoundMessage() {
+            return notFoundMessage;
+        }
+    }
+
+    /**
+     * Snapshot of the cache statistics.
+     */
+    public static class Statistics {
+        private final long size;
+        private final long hits;
+        private final long negativeHits;
+        private final long misses;
+        private final long evictions;
+        private final long expirations;
+
+        Statistics(final long size, final long hits, final long negativeHits, final long misses,
+                   final long evictions, final long expirations) {
+            this.size = size;
+            this.hits = hits;
+            this.negativeHits = negativeHits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.expirations = expirations;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getNegativeHits() {
+            return negativeHits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public long getExpirations() {
+            return expirations;
+        }
+
+        /**
+         * @return the fraction of lookups answered from the cache.
+         */
+        public double getHitRatio() {
+            final long total = hits + negativeHits + misses;
+            return total == 0 ? 0 : (double) (hits + negativeHits) / total;
+        }
+    }
+
+    /**
+     * One lock's worth of the cache, in least recently used order.
+     */
+    private class Segment {
+        private final LinkedHashMap<String, CachedResult> map;
+
+        Segment(final int capacity) {
+            map = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String, CachedResult> eldest) {
+                    if (size() > capacity) {
+                        evictions.incrementAndGet();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        synchronized CachedResult get(final String key, final long now) {
+            final CachedResult entry = map.get(key);
+            if (entry != null && now - entry.expiresAt >= 0) {
+                map.remove(key);
+                expirations.incrementAndGet();
+                return null;
+            }
+            return entry;
+        }
+
+        synchronized void put(final String key, final CachedResult entry) {
+            map.put(key, entry);
+        }
+
+        synchronized void clear() {
+            map.clear();
+        }
+
+        synchronized int removeNames(final Predicate<String> names) {
+            int removed = 0;
+            for (final Iterator<CachedResult> it = map.values().iterator(); it.hasNext(); ) {
+                final CachedResult entry = it.next();
+                if (entry.name == null || names.test(entry.name)) {
+                    it.remove();
+                    removed += 1;
+                }
+            }
+            return removed;
+        }
+
+        synchronized int size() {
+            return map.size();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package ca.umanitoba.libraries.georeferencing;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+/**
+ * Metrics of the lookup path: the time spent in each stage of a lookup, the outcome of each lookup and the use of the
+ * lookup cache. The time of each stage is also added to the {@link ServerTiming} of the current request, if any.
+ * @author whikloj
+ */
+@Component
+public class LookupMetrics {
+
+    private static final String STAGE_TIMER = "georeference.lookup.stage";
+
+    private static final String RESULT_COUNTER = "georeference.lookup.results";
+
+    /**
+     * The stages of a lookup.
+     */
+    public enum Stage {
+        CACHE("cache"),
+        COUNTRY("country"),
+        ADMIN_CODE("adminCode"),
+        PLACE("place"),
+        FUZZY("fuzzy");
+
+        private final String metricName;
+
+        Stage(final String metricName) {
+            this.metricName = metricName;
+        }
+
+        /**
+         * @return the name of the stage in the metric tags and the Server-Timing header.
+         */
+        public String getMetricName() {
+            return metricName;
+        }
+    }
+
+    /**
+     * The outcome of a lookup.
+     */
+    public enum Outcome {
+        FOUND,
+        NOT_FOUND,
+        BAD_REQUEST,
+        ERROR;
+
+        /**
+         * The outcome of a result of a batch or stream of lookups.
+         * @param result the result.
+         * @return the outcome.
+         */
+        public static Outcome of(final LookupResult result) {
+            if (result.getStatus() == HttpStatus.OK.value()) {
+                return FOUND;
+            } else if (result.getStatus() == HttpStatus.NOT_FOUND.value()) {
+                return NOT_FOUND;
+            } else if (result.getStatus() == HttpStatus.BAD_REQUEST.value()) {
+                return BAD_REQUEST;
+            }
+            return ERROR;
+        }
+    }
+
+    /**
+     * The endpoints lookups are made through.
+     */
+    public enum Endpoint {
+        LOOKUP,
+        BATCH,
+        STREAM
+    }
+
+    @Inject
+    private MeterRegistry registry;
+
+    @Inject
+    private LookupCache lookupCache;
+
+    private final Map<Stage, Timer> stageTimers = new EnumMap<>(Stage.class);
+
+    private final Map<Endpoint, Map<Outcome, Counter>> resultCounters = new EnumMap<>(Endpoint.class);
+
+    @PostConstruct
+    public void initialize() {
+        for (final Stage stage : Stage.values()) {
+            stageTimers.put(stage, Timer.builder(STAGE_TIMER)
+                    .description("Time spent in a stage of the lookups")
+                    .tag("stage", stage.getMetricName())
+                    .register(registry));
+        }
+        for (final Endpoint endpoint : Endpoint.values()) {
+            final Map<Outcome, Counter> counters = new EnumMap<>(Outcome.class);
+            for (final Outcome outcome : Outcome.values()) {
+                counters.put(outcome, Counter.builder(RESULT_COUNTER)
+                        .description("Lookups by the endpoint they were made through and their outcome")
+                        .tag("endpoint", endpoint.name().toLowerCase(Locale.ROOT))
+                        .tag("outcome", outcome.name().toLowerCase(Locale.ROOT))
+                        .register(registry));
+            }
+            resultCounters.put(endpoint, counters);
+        }
+        bindCache();
+    }
+
+    /**
+     * Record the time of a stage.
+     * @param stage the stage.
+     * @param start the {@link System#nanoTime()} the stage started at.
+     */
+    public void recordStage(final Stage stage, final long start) {
+        final long elapsed = System.nanoTime() - start;
+        stageTimers.get(stage).record(elapsed, TimeUnit.NANOSECONDS);
+        final ServerTiming timing = ServerTiming.current();
+        if (timing != null) {
+            timing.add(stage, elapsed);
+        }
+    }
+
+    /**
+     * Count the outcome of a lookup.
+     * @param endpoint the endpoint the lookup was made through.
+     * @param outcome the outcome.
+     */
+    public void countOutcome(final Endpoint endpoint, final Outcome outcome) {
+        resultCounters.get(endpoint).get(outcome).increment();
+    }
+
+    /**
+     * Count the outcome of a lookup from its result.
+     * @param endpoint the endpoint the lookup was made through.
+     * @param result the result.
+     */
+    public void countResult(final Endpoint endpoint, final LookupResult result) {
+        countOutcome(endpoint, Outcome.of(result));
+    }
+
+    /**
+     * Expose the cache statistics, read when the metrics are scraped.
+     */
+    private void bindCache() {
+        final String gets = "georeference.cache.gets";
+        FunctionCounter.builder(gets, lookupCache, c -> c.getStatistics().getHits())
+                .description("Lookups answered by a cached location").tag("result", "hit").register(registry);
+        FunctionCounter.builder(gets, lookupCache, c -> c.getStatistics().getNegativeHits())
+                .description("Lookups answered by a cached location which was not found")
+                .tag("result", "negative_hit").register(registry);
+        FunctionCounter.builder(gets, lookupCache, c -> c.getStatistics().getMisses())
+                .description("Lookups not in the cache").tag("result", "miss").register(registry);
+        FunctionCounter.builder("georeference.cache.evictions", lookupCache,
+                c -> c.getStatistics().getEvictions())
+                .description("Entries removed to make room").register(registry);
+        FunctionCounter.builder("georeference.cache.expirations", lookupCache,
+                c -> c.getStatistics().getExpirations())
+                .description("Entries removed after their time to live").register(registry);
+        Gauge.builder("georeference.cache.size", lookupCache, c -> c.getStatistics().getSize())
+                .description("Entries in the cache").register(registry);
+        Gauge.builder("georeference.cache.hit.ratio", lookupCache, c -> c.getStatistics().getHitRatio())
+                .description("Fraction of lookups answered from the cache").register(registry);
+    }
+}
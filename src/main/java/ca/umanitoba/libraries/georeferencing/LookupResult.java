@@ -0,0 +1,78 @@
+package ca.umanitoba.libraries.georeferencing;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import org.springframework.http.HttpStatus;
+
+/**
+ * The outcome of resolving a single LocationRequest, either a set of coordinates or an error.
+ * @author whikloj
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class LookupResult {
+
+    private int status;
+    private Coordinates coordinates;
+    private String error;
+
+    public LookupResult() {
+        // This constructor left intentionally blank.
+    }
+
+    /**
+     * Create a successful result.
+     * @param coordinates the coordinates found.
+     * @return the result.
+     */
+    public static LookupResult found(final Coordinates coordinates) {
+        final LookupResult result = new LookupResult();
+        result.status = HttpStatus.OK.value();
+        result.coordinates = coordinates;
+        return result;
+    }
+
+    /**
+     * Create a failed result.
+     * @param status the HTTP status equivalent of the failure.
+     * @param error the error message.
+     * @return the result.
+     */
+    public static LookupResult error(final HttpStatus status, final String error) {
+        final LookupResult result = new LookupResult();
+        result.status = status.value();
+        result.error = error;
+        return result;
+    }
+
+    /**
+     * @return the HTTP status equivalent of this result.
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    public void setStatus(final int status) {
+        this.status = status;
+    }
+
+    /**
+     * @return the coordinates or null if the lookup failed.
+     */
+    public Coordinates getCoordinates() {
+        return coordinates;
+    }
+
+    public void setCoordinates(final Coordinates coordinates) {
+        this.coordinates = coordinates;
+    }
+
+    /**
+     * @return the error message or null if the lookup succeeded.
+     */
+    public String getError() {
+        return error;
+    }
+
+    public void setError(final String error) {
+        this.error = error;
+    }
+}
@@ -0,0 +1,78 @@
+package ca.umanitoba.libraries.georeferencing;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * A place found by its position, with its distance from the point searched from.
+ * @author whikloj
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class NearbyPlace {
+
+    private int geonamesId;
+    private String name;
+    private String featureClass;
+    private String feature;
+    private String countryCode;
+    private String adminCode1;
+    private long population;
+    private Coordinates coordinates;
+    private Double distanceKm;
+
+    public NearbyPlace() {
+        // This constructor left intentionally blank.
+    }
+
+    public NearbyPlace(final int geonamesId, final String name, final String featureClass, final String feature,
+                       final String countryCode, final String adminCode1, final long population,
+                       final Coordinates coordinates, final Double distanceKm) {
+        this.geonamesId = geonamesId;
+        this.name = name;
+        this.featureClass = featureClass;
+        this.feature = feature;
+        this.countryCode = countryCode;
+        this.adminCode1 = adminCode1;
+        this.population = population;
+        this.coordinates = coordinates;
+        this.distanceKm = distanceKm;
+    }
+
+    public int getGeonamesId() {
+        return geonamesId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getFeatureClass() {
+        return featureClass;
+    }
+
+    public String getFeature() {
+        return feature;
+    }
+
+    public String getCountryCode() {
+        return countryCode;
+    }
+
+    public String getAdminCode1() {
+        return adminCode1;
+    }
+
+    public long getPopulation() {
+        return population;
+    }
+
+    public Coordinates getCoordinates() {
+        return coordinates;
+    }
+
+    /**
+     * @return the distance from the point searched from in kilometres, or null if the search was not from a point.
+     */
+    public Double getDistanceKm() {
+        return distanceKm;
+    }
+}
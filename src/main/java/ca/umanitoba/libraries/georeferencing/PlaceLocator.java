@@ -0,0 +1,296 @@
+package ca.umanitoba.libraries.georeferencing;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.IntPredicate;
+import java.util.stream.Collectors;
+
+import ca.umanitoba.libraries.georeferencing.api.NameLookupService;
+import ca.umanitoba.libraries.georeferencing.index.FeatureCodeTable;
+import ca.umanitoba.libraries.georeferencing.index.PlaceChanges;
+import ca.umanitoba.libraries.georeferencing.index.PlaceGrid;
+import ca.umanitoba.libraries.georeferencing.ingest.PlaceUpdates;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Finds the loaded places by their position, from an in-memory {@link PlaceGrid} which is built when the places are
+ * loaded and replaced as a whole when they are reloaded. Daily changes go in a small grid of their own layered over
+ * the full one.
+ * @author whikloj
+ */
+@Component
+public class PlaceLocator {
+
+    private static final Logger LOGGER = getLogger(PlaceLocator.class);
+
+    @Value("${lookup.spatial.enabled:true}")
+    private boolean enabled;
+
+    @Value("${lookup.spatial.maxLimit:100}")
+    private int maxLimit;
+
+    @Value("${lookup.spatial.maxRadiusKm:500}")
+    private double maxRadiusKm;
+
+    @Value("${lookup.spatial.maxBoxDegrees:20}")
+    private double maxBoxDegrees;
+
+    @Inject
+    private NameLookupService nameLookup;
+
+    private volatile Layers layers;
+
+    /**
+     * Basic constructor.
+     */
+    public PlaceLocator() {
+        // This constructor left intentionally blank.
+    }
+
+    /**
+     * Build the index from the loaded places.
+     */
+    @PostConstruct
+    public void initialize() {
+        reset();
+    }
+
+    /**
+     * @return true if searching by position is enabled.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the largest number of places a search may return.
+     */
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    /**
+     * @return the largest distance a search within a distance may use, in kilometres.
+     */
+    public double getMaxRadiusKm() {
+        return maxRadiusKm;
+    }
+
+    /**
+     * @return the largest height or width of a box to search, in degrees.
+     */
+    public double getMaxBoxDegrees() {
+        return maxBoxDegrees;
+    }
+
+    /**
+     * Find the places nearest a point.
+     * @param latitude the latitude of the point.
+     * @param longitude the longitude of the point.
+     * @param limit the maximum number of places, at most lookup.spatial.maxLimit.
+     * @param featureClasses the feature classes of the places, or empty for any.
+     * @param features the feature codes of the places, or empty for any.
+     * @return the places, nearest first.
+     */
+    public List<NearbyPlace> findNearest(final double latitude, final double longitude, final int limit,
+                                         final Collection<String> featureClasses,
+                                         final Collection<String> features) {
+        final Layers current = layers;
+        if (current == null) {
+            return List.of();
+        }
+        final int max = Math.min(limit, maxLimit);
+        final int[] baseRows = current.base.findNearest(latitude, longitude, max,
+                visible(current, filter(current.base, featureClasses, features)));
+        final int[] changedRows = current.changed.findNearest(latitude, longitude, max,
+                filter(current.changed, featureClasses, features));
+        return page(current, baseRows, changedRows, 0, max, (grid, row) -> grid.distanceKm(row, latitude, longitude),
+                (grid, row) -> placeOf(grid, row, grid.distanceKm(row, latitude, longitude)));
+    }
+
+    /**
+     * Find a page of the places within a distance of a point.
+     * @param latitude the latitude of the point.
+     * @param longitude the longitude of the point.
+     * @param radiusKm the distance in kilometres, at most lookup.spatial.maxRadiusKm.
+     * @param offset the number of places to skip.
+     * @param limit the maximum number of places, at most lookup.spatial.maxLimit.
+     * @param featureClasses the feature classes of the places, or empty for any.
+     * @param features the feature codes of the places, or empty for any.
+     * @return the page of places, nearest first.
+     */
+    public PlacePage findWithin(final double latitude, final double longitude, final double radiusKm,
+                                final int offset, final int limit, final Collection<String> featureClasses,
+                                final Collection<String> features) {
+        final Layers current = layers;
+        if (current == null) {
+            return new PlacePage(0, offset, List.of());
+        }
+        final double radius = Math.min(radiusKm, maxRadiusKm);
+        final int[] baseRows = current.base.findWithin(latitude, longitude, radius,
+                visible(current, filter(current.base, featureClasses, features)));
+        final int[] changedRows = current.changed.findWithin(latitude, longitude, radius,
+                filter(current.changed, featureClasses, features));
+        return new PlacePage(baseRows.length + changedRows.length, offset, page(current, baseRows, changedRows,
+                offset, Math.min(limit, maxLimit), (grid, row) -> grid.distanceKm(row, latitude, longitude),
+                (grid, row) -> placeOf(grid, row, grid.distanceKm(row, latitude, longitude))));
+    }
+
+    /**
+     * Find a page of the places inside a box.
+     * @param south the southern latitude.
+     * @param west the western longitude, the box crosses the antimeridian if it is east of the eastern longitude.
+     * @param north the northern latitude.
+     * @param east the eastern longitude.
+     * @param offset the number of places to skip.
+     * @param limit the maximum number of places, at most lookup.spatial.maxLimit.
+     * @param featureClasses the feature classes of the places, or empty for any.
+     * @param features the feature codes of the places, or empty for any.
+     * @return the page of places, most populous first.
+     */
+    public PlacePage findInBox(final double south, final double west, final double north, final double east,
+                               final int offset, final int limit, final Collection<String> featureClasses,
+                               final Collection<String> features) {
+        final Layers current = layers;
+        if (current == null) {
+            return new PlacePage(0, offset, List.of());
+        }
+        final int[] baseRows = current.base.findInBox(south, west, north, east,
+                visible(current, filter(current.base, featureClasses, features)));
+        final int[] changedRows = current.changed.findInBox(south, west, north, east,
+                filter(current.changed, featureClasses, features));
+        return new PlacePage(baseRows.length + changedRows.length, offset, page(current, baseRows, changedRows,
+                offset, Math.min(limit, maxLimit), (grid, row) -> (double) -grid.getPopulation(row),
+                (grid, row) -> placeOf(grid, row, null)));
+    }
+
+    /**
+     * Re-build the index from the loaded places, searches are answered from the old index until it is done.
+     */
+    public synchronized void reset() {
+        if (!enabled) {
+            return;
+        }
+        final long start = System.currentTimeMillis();
+        final PlaceGrid.Builder builder = PlaceGrid.builder();
+        final Set<String> countryCodes = new HashSet<>();
+        nameLookup.forEachPlace(place -> {
+            countryCodes.add(place.getCountryCode());
+            builder.add(place);
+        });
+        final PlaceGrid built = builder.build();
+        layers = new Layers(built, new PlaceChanges(countryCodes));
+        LOGGER.info("Indexed {} places in {} cells by position in {} ms", built.size(), built.cellCount(),
+                System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Apply a day of GeoNames changes, re-building only the grid of the changed places.
+     * @param updates the changes.
+     */
+    public synchronized void update(final PlaceUpdates updates) {
+        final Layers current = layers;
+        if (current == null) {
+            return;
+        }
+        layers = new Layers(current.base, current.changes.withUpdates(updates));
+    }
+
+    /**
+     * Merge the rows found in the full grid and in the grid of the changes, each already in order, and take a page.
+     * @param key orders the rows, smallest first, the full grid wins ties.
+     */
+    private static List<NearbyPlace> page(final Layers layers, final int[] baseRows, final int[] changedRows,
+                                          final int offset, final int limit, final RowValue<Double> key,
+                                          final RowValue<NearbyPlace> place) {
+        final List<NearbyPlace> places = new ArrayList<>();
+        int b = 0;
+        int c = 0;
+        for (int i = 0; i < offset + limit && (b < baseRows.length || c < changedRows.length); i++) {
+            final boolean fromBase = c == changedRows.length || (b < baseRows.length &&
+                    key.of(layers.base, baseRows[b]) <= key.of(layers.changed, changedRows[c]));
+            final PlaceGrid grid = fromBase ? layers.base : layers.changed;
+            final int row = fromBase ? baseRows[b++] : changedRows[c++];
+            if (i >= offset) {
+                places.add(place.of(grid, row));
+            }
+        }
+        return places;
+    }
+
+    /**
+     * Skip the rows of the full grid which have changed since it was built.
+     */
+    private static IntPredicate visible(final Layers layers, final IntPredicate included) {
+        if (layers.changes.isEmpty()) {
+            return included;
+        }
+        final IntPredicate shown = row -> !layers.changes.isHidden(layers.base.getGeonamesId(row));
+        return included == null ? shown : included.and(shown);
+    }
+
+    /**
+     * Which rows have one of the feature classes and one of the feature codes, worked out once per feature id.
+     */
+    private static IntPredicate filter(final PlaceGrid grid, final Collection<String> featureClasses,
+                                       final Collection<String> features) {
+        final Set<Character> classes = featureClasses == null ? Set.of() : featureClasses.stream()
+                .filter(c -> !c.isBlank()).map(c -> c.trim().toUpperCase(Locale.ROOT).charAt(0))
+                .collect(Collectors.toSet());
+        final Set<String> codes = features == null ? Set.of() : features.stream().filter(f -> !f.isBlank())
+                .map(f -> f.trim().toUpperCase(Locale.ROOT)).collect(Collectors.toSet());
+        if (classes.isEmpty() && codes.isEmpty()) {
+            return null;
+        }
+        final FeatureCodeTable table = grid.getFeatureCodes();
+        final boolean[] included = new boolean[table.size()];
+        for (int id = 0; id < table.size(); id++) {
+            included[id] = (classes.isEmpty() || classes.contains(table.getFeatureClass(id))) &&
+                    (codes.isEmpty() || codes.contains(table.getCode(id)));
+        }
+        return row -> included[grid.getFeatureId(row)];
+    }
+
+    private static NearbyPlace placeOf(final PlaceGrid grid, final int row, final Double distanceKm) {
+        return new NearbyPlace(grid.getGeonamesId(row), grid.getName(row), String.valueOf(grid.getFeatureClass(row)),
+                grid.getFeature(row), grid.getCountryCode(row), grid.getAdminCode1(row), grid.getPopulation(row),
+                new Coordinates(grid.getLatitude(row), grid.getLongitude(row)), distanceKm);
+    }
+
+    /**
+     * A value of a row of a grid.
+     */
+    @FunctionalInterface
+    private interface RowValue<T> {
+        T of(PlaceGrid grid, int row);
+    }
+
+    /**
+     * The full grid with the changes since it was built, replaced as a whole so searches always see a consistent
+     * set.
+     */
+    private static class Layers {
+        private final PlaceGrid base;
+        private final PlaceChanges changes;
+        private final PlaceGrid changed;
+
+        Layers(final PlaceGrid base, final PlaceChanges changes) {
+            this.base = base;
+            this.changes = changes;
+            final PlaceGrid.Builder builder = PlaceGrid.builder();
+            changes.getPlaces().forEach(builder::add);
+            this.changed = builder.build();
+        }
+    }
+}
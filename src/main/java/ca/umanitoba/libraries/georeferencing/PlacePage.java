@@ -0,0 +1,42 @@
+package ca.umanitoba.libraries.georeferencing;
+
+import java.util.List;
+
+/**
+ * One page of the places found by a search.
+ * @author whikloj
+ */
+public class PlacePage {
+
+    private int total;
+    private int offset;
+    private List<NearbyPlace> places;
+
+    public PlacePage() {
+        // This constructor left intentionally blank.
+    }
+
+    public PlacePage(final int total, final int offset, final List<NearbyPlace> places) {
+        this.total = total;
+        this.offset = offset;
+        this.places = places;
+    }
+
+    /**
+     * @return the number of places found, on all pages.
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * @return the position of the first place of this page among all the places found.
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    public List<NearbyPlace> getPlaces() {
+        return places;
+    }
+}
@@ -0,0 +1,200 @@
+package ca.umanitoba.libraries.georeferencing;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import ca.umanitoba.libraries.georeferencing.api.NameLookupService;
+import ca.umanitoba.libraries.georeferencing.index.PlaceChanges;
+import ca.umanitoba.libraries.georeferencing.index.PrefixIndex;
+import ca.umanitoba.libraries.georeferencing.ingest.PlaceUpdates;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Suggests the most populous places whose name starts with what has been typed so far, from an in-memory
+ * {@link PrefixIndex} of the names of the loaded places. Daily changes go in a small index of their own layered over
+ * the full one, which is only rebuilt when the places are reloaded.
+ * @author whikloj
+ */
+@Component
+public class PlaceSuggester {
+
+    private static final Logger LOGGER = getLogger(PlaceSuggester.class);
+
+    @Value("${lookup.suggest.enabled:true}")
+    private boolean enabled;
+
+    @Value("${lookup.suggest.maxLimit:50}")
+    private int maxLimit;
+
+    @Inject
+    private NameLookupService nameLookup;
+
+    private volatile Layers layers;
+
+    private volatile Statistics statistics = new Statistics(0, 0, 0);
+
+    /**
+     * Basic constructor.
+     */
+    public PlaceSuggester() {
+        // This constructor left intentionally blank.
+    }
+
+    /**
+     * Build the index from the loaded places.
+     */
+    @PostConstruct
+    public void initialize() {
+        reset();
+    }
+
+    /**
+     * @return true if suggestions are enabled.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Suggest places by the start of their name.
+     * @param prefix the start of the name.
+     * @param countryCode the ISO 3166 alpha-2 code of the country of the places, or null for any country.
+     * @param adminCode1 the admin1 code of the places, or null for any province.
+     * @param limit the maximum number of places, at most lookup.suggest.maxLimit.
+     * @return the places, most populous first.
+     */
+    public List<Suggestion> suggest(final String prefix, final String countryCode, final String adminCode1,
+                                    final int limit) {
+        final Layers current = layers;
+        if (current == null) {
+            return List.of();
+        }
+        final int max = Math.min(limit, maxLimit);
+        final int[] baseRows = current.base.findByPrefix(prefix, countryCode, adminCode1, max,
+                current.changes.isEmpty() ? null : current.changes::isHidden);
+        final int[] changedRows = current.changed.findByPrefix(prefix, countryCode, adminCode1, max);
+        // Both are most populous first, the base wins ties.
+        final List<Suggestion> suggestions = new ArrayList<>(Math.min(max, baseRows.length + changedRows.length));
+        for (int b = 0, c = 0; suggestions.size() < max && (b < baseRows.length || c < changedRows.length); ) {
+            if (c == changedRows.length || (b < baseRows.length &&
+                    current.base.getPopulation(baseRows[b]) >= current.changed.getPopulation(changedRows[c]))) {
+                suggestions.add(suggestionOf(current.base, baseRows[b++]));
+            } else {
+                suggestions.add(suggestionOf(current.changed, changedRows[c++]));
+            }
+        }
+        return suggestions;
+    }
+
+    /**
+     * Re-build the index from the loaded places, suggestions are answered from the old index until it is done.
+     */
+    public synchronized void reset() {
+        if (!enabled) {
+            return;
+        }
+        final long start = System.currentTimeMillis();
+        final PrefixIndex.Builder builder = PrefixIndex.builder();
+        final Set<String> countryCodes = new HashSet<>();
+        nameLookup.forEachPlace(place -> {
+            countryCodes.add(place.getCountryCode());
+            if (place.isLookupFeature()) {
+                builder.add(place);
+            }
+        });
+        final PrefixIndex built = builder.build();
+        layers = new Layers(built, new PlaceChanges(countryCodes));
+        statistics = new Statistics(built.size(), built.estimateBytes(), System.currentTimeMillis() - start);
+        LOGGER.info("Indexed {} place names for suggestions in {} ms, about {} bytes", statistics.getPlaces(),
+                statistics.getBuildMillis(), statistics.getEstimatedBytes());
+    }
+
+    /**
+     * Apply a day of GeoNames changes, re-building only the index of the changed places.
+     * @param updates the changes.
+     */
+    public synchronized void update(final PlaceUpdates updates) {
+        final Layers current = layers;
+        if (current == null) {
+            return;
+        }
+        layers = new Layers(current.base, current.changes.withUpdates(updates));
+    }
+
+    /**
+     * @return the size of the current index.
+     */
+    public Statistics getStatistics() {
+        return statistics;
+    }
+
+    private static Suggestion suggestionOf(final PrefixIndex index, final int row) {
+        return new Suggestion(index.getGeonamesId(row), index.getName(row), index.getCountryCode(row),
+                index.getAdminCode1(row), index.getPopulation(row),
+                new Coordinates(index.getLatitude(row), index.getLongitude(row)));
+    }
+
+    /**
+     * The full index with the changes since it was built, replaced as a whole so suggestions always see a
+     * consistent set.
+     */
+    private static class Layers {
+        private final PrefixIndex base;
+        private final PlaceChanges changes;
+        private final PrefixIndex changed;
+
+        Layers(final PrefixIndex base, final PlaceChanges changes) {
+            this.base = base;
+            this.changes = changes;
+            final PrefixIndex.Builder builder = PrefixIndex.builder();
+            for (final GeoNamesPlace place : changes.getPlaces()) {
+                if (place.isLookupFeature()) {
+                    builder.add(place);
+                }
+            }
+            this.changed = builder.build();
+        }
+    }
+
+    /**
+     * Snapshot of the size of the suggestion index.
+     */
+    public static class Statistics {
+        private final int places;
+        private final long estimatedBytes;
+        private final long buildMillis;
+
+        Statistics(final int places, final long estimatedBytes, final long buildMillis) {
+            this.places = places;
+            this.estimatedBytes = estimatedBytes;
+            this.buildMillis = buildMillis;
+        }
+
+        public int getPlaces() {
+            return places;
+        }
+
+        /**
+         * @return the estimated memory held by the index.
+         */
+        public long getEstimatedBytes() {
+            return estimatedBytes;
+        }
+
+        /**
+         * @return how long the index took to build.
+         */
+        public long getBuildMillis() {
+            return buildMillis;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package ca.umanitoba.libraries.georeferencing;
+
+import java.util.Locale;
+
+/**
+ * The time spent in each stage of the lookups made for the current request, written as a Server-Timing header so
+ * clients can break down the latency of a request.
+ * <p>
+ * The timing is held by the thread handling the request, from {@link #begin()} to {@link #end()}.
+ * @author whikloj
+ */
+public class ServerTiming {
+
+    public static final String HEADER = "Server-Timing";
+
+    private static final ThreadLocal<ServerTiming> CURRENT = new ThreadLocal<>();
+
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    private final long start;
+
+    private final long[] durations = new long[LookupMetrics.Stage.values().length];
+
+    private final boolean[] recorded = new boolean[LookupMetrics.Stage.values().length];
+
+    /**
+     * Constructor.
+     * @param start the {@link System#nanoTime()} the request started at.
+     */
+    ServerTiming(final long start) {
+        this.start = start;
+    }
+
+    /**
+     * Start timing a request on this thread.
+     * @return the timing.
+     */
+    public static ServerTiming begin() {
+        final ServerTiming timing = new ServerTiming(System.nanoTime());
+        CURRENT.set(timing);
+        return timing;
+    }
+
+    /**
+     * @return the timing of the request on this thread, or null if there is none.
+     */
+    public static ServerTiming current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Stop timing the request on this thread.
+     */
+    public static void end() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Add time to a stage, a stage run more than once is reported as their sum.
+     * @param stage the stage.
+     * @param nanos the time in nanoseconds.
+     */
+    void add(final LookupMetrics.Stage stage, final long nanos) {
+        durations[stage.ordinal()] += nanos;
+        recorded[stage.ordinal()] = true;
+    }
+
+    /**
+     * @return the header value, with the stages run so far and the total time of the request in milliseconds.
+     */
+    public String toHeader() {
+        return toHeader(System.nanoTime());
+    }
+
+    /**
+     * @param now the {@link System#nanoTime()} to end the total at.
+     * @return the header value.
+     */
+    String toHeader(final long now) {
+        final StringBuilder header = new StringBuilder();
+        for (final LookupMetrics.Stage stage : LookupMetrics.Stage.values()) {
+            if (recorded[stage.ordinal()]) {
+                appendMetric(header, stage.getMetricName(), durations[stage.ordinal()]);
+                header.append(", ");
+            }
+        }
+        appendMetric(header, "total", now - start);
+        return header.toString();
+    }
+
+    private static void appendMetric(final StringBuilder header, final String name, final long nanos) {
+        header.append(name).append(";dur=").append(String.format(Locale.ROOT, "%.3f", nanos / NANOS_PER_MILLI));
+    }
+}
@@ -0,0 +1,56 @@
+package ca.umanitoba.libraries.georeferencing;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * A place suggested for the start of a name.
+ * @author whikloj
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class Suggestion {
+
+    private int geonamesId;
+    private String name;
+    private String countryCode;
+    private String adminCode1;
+    private long population;
+    private Coordinates coordinates;
+
+    public Suggestion() {
+        // This constructor left intentionally blank.
+    }
+
+    public Suggestion(final int geonamesId, final String name, final String countryCode, final String adminCode1,
+                      final long population, final Coordinates coordinates) {
+        this.geonamesId = geonamesId;
+        this.name = name;
+        this.countryCode = countryCode;
+        this.adminCode1 = adminCode1;
+        this.population = population;
+        this.coordinates = coordinates;
+    }
+
+    public int getGeonamesId() {
+        return geonamesId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getCountryCode() {
+        return countryCode;
+    }
+
+    public String getAdminCode1() {
+        return adminCode1;
+    }
+
+    public long getPopulation() {
+        return population;
+    }
+
+    public Coordinates getCoordinates() {
+        return coordinates;
+    }
+}
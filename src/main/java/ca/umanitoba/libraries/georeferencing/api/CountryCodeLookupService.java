@@ -1,5 +1,9 @@
 package ca.umanitoba.libraries.georeferencing.api;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
 import ca.umanitoba.libraries.georeferencing.exceptions.MissingCountryCodeException;
 
 /**
@@ -15,4 +19,26 @@ public interface CountryCodeLookupService {
      */
     public CountryCode lookupCountry(final String countryName) throws MissingCountryCodeException;
 
+    /**
+     * @return where the countries are in their lifecycle.
+     */
+    public DatasetState getState();
+
+    /**
+     * Lookup a group of countries by their names.
+     * @param countryNames the country names.
+     * @return map of the requested country names to country code objects, names that cannot be converted are absent.
+     */
+    public default Map<String, CountryCode> lookupCountries(final Collection<String> countryNames) {
+        final Map<String, CountryCode> countries = new HashMap<>();
+        for (final String countryName : countryNames) {
+            try {
+                countries.put(countryName, lookupCountry(countryName));
+            } catch (final MissingCountryCodeException e) {
+                // Leave the country out of the results.
+            }
+        }
+        return countries;
+    }
+
 }
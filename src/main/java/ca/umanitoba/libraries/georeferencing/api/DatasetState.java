@@ -0,0 +1,19 @@
+package ca.umanitoba.libraries.georeferencing.api;
+
+/**
+ * Where a dataset is in its lifecycle. A dataset starts LOADING, is READY once its table is loaded and its lookups
+ * are in memory, and is RELOADING while /reset replaces it, when lookups are still answered from the old data.
+ * @author whikloj
+ */
+public enum DatasetState {
+    LOADING,
+    READY,
+    RELOADING;
+
+    /**
+     * @return true if lookups can be answered.
+     */
+    public boolean isAvailable() {
+        return this != LOADING;
+    }
+}
@@ -1,8 +1,16 @@
 package ca.umanitoba.libraries.georeferencing.api;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
 import ca.umanitoba.libraries.georeferencing.Coordinates;
+import ca.umanitoba.libraries.georeferencing.GeoNamesPlace;
 import ca.umanitoba.libraries.georeferencing.LocationRequest;
 import ca.umanitoba.libraries.georeferencing.exceptions.NameLookupException;
+import ca.umanitoba.libraries.georeferencing.ingest.PlaceUpdates;
 
 /**
  * Service to take a LocationRequest and return coordinates.
@@ -18,4 +26,55 @@ public interface NameLookupService {
      * @throws NameLookupException If location is not found.
      */
     public Coordinates lookup(final LocationRequest location) throws NameLookupException;
+
+    /**
+     * @return where the places are in their lifecycle.
+     */
+    public DatasetState getState();
+
+    /**
+     * Lookup a group of locations together.
+     * @param locations the location parts to use for the lookups
+     * @return map of the location hash strings to coordinates, locations that are not found are absent.
+     */
+    public default Map<String, Coordinates> lookupAll(final Collection<LocationRequest> locations) {
+        final Map<String, Coordinates> found = new HashMap<>();
+        for (final LocationRequest location : locations) {
+            try {
+                found.put(location.getHashString(), lookup(location));
+            } catch (final NameLookupException e) {
+                // Leave the location out of the results.
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Lookup a group of locations together, doing nothing more once a deadline has passed.
+     * @param locations the location parts to use for the lookups
+     * @param deadline the {@link System#nanoTime()} after which no lookup or fallback is started.
+     * @return map of the location hash strings to coordinates, locations that are not found are absent.
+     */
+    public default Map<String, Coordinates> lookupAll(final Collection<LocationRequest> locations,
+                                                      final long deadline) {
+        return System.nanoTime() - deadline >= 0 ? new HashMap<>() : lookupAll(locations);
+    }
+
+    /**
+     * Pass each loaded place, without its alternate names.
+     * @param consumer receives the places.
+     */
+    public void forEachPlace(final Consumer<GeoNamesPlace> consumer);
+
+    /**
+     * Discard the loaded locations and re-load them from the location file.
+     */
+    public void reset();
+
+    /**
+     * Apply a day of GeoNames changes to the loaded locations without reloading the others.
+     * @param updates the changes.
+     * @return the normalized names of the changed places, before and after the changes.
+     */
+    public Set<String> update(final PlaceUpdates updates);
 }
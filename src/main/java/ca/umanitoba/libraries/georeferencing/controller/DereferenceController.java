@@ -1,23 +1,49 @@
 package ca.umanitoba.libraries.georeferencing.controller;
 
 import javax.inject.Inject;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
+
+import ca.umanitoba.libraries.georeferencing.AdminCodes;
+import ca.umanitoba.libraries.georeferencing.BulkLookupProcessor;
+import ca.umanitoba.libraries.georeferencing.BulkLookupStatistics;
 import ca.umanitoba.libraries.georeferencing.Coordinates;
+import ca.umanitoba.libraries.georeferencing.DatasetReadiness;
+import ca.umanitoba.libraries.georeferencing.FuzzyNameMatcher;
 import ca.umanitoba.libraries.georeferencing.GeoNamesFeatureCodes;
 import ca.umanitoba.libraries.georeferencing.LocationRequest;
+import ca.umanitoba.libraries.georeferencing.LocationResolver;
+import ca.umanitoba.libraries.georeferencing.LookupCache;
+import ca.umanitoba.libraries.georeferencing.LookupMetrics;
+import ca.umanitoba.libraries.georeferencing.LookupResult;
+import ca.umanitoba.libraries.georeferencing.NearbyPlace;
+import ca.umanitoba.libraries.georeferencing.PlaceLocator;
+import ca.umanitoba.libraries.georeferencing.PlacePage;
+import ca.umanitoba.libraries.georeferencing.PlaceSuggester;
+import ca.umanitoba.libraries.georeferencing.Suggestion;
 import ca.umanitoba.libraries.georeferencing.exceptions.InternalApplicationError;
 import ca.umanitoba.libraries.georeferencing.exceptions.LocationRequestException;
 import ca.umanitoba.libraries.georeferencing.exceptions.MissingCountryCodeException;
 import ca.umanitoba.libraries.georeferencing.exceptions.NameLookupException;
-import ca.umanitoba.libraries.georeferencing.api.CountryCode;
 import ca.umanitoba.libraries.georeferencing.api.CountryCodeLookupService;
+import ca.umanitoba.libraries.georeferencing.api.DatasetState;
 import ca.umanitoba.libraries.georeferencing.api.NameLookupService;
 import ca.umanitoba.libraries.georeferencing.impl.DataHubCountryCodeLookupService;
-import ca.umanitoba.libraries.georeferencing.impl.NameLookupServiceImpl;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import ca.umanitoba.libraries.georeferencing.ingest.DailyUpdates;
+import ca.umanitoba.libraries.georeferencing.ingest.PlaceUpdates;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
 
@@ -28,59 +54,321 @@ import org.springframework.web.server.ResponseStatusException;
 @RestController
 public class DereferenceController {
 
+    private static final String NDJSON = "application/x-ndjson";
+
     @Inject
     private CountryCodeLookupService ccLookup;
 
+    @Inject
+    private LocationResolver locationResolver;
+
     @Inject
     private NameLookupService nameLookup;
 
+    @Inject
+    private BulkLookupProcessor bulkLookupProcessor;
+
+    @Inject
+    private LookupCache lookupCache;
+
     @Inject
     private GeoNamesFeatureCodes geoNamesFeatureCodes;
 
+    @Inject
+    private AdminCodes adminCodes;
+
+    @Inject
+    private DailyUpdates dailyUpdates;
+
+    @Inject
+    private FuzzyNameMatcher fuzzyMatcher;
+
+    @Inject
+    private PlaceSuggester placeSuggester;
+
+    @Inject
+    private PlaceLocator placeLocator;
+
+    @Inject
+    private DatasetReadiness datasetReadiness;
+
+    @Inject
+    private LookupMetrics lookupMetrics;
+
     /**
      * Handle post requests.
      * @param request the requested LocationRequest.
+     * @param fuzzy whether to fall back to the closest name if the name is not found.
      * @return coordinates as JSON.
      */
     @PostMapping(value = "/lookup", produces = "application/json")
-    public Coordinates greeting(@RequestBody final LocationRequest request) {
+    public Coordinates greeting(@RequestBody final LocationRequest request,
+                                @RequestParam(value = "fuzzy", defaultValue = "false") final boolean fuzzy) {
         try {
-            request.validateLocation();
-            final CountryCode countryCode = ccLookup.lookupCountry(request.getCountry());
-
-            // Set the alpha country code.
-            request.setIso3361Alpha2(countryCode.getIso3316Alpha2());
-            final Coordinates coordinates = nameLookup.lookup(request);
+            final Coordinates coordinates = locationResolver.resolve(request, fuzzy);
             if (coordinates == null) {
+                lookupMetrics.countOutcome(LookupMetrics.Endpoint.LOOKUP, LookupMetrics.Outcome.NOT_FOUND);
                 throw new ResponseStatusException(
                         HttpStatus.NOT_FOUND, "Could not find the location");
             }
+            lookupMetrics.countOutcome(LookupMetrics.Endpoint.LOOKUP, LookupMetrics.Outcome.FOUND);
             return coordinates;
         } catch (final NameLookupException e) {
+            lookupMetrics.countOutcome(LookupMetrics.Endpoint.LOOKUP, LookupMetrics.Outcome.NOT_FOUND);
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
         } catch (final MissingCountryCodeException | LocationRequestException | IllegalArgumentException exc) {
+            lookupMetrics.countOutcome(LookupMetrics.Endpoint.LOOKUP, LookupMetrics.Outcome.BAD_REQUEST);
             throw new ResponseStatusException(
                     HttpStatus.BAD_REQUEST, exc.getMessage());
         } catch (final InternalApplicationError error) {
+            lookupMetrics.countOutcome(LookupMetrics.Endpoint.LOOKUP, LookupMetrics.Outcome.ERROR);
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR,
                     error.getMessage());
         }
     }
 
     /**
-     * Reset the database, and reload from the files.
+     * Handle a batch of lookups in one request.
+     * @param requests the requested LocationRequests.
+     * @return one result or error per request, in the same order, as JSON.
+     */
+    @PostMapping(value = "/lookup/batch", produces = "application/json")
+    public List<LookupResult> batch(@RequestBody final List<LocationRequest> requests) {
+        final List<LookupResult> results = locationResolver.resolveAll(requests);
+        results.forEach(r -> lookupMetrics.countResult(LookupMetrics.Endpoint.BATCH, r));
+        return results;
+    }
+
+    /**
+     * Handle a stream of newline delimited JSON lookups, writing a newline delimited JSON result for each line as it
+     * is resolved.
+     * @param request the servlet request, whose body is read line by line.
+     * @param response the servlet response, whose body is written line by line.
+     * @throws IOException if the request cannot be read or the response written.
+     */
+    @PostMapping(value = "/lookup/stream", produces = NDJSON)
+    public void stream(final HttpServletRequest request, final HttpServletResponse response) throws IOException {
+        response.setContentType(NDJSON);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        if (!bulkLookupProcessor.process(request.getInputStream(), response.getOutputStream())) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Too many bulk lookup streams are running, try again later");
+        }
+    }
+
+    /**
+     * Get the throughput counters of the streaming lookups.
+     * @return the counters as JSON.
+     */
+    @GetMapping(value = "/lookup/stream/stats", produces = "application/json")
+    public BulkLookupStatistics streamStatistics() {
+        return bulkLookupProcessor.getStatistics();
+    }
+
+    /**
+     * Whether this node has loaded the places, countries, admin codes and features and can answer lookups, for load
+     * balancers.
+     * @return the state of each dataset as JSON, with a 503 status until they are all loaded.
+     */
+    @GetMapping(value = "/ready", produces = "application/json")
+    public ResponseEntity<Map<String, DatasetState>> ready() {
+        final HttpStatus status = datasetReadiness.isReady() ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE;
+        return ResponseEntity.status(status).body(datasetReadiness.getStates());
+    }
+
+    /**
+     * Get the statistics of the lookup result cache.
+     * @return the statistics as JSON.
+     */
+    @GetMapping(value = "/cache/stats", produces = "application/json")
+    public LookupCache.Statistics cacheStatistics() {
+        return lookupCache.getStatistics();
+    }
+
+    /**
+     * Suggest places by the start of their name, for type-ahead.
+     * @param prefix the start of the name.
+     * @param country the ISO 3166 alpha-2 code of the country of the places, any country if absent.
+     * @param admin1 the GeoNames admin1 code of the places, any province if absent.
+     * @param limit the maximum number of places.
+     * @return the places, most populous first, as JSON.
+     */
+    @GetMapping(value = "/suggest", produces = "application/json")
+    public List<Suggestion> suggest(@RequestParam("q") final String prefix,
+                                    @RequestParam(value = "country", required = false) final String country,
+                                    @RequestParam(value = "admin1", required = false) final String admin1,
+                                    @RequestParam(value = "limit", defaultValue = "10") final int limit) {
+        if (!placeSuggester.isEnabled()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Suggestions are not enabled");
+        }
+        if (limit < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, String.format("Invalid limit (%d)", limit));
+        }
+        return placeSuggester.suggest(prefix, country, admin1, limit);
+    }
+
+    /**
+     * Get the size of the suggestion index.
+     * @return the statistics as JSON.
+     */
+    @GetMapping(value = "/suggest/stats", produces = "application/json")
+    public PlaceSuggester.Statistics suggestStatistics() {
+        return placeSuggester.getStatistics();
+    }
+
+    /**
+     * Find the places nearest a point, such as where a photo was taken.
+     * @param latitude the latitude of the point.
+     * @param longitude the longitude of the point.
+     * @param limit the maximum number of places.
+     * @param featureClasses the GeoNames feature classes of the places, any class if absent.
+     * @param features the GeoNames feature codes of the places, any code if absent.
+     * @return the places with their distance in kilometres, nearest first, as JSON.
+     */
+    @GetMapping(value = "/reverse", produces = "application/json")
+    public List<NearbyPlace> reverse(@RequestParam("lat") final double latitude,
+                                     @RequestParam("lon") final double longitude,
+                                     @RequestParam(value = "limit", defaultValue = "1") final int limit,
+                                     @RequestParam(value = "featureClass", required = false)
+                                     final List<String> featureClasses,
+                                     @RequestParam(value = "feature", required = false) final List<String> features) {
+        checkSpatialSearch(0, limit);
+        checkCoordinates(latitude, longitude);
+        return placeLocator.findNearest(latitude, longitude, limit, featureClasses, features);
+    }
+
+    /**
+     * Find the places within a distance of a point.
+     * @param latitude the latitude of the point.
+     * @param longitude the longitude of the point.
+     * @param radiusKm the distance in kilometres.
+     * @param offset the number of places to skip.
+     * @param limit the maximum number of places.
+     * @param featureClasses the GeoNames feature classes of the places, any class if absent.
+     * @param features the GeoNames feature codes of the places, any code if absent.
+     * @return the page of places with their distance in kilometres, nearest first, as JSON.
+     */
+    @GetMapping(value = "/places/within", produces = "application/json")
+    public PlacePage placesWithin(@RequestParam("lat") final double latitude,
+                                  @RequestParam("lon") final double longitude,
+                                  @RequestParam("radiusKm") final double radiusKm,
+                                  @RequestParam(value = "offset", defaultValue = "0") final int offset,
+                                  @RequestParam(value = "limit", defaultValue = "100") final int limit,
+                                  @RequestParam(value = "featureClass", required = false)
+                                  final List<String> featureClasses,
+                                  @RequestParam(value = "feature", required = false) final List<String> features) {
+        checkSpatialSearch(offset, limit);
+        checkCoordinates(latitude, longitude);
+        if (!(radiusKm >= 0 && radiusKm <= placeLocator.getMaxRadiusKm())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, String.format(
+                    "Invalid radius (%s), it must be between 0 and %s km", radiusKm, placeLocator.getMaxRadiusKm()));
+        }
+        return placeLocator.findWithin(latitude, longitude, radiusKm, offset, limit, featureClasses, features);
+    }
+
+    /**
+     * Find the places inside a box.
+     * @param south the southern latitude.
+     * @param west the western longitude, the box crosses the antimeridian if it is east of the eastern longitude.
+     * @param north the northern latitude.
+     * @param east the eastern longitude.
+     * @param offset the number of places to skip.
+     * @param limit the maximum number of places.
+     * @param featureClasses the GeoNames feature classes of the places, any class if absent.
+     * @param features the GeoNames feature codes of the places, any code if absent.
+     * @return the page of places, most populous first, as JSON.
+     */
+    @GetMapping(value = "/places/box", produces = "application/json")
+    public PlacePage placesInBox(@RequestParam("south") final double south,
+                                 @RequestParam("west") final double west,
+                                 @RequestParam("north") final double north,
+                                 @RequestParam("east") final double east,
+                                 @RequestParam(value = "offset", defaultValue = "0") final int offset,
+                                 @RequestParam(value = "limit", defaultValue = "100") final int limit,
+                                 @RequestParam(value = "featureClass", required = false)
+                                 final List<String> featureClasses,
+                                 @RequestParam(value = "feature", required = false) final List<String> features) {
+        checkSpatialSearch(offset, limit);
+        checkCoordinates(south, west);
+        checkCoordinates(north, east);
+        final double width = west > east ? east - west + 360 : east - west;
+        if (south > north || north - south > placeLocator.getMaxBoxDegrees() ||
+                width > placeLocator.getMaxBoxDegrees()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, String.format(
+                    "Invalid box (%s, %s, %s, %s), it may be at most %s degrees high and wide", south, west, north,
+                    east, placeLocator.getMaxBoxDegrees()));
+        }
+        return placeLocator.findInBox(south, west, north, east, offset, limit, featureClasses, features);
+    }
+
+    /**
+     * Reload the database from the files. Lookups are answered from the old data until each table is swapped.
      * @return A text message.
      */
     @PostMapping(value = "/reset", produces = "text/plain")
     public String reset() {
         try {
             geoNamesFeatureCodes.reset();
+            adminCodes.reset();
             ((DataHubCountryCodeLookupService) ccLookup).reset();
-            ((NameLookupServiceImpl) nameLookup).reset();
+            nameLookup.reset();
+            fuzzyMatcher.reset();
+            placeSuggester.reset();
+            placeLocator.reset();
+            lookupCache.invalidateAll();
             return "All tables reset";
         } catch (final InternalApplicationError e) {
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR,
                     e.getMessage());
         }
     }
+
+    /**
+     * Apply the GeoNames change files for a day to the places, without reloading the others.
+     * @param date the day as YYYY-MM-DD.
+     * @return A text message.
+     */
+    @PostMapping(value = "/update", produces = "text/plain")
+    public String update(@RequestParam("date") final String date) {
+        if (!dailyUpdates.isConfigured()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "datahub.updates.location is not configured");
+        }
+        final LocalDate day;
+        try {
+            day = LocalDate.parse(date);
+        } catch (final DateTimeParseException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, String.format("Invalid date (%s)", date));
+        }
+        try {
+            final PlaceUpdates updates = dailyUpdates.apply(day);
+            if (updates.getFilesRead() == 0) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND,
+                        String.format("No change files found for %s", day));
+            }
+            return String.format("Applied %s", updates);
+        } catch (final InternalApplicationError e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR,
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * Reject a search by position if it is disabled or asks for an invalid page.
+     */
+    private void checkSpatialSearch(final int offset, final int limit) {
+        if (!placeLocator.isEnabled()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Searching by position is not enabled");
+        }
+        if (offset < 0 || limit < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    String.format("Invalid offset (%d) or limit (%d)", offset, limit));
+        }
+    }
+
+    private static void checkCoordinates(final double latitude, final double longitude) {
+        if (!(latitude >= -90 && latitude <= 90 && longitude >= -180 && longitude <= 180)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    String.format("Invalid coordinates (%s, %s)", latitude, longitude));
+        }
+    }
 }
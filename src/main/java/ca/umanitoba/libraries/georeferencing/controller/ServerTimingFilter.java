@@ -0,0 +1,99 @@
+package ca.umanitoba.libraries.georeferencing.controller;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import ca.umanitoba.libraries.georeferencing.ServerTiming;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Times each request and adds a Server-Timing header with the time of its lookup stages.
+ * <p>
+ * Headers cannot be added once the body is being written, so the header is added when the body or an error is
+ * first written, by which time the lookups are done.
+ * @author whikloj
+ */
+@Component
+public class ServerTimingFilter extends OncePerRequestFilter {
+
+    @Value("${lookup.metrics.serverTiming:true}")
+    private boolean enabled;
+
+    @Override
+    protected boolean shouldNotFilter(final HttpServletRequest request) {
+        return !enabled;
+    }
+
+    @Override
+    protected void doFilterInternal(final HttpServletRequest request, final HttpServletResponse response,
+                                    final FilterChain filterChain) throws ServletException, IOException {
+        final TimedResponse timedResponse = new TimedResponse(response, ServerTiming.begin());
+        try {
+            filterChain.doFilter(request, timedResponse);
+        } finally {
+            timedResponse.addTiming();
+            ServerTiming.end();
+        }
+    }
+
+    /**
+     * Response which adds the Server-Timing header before it is committed.
+     */
+    private static class TimedResponse extends HttpServletResponseWrapper {
+
+        private final ServerTiming timing;
+
+        private boolean added = false;
+
+        TimedResponse(final HttpServletResponse response, final ServerTiming timing) {
+            super(response);
+            this.timing = timing;
+        }
+
+        void addTiming() {
+            if (!added && !isCommitted()) {
+                setHeader(ServerTiming.HEADER, timing.toHeader());
+            }
+            added = true;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            addTiming();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            addTiming();
+            return super.getWriter();
+        }
+
+        @Override
+        public void sendError(final int status) throws IOException {
+            addTiming();
+            super.sendError(status);
+        }
+
+        @Override
+        public void sendError(final int status, final String message) throws IOException {
+            addTiming();
+            super.sendError(status, message);
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            addTiming();
+            super.flushBuffer();
+        }
+    }
+}
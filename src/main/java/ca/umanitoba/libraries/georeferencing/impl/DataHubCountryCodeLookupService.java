@@ -3,33 +3,36 @@ package ca.umanitoba.libraries.georeferencing.impl;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import javax.annotation.PostConstruct;
+import javax.inject.Inject;
 import javax.sql.DataSource;
 
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.List;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.Objects;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
 
 import ca.umanitoba.libraries.georeferencing.exceptions.InternalApplicationError;
 import ca.umanitoba.libraries.georeferencing.exceptions.MissingCountryCodeException;
+import ca.umanitoba.libraries.georeferencing.api.CountryCode;
 import ca.umanitoba.libraries.georeferencing.api.CountryCodeLookupService;
+import ca.umanitoba.libraries.georeferencing.api.DatasetState;
+import ca.umanitoba.libraries.georeferencing.index.CountryIndex;
+import ca.umanitoba.libraries.georeferencing.ingest.IngestPipeline;
+import ca.umanitoba.libraries.georeferencing.ingest.ShadowTables;
 import ca.umanitoba.libraries.georeferencing.utils.DatabaseUtils;
 import ca.umanitoba.libraries.georeferencing.utils.DbPlatform;
-import com.fasterxml.jackson.core.type.TypeReference;
+import ca.umanitoba.libraries.georeferencing.utils.NameNormalizer;
+import ca.umanitoba.libraries.georeferencing.utils.ResourceUtils;
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.dao.DataAccessException;
-import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
-import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Component;
 
 /**
@@ -44,6 +47,9 @@ public class DataHubCountryCodeLookupService implements CountryCodeLookupService
     @Value("${datahub.countrycodefile}")
     private String countryCodeFilePathValue;
 
+    @Value("${lookup.countries.aliases:}")
+    private String aliasesValue;
+
     @Autowired
     @Lazy
     private JdbcTemplate jdbcTemplate;
@@ -52,12 +58,17 @@ public class DataHubCountryCodeLookupService implements CountryCodeLookupService
     @Lazy
     private DataSource dataSource;
 
-    private boolean tableExists = false;
-    private boolean tableFull = false;
+    @Inject
+    private IngestPipeline ingestPipeline;
 
-    private static String DEFAULT_COUNTRY_CODE_FILE = "data/country-codes_json.json";
+    @Inject
+    private ShadowTables shadowTables;
+
+    private volatile DatasetState state = DatasetState.LOADING;
 
-    private InputStream countryCodeStream;
+    private volatile CountryIndex countries;
+
+    private static String DEFAULT_COUNTRY_CODE_FILE = "data/country-codes_json.json";
 
     private ObjectMapper mapper;
 
@@ -65,16 +76,14 @@ public class DataHubCountryCodeLookupService implements CountryCodeLookupService
 
     private static final String COUNT_ALL_ROWS = String.format("SELECT count(*) FROM %s", TABLE_NAME);
 
-    private static final String INSERT_RECORD = String.format("INSERT INTO %s VALUES " +
-            "(?, ?, ?, ?, ?, ?);", TABLE_NAME);
+    private static final String KEY_COLUMN = "nameKey";
 
-    private static final String LOOKUP_ISO2_BY_NAME = String.format("SELECT * FROM %s WHERE LOWER(name) = :name",
-            TABLE_NAME);
+    private static final String INSERT_RECORD = "INSERT INTO %s VALUES (?, ?, ?, ?, ?, ?, ?)";
 
-    private static final String TRUNCATE_TABLE = String.format("TRUNCATE TABLE %s", TABLE_NAME);
+    private static final String SELECT_ALL = String.format("SELECT * FROM %s", TABLE_NAME);
 
-    private static final Map<DbPlatform, String> DDL_MAP = Map.of(DbPlatform.MYSQL, "sql/countryCodes_common.sql",
-            DbPlatform.H2, "sql/countryCodes_common.sql");
+    private static final Map<DbPlatform, String> DDL_MAP = Map.of(DbPlatform.MYSQL, "sql/countryCodes_mysql.sql",
+            DbPlatform.H2, "sql/countryCodes_h2.sql");
 
     /**
      * Default constructor
@@ -89,112 +98,171 @@ public class DataHubCountryCodeLookupService implements CountryCodeLookupService
     }
 
     /**
-     * Check if tables are ready to go.
+     * Load the countries if they are not loaded yet, once they are this only reads the state.
      */
     private void checkTables() {
-        if (!tableExists) {
-            if (!DatabaseUtils.tableExists(dataSource, TABLE_NAME)) {
-                try {
-                    LOGGER.info("Table {} does not exist, creating", TABLE_NAME);
-                    DatabaseUtils.loadDDL(dataSource, DDL_MAP);
-                } catch (final DataAccessException e) {
-                    throw new InternalApplicationError(e);
-                }
+        if (state == DatasetState.LOADING) {
+            prepareTables();
+        }
+    }
+
+    @Override
+    public DatasetState getState() {
+        return state;
+    }
+
+    /**
+     * Create the table and load it if it is empty, then mark the countries ready.
+     */
+    private synchronized void prepareTables() {
+        if (state != DatasetState.LOADING) {
+            return;
+        }
+        try {
+            // A table from before the key column gets it added and filled in, then its index from the DDL.
+            if (DatabaseUtils.fillKeyColumn(jdbcTemplate, TABLE_NAME, "name", KEY_COLUMN) ||
+                    !DatabaseUtils.tableExists(dataSource, TABLE_NAME)) {
+                LOGGER.info("Table {} does not exist or its indexes are missing, creating", TABLE_NAME);
+                DatabaseUtils.loadDDL(dataSource, DDL_MAP);
+            }
+        } catch (final DataAccessException e) {
+            throw new InternalApplicationError(e);
+        }
+        if (DatabaseUtils.tableIsEmpty(jdbcTemplate, COUNT_ALL_ROWS)) {
+            try {
+                final String location = countryCodeLocation();
+                LOGGER.info("Table {} is empty, parsing from file {}", TABLE_NAME, location);
+                reloadTable(location);
+            } catch (final DataAccessException | IOException e) {
+                throw new InternalApplicationError(e);
             }
-            tableExists = true;
         }
+        loadCountries();
+        state = DatasetState.READY;
+    }
 
-        if (!tableFull) {
-            if (DatabaseUtils.tableIsEmpty(jdbcTemplate, COUNT_ALL_ROWS)) {
-                try {
-                    final String location = (countryCodeFilePathValue == null ? DEFAULT_COUNTRY_CODE_FILE :
-                            countryCodeFilePathValue);
-                    if (location == null) {
-                        throw new InternalApplicationError("datahub.countrycodefile cannot be null.");
-                    } else if (location.startsWith("classpath:")) {
-                        final String relativePath = location.substring(10);
-                        countryCodeStream = Objects.requireNonNull(this.getClass().getClassLoader()
-                                .getResourceAsStream(relativePath));
-                    } else if (location.startsWith("file:")) {
-                        final String relativePath = location.substring(5);
-                        countryCodeStream = new FileInputStream(relativePath);
-                    }
-                    LOGGER.info("Table {} is empty, parsing from file {}", TABLE_NAME, location);
-                    parseCountries();
-                } catch (final DataAccessException | IOException e) {
-                    throw new InternalApplicationError(e);
-                }
+    /**
+     * Read the countries from the table into a new index and swap it in.
+     */
+    private synchronized void loadCountries() {
+        final CountryIndex.Builder builder = CountryIndex.builder();
+        try {
+            jdbcTemplate.query(SELECT_ALL, (RowCallbackHandler) resultSet -> builder.add(new DataHubCountryCode(
+                    resultSet.getString("name"),
+                    resultSet.getString("capital"),
+                    resultSet.getString("continent"),
+                    resultSet.getString("iso3166_alpha2"),
+                    resultSet.getString("iso3166_alpha3"),
+                    resultSet.getString("iso3166_numeric")
+            )));
+        } catch (final DataAccessException e) {
+            throw new InternalApplicationError(e);
+        }
+        for (final String alias : aliasesValue == null ? new String[0] : aliasesValue.split(",")) {
+            final String[] parts = alias.split("=", 2);
+            if (parts.length == 2) {
+                builder.alias(parts[0], parts[1]);
+            } else if (!alias.isBlank()) {
+                LOGGER.warn("Ignoring country alias ({}), it should be alias=country", alias);
             }
-            tableFull = true;
         }
+        final CountryIndex index = builder.build();
+        countries = index;
+        LOGGER.info("Loaded {} countries under {} names and codes", index.size(), index.keyCount());
     }
 
     @Override
-    public DataHubCountryCode lookupCountry(final String countryName) throws MissingCountryCodeException {
+    public CountryCode lookupCountry(final String countryName) throws MissingCountryCodeException {
         if (countryName == null || countryName.isEmpty()) {
             throw new IllegalArgumentException("country name cannot be null or blank");
         }
         checkTables();
-        final String normalizedCountry = countryName.toLowerCase().trim();
-        final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
-        parameterSource.addValue("name", normalizedCountry);
-        final NamedParameterJdbcTemplate named = new NamedParameterJdbcTemplate(dataSource);
-        try {
-            return named.queryForObject(LOOKUP_ISO2_BY_NAME, parameterSource,
-                    (resultSet, rowNum) ->
-                            new DataHubCountryCode(
-                                    resultSet.getString("name"),
-                                    resultSet.getString("capital"),
-                                    resultSet.getString("continent"),
-                                    resultSet.getString("iso3166_alpha2"),
-                                    resultSet.getString("iso3166_alpha3"),
-                                    resultSet.getString("iso3166_numeric")
-                            )
-            );
-        } catch (final EmptyResultDataAccessException e) {
-            throw new MissingCountryCodeException(String.format("Country (%s) not found", normalizedCountry));
+        final CountryCode country = countries.find(countryName);
+        if (country == null) {
+            throw new MissingCountryCodeException(String.format("Country (%s) not found",
+                    NameNormalizer.normalize(countryName)));
+        }
+        return country;
+    }
+
+    @Override
+    public Map<String, CountryCode> lookupCountries(final Collection<String> countryNames) {
+        checkTables();
+        final CountryIndex current = countries;
+        final Map<String, CountryCode> found = new HashMap<>();
+        for (final String countryName : countryNames) {
+            final CountryCode country = countryName == null ? null : current.find(countryName);
+            if (country != null) {
+                found.put(countryName, country);
+            }
         }
+        return found;
+    }
+
+    /**
+     * @return the configured location of the country code file.
+     */
+    private String countryCodeLocation() {
+        return countryCodeFilePathValue == null ? DEFAULT_COUNTRY_CODE_FILE : countryCodeFilePathValue;
+    }
+
+    /**
+     * Load a file into a shadow table and swap it in, so the live table is either empty or complete even if the
+     * load fails or the application stops part way.
+     */
+    private void reloadTable(final String location) throws IOException, DataAccessException {
+        shadowTables.prepare(TABLE_NAME);
+        parseCountries(location, ShadowTables.shadowOf(TABLE_NAME));
+        shadowTables.swap(TABLE_NAME);
     }
 
     /**
      * Parses the source file and inserts records to the database.
+     * @param location the location of the file.
+     * @param table the table to load.
      * @throws IOException Problems parsing the JSON.
      * @throws DataAccessException Problems inserting rows.
      */
-    private void parseCountries() throws IOException, DataAccessException{
-            final List<DataHubCountryCode> codes = this.mapper.readValue(countryCodeStream,
-                    new TypeReference<List<DataHubCountryCode>>() {});
-            final List<DataHubCountryCode> finalCodes = codes.parallelStream().filter(c -> c.getCountryName() != null)
-                    .collect(Collectors.toList());
-            LOGGER.debug("codes has {} elements, finalCodes has {} elements", codes.size(), finalCodes.size());
-
-            jdbcTemplate.batchUpdate(
-                    INSERT_RECORD,
-                    finalCodes,
-                    50,
-                    (ps, code) -> {
-                        ps.setString(1, code.getCountryName());
-                        ps.setString(2, code.getCapital());
-                        ps.setString(3, code.getContinent());
-                        ps.setString(4, code.getIso3316Alpha2());
-                        ps.setString(5, code.getIso3316Alpha3());
-                        ps.setString(6, code.getIso3316Numeric());
-                    }
-            );
-            LOGGER.info("Loaded {} records into table {}", finalCodes.size(), TABLE_NAME);
+    private void parseCountries(final String location, final String table) throws IOException, DataAccessException {
+        final String insert = String.format(INSERT_RECORD, table);
+        try (final InputStream countryCodeStream = ResourceUtils.openLocation(location);
+             final MappingIterator<DataHubCountryCode> codes = mapper.readerFor(DataHubCountryCode.class)
+                     .readValues(countryCodeStream)) {
+            ingestPipeline.load(table, codes, c -> c.getCountryName() != null ? c : null,
+                    (template, chunk) -> {
+                        template.getJdbcTemplate().batchUpdate(
+                                insert,
+                                chunk,
+                                50,
+                                (ps, code) -> {
+                                    ps.setString(1, code.getCountryName());
+                                    ps.setString(2, code.getCapital());
+                                    ps.setString(3, code.getContinent());
+                                    ps.setString(4, code.getIso3316Alpha2());
+                                    ps.setString(5, code.getIso3316Alpha3());
+                                    ps.setString(6, code.getIso3316Numeric());
+                                    ps.setString(7, NameNormalizer.normalize(code.getCountryName()));
+                                }
+                        );
+                        return chunk.size();
+                    });
+        }
     }
 
     /**
-     * Truncate the tables and reload the data.
+     * Load the file into a shadow table and then swap it in, lookups are answered from the old countries until the
+     * new ones are read back into memory.
      */
-    public void reset() {
+    public synchronized void reset() {
+        checkTables();
+        state = DatasetState.RELOADING;
         try {
-            jdbcTemplate.execute(TRUNCATE_TABLE);
-            tableFull = false;
-            parseCountries();
-            tableFull = true;
+            reloadTable(countryCodeLocation());
+            loadCountries();
         } catch (final DataAccessException | IOException e) {
             throw new InternalApplicationError(e);
+        } finally {
+            state = DatasetState.READY;
         }
     }
 }
@@ -0,0 +1,160 @@
+package ca.umanitoba.libraries.georeferencing.impl;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import ca.umanitoba.libraries.georeferencing.AdminCodes;
+import ca.umanitoba.libraries.georeferencing.Coordinates;
+import ca.umanitoba.libraries.georeferencing.GeoNamesPlace;
+import ca.umanitoba.libraries.georeferencing.LocationRequest;
+import ca.umanitoba.libraries.georeferencing.LookupMetrics;
+import ca.umanitoba.libraries.georeferencing.api.DatasetState;
+import ca.umanitoba.libraries.georeferencing.api.NameLookupService;
+import ca.umanitoba.libraries.georeferencing.exceptions.InternalApplicationError;
+import ca.umanitoba.libraries.georeferencing.exceptions.NameLookupException;
+import ca.umanitoba.libraries.georeferencing.index.GazetteerIndex;
+import ca.umanitoba.libraries.georeferencing.index.LayeredGazetteer;
+import ca.umanitoba.libraries.georeferencing.ingest.GeoNamesTsvReader;
+import ca.umanitoba.libraries.georeferencing.ingest.PlaceUpdates;
+import ca.umanitoba.libraries.georeferencing.ingest.TsvRow;
+import ca.umanitoba.libraries.georeferencing.utils.ResourceUtils;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Implementation of NameLookupService which answers lookups from an in-memory index of the location file.
+ * Enabled with the property lookup.engine=memory. Daily changes are layered over the index rather than rebuilding it.
+ * Names are only matched as written, the sound-alike fallback of lookup.phonetic.enabled is not supported.
+ * @author whikloj
+ */
+@Component
+@ConditionalOnProperty(name = "lookup.engine", havingValue = "memory")
+public class InMemoryNameLookupService implements NameLookupService {
+
+    private static final Logger LOGGER = getLogger(InMemoryNameLookupService.class);
+
+    @Value("${datahub.locationfile}")
+    private String datahubLocationFileValue;
+
+    @Inject
+    private AdminCodes adminCodes;
+
+    @Inject
+    private LookupMetrics lookupMetrics;
+
+    private final AtomicReference<LayeredGazetteer> index = new AtomicReference<>();
+
+    private volatile DatasetState state = DatasetState.LOADING;
+
+    /**
+     * Basic constructor.
+     */
+    public InMemoryNameLookupService() {
+        // This constructor left intentionally blank.
+    }
+
+    /**
+     * Build the index from the location file.
+     */
+    @PostConstruct
+    public void initialize() {
+        index.set(new LayeredGazetteer(loadIndex()));
+        state = DatasetState.READY;
+    }
+
+    @Override
+    public DatasetState getState() {
+        return state;
+    }
+
+    @Override
+    public Coordinates lookup(final LocationRequest location) throws NameLookupException {
+        String adminCode = null;
+        if (location.getCity() != null && location.getIso3361Alpha2() != null && location.getProvince() != null) {
+            adminCode = adminCodes.findAdminCode(location.getIso3361Alpha2(), location.getProvince());
+        }
+        final long start = System.nanoTime();
+        final Coordinates coordinates = index.get().findLocation(location, adminCode);
+        lookupMetrics.recordStage(LookupMetrics.Stage.PLACE, start);
+        if (coordinates == null) {
+            throw new NameLookupException("Could not find a location to match the request.");
+        }
+        return coordinates;
+    }
+
+    @Override
+    public Map<String, Coordinates> lookupAll(final Collection<LocationRequest> locations) {
+        final LayeredGazetteer current = index.get();
+        final Map<String, String> codes = adminCodes.findAdminCodes(locations);
+        final long start = System.nanoTime();
+        final Map<String, Coordinates> found = new HashMap<>();
+        for (final LocationRequest location : locations) {
+            final Coordinates coordinates = current.findLocation(location, AdminCodes.adminCodeFor(location, codes));
+            if (coordinates != null) {
+                found.put(location.getHashString(), coordinates);
+            }
+        }
+        lookupMetrics.recordStage(LookupMetrics.Stage.PLACE, start);
+        return found;
+    }
+
+    @Override
+    public void forEachPlace(final Consumer<GeoNamesPlace> consumer) {
+        index.get().forEachPlace(consumer);
+    }
+
+    @Override
+    public synchronized void reset() {
+        state = DatasetState.RELOADING;
+        try {
+            index.set(new LayeredGazetteer(loadIndex()));
+        } finally {
+            state = DatasetState.READY;
+        }
+    }
+
+    @Override
+    public synchronized Set<String> update(final PlaceUpdates updates) {
+        final Set<String> touchedNames = updates.getNames();
+        index.set(index.get().withUpdates(updates, touchedNames));
+        LOGGER.info("Applied {} modified places and {} deletes, {} places indexed", updates.getModified().size(),
+                updates.getDeleted().size(), index.get().size());
+        return touchedNames;
+    }
+
+    /**
+     * Parse the location file into a new index.
+     * @return the index.
+     */
+    private GazetteerIndex loadIndex() {
+        final long start = System.currentTimeMillis();
+        final GazetteerIndex.Builder builder = GazetteerIndex.builder();
+        try (final GeoNamesTsvReader reader = new GeoNamesTsvReader(
+                ResourceUtils.openLocation(datahubLocationFileValue))) {
+            final TsvRow row = new TsvRow();
+            while (reader.hasNext()) {
+                final byte[] line = reader.next();
+                builder.add(GeoNamesPlace.fromRow(row.reset(line, line.length)));
+            }
+        } catch (final IOException | UncheckedIOException e) {
+            throw new InternalApplicationError(e);
+        }
+        final GazetteerIndex built = builder.build();
+        LOGGER.info("Indexed {} places from {} in {} ms", built.size(), datahubLocationFileValue,
+                System.currentTimeMillis() - start);
+        return built;
+    }
+}
@@ -6,49 +6,52 @@ import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 import javax.sql.DataSource;
 
-import java.io.BufferedReader;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Stream;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import ca.umanitoba.libraries.georeferencing.AdminCodes;
 import ca.umanitoba.libraries.georeferencing.Coordinates;
+import ca.umanitoba.libraries.georeferencing.GeoNamesPlace;
 import ca.umanitoba.libraries.georeferencing.LocationRequest;
+import ca.umanitoba.libraries.georeferencing.LookupMetrics;
+import ca.umanitoba.libraries.georeferencing.api.DatasetState;
 import ca.umanitoba.libraries.georeferencing.api.NameLookupService;
 import ca.umanitoba.libraries.georeferencing.exceptions.InternalApplicationError;
 import ca.umanitoba.libraries.georeferencing.exceptions.NameLookupException;
+import ca.umanitoba.libraries.georeferencing.index.GazetteerIndex;
+import ca.umanitoba.libraries.georeferencing.index.PhoneticIndex;
+import ca.umanitoba.libraries.georeferencing.ingest.GeoNamesPlaceLoader;
+import ca.umanitoba.libraries.georeferencing.ingest.PlaceUpdates;
+import ca.umanitoba.libraries.georeferencing.ingest.ShadowTables;
 import ca.umanitoba.libraries.georeferencing.utils.DatabaseUtils;
 import ca.umanitoba.libraries.georeferencing.utils.DbPlatform;
+import ca.umanitoba.libraries.georeferencing.utils.NameNormalizer;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.dao.DataAccessException;
-import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Component;
 
 /**
- * Implementation of NameLookupService.
+ * Implementation of NameLookupService which queries the database. This is the default engine, selected with the
+ * property lookup.engine=sql.
  * @author whikloj
  */
 @Component
+@ConditionalOnProperty(name = "lookup.engine", havingValue = "sql", matchIfMissing = true)
 public class NameLookupServiceImpl implements NameLookupService {
 
     @Autowired
@@ -67,40 +70,80 @@ public class NameLookupServiceImpl implements NameLookupService {
     @Inject
     private AdminCodes adminCodes;
 
-    private boolean tableExists = false;
+    @Inject
+    private GeoNamesPlaceLoader placeLoader;
 
-    private boolean tableFull = false;
+    @Inject
+    private ShadowTables shadowTables;
 
-    private static String DEFAULT_DATAHUB_LOCATION_FILE = "data/CA.txt";
+    @Inject
+    private LookupMetrics lookupMetrics;
 
-    private InputStream datahubLocationStream;
+    private volatile DatasetState state = DatasetState.LOADING;
 
-    private ConcurrentHashMap<String, Coordinates> lookups = new ConcurrentHashMap<>();
+    @Value("${lookup.phonetic.enabled:false}")
+    private boolean phoneticEnabled;
 
-    private static final String TABLE_NAME = "placeLookup";
+    @Value("${lookup.phonetic.maxCandidates:5}")
+    private int phoneticCandidates;
+
+    private volatile PhoneticIndex phoneticIndex;
+
+    private static String DEFAULT_DATAHUB_LOCATION_FILE = "data/CA.txt";
 
-    private static final String ALT_NAME_TABLE_NAME = "PlaceLookupAltNames";
+    private static final String TABLE_NAME = GeoNamesPlaceLoader.TABLE_NAME;
+
+    private static final String ALT_NAME_TABLE_NAME = GeoNamesPlaceLoader.ALT_NAME_TABLE_NAME;
+
+    private static final String KEY_COLUMN = "nameKey";
 
     private static final String COUNT_ALL_ROWS = String.format("SELECT COUNT(*) FROM %s", TABLE_NAME);
 
-    private static final String INSERT_MAIN_ROWS = String.format("INSERT INTO %s VALUES (:id, :name, :asciiname, " +
-            ":latitude, :longitude, :featureClass, :feature, :adminCode1, :adminCode2, :countryCode, :adminCode3, " +
-            ":adminCode4, :pop, :elev, :dem, :tz, :modified)", TABLE_NAME);
+    private static final String CANDIDATE_FEATURES = "((feature_class = 'P' AND (feature in ('PPL', 'PPLC') OR " +
+            "feature LIKE 'PPLA%%')) OR (feature_class = 'A' AND feature LIKE 'ADM%%'))";
+
+    /**
+     * Places with one of the names as their own or as an alternate name, the matching alternate name is returned as
+     * altName. Both halves are index seeks on a nameKey column.
+     */
+    private static final String SELECT_CANDIDATES_TEMPLATE = "SELECT geonamesId, name, latitude, longitude, " +
+            "feature_class, feature, countryCode, adminCode1, population, NULL AS altName FROM %1$s " +
+            "WHERE nameKey IN (:names) AND " + CANDIDATE_FEATURES + "%3$s UNION ALL " +
+            "SELECT p.geonamesId, p.name, p.latitude, p.longitude, p.feature_class, p.feature, p.countryCode, " +
+            "p.adminCode1, p.population, a.name AS altName FROM %2$s a JOIN %1$s p ON p.geonamesId = a.geonamesId " +
+            "WHERE a.nameKey IN (:names) AND " + CANDIDATE_FEATURES + "%3$s";
 
-    private static final String INSERT_ALT_ROWS = String.format("INSERT INTO %s VALUES (:id, :name)",
-            ALT_NAME_TABLE_NAME);
+    public static final String SELECT_CANDIDATES = String.format(SELECT_CANDIDATES_TEMPLATE, TABLE_NAME,
+            ALT_NAME_TABLE_NAME, "");
 
-    private static final String TRUNCATE_TABLE = String.format("TRUNCATE TABLE %s", TABLE_NAME);
-    private static final String TRUNCATE_ALT_TABLE = String.format("TRUNCATE TABLE %s", ALT_NAME_TABLE_NAME);
+    public static final String SELECT_CANDIDATES_IN_COUNTRIES = String.format(SELECT_CANDIDATES_TEMPLATE, TABLE_NAME,
+            ALT_NAME_TABLE_NAME, " AND countryCode IN (:countryCodes)");
 
-    private static final RowMapper<Coordinates> rowMapper = new RowMapper<Coordinates>() {
-        @Override
-        public Coordinates mapRow(final ResultSet rs, final int rowNum) throws SQLException {
-            return new Coordinates(
-                    rs.getDouble("latitude"),
-                    rs.getDouble("longitude")
-            );
-        }
+    /**
+     * The distinct names and alternate names of the places a lookup can find, for the phonetic index.
+     */
+    private static final String SELECT_NAME_KEYS = String.format("SELECT nameKey FROM %1$s WHERE " +
+            CANDIDATE_FEATURES + " UNION SELECT a.nameKey FROM %2$s a JOIN %1$s p ON p.geonamesId = a.geonamesId " +
+            "WHERE " + CANDIDATE_FEATURES, TABLE_NAME, ALT_NAME_TABLE_NAME);
+
+    private static final String SELECT_PLACES = String.format("SELECT geonamesId, name, latitude, longitude, " +
+            "feature_class, feature, countryCode, adminCode1, population, NULL AS altName FROM %s", TABLE_NAME);
+
+    private static final int MAX_IN_CLAUSE = 500;
+
+    private static final RowMapper<GeoNamesPlace> candidateMapper = (rs, rowNum) -> {
+        final GeoNamesPlace place = new GeoNamesPlace();
+        place.setGeonamesId(rs.getInt("geonamesId"));
+        place.setName(rs.getString("name"));
+        place.setLatitude(rs.getDouble("latitude"));
+        place.setLongitude(rs.getDouble("longitude"));
+        place.setFeatureClass(rs.getString("feature_class"));
+        place.setFeature(rs.getString("feature"));
+        place.setCountryCode(rs.getString("countryCode"));
+        place.setAdminCode1(rs.getString("adminCode1"));
+        place.setPopulation(rs.getLong("population"));
+        place.setAlternateNames(rs.getString("altName"));
+        return place;
     };
 
     private static final Map<DbPlatform, String> DDL_MAP = Map.of(DbPlatform.MYSQL, "sql/placeLookup_mysql.sql",
@@ -114,164 +157,278 @@ public class NameLookupServiceImpl implements NameLookupService {
     }
 
     /**
-     * Check if tables are ready to go.
+     * Load the places if they are not loaded yet, once they are this only reads the state.
      */
     @PostConstruct
     public void checkTables() {
-        if (!tableExists) {
-            if (!DatabaseUtils.tableExists(dataSource, TABLE_NAME) ||
+        if (state == DatasetState.LOADING) {
+            prepareTables();
+        }
+    }
+
+    @Override
+    public DatasetState getState() {
+        return state;
+    }
+
+    /**
+     * Create the tables and load them if they are empty, then mark the places ready.
+     */
+    private synchronized void prepareTables() {
+        if (state != DatasetState.LOADING) {
+            return;
+        }
+        try {
+            // Tables from before the key column get it added and filled in, then its indexes from the DDL.
+            final boolean filled = DatabaseUtils.fillKeyColumn(jdbcTemplate.getJdbcTemplate(), TABLE_NAME, "name",
+                    KEY_COLUMN) | DatabaseUtils.fillKeyColumn(jdbcTemplate.getJdbcTemplate(), ALT_NAME_TABLE_NAME,
+                    "name", KEY_COLUMN);
+            if (filled || !DatabaseUtils.tableExists(dataSource, TABLE_NAME) ||
                     !DatabaseUtils.tableExists(dataSource, ALT_NAME_TABLE_NAME)) {
-                try {
-                    LOGGER.info("Table {} or {} does not exist, creating", TABLE_NAME, ALT_NAME_TABLE_NAME);
-                    DatabaseUtils.loadDDL(dataSource, DDL_MAP);
-                } catch (final DataAccessException e) {
-                    throw new InternalApplicationError(e);
-                }
+                LOGGER.info("Table {} or {} does not exist or its indexes are missing, creating", TABLE_NAME,
+                        ALT_NAME_TABLE_NAME);
+                DatabaseUtils.loadDDL(dataSource, DDL_MAP);
             }
-            tableExists = true;
+        } catch (final DataAccessException e) {
+            throw new InternalApplicationError(e);
         }
-
-        if (!tableFull) {
-            if (DatabaseUtils.tableIsEmpty(jdbcTemplate.getJdbcTemplate(), COUNT_ALL_ROWS)) {
-                try {
-                    final String location = (datahubLocationFileValue == null ? DEFAULT_DATAHUB_LOCATION_FILE :
-                            datahubLocationFileValue);
-                    if (location == null) {
-                        throw new InternalApplicationError("datahub.locationfile cannot be blank.");
-                    }
-                    if (location.startsWith("classpath:")) {
-                        final String relativePath = location.substring(10);
-                        datahubLocationStream = Objects.requireNonNull(getClass().getClassLoader()
-                                .getResourceAsStream(relativePath));
-                    } else if (location.startsWith("file:")) {
-                        final String relativePath = location.substring(5);
-                        datahubLocationStream = new FileInputStream(relativePath);
-                    }
-                    LOGGER.info("Table {} is empty, parsing file {}", TABLE_NAME, location);
-                    loadRecords();
-                } catch (final DataAccessException | FileNotFoundException e) {
-                    throw new InternalApplicationError(e);
-                }
+        if (DatabaseUtils.tableIsEmpty(jdbcTemplate.getJdbcTemplate(), COUNT_ALL_ROWS)) {
+            try {
+                final String location = (datahubLocationFileValue == null ? DEFAULT_DATAHUB_LOCATION_FILE :
+                        datahubLocationFileValue);
+                LOGGER.info("Table {} is empty, parsing file {}", TABLE_NAME, location);
+                loadRecords(location);
+            } catch (final DataAccessException e) {
+                throw new InternalApplicationError(e);
             }
-            tableFull = true;
         }
+        if (phoneticEnabled) {
+            loadPhoneticIndex();
+        }
+        state = DatasetState.READY;
     }
 
     @Override
     public Coordinates lookup(final LocationRequest location) throws NameLookupException {
-        final StringBuilder sql = new StringBuilder();
-        final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
+        final Coordinates coordinates = lookupAll(List.of(location)).get(location.getHashString());
+        if (coordinates == null) {
+            throw new NameLookupException("Could not find a location to match the request.");
+        }
+        return coordinates;
+    }
+
+    /**
+     * Lookup a group of locations with one query for the admin codes and one query per group of names for the
+     * candidate places, which are then matched to the requests in memory. Candidates are found by their own names
+     * and their alternate names in the same query, alternate names are only used when no place has the name as its
+     * own. Locations which are not found are then looked up by the names which sound like theirs.
+     * @param locations the location parts to use for the lookups
+     * @return map of the location hash strings to coordinates, locations that are not found are absent.
+     */
+    @Override
+    public Map<String, Coordinates> lookupAll(final Collection<LocationRequest> locations) {
+        checkTables();
+        final Map<String, Coordinates> found = findAll(locations);
+        if (phoneticEnabled && found.size() < locations.size()) {
+            found.putAll(findSoundAlikes(locations, found));
+        }
+        return found;
+    }
+
+    /**
+     * Lookup a group of locations as {@link #lookupAll(Collection)} does, but skip the sound-alike names once the
+     * deadline has passed.
+     * @param locations the location parts to use for the lookups
+     * @param deadline the {@link System#nanoTime()} after which no lookup or fallback is started.
+     * @return map of the location hash strings to coordinates, locations that are not found are absent.
+     */
+    @Override
+    public Map<String, Coordinates> lookupAll(final Collection<LocationRequest> locations, final long deadline) {
+        if (System.nanoTime() - deadline >= 0) {
+            return new HashMap<>();
+        }
         checkTables();
-        if (location.getIso3361Alpha2() != null) {
-            sql.append("countryCode = :countryCode");
-            parameterSource.addValue("countryCode", location.getIso3361Alpha2());
+        final Map<String, Coordinates> found = findAll(locations);
+        if (phoneticEnabled && found.size() < locations.size() && System.nanoTime() - deadline < 0) {
+            found.putAll(findSoundAlikes(locations, found));
         }
-        if (location.getCity() != null) {
-            if (sql.length() > 0) {
-                sql.append(" AND ");
+        return found;
+    }
+
+    /**
+     * Lookup a group of locations by their names.
+     * @param locations the location parts to use for the lookups
+     * @return map of the location hash strings to coordinates, locations that are not found are absent.
+     */
+    private Map<String, Coordinates> findAll(final Collection<LocationRequest> locations) {
+        final Map<String, String> codes = adminCodes.findAdminCodes(locations);
+        final Set<String> names = new HashSet<>();
+        final Set<String> countryCodes = new HashSet<>();
+        boolean allHaveCountry = true;
+        for (final LocationRequest location : locations) {
+            final String name = location.getCity() != null ? location.getCity() : location.getProvince();
+            if (name != null) {
+                names.add(NameNormalizer.normalize(name));
+                if (location.getIso3361Alpha2() != null) {
+                    countryCodes.add(location.getIso3361Alpha2());
+                } else {
+                    allHaveCountry = false;
+                }
             }
-            sql.append("lower(name) = :city");
-            parameterSource.addValue("city", location.getCity().toLowerCase());
-            sql.append(" AND feature_class = 'P' AND (feature in ('PPL', 'PPLC') OR feature LIKE 'PPLA%')");
-            if (location.getIso3361Alpha2() != null && location.getProvince() != null) {
-                // Need country code and province.
-                final String adminCode = adminCodes.findAdminCode(location.getIso3361Alpha2(),
-                        location.getProvince());
-                sql.append(" AND adminCode1 = :adminCode1");
-                parameterSource.addValue("adminCode1", adminCode);
+        }
+        final String query = allHaveCountry && !countryCodes.isEmpty() ? SELECT_CANDIDATES_IN_COUNTRIES :
+                SELECT_CANDIDATES;
+        final long start = System.nanoTime();
+        final Map<Integer, GeoNamesPlace> places = new HashMap<>();
+        try {
+            for (final List<String> group : DatabaseUtils.partition(names, MAX_IN_CLAUSE)) {
+                final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
+                parameterSource.addValue("names", group);
+                parameterSource.addValue("countryCodes", countryCodes);
+                jdbcTemplate.query(query, parameterSource, candidateMapper)
+                        .forEach(p -> places.merge(p.getGeonamesId(), p, NameLookupServiceImpl::mergeCandidates));
             }
-        } else if (location.getProvince() != null) {
-            if (sql.length() > 0) {
-                sql.append(" AND ");
+        } catch (final DataAccessException e) {
+            throw new InternalApplicationError(e);
+        }
+        final Map<String, List<GeoNamesPlace>> byName = new HashMap<>();
+        for (final GeoNamesPlace place : places.values()) {
+            final Set<String> placeNames = new HashSet<>();
+            placeNames.add(NameNormalizer.normalize(place.getName()));
+            for (final String alternateName : place.getAlternateNameList()) {
+                placeNames.add(NameNormalizer.normalize(alternateName));
             }
-            sql.append("lower(name) = :province");
-            parameterSource.addValue("province", location.getProvince().toLowerCase());
-            sql.append(" AND feature_class = 'A' AND feature like 'ADM%'");
+            placeNames.forEach(n -> byName.computeIfAbsent(n, k -> new ArrayList<>()).add(place));
         }
-        sql.insert(0, String.format("SELECT latitude, longitude FROM %s WHERE ", TABLE_NAME));
-        final String queryString = sql.toString();
-        try {
-            return jdbcTemplate.queryForObject(queryString, parameterSource, rowMapper);
-        } catch (final EmptyResultDataAccessException e) {
-            throw new NameLookupException("Could not find a location to match the request.");
+        final Map<String, Coordinates> found = new HashMap<>();
+        for (final LocationRequest location : locations) {
+            final String name = location.getCity() != null ? location.getCity() : location.getProvince();
+            if (name == null) {
+                continue;
+            }
+            final GeoNamesPlace place = GazetteerIndex.findLocation(byName.getOrDefault(NameNormalizer.normalize(name),
+                    List.of()), location, AdminCodes.adminCodeFor(location, codes));
+            if (place != null) {
+                found.put(location.getHashString(), new Coordinates(place.getLatitude(), place.getLongitude()));
+            }
         }
+        lookupMetrics.recordStage(LookupMetrics.Stage.PLACE, start);
+        return found;
     }
 
     /**
-     * Load the records from the text file into the database.
+     * Lookup the locations which were not found by the names which sound like theirs, closest in spelling first.
+     * All the sound-alike names are looked up together.
+     * @param locations the location parts to use for the lookups
+     * @param found the locations already found.
+     * @return map of the location hash strings to coordinates of the locations found by a sound-alike name.
      */
-    private void loadRecords() {
-        try {
-            final DateTimeFormatter formatter = DateTimeFormatter.ISO_LOCAL_DATE;
-            final List<String[]> lines = new ArrayList<>();
-            final List<MapSqlParameterSource> parameterSourcesList = new ArrayList<>();
-            final AtomicInteger recordCount = new AtomicInteger(0);
-            try (final BufferedReader reader = new BufferedReader(new InputStreamReader(datahubLocationStream,
-                    StandardCharsets.UTF_8));
-                 final Stream<String> stream = reader.lines()) {
-                stream.forEach(l -> {
-                    final MapSqlParameterSource ps = new MapSqlParameterSource();
-                    final String[] line = l.split("\t");
-                    ps.addValue("id", line[0].trim());
-                    ps.addValue("name", line[1].trim());
-                    ps.addValue("asciiname", line[2].trim());
-                    // line[3] is long alternate names
-                    ps.addValue("latitude", Float.valueOf(line[4]));
-                    ps.addValue("longitude", Float.valueOf(line[5]));
-                    ps.addValue("featureClass", line[6].trim());
-                    ps.addValue("feature", line[7].trim());
-                    ps.addValue("countryCode", line[8].trim());
-                    // line[9] is country code 2, we are dumping it.
-                    ps.addValue("adminCode1", line[10].trim());
-                    ps.addValue("adminCode2", line[11].trim());
-                    ps.addValue("adminCode3", line[12].trim());
-                    ps.addValue("adminCode4", line[13].trim());
-                    ps.addValue("pop", line[14].isEmpty() ? 0 : Integer.parseInt(line[14]));
-                    ps.addValue("elev", line[15].isEmpty() ? 0 : Integer.parseInt(line[15]));
-                    ps.addValue("dem", line[16].isEmpty() ? 0 : Integer.parseInt(line[16]));
-                    ps.addValue("tz", line[17].trim());
-                    ps.addValue("modified", line[18].isEmpty() ? formatter.format(LocalDate.now()) :
-                            line[18]);
-                    parameterSourcesList.add(ps);
-                    recordCount.incrementAndGet();
-                    if (!line[3].isEmpty()) {
-                        lines.add(line);
-                    }
-                });
+    private Map<String, Coordinates> findSoundAlikes(final Collection<LocationRequest> locations,
+                                                     final Map<String, Coordinates> found) {
+        final PhoneticIndex index = phoneticIndex;
+        final Map<String, List<LocationRequest>> soundAlikes = new HashMap<>();
+        final List<LocationRequest> requests = new ArrayList<>();
+        for (final LocationRequest location : locations) {
+            final String name = location.getCity() != null ? location.getCity() : location.getProvince();
+            if (name == null || found.containsKey(location.getHashString()) ||
+                    soundAlikes.containsKey(location.getHashString())) {
+                continue;
             }
-            final MapSqlParameterSource[] psArray = parameterSourcesList.toArray(new MapSqlParameterSource[0]);
-            jdbcTemplate.batchUpdate(INSERT_MAIN_ROWS, psArray);
-            LOGGER.info("Loaded {} records into table {}", recordCount.get(), TABLE_NAME);
-            final int secondRCount = lines.size();
-            lines.forEach(l -> {
-                // If there are alternate names, split them on comma and insert them in to the alternate name table.
-                final String[] names = l[3].split(",");
-                final String id = l[0].trim();
-                for (final String name : names) {
-                    final MapSqlParameterSource ps = new MapSqlParameterSource();
-                    ps.addValue("id", id);
-                    ps.addValue("name", name.trim());
-                    jdbcTemplate.update(INSERT_ALT_ROWS, ps);
-                }
-            });
-            LOGGER.info("Loaded {} records into table {}", secondRCount, ALT_NAME_TABLE_NAME);
-        } catch (final DataAccessException | IOException e) {
+            final List<LocationRequest> copies = new ArrayList<>();
+            for (final String soundAlike : index.find(name, phoneticCandidates)) {
+                copies.add(location.withPlaceName(soundAlike));
+            }
+            soundAlikes.put(location.getHashString(), copies);
+            requests.addAll(copies);
+        }
+        if (requests.isEmpty()) {
+            return Map.of();
+        }
+        final Map<String, Coordinates> soundAlikesFound = findAll(requests);
+        final Map<String, Coordinates> result = new HashMap<>();
+        soundAlikes.forEach((hash, copies) -> copies.stream().map(c -> soundAlikesFound.get(c.getHashString()))
+                .filter(Objects::nonNull).findFirst().ifPresent(c -> result.put(hash, c)));
+        return result;
+    }
+
+    /**
+     * Build the phonetic index from the names in the tables.
+     */
+    private synchronized void loadPhoneticIndex() {
+        final long start = System.currentTimeMillis();
+        final PhoneticIndex.Builder builder = PhoneticIndex.builder();
+        try {
+            jdbcTemplate.getJdbcTemplate().query(SELECT_NAME_KEYS, (RowCallbackHandler) rs ->
+                    builder.add(rs.getString(1)));
+        } catch (final DataAccessException e) {
             throw new InternalApplicationError(e);
         }
+        phoneticIndex = builder.build();
+        LOGGER.info("Built phonetic index of {} keys in {} ms", phoneticIndex.size(),
+                System.currentTimeMillis() - start);
     }
 
     /**
-     * Truncate the tables and re-load them from files.
+     * Combine the rows of a place matched by more than one name.
+     * @param place the place.
+     * @param other another row of the place.
+     * @return the place with the alternate names of both.
      */
-    public void reset() {
+    private static GeoNamesPlace mergeCandidates(final GeoNamesPlace place, final GeoNamesPlace other) {
+        if (other.hasAlternateNames()) {
+            place.setAlternateNames(place.hasAlternateNames() ? place.getAlternateNames() + "," +
+                    other.getAlternateNames() : other.getAlternateNames());
+        }
+        return place;
+    }
+
+    @Override
+    public void forEachPlace(final Consumer<GeoNamesPlace> consumer) {
+        checkTables();
         try {
-            jdbcTemplate.getJdbcTemplate().execute(TRUNCATE_TABLE);
-            jdbcTemplate.getJdbcTemplate().execute(TRUNCATE_ALT_TABLE);
-            tableFull = false;
-            loadRecords();
-            tableFull = true;
+            jdbcTemplate.getJdbcTemplate().query(SELECT_PLACES, (RowCallbackHandler) rs ->
+                    consumer.accept(candidateMapper.mapRow(rs, rs.getRow())));
         } catch (final DataAccessException e) {
             throw new InternalApplicationError(e);
         }
     }
+
+    /**
+     * Load the records from the text file into shadow tables and swap them in, so the live tables are either empty
+     * or complete even if the load fails or the application stops part way.
+     * @param location the location of the file.
+     */
+    private void loadRecords(final String location) {
+        shadowTables.prepare(TABLE_NAME, ALT_NAME_TABLE_NAME);
+        placeLoader.load(location, ShadowTables.shadowOf(TABLE_NAME), ShadowTables.shadowOf(ALT_NAME_TABLE_NAME));
+        shadowTables.swap(TABLE_NAME, ALT_NAME_TABLE_NAME);
+    }
+
+    /**
+     * Load the files into shadow tables and then swap them in, lookups are answered from the old rows until then.
+     */
+    @Override
+    public synchronized void reset() {
+        checkTables();
+        state = DatasetState.RELOADING;
+        try {
+            loadRecords(datahubLocationFileValue == null ? DEFAULT_DATAHUB_LOCATION_FILE :
+                    datahubLocationFileValue);
+            if (phoneticEnabled) {
+                loadPhoneticIndex();
+            }
+        } finally {
+            state = DatasetState.READY;
+        }
+    }
+
+    @Override
+    public synchronized Set<String> update(final PlaceUpdates updates) {
+        checkTables();
+        final Set<String> touchedNames = placeLoader.update(updates);
+        if (phoneticIndex != null) {
+            phoneticIndex = phoneticIndex.withNames(touchedNames);
+        }
+        return touchedNames;
+    }
 }
@@ -0,0 +1,143 @@
+package ca.umanitoba.libraries.georeferencing.index;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import ca.umanitoba.libraries.georeferencing.utils.NameNormalizer;
+
+/**
+ * Immutable map from a country and the name, abbreviation or ISO 3166-2 code of one of its first level
+ * administrative divisions to the GeoNames admin1 code of the division.
+ * <p>
+ * Names are normalized and their periods ignored, so "Ont." and "ont" are the same key. Names win over aliases and
+ * aliases over the admin1 codes themselves when keys collide.
+ * @author whikloj
+ */
+public class AdminCodeIndex {
+
+    private final Map<String, String> codes;
+
+    private final int size;
+
+    private AdminCodeIndex(final Map<String, String> codes, final int size) {
+        this.codes = codes;
+        this.size = size;
+    }
+
+    /**
+     * Get a new builder.
+     * @return the builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the number of divisions in the index.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of names, aliases and codes the divisions can be found by.
+     */
+    public int keyCount() {
+        return codes.size();
+    }
+
+    /**
+     * Find the admin1 code of a division.
+     * @param countryCode the ISO 3166 alpha-2 code of the country.
+     * @param name the name, abbreviation or ISO 3166-2 code (e.g. CA-MB) of the division.
+     * @return the admin1 code or null if there is none.
+     */
+    public String find(final String countryCode, final String name) {
+        final String key = keyOf(countryCode, name);
+        if (key == null) {
+            return null;
+        }
+        final String code = codes.get(key);
+        // An ISO 3166-2 code is the country code, a hyphen and the code of the division within it.
+        final String isoPrefix = countryCode.toLowerCase(Locale.ROOT) + "-";
+        final String division = key.substring(key.indexOf('|') + 1);
+        if (code == null && division.startsWith(isoPrefix) && division.length() > isoPrefix.length()) {
+            return codes.get(keyOf(countryCode, division.substring(isoPrefix.length())));
+        }
+        return code;
+    }
+
+    /**
+     * The key of a country and a division name.
+     */
+    private static String keyOf(final String countryCode, final String name) {
+        final String normalized = NameNormalizer.normalize(name);
+        if (countryCode == null || normalized == null) {
+            return null;
+        }
+        final String key = normalized.replace(".", "").trim();
+        return key.isEmpty() ? null : countryCode.toLowerCase(Locale.ROOT) + "|" + key;
+    }
+
+    /**
+     * Builder to accumulate divisions and aliases before freezing them into an index.
+     */
+    public static class Builder {
+
+        private final Map<String, String> names = new HashMap<>();
+        private final Map<String, String> aliases = new HashMap<>();
+        private final Map<String, String> codes = new HashMap<>();
+        private int size = 0;
+
+        private Builder() {
+            // Use AdminCodeIndex.builder()
+        }
+
+        /**
+         * Add a division by its name and code.
+         * @param countryCode the ISO 3166 alpha-2 code of the country.
+         * @param adminCode the admin1 code.
+         * @param name the name.
+         * @return this builder.
+         */
+        public Builder add(final String countryCode, final String adminCode, final String name) {
+            final String nameKey = keyOf(countryCode, name);
+            if (nameKey != null) {
+                size++;
+                names.putIfAbsent(nameKey, adminCode);
+            }
+            final String codeKey = keyOf(countryCode, adminCode);
+            if (codeKey != null) {
+                codes.putIfAbsent(codeKey, adminCode);
+            }
+            return this;
+        }
+
+        /**
+         * Add an abbreviation or other name for a division.
+         * @param countryCode the ISO 3166 alpha-2 code of the country.
+         * @param adminCode the admin1 code.
+         * @param alias the other name.
+         * @return this builder.
+         */
+        public Builder alias(final String countryCode, final String adminCode, final String alias) {
+            final String key = keyOf(countryCode, alias);
+            if (key != null) {
+                aliases.putIfAbsent(key, adminCode);
+            }
+            return this;
+        }
+
+        /**
+         * Freeze the builder into an index.
+         * @return the index.
+         */
+        public AdminCodeIndex build() {
+            final Map<String, String> all = new HashMap<>(codes);
+            all.putAll(aliases);
+            all.putAll(names);
+            return new AdminCodeIndex(Map.copyOf(all), size);
+        }
+    }
+}
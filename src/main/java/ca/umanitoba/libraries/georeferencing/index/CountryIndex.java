@@ -0,0 +1,137 @@
+package ca.umanitoba.libraries.georeferencing.index;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import ca.umanitoba.libraries.georeferencing.api.CountryCode;
+import ca.umanitoba.libraries.georeferencing.utils.NameNormalizer;
+
+/**
+ * Immutable map from the normalized name, ISO 3166 alpha-2, alpha-3 or numeric code, or an alias of a country to the
+ * country.
+ * <p>
+ * Names win over codes and codes over aliases when keys collide, so a country's own name always finds it.
+ * @author whikloj
+ */
+public class CountryIndex {
+
+    private final Map<String, CountryCode> countries;
+
+    private final int size;
+
+    private CountryIndex(final Map<String, CountryCode> countries, final int size) {
+        this.countries = countries;
+        this.size = size;
+    }
+
+    /**
+     * Get a new builder.
+     * @return the builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the number of countries in the index.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of names, codes and aliases the countries can be found by.
+     */
+    public int keyCount() {
+        return countries.size();
+    }
+
+    /**
+     * Find a country.
+     * @param nameOrCode the name, code or alias of the country.
+     * @return the country or null if there is none.
+     */
+    public CountryCode find(final String nameOrCode) {
+        final String key = keyOf(nameOrCode);
+        return key == null ? null : countries.get(key);
+    }
+
+    /**
+     * The key of a name or code, numeric codes lose their leading zeros so "036" and "36" are the same key.
+     */
+    private static String keyOf(final String nameOrCode) {
+        final String key = NameNormalizer.normalize(nameOrCode);
+        if (key == null || key.isEmpty()) {
+            return null;
+        }
+        return key.chars().allMatch(Character::isDigit) ? key.replaceFirst("^0+(?=.)", "") : key;
+    }
+
+    /**
+     * Builder to accumulate countries and aliases before freezing them into an index.
+     */
+    public static class Builder {
+
+        private final Map<String, CountryCode> names = new HashMap<>();
+        private final Map<String, CountryCode> codes = new HashMap<>();
+        private final Map<String, String> aliases = new HashMap<>();
+        private int size = 0;
+
+        private Builder() {
+            // Use CountryIndex.builder()
+        }
+
+        /**
+         * Add a country by its name and codes.
+         * @param country the country.
+         * @return this builder.
+         */
+        public Builder add(final CountryCode country) {
+            final String name = keyOf(country.getCountryName());
+            if (name == null) {
+                return this;
+            }
+            size++;
+            names.putIfAbsent(name, country);
+            for (final String code : new String[]{country.getIso3316Alpha2(), country.getIso3316Alpha3(),
+                    country.getIso3316Numeric()}) {
+                final String key = keyOf(code);
+                if (key != null) {
+                    codes.putIfAbsent(key, country);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Add another name for a country.
+         * @param alias the other name.
+         * @param target the name or code of the country.
+         * @return this builder.
+         */
+        public Builder alias(final String alias, final String target) {
+            final String key = keyOf(alias);
+            final String targetKey = keyOf(target);
+            if (key != null && targetKey != null) {
+                aliases.put(key, targetKey);
+            }
+            return this;
+        }
+
+        /**
+         * Freeze the builder into an index, aliases whose country is not in it are left out.
+         * @return the index.
+         */
+        public CountryIndex build() {
+            final Map<String, CountryCode> countries = new HashMap<>(codes);
+            countries.putAll(names);
+            aliases.forEach((alias, target) -> {
+                final CountryCode country = names.containsKey(target) ? names.get(target) : codes.get(target);
+                if (country != null) {
+                    countries.putIfAbsent(alias, country);
+                }
+            });
+            return new CountryIndex(Map.copyOf(countries), size);
+        }
+    }
+}
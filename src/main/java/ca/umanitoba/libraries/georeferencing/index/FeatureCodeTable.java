@@ -0,0 +1,209 @@
+package ca.umanitoba.libraries.georeferencing.index;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import ca.umanitoba.libraries.georeferencing.exceptions.InternalApplicationError;
+
+/**
+ * Immutable table of GeoNames feature classes and codes, each given a small integer id so a row of an index can hold
+ * its feature as a short instead of two strings.
+ * <p>
+ * Ids are given in the order features are added. The codes of each class are kept sorted to find an id by binary
+ * search, without allocating.
+ * @author whikloj
+ */
+public class FeatureCodeTable {
+
+    /**
+     * Feature classes are single ASCII characters, any other class has no features.
+     */
+    private static final int CLASS_LIMIT = 128;
+
+    private final int size;
+    private final char[] featureClasses;
+    private final String[] codes;
+    private final String[] names;
+    private final String[] descriptions;
+
+    /**
+     * Features sorted by class then code, the features of class c start at classStarts[c].
+     */
+    private final String[] sortedCodes;
+    private final short[] sortedIds;
+    private final int[] classStarts;
+
+    private FeatureCodeTable(final Builder builder) {
+        size = builder.size;
+        featureClasses = Arrays.copyOf(builder.featureClasses, size);
+        codes = Arrays.copyOf(builder.codes, size);
+        names = Arrays.copyOf(builder.names, size);
+        descriptions = Arrays.copyOf(builder.descriptions, size);
+        final Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> featureClasses[a] != featureClasses[b] ?
+                Character.compare(featureClasses[a], featureClasses[b]) : codes[a].compareTo(codes[b]));
+        sortedCodes = new String[size];
+        sortedIds = new short[size];
+        classStarts = new int[CLASS_LIMIT + 1];
+        for (int i = 0; i < size; i++) {
+            sortedCodes[i] = codes[order[i]];
+            sortedIds[i] = (short) (int) order[i];
+            classStarts[featureClasses[order[i]] + 1]++;
+        }
+        for (int c = 0; c < CLASS_LIMIT; c++) {
+            classStarts[c + 1] += classStarts[c];
+        }
+    }
+
+    /**
+     * Get a new builder.
+     * @return the builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the number of features in the table.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Find the id of a feature.
+     * @param featureClass the feature class.
+     * @param code the feature code.
+     * @return the id or -1 if the feature is not in the table.
+     */
+    public int idOf(final char featureClass, final String code) {
+        if (featureClass >= CLASS_LIMIT || code == null) {
+            return -1;
+        }
+        int low = classStarts[featureClass];
+        int high = classStarts[featureClass + 1] - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final int compared = sortedCodes[middle].compareTo(code);
+            if (compared < 0) {
+                low = middle + 1;
+            } else if (compared > 0) {
+                high = middle - 1;
+            } else {
+                return sortedIds[middle];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param id the id of a feature.
+     * @return the feature class.
+     */
+    public char getFeatureClass(final int id) {
+        return featureClasses[id];
+    }
+
+    /**
+     * @param id the id of a feature.
+     * @return the feature code.
+     */
+    public String getCode(final int id) {
+        return codes[id];
+    }
+
+    /**
+     * @param id the id of a feature.
+     * @return the name of the feature, or null if it was added without one.
+     */
+    public String getName(final int id) {
+        return names[id];
+    }
+
+    /**
+     * @param id the id of a feature.
+     * @return the description of the feature, or null if it was added without one.
+     */
+    public String getDescription(final int id) {
+        return descriptions[id];
+    }
+
+    /**
+     * Builder to accumulate features before freezing them into a table.
+     */
+    public static class Builder {
+
+        private int size = 0;
+        private char[] featureClasses = new char[64];
+        private String[] codes = new String[64];
+        private String[] names = new String[64];
+        private String[] descriptions = new String[64];
+        private final Map<String, Integer> ids = new HashMap<>();
+
+        private Builder() {
+            // Use FeatureCodeTable.builder()
+        }
+
+        /**
+         * Add a feature, if it is not in the table yet.
+         * @param featureClass the feature class, only ASCII classes have features.
+         * @param code the feature code, null is kept as an empty code.
+         * @return the id of the feature.
+         */
+        public int add(final char featureClass, final String code) {
+            return add(featureClass, code, null, null);
+        }
+
+        /**
+         * Add a feature with its name and description, if it is not in the table yet.
+         * @param featureClass the feature class, only ASCII classes have features.
+         * @param code the feature code, null is kept as an empty code.
+         * @param name the name of the feature.
+         * @param description the description of the feature.
+         * @return the id of the feature.
+         */
+        public int add(final char featureClass, final String code, final String name, final String description) {
+            if (featureClass >= CLASS_LIMIT) {
+                throw new InternalApplicationError(String.format("Feature class (%s) is not ASCII", featureClass));
+            }
+            final String value = code == null ? "" : code;
+            final Integer existing = ids.get(featureClass + value);
+            if (existing != null) {
+                return existing;
+            }
+            if (size == Short.MAX_VALUE) {
+                throw new InternalApplicationError(String.format("More than %d features", (int) Short.MAX_VALUE));
+            }
+            if (size == codes.length) {
+                grow();
+            }
+            final int id = size++;
+            featureClasses[id] = featureClass;
+            codes[id] = value;
+            names[id] = name;
+            descriptions[id] = description;
+            ids.put(featureClass + value, id);
+            return id;
+        }
+
+        /**
+         * Freeze the builder into a table.
+         * @return the table.
+         */
+        public FeatureCodeTable build() {
+            return new FeatureCodeTable(this);
+        }
+
+        private void grow() {
+            final int capacity = codes.length * 2;
+            featureClasses = Arrays.copyOf(featureClasses, capacity);
+            codes = Arrays.copyOf(codes, capacity);
+            names = Arrays.copyOf(names, capacity);
+            descriptions = Arrays.copyOf(descriptions, capacity);
+        }
+    }
+}
@@ -0,0 +1,483 @@
+package ca.umanitoba.libraries.georeferencing.index;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.IntPredicate;
+
+import ca.umanitoba.libraries.georeferencing.GeoNamesPlace;
+import ca.umanitoba.libraries.georeferencing.LocationRequest;
+import ca.umanitoba.libraries.georeferencing.utils.NameNormalizer;
+
+/**
+ * Immutable in-memory index of GeoNames places.
+ * <p>
+ * Each place is stored as a row across primitive column arrays, and normalized names map to the rows with that
+ * name. Alternate names are mapped separately and only searched when no place has the name as its own. Features
+ * are stored as ids into a {@link FeatureCodeTable}.
+ * Coordinates are stored as fixed point integers with seven decimal places.
+ * @author whikloj
+ */
+public class GazetteerIndex {
+
+    private static final double COORDINATE_SCALE = 1e7;
+
+    private static final int[] NO_ROWS = new int[0];
+
+    private final int size;
+    private final int[] geonamesIds;
+    private final int[] latitudes;
+    private final int[] longitudes;
+    private final short[] featureIds;
+    private final FeatureCodeTable featureCodes;
+    private final boolean[] cityFeatures;
+    private final boolean[] adminFeatures;
+    private final String[] countryCodes;
+    private final String[] adminCodes1;
+    private final long[] populations;
+    private final String[] rowNames;
+    private final String[] writtenNames;
+    private final Map<String, int[]> names;
+    private final Map<String, int[]> alternateNames;
+
+    /**
+     * GeoNames ids in the high half and rows in the low half, sorted. Built on first use.
+     */
+    private volatile long[] idIndex;
+
+    private GazetteerIndex(final Builder builder) {
+        size = builder.size;
+        geonamesIds = Arrays.copyOf(builder.geonamesIds, size);
+        latitudes = Arrays.copyOf(builder.latitudes, size);
+        longitudes = Arrays.copyOf(builder.longitudes, size);
+        featureIds = Arrays.copyOf(builder.featureIds, size);
+        featureCodes = builder.featureCodes.build();
+        cityFeatures = new boolean[featureCodes.size()];
+        adminFeatures = new boolean[featureCodes.size()];
+        for (int id = 0; id < featureCodes.size(); id++) {
+            final String code = featureCodes.getCode(id);
+            cityFeatures[id] = featureCodes.getFeatureClass(id) == 'P' && isCityFeature(code);
+            adminFeatures[id] = featureCodes.getFeatureClass(id) == 'A' && code.startsWith("ADM");
+        }
+        countryCodes = Arrays.copyOf(builder.countryCodes, size);
+        adminCodes1 = Arrays.copyOf(builder.adminCodes1, size);
+        populations = Arrays.copyOf(builder.populations, size);
+        rowNames = Arrays.copyOf(builder.rowNames, size);
+        writtenNames = Arrays.copyOf(builder.writtenNames, size);
+        names = trim(builder.names);
+        alternateNames = trim(builder.alternateNames);
+    }
+
+    /**
+     * Get a new builder.
+     * @return the builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the number of places in the index.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Find the place for a location request, using its city if it has one and its province otherwise.
+     * @param location the location request.
+     * @param adminCode1 the admin1 code of the location's province, or null to match a city in any province.
+     * @return the row of the place or -1 if none match.
+     */
+    public int findLocation(final LocationRequest location, final String adminCode1) {
+        return findLocation(location, adminCode1, null);
+    }
+
+    /**
+     * Find the place for a location request, skipping some places.
+     * @param location the location request.
+     * @param adminCode1 the admin1 code of the location's province, or null to match a city in any province.
+     * @param excluded GeoNames ids to skip, or null to skip none.
+     * @return the row of the place or -1 if none match.
+     */
+    public int findLocation(final LocationRequest location, final String adminCode1, final IntPredicate excluded) {
+        if (location.getCity() != null) {
+            return findCity(location.getCity(), location.getIso3361Alpha2(), adminCode1, excluded);
+        } else if (location.getProvince() != null) {
+            return findAdminDivision(location.getProvince(), location.getIso3361Alpha2(), excluded);
+        }
+        return -1;
+    }
+
+    /**
+     * Find the most populous populated place (PPL, PPLC or PPLA*) with the name.
+     * @param name the city name.
+     * @param countryCode the ISO-3166 alpha 2 country code or null for any country.
+     * @param adminCode1 the admin1 code or null for any.
+     * @return the row of the place or -1 if none match.
+     */
+    public int findCity(final String name, final String countryCode, final String adminCode1) {
+        return findCity(name, countryCode, adminCode1, null);
+    }
+
+    /**
+     * Find the most populous populated place (PPL, PPLC or PPLA*) with the name, skipping some places.
+     * @param name the city name.
+     * @param countryCode the ISO-3166 alpha 2 country code or null for any country.
+     * @param adminCode1 the admin1 code or null for any.
+     * @param excluded GeoNames ids to skip, or null to skip none.
+     * @return the row of the place or -1 if none match.
+     */
+    public int findCity(final String name, final String countryCode, final String adminCode1,
+                        final IntPredicate excluded) {
+        final String key = NameNormalizer.normalize(name);
+        final int best = bestCity(names.get(key), countryCode, adminCode1, excluded);
+        return best >= 0 ? best : bestCity(alternateNames.get(key), countryCode, adminCode1, excluded);
+    }
+
+    /**
+     * Find the most populous administrative division (ADM*) with the name.
+     * @param name the division name.
+     * @param countryCode the ISO-3166 alpha 2 country code or null for any country.
+     * @return the row of the division or -1 if none match.
+     */
+    public int findAdminDivision(final String name, final String countryCode) {
+        return findAdminDivision(name, countryCode, null);
+    }
+
+    /**
+     * Find the most populous administrative division (ADM*) with the name, skipping some places.
+     * @param name the division name.
+     * @param countryCode the ISO-3166 alpha 2 country code or null for any country.
+     * @param excluded GeoNames ids to skip, or null to skip none.
+     * @return the row of the division or -1 if none match.
+     */
+    public int findAdminDivision(final String name, final String countryCode, final IntPredicate excluded) {
+        final String key = NameNormalizer.normalize(name);
+        final int best = bestAdminDivision(names.get(key), countryCode, excluded);
+        return best >= 0 ? best : bestAdminDivision(alternateNames.get(key), countryCode, excluded);
+    }
+
+    /**
+     * Find the place for a location request among a few candidates with the rules of an index, without building one.
+     * @param candidates the places to choose from, ties go to the first.
+     * @param location the location request.
+     * @param adminCode1 the admin1 code of the location's province, or null to match a city in any province.
+     * @return the place or null if none match.
+     */
+    public static GeoNamesPlace findLocation(final List<GeoNamesPlace> candidates, final LocationRequest location,
+                                             final String adminCode1) {
+        final boolean city = location.getCity() != null;
+        final String key = NameNormalizer.normalize(city ? location.getCity() : location.getProvince());
+        if (key == null) {
+            return null;
+        }
+        GeoNamesPlace best = null;
+        GeoNamesPlace bestAlternate = null;
+        for (final GeoNamesPlace place : candidates) {
+            final String feature = place.getFeature() == null ? "" : place.getFeature();
+            final boolean wanted = city ? "P".equals(place.getFeatureClass()) && isCityFeature(feature) :
+                    "A".equals(place.getFeatureClass()) && feature.startsWith("ADM");
+            if (!wanted || !matches(place.getCountryCode(), location.getIso3361Alpha2()) ||
+                    (city && !matches(place.getAdminCode1(), adminCode1))) {
+                continue;
+            }
+            if (key.equals(NameNormalizer.normalize(place.getName()))) {
+                if (best == null || place.getPopulation() > best.getPopulation()) {
+                    best = place;
+                }
+            } else if (best == null && hasAlternateName(place, key) &&
+                    (bestAlternate == null || place.getPopulation() > bestAlternate.getPopulation())) {
+                bestAlternate = place;
+            }
+        }
+        return best != null ? best : bestAlternate;
+    }
+
+    /**
+     * @param row the row.
+     * @return the GeoNames id of the row.
+     */
+    public int getGeonamesId(final int row) {
+        return geonamesIds[row];
+    }
+
+    /**
+     * Find the row of a place by its id.
+     * @param geonamesId the GeoNames id.
+     * @return the row or -1 if the place is not in the index.
+     */
+    public int findRow(final int geonamesId) {
+        long[] index = idIndex;
+        if (index == null) {
+            index = new long[size];
+            for (int row = 0; row < size; row++) {
+                index[row] = ((long) geonamesIds[row] << 32) | row;
+            }
+            Arrays.sort(index);
+            idIndex = index;
+        }
+        final int found = Arrays.binarySearch(index, (long) geonamesId << 32);
+        final int position = found >= 0 ? found : -found - 1;
+        if (position < index.length && (int) (index[position] >>> 32) == geonamesId) {
+            return (int) index[position];
+        }
+        return -1;
+    }
+
+    /**
+     * @param row the row.
+     * @return the normalized name of the row.
+     */
+    public String getName(final int row) {
+        return rowNames[row];
+    }
+
+    /**
+     * @param row the row.
+     * @return the name of the row as it is written.
+     */
+    public String getWrittenName(final int row) {
+        return writtenNames[row];
+    }
+
+    /**
+     * @param row the row.
+     * @return the latitude of the row.
+     */
+    public double getLatitude(final int row) {
+        return latitudes[row] / COORDINATE_SCALE;
+    }
+
+    /**
+     * @param row the row.
+     * @return the longitude of the row.
+     */
+    public double getLongitude(final int row) {
+        return longitudes[row] / COORDINATE_SCALE;
+    }
+
+    /**
+     * @param row the row.
+     * @return the feature class of the row.
+     */
+    public char getFeatureClass(final int row) {
+        return featureCodes.getFeatureClass(featureIds[row]);
+    }
+
+    /**
+     * @param row the row.
+     * @return the feature code of the row.
+     */
+    public String getFeature(final int row) {
+        return featureCodes.getCode(featureIds[row]);
+    }
+
+    /**
+     * @param row the row.
+     * @return the country code of the row.
+     */
+    public String getCountryCode(final int row) {
+        return countryCodes[row];
+    }
+
+    /**
+     * @param row the row.
+     * @return the admin1 code of the row.
+     */
+    public String getAdminCode1(final int row) {
+        return adminCodes1[row];
+    }
+
+    /**
+     * @param row the row.
+     * @return the population of the row.
+     */
+    public long getPopulation(final int row) {
+        return populations[row];
+    }
+
+    /**
+     * @param row the row.
+     * @param name a name.
+     * @return true if the name is the row's own name rather than one of its alternate names.
+     */
+    public boolean isPrimaryName(final int row, final String name) {
+        return rowNames[row] != null && rowNames[row].equals(NameNormalizer.normalize(name));
+    }
+
+    private int bestCity(final int[] rows, final String countryCode, final String adminCode1,
+                         final IntPredicate excluded) {
+        int best = -1;
+        for (final int row : rows == null ? NO_ROWS : rows) {
+            if (cityFeatures[featureIds[row]] && isIncluded(row, excluded) &&
+                    matches(countryCodes[row], countryCode) && matches(adminCodes1[row], adminCode1) &&
+                    (best == -1 || populations[row] > populations[best])) {
+                best = row;
+            }
+        }
+        return best;
+    }
+
+    private int bestAdminDivision(final int[] rows, final String countryCode, final IntPredicate excluded) {
+        int best = -1;
+        for (final int row : rows == null ? NO_ROWS : rows) {
+            if (adminFeatures[featureIds[row]] && isIncluded(row, excluded) &&
+                    matches(countryCodes[row], countryCode) &&
+                    (best == -1 || populations[row] > populations[best])) {
+                best = row;
+            }
+        }
+        return best;
+    }
+
+    private boolean isIncluded(final int row, final IntPredicate excluded) {
+        return excluded == null || !excluded.test(geonamesIds[row]);
+    }
+
+    /**
+     * Copy the rows of each name into an array of their own length.
+     */
+    private static Map<String, int[]> trim(final Map<String, RowList> lists) {
+        final Map<String, int[]> trimmed = new HashMap<>(lists.size() * 4 / 3 + 1);
+        lists.forEach((name, list) -> trimmed.put(name, Arrays.copyOf(list.rows, list.size)));
+        return trimmed;
+    }
+
+    private static boolean isCityFeature(final String feature) {
+        return feature.equals("PPL") || feature.equals("PPLC") || feature.startsWith("PPLA");
+    }
+
+    private static boolean hasAlternateName(final GeoNamesPlace place, final String key) {
+        for (final String alternateName : place.getAlternateNameList()) {
+            if (key.equals(NameNormalizer.normalize(alternateName))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matches(final String value, final String required) {
+        return required == null || required.equalsIgnoreCase(value);
+    }
+
+    /**
+     * The rows of a name while building, grown by doubling.
+     */
+    private static class RowList {
+        private int[] rows = new int[1];
+        private int size = 0;
+
+        /**
+         * Add a row, unless it is the last one added.
+         */
+        private void add(final int row) {
+            if (size > 0 && rows[size - 1] == row) {
+                return;
+            }
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            rows[size++] = row;
+        }
+    }
+
+    /**
+     * Builder to accumulate places before freezing them into an index.
+     */
+    public static class Builder {
+
+        private int size = 0;
+        private int[] geonamesIds = new int[1024];
+        private int[] latitudes = new int[1024];
+        private int[] longitudes = new int[1024];
+        private short[] featureIds = new short[1024];
+        private final FeatureCodeTable.Builder featureCodes = FeatureCodeTable.builder();
+        private String[] countryCodes = new String[1024];
+        private String[] adminCodes1 = new String[1024];
+        private long[] populations = new long[1024];
+        private String[] rowNames = new String[1024];
+        private String[] writtenNames = new String[1024];
+        private final Map<String, RowList> names = new HashMap<>();
+        private final Map<String, RowList> alternateNames = new HashMap<>();
+        private final Map<String, String> codes = new HashMap<>();
+
+        private Builder() {
+            // Use GazetteerIndex.builder()
+        }
+
+        /**
+         * Add a place to the index.
+         * @param place the place.
+         * @return this builder.
+         */
+        public Builder add(final GeoNamesPlace place) {
+            if (size == geonamesIds.length) {
+                grow();
+            }
+            final int row = size++;
+            geonamesIds[row] = place.getGeonamesId();
+            latitudes[row] = (int) Math.round(place.getLatitude() * COORDINATE_SCALE);
+            longitudes[row] = (int) Math.round(place.getLongitude() * COORDINATE_SCALE);
+            featureIds[row] = (short) featureCodes.add(place.getFeatureClass().isEmpty() ? ' ' :
+                    place.getFeatureClass().charAt(0), place.getFeature());
+            countryCodes[row] = intern(place.getCountryCode());
+            adminCodes1[row] = intern(place.getAdminCode1());
+            populations[row] = place.getPopulation();
+            rowNames[row] = addName(names, place.getName(), row);
+            writtenNames[row] = Objects.equals(rowNames[row], place.getName()) ? rowNames[row] : place.getName();
+            for (final String alternateName : place.getAlternateNameList()) {
+                if (!Objects.equals(rowNames[row], NameNormalizer.normalize(alternateName))) {
+                    addName(alternateNames, alternateName, row);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Freeze the builder into an index.
+         * @return the index.
+         */
+        public GazetteerIndex build() {
+            return new GazetteerIndex(this);
+        }
+
+        /**
+         * Map a name to a row.
+         * @param map the names or alternate names.
+         * @return the normalized name, the same instance for every row with the name.
+         */
+        private String addName(final Map<String, RowList> map, final String name, final int row) {
+            final String key = NameNormalizer.normalize(name);
+            if (key == null || key.isEmpty()) {
+                return key;
+            }
+            final String shared = intern(key);
+            map.computeIfAbsent(shared, k -> new RowList()).add(row);
+            return shared;
+        }
+
+        /**
+         * Share one instance of repeated short codes across rows.
+         */
+        private String intern(final String code) {
+            final String existing = codes.putIfAbsent(code, code);
+            return existing == null ? code : existing;
+        }
+
+        private void grow() {
+            final int capacity = geonamesIds.length * 2;
+            geonamesIds = Arrays.copyOf(geonamesIds, capacity);
+            latitudes = Arrays.copyOf(latitudes, capacity);
+            longitudes = Arrays.copyOf(longitudes, capacity);
+            featureIds = Arrays.copyOf(featureIds, capacity);
+            countryCodes = Arrays.copyOf(countryCodes, capacity);
+            adminCodes1 = Arrays.copyOf(adminCodes1, capacity);
+            populations = Arrays.copyOf(populations, capacity);
+            rowNames = Arrays.copyOf(rowNames, capacity);
+            writtenNames = Arrays.copyOf(writtenNames, capacity);
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package ca.umanitoba.libraries.georeferencing.index;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+import java.util.stream.Collectors;
+
+import ca.umanitoba.libraries.georeferencing.Coordinates;
+import ca.umanitoba.libraries.georeferencing.GeoNamesPlace;
+import ca.umanitoba.libraries.georeferencing.LocationRequest;
+import ca.umanitoba.libraries.georeferencing.ingest.PlaceUpdates;
+import ca.umanitoba.libraries.georeferencing.utils.NameNormalizer;
+
+/**
+ * Immutable view of a full {@link GazetteerIndex} with the places changed since it was built layered on top.
+ * <p>
+ * Changed places live in a small index of their own and their rows in the full index are hidden, so applying a
+ * day of changes only costs as much as the changes. Alternate names added to places of the full index are held in a
+ * second small index, and alternate names removed from them are hidden by name.
+ * @author whikloj
+ */
+public class LayeredGazetteer {
+
+    private final GazetteerIndex base;
+    private final Map<Integer, GeoNamesPlace> changedPlaces;
+    private final GazetteerIndex changes;
+    private final Map<Integer, GeoNamesPlace> addedNamePlaces;
+    private final GazetteerIndex addedNames;
+    private final Set<Integer> hidden;
+    private final Map<String, Set<Integer>> removedNames;
+    private final Set<String> countryCodes;
+
+    /**
+     * Constructor.
+     * @param base the full index.
+     */
+    public LayeredGazetteer(final GazetteerIndex base) {
+        this(base, Collections.emptyMap(), Collections.emptyMap(), Collections.emptySet(), Collections.emptyMap(),
+                null);
+    }
+
+    private LayeredGazetteer(final GazetteerIndex base, final Map<Integer, GeoNamesPlace> changedPlaces,
+                             final Map<Integer, GeoNamesPlace> addedNamePlaces, final Set<Integer> hidden,
+                             final Map<String, Set<Integer>> removedNames, final Set<String> countryCodes) {
+        this.base = base;
+        this.changedPlaces = changedPlaces;
+        this.addedNamePlaces = addedNamePlaces;
+        this.hidden = hidden;
+        this.removedNames = removedNames;
+        this.countryCodes = countryCodes;
+        this.changes = indexOf(changedPlaces);
+        this.addedNames = indexOf(addedNamePlaces);
+    }
+
+    /**
+     * @return the full index this view was built on.
+     */
+    public GazetteerIndex getBase() {
+        return base;
+    }
+
+    /**
+     * @return the number of places in the view.
+     */
+    public int size() {
+        return base.size() - hidden.size() + changedPlaces.size();
+    }
+
+    /**
+     * Find the place for a location request across all layers, preferring places with the name as their own over
+     * places with it as an alternate name, then the most populous.
+     * @param location the location request.
+     * @param adminCode1 the admin1 code of the location's province, or null to match a city in any province.
+     * @return the coordinates or null if none match.
+     */
+    public Coordinates findLocation(final LocationRequest location, final String adminCode1) {
+        final String name = location.getCity() != null ? location.getCity() : location.getProvince();
+        if (name == null) {
+            return null;
+        }
+        final Set<Integer> removed = removedNames.get(NameNormalizer.normalize(name));
+        final IntPredicate excluded;
+        if (removed == null) {
+            excluded = hidden.isEmpty() ? null : hidden::contains;
+        } else {
+            excluded = id -> hidden.contains(id) || removed.contains(id);
+        }
+        GazetteerIndex bestIndex = base;
+        int best = base.findLocation(location, adminCode1, excluded);
+        for (final GazetteerIndex layer : Arrays.asList(changes, addedNames)) {
+            final int row = layer.findLocation(location, adminCode1, layer == changes ? null : excluded);
+            if (row >= 0 && (best < 0 || isBetter(layer, row, bestIndex, best, name))) {
+                bestIndex = layer;
+                best = row;
+            }
+        }
+        return best < 0 ? null : new Coordinates(bestIndex.getLatitude(best), bestIndex.getLongitude(best));
+    }
+
+    /**
+     * Pass each place of the view, without its alternate names.
+     * @param consumer receives the places.
+     */
+    public void forEachPlace(final Consumer<GeoNamesPlace> consumer) {
+        for (int row = 0; row < base.size(); row++) {
+            if (!hidden.contains(base.getGeonamesId(row))) {
+                consumer.accept(placeOf(base, row));
+            }
+        }
+        for (int row = 0; row < changes.size(); row++) {
+            consumer.accept(placeOf(changes, row));
+        }
+    }
+
+    /**
+     * Apply a day of changes. Modified places are only applied to countries already in the index, and not over a
+     * newer change to the same place.
+     * @param updates the changes.
+     * @param touchedNames receives the normalized names the changed places had before and after the changes.
+     * @return a new view with the changes.
+     */
+    public LayeredGazetteer withUpdates(final PlaceUpdates updates, final Set<String> touchedNames) {
+        final Set<String> countries = countryCodes != null ? countryCodes : baseCountryCodes();
+        final Map<Integer, GeoNamesPlace> places = new HashMap<>(changedPlaces);
+        final Map<Integer, GeoNamesPlace> named = new HashMap<>(addedNamePlaces);
+        final Set<Integer> hide = new HashSet<>(hidden);
+        final Map<String, Set<Integer>> removed = new HashMap<>(removedNames);
+        for (final GeoNamesPlace place : updates.getModified().values()) {
+            final GeoNamesPlace previous = places.get(place.getGeonamesId());
+            if (!countries.contains(place.getCountryCode()) || (previous != null &&
+                    LocalDate.parse(previous.getLastModified()).isAfter(LocalDate.parse(place.getLastModified())))) {
+                continue;
+            }
+            touchPrevious(place.getGeonamesId(), previous, touchedNames);
+            PlaceUpdates.addName(touchedNames, place.getName());
+            places.put(place.getGeonamesId(), place);
+            named.remove(place.getGeonamesId());
+            if (base.findRow(place.getGeonamesId()) >= 0) {
+                hide.add(place.getGeonamesId());
+            }
+        }
+        for (final int id : updates.getDeleted()) {
+            touchPrevious(id, places.remove(id), touchedNames);
+            named.remove(id);
+            if (base.findRow(id) >= 0) {
+                hide.add(id);
+            }
+        }
+        for (final PlaceUpdates.AlternateName alternateName : updates.getAddedAlternateNames()) {
+            final int id = alternateName.getGeonamesId();
+            final String key = NameNormalizer.normalize(alternateName.getName());
+            if (places.containsKey(id)) {
+                places.put(id, withAlternateNames(places.get(id), addName(places.get(id), alternateName.getName())));
+            } else if (base.findRow(id) >= 0 && !hide.contains(id)) {
+                final GeoNamesPlace place = named.containsKey(id) ? named.get(id) : placeOf(base, base.findRow(id));
+                named.put(id, withAlternateNames(place, addName(place, alternateName.getName())));
+                if (removed.containsKey(key)) {
+                    final Set<Integer> ids = new HashSet<>(removed.get(key));
+                    ids.remove(id);
+                    removed.put(key, ids);
+                }
+            }
+        }
+        for (final PlaceUpdates.AlternateName alternateName : updates.getDeletedAlternateNames()) {
+            final int id = alternateName.getGeonamesId();
+            final String key = NameNormalizer.normalize(alternateName.getName());
+            if (places.containsKey(id)) {
+                places.put(id, withAlternateNames(places.get(id), removeName(places.get(id), key)));
+            } else if (base.findRow(id) >= 0 && !hide.contains(id)) {
+                if (named.containsKey(id)) {
+                    named.put(id, withAlternateNames(named.get(id), removeName(named.get(id), key)));
+                }
+                final Set<Integer> ids = new HashSet<>(removed.getOrDefault(key, Collections.emptySet()));
+                ids.add(id);
+                removed.put(key, ids);
+            }
+        }
+        return new LayeredGazetteer(base, places, named, hide, removed, countries);
+    }
+
+    /**
+     * Add the name a place had before a change.
+     */
+    private void touchPrevious(final int geonamesId, final GeoNamesPlace previous, final Set<String> touchedNames) {
+        if (previous != null) {
+            PlaceUpdates.addName(touchedNames, previous.getName());
+        } else {
+            final int row = base.findRow(geonamesId);
+            if (row >= 0 && !hidden.contains(geonamesId)) {
+                PlaceUpdates.addName(touchedNames, base.getName(row));
+            }
+        }
+    }
+
+    private Set<String> baseCountryCodes() {
+        final Set<String> codes = new HashSet<>();
+        for (int row = 0; row < base.size(); row++) {
+            codes.add(base.getCountryCode(row));
+        }
+        return codes;
+    }
+
+    /**
+     * Recreate the place of a row of an index, without its alternate names.
+     */
+    private static GeoNamesPlace placeOf(final GazetteerIndex index, final int row) {
+        final GeoNamesPlace place = new GeoNamesPlace();
+        place.setGeonamesId(index.getGeonamesId(row));
+        place.setName(index.getWrittenName(row));
+        place.setLatitude(index.getLatitude(row));
+        place.setLongitude(index.getLongitude(row));
+        place.setFeatureClass(String.valueOf(index.getFeatureClass(row)));
+        place.setFeature(index.getFeature(row));
+        place.setCountryCode(index.getCountryCode(row));
+        place.setAdminCode1(index.getAdminCode1(row));
+        place.setPopulation(index.getPopulation(row));
+        return place;
+    }
+
+    /**
+     * Is a match better than the current best, by whether the name is its own and then by population.
+     */
+    private static boolean isBetter(final GazetteerIndex index, final int row, final GazetteerIndex bestIndex,
+                                    final int best, final String name) {
+        final boolean primary = index.isPrimaryName(row, name);
+        final boolean bestPrimary = bestIndex.isPrimaryName(best, name);
+        if (primary != bestPrimary) {
+            return primary;
+        }
+        return index.getPopulation(row) > bestIndex.getPopulation(best);
+    }
+
+    private static GazetteerIndex indexOf(final Map<Integer, GeoNamesPlace> places) {
+        final GazetteerIndex.Builder builder = GazetteerIndex.builder();
+        places.values().forEach(builder::add);
+        return builder.build();
+    }
+
+    private static String addName(final GeoNamesPlace place, final String name) {
+        return place.hasAlternateNames() ? place.getAlternateNames() + "," + name : name;
+    }
+
+    private static String removeName(final GeoNamesPlace place, final String key) {
+        return Arrays.stream(place.getAlternateNameList()).filter(n -> !key.equals(NameNormalizer.normalize(n)))
+                .collect(Collectors.joining(","));
+    }
+
+    /**
+     * Copy the indexed parts of a place with new alternate names, places may be shared with earlier views.
+     */
+    private static GeoNamesPlace withAlternateNames(final GeoNamesPlace place, final String alternateNames) {
+        final GeoNamesPlace copy = new GeoNamesPlace();
+        copy.setGeonamesId(place.getGeonamesId());
+        copy.setName(place.getName());
+        copy.setAlternateNames(alternateNames);
+        copy.setLatitude(place.getLatitude());
+        copy.setLongitude(place.getLongitude());
+        copy.setFeatureClass(place.getFeatureClass());
+        copy.setFeature(place.getFeature());
+        copy.setCountryCode(place.getCountryCode());
+        copy.setAdminCode1(place.getAdminCode1());
+        copy.setPopulation(place.getPopulation());
+        copy.setLastModified(place.getLastModified());
+        return copy;
+    }
+}
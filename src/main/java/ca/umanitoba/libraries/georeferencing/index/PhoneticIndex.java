@@ -0,0 +1,183 @@
+package ca.umanitoba.libraries.georeferencing.index;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import ca.umanitoba.libraries.georeferencing.utils.NameNormalizer;
+import org.apache.commons.codec.language.DoubleMetaphone;
+
+/**
+ * Immutable multimap from the Double Metaphone key of a name to the normalized names which sound like it.
+ * <p>
+ * The key of a name is the code of each of its words joined by spaces. Names are filed under both their primary and
+ * alternate keys so a lookup by the primary key of the requested name is a single hash lookup.
+ * <p>
+ * Names added after the index is built are kept in a small map of their own which is searched alongside it, as
+ * {@link LayeredGazetteer} does for places, so a day of changes does not copy the whole index.
+ * @author whikloj
+ */
+public class PhoneticIndex {
+
+    private static final int MAX_CODE_LENGTH = 6;
+
+    private static final String[] NO_NAMES = new String[0];
+
+    private final Map<String, String[]> names;
+
+    private final Map<String, String[]> added;
+
+    private PhoneticIndex(final Map<String, String[]> names, final Map<String, String[]> added) {
+        this.names = names;
+        this.added = added;
+    }
+
+    /**
+     * Get a new builder.
+     * @return the builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the number of distinct keys in the index.
+     */
+    public int size() {
+        return names.size() + (int) added.keySet().stream().filter(k -> !names.containsKey(k)).count();
+    }
+
+    /**
+     * Find the names which sound like a name.
+     * @param name the name, it is normalized first.
+     * @param limit the maximum number of names.
+     * @return the other normalized names with the same key, closest in spelling first.
+     */
+    public List<String> find(final String name, final int limit) {
+        final String normalized = NameNormalizer.normalize(name);
+        final String key = keyOf(normalized, false);
+        if (key == null) {
+            return List.of();
+        }
+        return Stream.concat(Arrays.stream(names.getOrDefault(key, NO_NAMES)),
+                Arrays.stream(added.getOrDefault(key, NO_NAMES)))
+                .filter(n -> !n.equals(normalized))
+                .distinct()
+                .sorted(Comparator.comparingInt((String n) ->
+                        TrigramIndex.editDistance(normalized, n, Integer.MAX_VALUE - 1)).thenComparing(n -> n))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Copy the index with more names, sharing the names it was built with.
+     * @param moreNames the names to add.
+     * @return the new index.
+     */
+    public PhoneticIndex withNames(final Collection<String> moreNames) {
+        final Builder builder = new Builder(added);
+        moreNames.forEach(builder::add);
+        return new PhoneticIndex(names, builder.freeze());
+    }
+
+    /**
+     * Test for the names which {@link #find(String, int)} could answer with any of some names.
+     * @param soundAlikes the normalized names.
+     * @return true for a name whose key is a key of any of the names.
+     */
+    public static Predicate<String> soundsLikeAny(final Collection<String> soundAlikes) {
+        final Set<String> keys = new HashSet<>();
+        for (final String name : soundAlikes) {
+            keys.add(keyOf(name, false));
+            keys.add(keyOf(name, true));
+        }
+        keys.remove(null);
+        return name -> keys.contains(keyOf(name, false));
+    }
+
+    /**
+     * The phonetic key of a normalized name.
+     * @param name the normalized name.
+     * @param alternate whether to use the alternate codes of the words.
+     * @return the key or null if no word of the name has a code.
+     */
+    static String keyOf(final String name, final boolean alternate) {
+        if (name == null) {
+            return null;
+        }
+        final DoubleMetaphone encoder = new DoubleMetaphone();
+        encoder.setMaxCodeLen(MAX_CODE_LENGTH);
+        final StringBuilder key = new StringBuilder();
+        for (final String word : name.split(" ")) {
+            final String code = encoder.doubleMetaphone(word, alternate);
+            if (code != null && !code.isEmpty()) {
+                if (key.length() > 0) {
+                    key.append(' ');
+                }
+                key.append(code);
+            }
+        }
+        return key.length() == 0 ? null : key.toString();
+    }
+
+    /**
+     * Builder to accumulate names before freezing them into an index.
+     */
+    public static class Builder {
+
+        private final Map<String, Set<String>> names = new HashMap<>();
+
+        private Builder() {
+            // Use PhoneticIndex.builder()
+        }
+
+        private Builder(final Map<String, String[]> names) {
+            names.forEach((key, list) -> this.names.put(key, new LinkedHashSet<>(Arrays.asList(list))));
+        }
+
+        /**
+         * Add a name.
+         * @param name the name.
+         * @return this builder.
+         */
+        public Builder add(final String name) {
+            final String normalized = NameNormalizer.normalize(name);
+            final String primary = keyOf(normalized, false);
+            if (primary != null) {
+                put(primary, normalized);
+                final String alternate = keyOf(normalized, true);
+                if (!primary.equals(alternate)) {
+                    put(alternate, normalized);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Freeze the builder into an index.
+         * @return the index.
+         */
+        public PhoneticIndex build() {
+            return new PhoneticIndex(freeze(), Map.of());
+        }
+
+        private Map<String, String[]> freeze() {
+            final Map<String, String[]> frozen = new HashMap<>(names.size() * 4 / 3 + 1);
+            names.forEach((key, set) -> frozen.put(key, set.toArray(NO_NAMES)));
+            return frozen;
+        }
+
+        private void put(final String key, final String name) {
+            names.computeIfAbsent(key, k -> new LinkedHashSet<>(2)).add(name);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package ca.umanitoba.libraries.georeferencing.index;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import ca.umanitoba.libraries.georeferencing.GeoNamesPlace;
+import ca.umanitoba.libraries.georeferencing.ingest.PlaceUpdates;
+
+/**
+ * Immutable record of the places changed since a full in-memory index was built, so the index can be layered with a
+ * small one of the changes instead of being rebuilt from every place.
+ * <p>
+ * Like {@link LayeredGazetteer}, modified places are only kept for countries already in the full index, and not over
+ * a newer change to the same place.
+ * @author whikloj
+ */
+public class PlaceChanges {
+
+    private final Set<String> countryCodes;
+    private final Map<Integer, GeoNamesPlace> places;
+    private final Set<Integer> hidden;
+
+    /**
+     * Constructor, with no changes.
+     * @param countryCodes the country codes of the places of the full index.
+     */
+    public PlaceChanges(final Set<String> countryCodes) {
+        this(countryCodes, Collections.emptyMap(), Collections.emptySet());
+    }
+
+    private PlaceChanges(final Set<String> countryCodes, final Map<Integer, GeoNamesPlace> places,
+                         final Set<Integer> hidden) {
+        this.countryCodes = countryCodes;
+        this.places = places;
+        this.hidden = hidden;
+    }
+
+    /**
+     * @return the places modified or added since the full index was built, at their latest.
+     */
+    public Collection<GeoNamesPlace> getPlaces() {
+        return places.values();
+    }
+
+    /**
+     * @param geonamesId the GeoNames id of a place.
+     * @return true if the place of the full index was modified or deleted since, and so must be skipped.
+     */
+    public boolean isHidden(final int geonamesId) {
+        return hidden.contains(geonamesId);
+    }
+
+    /**
+     * @return true if nothing has changed.
+     */
+    public boolean isEmpty() {
+        return hidden.isEmpty();
+    }
+
+    /**
+     * Apply a day of changes.
+     * @param updates the changes.
+     * @return the changes so far with the day's.
+     */
+    public PlaceChanges withUpdates(final PlaceUpdates updates) {
+        final Map<Integer, GeoNamesPlace> changed = new HashMap<>(places);
+        final Set<Integer> hide = new HashSet<>(hidden);
+        for (final GeoNamesPlace place : updates.getModified().values()) {
+            final GeoNamesPlace previous = changed.get(place.getGeonamesId());
+            if (!countryCodes.contains(place.getCountryCode()) || (previous != null &&
+                    LocalDate.parse(previous.getLastModified()).isAfter(LocalDate.parse(place.getLastModified())))) {
+                continue;
+            }
+            changed.put(place.getGeonamesId(), place);
+            hide.add(place.getGeonamesId());
+        }
+        for (final int id : updates.getDeleted()) {
+            changed.remove(id);
+            hide.add(id);
+        }
+        return new PlaceChanges(countryCodes, changed, hide);
+    }
+}
@@ -0,0 +1,483 @@
+package ca.umanitoba.libraries.georeferencing.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+import ca.umanitoba.libraries.georeferencing.GeoNamesPlace;
+
+/**
+ * Immutable index of places by their position on a grid of cells a quarter of a degree square, to find the places
+ * nearest a point, within a distance of it or inside a box.
+ * <p>
+ * Rows are sorted by cell so the places of a cell are a range of rows. The nearest places are found by searching
+ * the cells around a point within a radius, doubling it until enough places are found. Searches within a distance
+ * or a box only look at the cells they overlap and then check the exact position of each place in them.
+ * @author whikloj
+ */
+public class PlaceGrid {
+
+    private static final double COORDINATE_SCALE = 1e7;
+
+    private static final double CELL_DEGREES = 0.25;
+
+    private static final int LATITUDE_CELLS = (int) (180 / CELL_DEGREES);
+
+    private static final int LONGITUDE_CELLS = (int) (360 / CELL_DEGREES);
+
+    private static final double EARTH_RADIUS_KM = 6371.0088;
+
+    private static final double KM_PER_DEGREE = Math.toRadians(EARTH_RADIUS_KM);
+
+    private static final double HALF_CIRCUMFERENCE_KM = Math.PI * EARTH_RADIUS_KM;
+
+    private static final double INITIAL_RADIUS_KM = 10;
+
+    private final int size;
+    private final int[] cellIds;
+    private final int[] cellStarts;
+    private final int[] geonamesIds;
+    private final String[] names;
+    private final short[] featureIds;
+    private final FeatureCodeTable featureCodes;
+    private final String[] countryCodes;
+    private final String[] adminCodes1;
+    private final long[] populations;
+    private final int[] latitudes;
+    private final int[] longitudes;
+
+    private PlaceGrid(final Builder builder) {
+        size = builder.size;
+        // Cell in the high half and builder row in the low half, so a primitive sort orders the rows by cell.
+        final long[] order = new long[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = ((long) cellOf(builder.latitudes[i] / COORDINATE_SCALE,
+                    builder.longitudes[i] / COORDINATE_SCALE) << 32) | i;
+        }
+        Arrays.sort(order);
+        geonamesIds = new int[size];
+        names = new String[size];
+        featureIds = new short[size];
+        featureCodes = builder.featureCodes.build();
+        countryCodes = new String[size];
+        adminCodes1 = new String[size];
+        populations = new long[size];
+        latitudes = new int[size];
+        longitudes = new int[size];
+        int cells = 0;
+        final int[] ids = new int[size];
+        final int[] starts = new int[size + 1];
+        for (int row = 0; row < size; row++) {
+            final int cell = (int) (order[row] >>> 32);
+            final int from = (int) order[row];
+            if (cells == 0 || ids[cells - 1] != cell) {
+                ids[cells] = cell;
+                starts[cells++] = row;
+            }
+            geonamesIds[row] = builder.geonamesIds[from];
+            names[row] = builder.names[from];
+            featureIds[row] = builder.featureIds[from];
+            countryCodes[row] = builder.countryCodes[from];
+            adminCodes1[row] = builder.adminCodes1[from];
+            populations[row] = builder.populations[from];
+            latitudes[row] = builder.latitudes[from];
+            longitudes[row] = builder.longitudes[from];
+        }
+        starts[cells] = size;
+        cellIds = Arrays.copyOf(ids, cells);
+        cellStarts = Arrays.copyOf(starts, cells + 1);
+    }
+
+    /**
+     * Get a new builder.
+     * @return the builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the number of places in the index.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of cells holding at least one place.
+     */
+    public int cellCount() {
+        return cellIds.length;
+    }
+
+    /**
+     * Find the places nearest a point.
+     * @param latitude the latitude of the point.
+     * @param longitude the longitude of the point.
+     * @param limit the maximum number of places.
+     * @param included which rows may be returned, or null for all of them.
+     * @return the rows of the places, nearest first.
+     */
+    public int[] findNearest(final double latitude, final double longitude, final int limit,
+                             final IntPredicate included) {
+        if (limit <= 0 || size == 0) {
+            return new int[0];
+        }
+        // Widen the circle searched until it holds enough places, every place nearer than its edge is in it.
+        for (double radius = INITIAL_RADIUS_KM; ; radius *= 2) {
+            final boolean everywhere = radius >= HALF_CIRCUMFERENCE_KM;
+            final double limitKm = everywhere ? Double.MAX_VALUE : radius;
+            final List<Neighbour> found = new ArrayList<>();
+            visitCircle(latitude, longitude, radius, row -> {
+                if (included == null || included.test(row)) {
+                    final double distance = distanceKm(row, latitude, longitude);
+                    if (distance <= limitKm) {
+                        found.add(new Neighbour(row, distance));
+                    }
+                }
+            });
+            if (found.size() >= limit || everywhere) {
+                found.sort(Comparator.comparingDouble((Neighbour n) -> n.distance).thenComparingInt(n -> n.row));
+                return found.stream().limit(limit).mapToInt(n -> n.row).toArray();
+            }
+        }
+    }
+
+    /**
+     * Find all the places within a distance of a point. Only the cells overlapping the circle are searched.
+     * @param latitude the latitude of the point.
+     * @param longitude the longitude of the point.
+     * @param radiusKm the distance in kilometres.
+     * @param included which rows may be returned, or null for all of them.
+     * @return the rows of the places, nearest first.
+     */
+    public int[] findWithin(final double latitude, final double longitude, final double radiusKm,
+                            final IntPredicate included) {
+        if (radiusKm < 0 || size == 0) {
+            return new int[0];
+        }
+        final List<Neighbour> found = new ArrayList<>();
+        visitCircle(latitude, longitude, Math.min(radiusKm, HALF_CIRCUMFERENCE_KM), row -> {
+            if (included == null || included.test(row)) {
+                final double distance = distanceKm(row, latitude, longitude);
+                if (distance <= radiusKm) {
+                    found.add(new Neighbour(row, distance));
+                }
+            }
+        });
+        found.sort(Comparator.comparingDouble((Neighbour n) -> n.distance).thenComparingInt(n -> n.row));
+        return found.stream().mapToInt(n -> n.row).toArray();
+    }
+
+    /**
+     * Find all the places inside a box. Only the cells overlapping the box are searched.
+     * @param south the southern latitude.
+     * @param west the western longitude, the box crosses the antimeridian if it is east of the eastern longitude.
+     * @param north the northern latitude.
+     * @param east the eastern longitude.
+     * @param included which rows may be returned, or null for all of them.
+     * @return the rows of the places, most populous first.
+     */
+    public int[] findInBox(final double south, final double west, final double north, final double east,
+                           final IntPredicate included) {
+        if (south > north || size == 0) {
+            return new int[0];
+        }
+        final int southScaled = (int) Math.round(south * COORDINATE_SCALE);
+        final int northScaled = (int) Math.round(north * COORDINATE_SCALE);
+        final int westScaled = (int) Math.round(west * COORDINATE_SCALE);
+        final int eastScaled = (int) Math.round(east * COORDINATE_SCALE);
+        final boolean crossesAntimeridian = west > east;
+        final List<Integer> found = new ArrayList<>();
+        visitBox(south, west, north, east, row -> {
+            final boolean inLongitude = crossesAntimeridian ?
+                    longitudes[row] >= westScaled || longitudes[row] <= eastScaled :
+                    longitudes[row] >= westScaled && longitudes[row] <= eastScaled;
+            if (inLongitude && latitudes[row] >= southScaled && latitudes[row] <= northScaled &&
+                    (included == null || included.test(row))) {
+                found.add(row);
+            }
+        });
+        found.sort((a, b) -> {
+            final int byPopulation = Long.compare(populations[b], populations[a]);
+            return byPopulation != 0 ? byPopulation : Integer.compare(a, b);
+        });
+        return found.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Visit the rows of the cells which may hold a place within a distance of a point.
+     */
+    private void visitCircle(final double latitude, final double longitude, final double radiusKm,
+                             final IntConsumer visitor) {
+        final double latitudeDegrees = radiusKm / KM_PER_DEGREE;
+        final double south = latitude - latitudeDegrees;
+        final double north = latitude + latitudeDegrees;
+        if (south <= -90 || north >= 90) {
+            visitBox(Math.max(-90, south), -180, Math.min(90, north), 180, visitor);
+            return;
+        }
+        final double widest = Math.max(Math.abs(south), Math.abs(north));
+        final double longitudeDegrees = latitudeDegrees / Math.cos(Math.toRadians(widest));
+        if (longitudeDegrees >= 180) {
+            visitBox(south, -180, north, 180, visitor);
+        } else {
+            visitBox(south, longitude - longitudeDegrees, north, longitude + longitudeDegrees, visitor);
+        }
+    }
+
+    /**
+     * Visit the rows of the cells overlapping a box. Each row of cells is a range of cell ids, so only cells holding
+     * places are visited.
+     * @param west the western longitude, the box crosses the antimeridian if it is east of the eastern longitude.
+     * @param east the eastern longitude.
+     */
+    private void visitBox(final double south, final double west, final double north, final double east,
+                          final IntConsumer visitor) {
+        final int firstColumn = longitudeCell(west);
+        final int lastColumn = longitudeCell(east);
+        final boolean allColumns = east - west >= 360 || (west > east && firstColumn == lastColumn);
+        for (int latitudeCell = latitudeCell(south); latitudeCell <= latitudeCell(north); latitudeCell++) {
+            final int rowStart = latitudeCell * LONGITUDE_CELLS;
+            if (allColumns) {
+                visitCells(rowStart, rowStart + LONGITUDE_CELLS - 1, visitor);
+            } else if (firstColumn <= lastColumn) {
+                visitCells(rowStart + firstColumn, rowStart + lastColumn, visitor);
+            } else {
+                visitCells(rowStart + firstColumn, rowStart + LONGITUDE_CELLS - 1, visitor);
+                visitCells(rowStart, rowStart + lastColumn, visitor);
+            }
+        }
+    }
+
+    /**
+     * Visit the rows of the cells with ids from first to last.
+     */
+    private void visitCells(final int first, final int last, final IntConsumer visitor) {
+        int index = Arrays.binarySearch(cellIds, first);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        for (; index < cellIds.length && cellIds[index] <= last; index++) {
+            for (int row = cellStarts[index]; row < cellStarts[index + 1]; row++) {
+                visitor.accept(row);
+            }
+        }
+    }
+
+    /**
+     * @param row the row.
+     * @param latitude the latitude of a point.
+     * @param longitude the longitude of a point.
+     * @return the great circle distance from the row to the point in kilometres.
+     */
+    public double distanceKm(final int row, final double latitude, final double longitude) {
+        return distanceKm(getLatitude(row), getLongitude(row), latitude, longitude);
+    }
+
+    /**
+     * Great circle distance between two points by the haversine formula.
+     * @param latitude1 the latitude of the first point.
+     * @param longitude1 the longitude of the first point.
+     * @param latitude2 the latitude of the second point.
+     * @param longitude2 the longitude of the second point.
+     * @return the distance in kilometres.
+     */
+    public static double distanceKm(final double latitude1, final double longitude1, final double latitude2,
+                                    final double longitude2) {
+        final double dLat = Math.toRadians(latitude2 - latitude1);
+        final double dLon = Math.toRadians(longitude2 - longitude1);
+        final double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) + Math.cos(Math.toRadians(latitude1)) *
+                Math.cos(Math.toRadians(latitude2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /**
+     * @param row the row.
+     * @return the GeoNames id of the row.
+     */
+    public int getGeonamesId(final int row) {
+        return geonamesIds[row];
+    }
+
+    /**
+     * @param row the row.
+     * @return the name of the row.
+     */
+    public String getName(final int row) {
+        return names[row];
+    }
+
+    /**
+     * @param row the row.
+     * @return the feature class of the row.
+     */
+    public char getFeatureClass(final int row) {
+        return featureCodes.getFeatureClass(featureIds[row]);
+    }
+
+    /**
+     * @param row the row.
+     * @return the feature code of the row.
+     */
+    public String getFeature(final int row) {
+        return featureCodes.getCode(featureIds[row]);
+    }
+
+    /**
+     * @param row the row.
+     * @return the id of the feature of the row in {@link #getFeatureCodes()}.
+     */
+    public int getFeatureId(final int row) {
+        return featureIds[row];
+    }
+
+    /**
+     * @return the features of the places.
+     */
+    public FeatureCodeTable getFeatureCodes() {
+        return featureCodes;
+    }
+
+    /**
+     * @param row the row.
+     * @return the country code of the row.
+     */
+    public String getCountryCode(final int row) {
+        return countryCodes[row];
+    }
+
+    /**
+     * @param row the row.
+     * @return the admin1 code of the row.
+     */
+    public String getAdminCode1(final int row) {
+        return adminCodes1[row];
+    }
+
+    /**
+     * @param row the row.
+     * @return the population of the row.
+     */
+    public long getPopulation(final int row) {
+        return populations[row];
+    }
+
+    /**
+     * @param row the row.
+     * @return the latitude of the row.
+     */
+    public double getLatitude(final int row) {
+        return latitudes[row] / COORDINATE_SCALE;
+    }
+
+    /**
+     * @param row the row.
+     * @return the longitude of the row.
+     */
+    public double getLongitude(final int row) {
+        return longitudes[row] / COORDINATE_SCALE;
+    }
+
+    private static int cellOf(final double latitude, final double longitude) {
+        return latitudeCell(latitude) * LONGITUDE_CELLS + longitudeCell(longitude);
+    }
+
+    private static int latitudeCell(final double latitude) {
+        return Math.max(0, Math.min(LATITUDE_CELLS - 1, (int) Math.floor((latitude + 90) / CELL_DEGREES)));
+    }
+
+    private static int longitudeCell(final double longitude) {
+        return Math.floorMod((int) Math.floor((longitude + 180) / CELL_DEGREES), LONGITUDE_CELLS);
+    }
+
+    /**
+     * A place found near a point.
+     */
+    private static class Neighbour {
+        private final int row;
+        private final double distance;
+
+        Neighbour(final int row, final double distance) {
+            this.row = row;
+            this.distance = distance;
+        }
+    }
+
+    /**
+     * Builder to accumulate places before freezing them into an index.
+     */
+    public static class Builder {
+
+        private int size = 0;
+        private int[] geonamesIds = new int[1024];
+        private String[] names = new String[1024];
+        private short[] featureIds = new short[1024];
+        private final FeatureCodeTable.Builder featureCodes = FeatureCodeTable.builder();
+        private String[] countryCodes = new String[1024];
+        private String[] adminCodes1 = new String[1024];
+        private long[] populations = new long[1024];
+        private int[] latitudes = new int[1024];
+        private int[] longitudes = new int[1024];
+        private final Map<String, String> codes = new HashMap<>();
+
+        private Builder() {
+            // Use PlaceGrid.builder()
+        }
+
+        /**
+         * Add a place to the index.
+         * @param place the place.
+         * @return this builder.
+         */
+        public Builder add(final GeoNamesPlace place) {
+            if (size == geonamesIds.length) {
+                grow();
+            }
+            final int row = size++;
+            geonamesIds[row] = place.getGeonamesId();
+            names[row] = place.getName();
+            featureIds[row] = (short) featureCodes.add(place.getFeatureClass() == null ||
+                    place.getFeatureClass().isEmpty() ? ' ' : place.getFeatureClass().charAt(0), place.getFeature());
+            countryCodes[row] = intern(place.getCountryCode());
+            adminCodes1[row] = intern(place.getAdminCode1());
+            populations[row] = place.getPopulation();
+            latitudes[row] = (int) Math.round(place.getLatitude() * COORDINATE_SCALE);
+            longitudes[row] = (int) Math.round(place.getLongitude() * COORDINATE_SCALE);
+            return this;
+        }
+
+        /**
+         * Freeze the builder into an index.
+         * @return the index.
+         */
+        public PlaceGrid build() {
+            return new PlaceGrid(this);
+        }
+
+        /**
+         * Share one instance of repeated short codes across rows.
+         */
+        private String intern(final String code) {
+            final String existing = codes.putIfAbsent(code, code);
+            return existing == null ? code : existing;
+        }
+
+        private void grow() {
+            final int capacity = geonamesIds.length * 2;
+            geonamesIds = Arrays.copyOf(geonamesIds, capacity);
+            names = Arrays.copyOf(names, capacity);
+            featureIds = Arrays.copyOf(featureIds, capacity);
+            countryCodes = Arrays.copyOf(countryCodes, capacity);
+            adminCodes1 = Arrays.copyOf(adminCodes1, capacity);
+            populations = Arrays.copyOf(populations, capacity);
+            latitudes = Arrays.copyOf(latitudes, capacity);
+            longitudes = Arrays.copyOf(longitudes, capacity);
+        }
+    }
+}
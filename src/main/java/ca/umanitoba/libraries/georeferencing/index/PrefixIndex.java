@@ -0,0 +1,468 @@
+package ca.umanitoba.libraries.georeferencing.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+import ca.umanitoba.libraries.georeferencing.GeoNamesPlace;
+import ca.umanitoba.libraries.georeferencing.utils.NameNormalizer;
+
+/**
+ * Immutable index of place names sorted by their normalized form, to find the most populous places whose name starts
+ * with a prefix.
+ * <p>
+ * The places with a prefix are a range of rows found by binary search. A tree over the rows holding the most populous
+ * row under each node lets the top places of a range be taken in order of population without sorting the range.
+ * Each country, and each province of the larger countries, has its own rows and tree the same way, so a filtered
+ * search only walks the places it can return however short the prefix.
+ * @author whikloj
+ */
+public class PrefixIndex {
+
+    private static final double COORDINATE_SCALE = 1e7;
+
+    /**
+     * Rough size of an object header and array header, for the footprint estimate.
+     */
+    private static final int OBJECT_OVERHEAD = 16;
+
+    /**
+     * Countries with at least this many places also get a subset per province.
+     */
+    private static final int PROVINCE_SUBSET_SIZE = 10000;
+
+    private final int size;
+    private final String[] keys;
+    private final String[] names;
+    private final int[] geonamesIds;
+    private final String[] countryCodes;
+    private final String[] adminCodes1;
+    private final long[] populations;
+    private final int[] latitudes;
+    private final int[] longitudes;
+
+    private final Subset all;
+    private final Map<String, Subset> countries;
+    private final Map<String, Subset> provinces;
+
+    private PrefixIndex(final Builder builder) {
+        size = builder.size;
+        final Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> {
+            final int byKey = builder.keys[a].compareTo(builder.keys[b]);
+            if (byKey != 0) {
+                return byKey;
+            }
+            final int byPopulation = Long.compare(builder.populations[b], builder.populations[a]);
+            return byPopulation != 0 ? byPopulation : Integer.compare(builder.geonamesIds[a], builder.geonamesIds[b]);
+        });
+        keys = new String[size];
+        names = new String[size];
+        geonamesIds = new int[size];
+        countryCodes = new String[size];
+        adminCodes1 = new String[size];
+        populations = new long[size];
+        latitudes = new int[size];
+        longitudes = new int[size];
+        for (int row = 0; row < size; row++) {
+            final int from = order[row];
+            keys[row] = builder.keys[from];
+            names[row] = builder.names[from];
+            geonamesIds[row] = builder.geonamesIds[from];
+            countryCodes[row] = builder.countryCodes[from];
+            adminCodes1[row] = builder.adminCodes1[from];
+            populations[row] = builder.populations[from];
+            latitudes[row] = builder.latitudes[from];
+            longitudes[row] = builder.longitudes[from];
+        }
+        all = new Subset(null, size);
+        countries = subsets(row -> upperCase(countryCodes[row]));
+        provinces = subsets(row -> {
+            final String country = upperCase(countryCodes[row]);
+            return country != null && adminCodes1[row] != null && countries.get(country).size >= PROVINCE_SUBSET_SIZE ?
+                    country + "." + upperCase(adminCodes1[row]) : null;
+        });
+    }
+
+    /**
+     * Get a new builder.
+     * @return the builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the number of places in the index.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Find the most populous places whose name starts with a prefix.
+     * @param prefix the prefix, it is normalized first.
+     * @param countryCode the ISO 3166 alpha-2 code of the country of the places, or null for any country.
+     * @param adminCode1 the admin1 code of the places, or null for any province.
+     * @param limit the maximum number of places.
+     * @return the rows of the places, most populous first.
+     */
+    public int[] findByPrefix(final String prefix, final String countryCode, final String adminCode1,
+                              final int limit) {
+        return findByPrefix(prefix, countryCode, adminCode1, limit, null);
+    }
+
+    /**
+     * Find the most populous places whose name starts with a prefix, skipping some places. A province filter is only
+     * narrowed to the province's places along with a country filter, without one it is checked as places are taken.
+     * @param prefix the prefix, it is normalized first.
+     * @param countryCode the ISO 3166 alpha-2 code of the country of the places, or null for any country.
+     * @param adminCode1 the admin1 code of the places, or null for any province.
+     * @param limit the maximum number of places.
+     * @param excluded GeoNames ids to skip, or null to skip none.
+     * @return the rows of the places, most populous first.
+     */
+    public int[] findByPrefix(final String prefix, final String countryCode, final String adminCode1,
+                              final int limit, final IntPredicate excluded) {
+        final String key = NameNormalizer.normalize(prefix);
+        if (key == null || key.isEmpty() || limit <= 0 || size == 0) {
+            return new int[0];
+        }
+        Subset subset = all;
+        if (countryCode != null) {
+            final String country = upperCase(countryCode);
+            subset = adminCode1 == null ? null : provinces.get(country + "." + upperCase(adminCode1));
+            subset = subset == null ? countries.get(country) : subset;
+            if (subset == null) {
+                return new int[0];
+            }
+        }
+        final int from = subset.lowerBound(key);
+        final int to = subset.lowerBound(key + Character.MAX_VALUE);
+        if (from >= to) {
+            return new int[0];
+        }
+        final int[] tree = subset.tree;
+        final int leafStart = subset.leafStart;
+        final PriorityQueue<Integer> nodes = new PriorityQueue<>((a, b) -> compareRows(tree[a], tree[b]));
+        // Cover the range with the fewest nodes, then expand the most populous node first.
+        for (int low = from + leafStart, high = to + leafStart; low < high; low /= 2, high /= 2) {
+            if ((low & 1) == 1) {
+                nodes.add(low++);
+            }
+            if ((high & 1) == 1) {
+                nodes.add(--high);
+            }
+        }
+        final int[] found = new int[limit];
+        int count = 0;
+        while (count < limit && !nodes.isEmpty()) {
+            final int node = nodes.poll();
+            if (node >= leafStart) {
+                final int row = tree[node];
+                if (matches(countryCodes[row], countryCode) && matches(adminCodes1[row], adminCode1) &&
+                        (excluded == null || !excluded.test(geonamesIds[row]))) {
+                    found[count++] = row;
+                }
+            } else {
+                for (final int child : new int[]{node * 2, node * 2 + 1}) {
+                    if (tree[child] >= 0) {
+                        nodes.add(child);
+                    }
+                }
+            }
+        }
+        return Arrays.copyOf(found, count);
+    }
+
+    /**
+     * @param row the row.
+     * @return the name of the row, as it is written.
+     */
+    public String getName(final int row) {
+        return names[row];
+    }
+
+    /**
+     * @param row the row.
+     * @return the GeoNames id of the row.
+     */
+    public int getGeonamesId(final int row) {
+        return geonamesIds[row];
+    }
+
+    /**
+     * @param row the row.
+     * @return the country code of the row.
+     */
+    public String getCountryCode(final int row) {
+        return countryCodes[row];
+    }
+
+    /**
+     * @param row the row.
+     * @return the admin1 code of the row.
+     */
+    public String getAdminCode1(final int row) {
+        return adminCodes1[row];
+    }
+
+    /**
+     * @param row the row.
+     * @return the population of the row.
+     */
+    public long getPopulation(final int row) {
+        return populations[row];
+    }
+
+    /**
+     * @param row the row.
+     * @return the latitude of the row.
+     */
+    public double getLatitude(final int row) {
+        return latitudes[row] / COORDINATE_SCALE;
+    }
+
+    /**
+     * @param row the row.
+     * @return the longitude of the row.
+     */
+    public double getLongitude(final int row) {
+        return longitudes[row] / COORDINATE_SCALE;
+    }
+
+    /**
+     * Estimate the memory held by the index, counting strings shared between rows once.
+     * @return the estimate in bytes.
+     */
+    public long estimateBytes() {
+        long bytes = 0;
+        for (final Subset subset : allSubsets()) {
+            bytes += (long) subset.tree.length * Integer.BYTES + OBJECT_OVERHEAD;
+            bytes += subset.rows == null ? 0 : OBJECT_OVERHEAD + (long) subset.rows.length * Integer.BYTES;
+        }
+        // Four reference arrays, compressed references assumed, three int arrays and a long array.
+        bytes += 4L * (OBJECT_OVERHEAD + (long) size * Integer.BYTES);
+        bytes += 3L * (OBJECT_OVERHEAD + (long) size * Integer.BYTES);
+        bytes += OBJECT_OVERHEAD + (long) size * Long.BYTES;
+        final Set<String> counted = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (final String[] column : List.of(keys, names, countryCodes, adminCodes1)) {
+            for (final String value : column) {
+                if (value != null && counted.add(value)) {
+                    bytes += stringBytes(value);
+                }
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Size of a string, its object and its array of characters, one byte each if they are all Latin-1.
+     */
+    private static long stringBytes(final String value) {
+        final boolean latin1 = value.chars().allMatch(c -> c < 256);
+        return 2L * OBJECT_OVERHEAD + (long) value.length() * (latin1 ? 1 : 2);
+    }
+
+    private List<Subset> allSubsets() {
+        final List<Subset> subsets = new ArrayList<>(countries.values());
+        subsets.addAll(provinces.values());
+        subsets.add(all);
+        return subsets;
+    }
+
+    /**
+     * Split the rows into subsets, in key order.
+     * @param groupOf the subset of a row, or null for none.
+     */
+    private Map<String, Subset> subsets(final IntFunction<String> groupOf) {
+        final Map<String, Integer> counts = new HashMap<>();
+        for (int row = 0; row < size; row++) {
+            final String group = groupOf.apply(row);
+            if (group != null) {
+                counts.merge(group, 1, Integer::sum);
+            }
+        }
+        final Map<String, int[]> rows = new HashMap<>();
+        counts.forEach((group, count) -> rows.put(group, new int[count]));
+        final Map<String, Integer> filled = new HashMap<>();
+        for (int row = 0; row < size; row++) {
+            final String group = groupOf.apply(row);
+            if (group != null) {
+                rows.get(group)[filled.merge(group, 1, Integer::sum) - 1] = row;
+            }
+        }
+        final Map<String, Subset> subsets = new HashMap<>();
+        rows.forEach((group, groupRows) -> subsets.put(group, new Subset(groupRows, groupRows.length)));
+        return subsets;
+    }
+
+    /**
+     * The more populous of two rows, either may be -1 for none.
+     */
+    private int morePopulous(final int a, final int b) {
+        if (a < 0 || b < 0) {
+            return a < 0 ? b : a;
+        }
+        return compareRows(a, b) <= 0 ? a : b;
+    }
+
+    /**
+     * Order rows by population, most populous first. Rows are sorted by name, so ties go to the first.
+     */
+    private int compareRows(final int a, final int b) {
+        final int byPopulation = Long.compare(populations[b], populations[a]);
+        return byPopulation != 0 ? byPopulation : Integer.compare(a, b);
+    }
+
+    private static boolean matches(final String value, final String required) {
+        return required == null || required.equalsIgnoreCase(value);
+    }
+
+    private static String upperCase(final String code) {
+        return code == null ? null : code.toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Some of the rows, in key order, with a tree to take them in order of population.
+     */
+    private final class Subset {
+
+        /**
+         * The rows, or null for every row.
+         */
+        private final int[] rows;
+        private final int size;
+
+        /**
+         * Implicit binary tree, leaves from leafStart, each node holding its most populous row or -1.
+         */
+        private final int[] tree;
+        private final int leafStart;
+
+        private Subset(final int[] rows, final int size) {
+            this.rows = rows;
+            this.size = size;
+            int leaves = 1;
+            while (leaves < size) {
+                leaves *= 2;
+            }
+            leafStart = leaves;
+            tree = new int[leaves * 2];
+            Arrays.fill(tree, -1);
+            for (int i = 0; i < size; i++) {
+                tree[leaves + i] = row(i);
+            }
+            for (int node = leaves - 1; node > 0; node--) {
+                tree[node] = morePopulous(tree[node * 2], tree[node * 2 + 1]);
+            }
+        }
+
+        private int row(final int position) {
+            return rows == null ? position : rows[position];
+        }
+
+        /**
+         * The first position whose key is not less than a key.
+         */
+        private int lowerBound(final String key) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                final int middle = (low + high) >>> 1;
+                if (keys[row(middle)].compareTo(key) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * Builder to accumulate places before freezing them into an index.
+     */
+    public static class Builder {
+
+        private int size = 0;
+        private String[] keys = new String[1024];
+        private String[] names = new String[1024];
+        private int[] geonamesIds = new int[1024];
+        private String[] countryCodes = new String[1024];
+        private String[] adminCodes1 = new String[1024];
+        private long[] populations = new long[1024];
+        private int[] latitudes = new int[1024];
+        private int[] longitudes = new int[1024];
+        private final Map<String, String> codes = new HashMap<>();
+
+        private Builder() {
+            // Use PrefixIndex.builder()
+        }
+
+        /**
+         * Add a place by its name.
+         * @param place the place.
+         * @return this builder.
+         */
+        public Builder add(final GeoNamesPlace place) {
+            final String key = NameNormalizer.normalize(place.getName());
+            if (key == null || key.isEmpty()) {
+                return this;
+            }
+            if (size == keys.length) {
+                grow();
+            }
+            final int row = size++;
+            keys[row] = key;
+            names[row] = key.equals(place.getName()) ? key : place.getName();
+            geonamesIds[row] = place.getGeonamesId();
+            countryCodes[row] = intern(place.getCountryCode());
+            adminCodes1[row] = intern(place.getAdminCode1());
+            populations[row] = place.getPopulation();
+            latitudes[row] = (int) Math.round(place.getLatitude() * COORDINATE_SCALE);
+            longitudes[row] = (int) Math.round(place.getLongitude() * COORDINATE_SCALE);
+            return this;
+        }
+
+        /**
+         * Freeze the builder into an index.
+         * @return the index.
+         */
+        public PrefixIndex build() {
+            return new PrefixIndex(this);
+        }
+
+        /**
+         * Share one instance of repeated short codes across rows.
+         */
+        private String intern(final String code) {
+            final String existing = codes.putIfAbsent(code, code);
+            return existing == null ? code : existing;
+        }
+
+        private void grow() {
+            final int capacity = keys.length * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            names = Arrays.copyOf(names, capacity);
+            geonamesIds = Arrays.copyOf(geonamesIds, capacity);
+            countryCodes = Arrays.copyOf(countryCodes, capacity);
+            adminCodes1 = Arrays.copyOf(adminCodes1, capacity);
+            populations = Arrays.copyOf(populations, capacity);
+            latitudes = Arrays.copyOf(latitudes, capacity);
+            longitudes = Arrays.copyOf(longitudes, capacity);
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package ca.umanitoba.libraries.georeferencing.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ca.umanitoba.libraries.georeferencing.utils.NameNormalizer;
+
+/**
+ * Immutable inverted index from character trigrams to normalized place names, used to find the names closest to a
+ * misspelled one.
+ * <p>
+ * Candidates are only generated from the rarest trigrams of the query which any name scoring above the minimum must
+ * share, then scored by the Dice coefficient of their trigrams and checked against a maximum edit distance.
+ * @author whikloj
+ */
+public class TrigramIndex {
+
+    private static final int[] NO_NAMES = new int[0];
+
+    /**
+     * How many candidates are checked between looks at the clock.
+     */
+    private static final int DEADLINE_CHECK_INTERVAL = 256;
+
+    /**
+     * Most slots the set of checked names starts with, it grows if a search checks more names.
+     */
+    private static final int MAX_INITIAL_SLOTS = 4096;
+
+    private static final Comparator<Match> BEST_FIRST = Comparator.comparingInt(Match::getEdits)
+            .thenComparing(Comparator.comparingDouble(Match::getScore).reversed())
+            .thenComparing(Match::getName);
+
+    private final String[] names;
+    private final Map<Long, int[]> postings;
+
+    private TrigramIndex(final Builder builder) {
+        names = builder.names.toArray(new String[0]);
+        postings = new HashMap<>(builder.postings.size() * 4 / 3 + 1);
+        builder.postings.forEach((trigram, list) -> postings.put(trigram, list.toArray()));
+    }
+
+    /**
+     * Get a new builder.
+     * @return the builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the number of distinct names in the index.
+     */
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * Find the names closest to a name.
+     * @param name the name, it is normalized first.
+     * @param maxEdits the largest edit distance of a match.
+     * @param minScore the smallest Dice coefficient of the trigrams of a match, between 0 and 1.
+     * @param limit the maximum number of matches.
+     * @param deadline the {@link System#nanoTime()} after which to stop looking and return the matches so far.
+     * @return the matches, fewest edits and then highest score first.
+     */
+    public List<Match> search(final String name, final int maxEdits, final double minScore, final int limit,
+                              final long deadline) {
+        final String key = NameNormalizer.normalize(name);
+        final long[] query = key == null ? new long[0] : trigrams(key);
+        if (query.length == 0 || limit <= 0 || System.nanoTime() - deadline >= 0) {
+            return List.of();
+        }
+        // A name sharing fewer trigrams than this cannot reach the minimum score, so it must share one of the
+        // rarest (query.length - minCommon + 1) trigrams to be a match.
+        final int minCommon = Math.max(1, (int) Math.ceil(minScore * query.length / (2 - minScore)));
+        final int[][] lists = new int[query.length][];
+        for (int i = 0; i < query.length; i++) {
+            lists[i] = postings.getOrDefault(query[i], NO_NAMES);
+        }
+        Arrays.sort(lists, Comparator.comparingInt(l -> l.length));
+
+        final int searched = query.length - minCommon + 1;
+        long postingsSearched = 0;
+        for (int i = 0; i < searched; i++) {
+            postingsSearched += lists[i].length;
+        }
+        final IdSet seen = new IdSet((int) Math.min(postingsSearched, Math.min(names.length, MAX_INITIAL_SLOTS)));
+        final List<Match> matches = new ArrayList<>();
+        int checked = 0;
+        for (int i = 0; i < searched; i++) {
+            for (final int id : lists[i]) {
+                if (!seen.add(id)) {
+                    continue;
+                }
+                if (++checked % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() - deadline >= 0) {
+                    return best(matches, limit);
+                }
+                final String candidate = names[id];
+                if (Math.abs(candidate.length() - key.length()) > maxEdits) {
+                    continue;
+                }
+                final long[] candidateTrigrams = trigrams(candidate);
+                final double score = 2.0 * common(query, candidateTrigrams) / (query.length + candidateTrigrams.length);
+                if (score < minScore) {
+                    continue;
+                }
+                final int edits = editDistance(key, candidate, maxEdits);
+                if (edits <= maxEdits) {
+                    matches.add(new Match(candidate, edits, score));
+                    if (matches.size() > limit * 4) {
+                        // Sort before cutting, the matches are in posting list order.
+                        matches.sort(BEST_FIRST);
+                        matches.subList(limit, matches.size()).clear();
+                    }
+                }
+            }
+        }
+        return best(matches, limit);
+    }
+
+    private static List<Match> best(final List<Match> matches, final int limit) {
+        matches.sort(BEST_FIRST);
+        return matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+    }
+
+    /**
+     * The distinct trigrams of a normalized name, padded so the start and end of the name count, sorted.
+     */
+    static long[] trigrams(final String key) {
+        final String padded = "  " + key + " ";
+        final long[] trigrams = new long[padded.length() - 2];
+        for (int i = 0; i < trigrams.length; i++) {
+            trigrams[i] = ((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16) | padded.charAt(i + 2);
+        }
+        Arrays.sort(trigrams);
+        int distinct = 0;
+        for (int i = 0; i < trigrams.length; i++) {
+            if (i == 0 || trigrams[i] != trigrams[i - 1]) {
+                trigrams[distinct++] = trigrams[i];
+            }
+        }
+        return distinct == trigrams.length ? trigrams : Arrays.copyOf(trigrams, distinct);
+    }
+
+    /**
+     * Count the trigrams in both sorted arrays.
+     */
+    private static int common(final long[] a, final long[] b) {
+        int count = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] == b[j]) {
+                count += 1;
+                i += 1;
+                j += 1;
+            } else if (a[i] < b[j]) {
+                i += 1;
+            } else {
+                j += 1;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Levenshtein distance between two strings, giving up once it must exceed a maximum.
+     * @return the distance, or maxEdits + 1 if it is larger than maxEdits.
+     */
+    static int editDistance(final String a, final String b, final int maxEdits) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = i;
+            for (int j = 1; j <= b.length(); j++) {
+                final int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > maxEdits) {
+                return maxEdits + 1;
+            }
+            final int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.min(previous[b.length()], maxEdits + 1);
+    }
+
+    /**
+     * A name close to the one searched for.
+     */
+    public static class Match {
+        private final String name;
+        private final int edits;
+        private final double score;
+
+        Match(final String name, final int edits, final double score) {
+            this.name = name;
+            this.edits = edits;
+            this.score = score;
+        }
+
+        /**
+         * @return the normalized name.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the edit distance from the name searched for.
+         */
+        public int getEdits() {
+            return edits;
+        }
+
+        /**
+         * @return the Dice coefficient of the trigrams of the two names.
+         */
+        public double getScore() {
+            return score;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s (%d edits, score %.2f)", name, edits, score);
+        }
+    }
+
+    /**
+     * The names already checked by one search, an open addressing set which starts small and doubles when it is
+     * half full, so it grows with the names a search checks before its deadline rather than with the index.
+     */
+    private static class IdSet {
+        private int[] slots;
+        private int mask;
+        private int size = 0;
+
+        IdSet(final int expected) {
+            allocate(Integer.highestOneBit(Math.max(2, expected) * 2 - 1) << 1);
+        }
+
+        /**
+         * @return true if the id was not in the set yet.
+         */
+        boolean add(final int id) {
+            int slot = (id * 0x9E3779B9) & mask;
+            while (slots[slot] != -1) {
+                if (slots[slot] == id) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id;
+            if (++size * 2 > slots.length) {
+                final int[] old = slots;
+                allocate(old.length * 2);
+                for (final int existing : old) {
+                    if (existing != -1) {
+                        int to = (existing * 0x9E3779B9) & mask;
+                        while (slots[to] != -1) {
+                            to = (to + 1) & mask;
+                        }
+                        slots[to] = existing;
+                    }
+                }
+            }
+            return true;
+        }
+
+        private void allocate(final int capacity) {
+            slots = new int[capacity];
+            Arrays.fill(slots, -1);
+            mask = capacity - 1;
+        }
+    }
+
+    /**
+     * Builder to accumulate names before freezing them into an index.
+     */
+    public static class Builder {
+
+        private final List<String> names = new ArrayList<>();
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final Map<Long, IntList> postings = new HashMap<>();
+
+        private Builder() {
+            // Use TrigramIndex.builder()
+        }
+
+        /**
+         * Add a name, names which normalize to one already added are skipped.
+         * @param name the name.
+         * @return this builder.
+         */
+        public Builder add(final String name) {
+            final String key = NameNormalizer.normalize(name);
+            if (key == null || key.isEmpty() || ids.containsKey(key)) {
+                return this;
+            }
+            final int id = names.size();
+            names.add(key);
+            ids.put(key, id);
+            for (final long trigram : trigrams(key)) {
+                postings.computeIfAbsent(trigram, t -> new IntList()).add(id);
+            }
+            return this;
+        }
+
+        /**
+         * Freeze the builder into an index.
+         * @return the index.
+         */
+        public TrigramIndex build() {
+            return new TrigramIndex(this);
+        }
+    }
+
+    /**
+     * Growable list of ints, posting lists are built in increasing order of name id.
+     */
+    private static class IntList {
+        private int[] values = new int[4];
+        private int size = 0;
+
+        void add(final int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package ca.umanitoba.libraries.georeferencing.ingest;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import javax.inject.Inject;
+
+import java.time.LocalDate;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import ca.umanitoba.libraries.georeferencing.FuzzyNameMatcher;
+import ca.umanitoba.libraries.georeferencing.LookupCache;
+import ca.umanitoba.libraries.georeferencing.PlaceLocator;
+import ca.umanitoba.libraries.georeferencing.PlaceSuggester;
+import ca.umanitoba.libraries.georeferencing.api.NameLookupService;
+import ca.umanitoba.libraries.georeferencing.index.PhoneticIndex;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Applies the GeoNames daily change files to the loaded locations, and drops only the cached lookups of the places
+ * they change. Lookups answered by a sound-alike name are cached under the requested name, so the lookups of every
+ * name which sounds like a changed one are dropped too.
+ * @author whikloj
+ */
+@Component
+public class DailyUpdates {
+
+    private static final Logger LOGGER = getLogger(DailyUpdates.class);
+
+    @Value("${datahub.updates.location:}")
+    private String updatesLocation;
+
+    @Inject
+    private NameLookupService nameLookup;
+
+    @Inject
+    private LookupCache lookupCache;
+
+    @Inject
+    private FuzzyNameMatcher fuzzyMatcher;
+
+    @Inject
+    private PlaceSuggester placeSuggester;
+
+    @Inject
+    private PlaceLocator placeLocator;
+
+    /**
+     * Basic constructor.
+     */
+    public DailyUpdates() {
+        // This constructor left intentionally blank.
+    }
+
+    /**
+     * @return true if a location for the change files is configured.
+     */
+    public boolean isConfigured() {
+        return updatesLocation != null && !updatesLocation.isBlank();
+    }
+
+    /**
+     * Apply the changes for a day.
+     * @param date the day.
+     * @return the changes, nothing is applied if none of the day's files were found.
+     */
+    public PlaceUpdates apply(final LocalDate date) {
+        final long start = System.currentTimeMillis();
+        final PlaceUpdates updates = PlaceUpdates.read(updatesLocation, date);
+        if (updates.getFilesRead() == 0) {
+            LOGGER.info("No change files for {} found in {}", date, updatesLocation);
+            return updates;
+        }
+        final Set<String> touchedNames = nameLookup.update(updates);
+        fuzzyMatcher.update(updates);
+        placeSuggester.update(updates);
+        placeLocator.update(updates);
+        final Predicate<String> soundsLike = PhoneticIndex.soundsLikeAny(touchedNames);
+        final int invalidated = lookupCache.invalidateNames(n -> touchedNames.contains(n) || soundsLike.test(n));
+        LOGGER.info("Applied changes for {} ({}), invalidated {} cached lookups in {} ms", date, updates,
+                invalidated, System.currentTimeMillis() - start);
+        return updates;
+    }
+}
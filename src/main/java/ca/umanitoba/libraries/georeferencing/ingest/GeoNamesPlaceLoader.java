@@ -0,0 +1,298 @@
+package ca.umanitoba.libraries.georeferencing.ingest;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import javax.inject.Inject;
+import javax.sql.DataSource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ca.umanitoba.libraries.georeferencing.GeoNamesPlace;
+import ca.umanitoba.libraries.georeferencing.exceptions.InternalApplicationError;
+import ca.umanitoba.libraries.georeferencing.utils.DatabaseUtils;
+import ca.umanitoba.libraries.georeferencing.utils.DbPlatform;
+import ca.umanitoba.libraries.georeferencing.utils.NameNormalizer;
+import ca.umanitoba.libraries.georeferencing.utils.ResourceUtils;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Streams a GeoNames place file into the place and alternate name tables.
+ * <p>
+ * The file is read as bytes by a {@link GeoNamesTsvReader}, then parsed and inserted in chunks by an
+ * {@link IngestPipeline}. Each chunk of places is written with its alternate names as two batches in one
+ * transaction, so memory use does not depend on the size of the file.
+ * <p>
+ * The GeoNames daily modification and deletion files are applied to the live tables as upserts and deletes of only
+ * the places they mention.
+ * @author whikloj
+ */
+@Component
+public class GeoNamesPlaceLoader {
+
+    private static final Logger LOGGER = getLogger(GeoNamesPlaceLoader.class);
+
+    public static final String TABLE_NAME = "placeLookup";
+
+    public static final String ALT_NAME_TABLE_NAME = "PlaceLookupAltNames";
+
+    private static final String INSERT_MAIN_ROWS = "INSERT INTO %s VALUES (:id, :name, :asciiname, :latitude, " +
+            ":longitude, :featureClass, :feature, :adminCode1, :adminCode2, :countryCode, :adminCode3, :adminCode4, " +
+            ":pop, :elev, :dem, :tz, :modified, :nameKey)";
+
+    private static final String INSERT_ALT_ROWS = "INSERT INTO %s VALUES (:id, :name, :nameKey)";
+
+    private static final String PLACE_VALUES = "VALUES (:id, :name, :asciiname, :latitude, :longitude, " +
+            ":featureClass, :feature, :adminCode1, :adminCode2, :countryCode, :adminCode3, :adminCode4, :pop, " +
+            ":elev, :dem, :tz, :modified, :nameKey)";
+
+    private static final Map<DbPlatform, String> UPSERT_MAP = Map.of(
+            DbPlatform.H2, "MERGE INTO " + TABLE_NAME + " KEY (geonamesId) " + PLACE_VALUES,
+            DbPlatform.MYSQL, "REPLACE INTO " + TABLE_NAME + " " + PLACE_VALUES);
+
+    private static final String SELECT_COUNTRIES = String.format("SELECT DISTINCT countryCode FROM %s",
+            TABLE_NAME);
+
+    private static final String SELECT_EXISTING = String.format("SELECT geonamesId, name, lastModified FROM %s " +
+            "WHERE geonamesId IN (:ids)", TABLE_NAME);
+
+    private static final String SELECT_EXISTING_ALT_NAMES = String.format("SELECT name FROM %s " +
+            "WHERE geonamesId IN (:ids)", ALT_NAME_TABLE_NAME);
+
+    private static final String SELECT_EXISTING_NAMES = String.format("SELECT name FROM %s " +
+            "WHERE geonamesId IN (:ids)", TABLE_NAME);
+
+    private static final String DELETE_PLACES = String.format("DELETE FROM %s WHERE geonamesId IN (:ids)",
+            TABLE_NAME);
+
+    private static final String DELETE_ALT_NAMES = String.format("DELETE FROM %s WHERE geonamesId IN (:ids)",
+            ALT_NAME_TABLE_NAME);
+
+    private static final String ADD_ALT_NAME = String.format("INSERT INTO %1$s (geonamesId, name, nameKey) " +
+            "SELECT geonamesId, :name, :nameKey FROM %2$s WHERE geonamesId = :id AND NOT EXISTS " +
+            "(SELECT 1 FROM %1$s WHERE geonamesId = :id AND name = :name)", ALT_NAME_TABLE_NAME, TABLE_NAME);
+
+    private static final String DELETE_ALT_NAME = String.format("DELETE FROM %s WHERE geonamesId = :id AND " +
+            "name = :name", ALT_NAME_TABLE_NAME);
+
+    private static final int MAX_IN_CLAUSE = 500;
+
+    @Inject
+    private IngestPipeline pipeline;
+
+    @Autowired
+    @Lazy
+    private DataSource dataSource;
+
+    @Autowired
+    @Lazy
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Autowired
+    @Lazy
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * Basic constructor.
+     */
+    public GeoNamesPlaceLoader() {
+        // This constructor left intentionally blank.
+    }
+
+    /**
+     * Load a place file into the place and alternate name tables.
+     * @param location the location of the file.
+     * @return the counts of the work done.
+     */
+    public LoadStatistics load(final String location) {
+        return load(location, TABLE_NAME, ALT_NAME_TABLE_NAME);
+    }
+
+    /**
+     * Load a place file into the given tables.
+     * @param location the location of the file.
+     * @param placeTable the table of places.
+     * @param altNameTable the table of alternate names.
+     * @return the counts of the work done.
+     */
+    public LoadStatistics load(final String location, final String placeTable, final String altNameTable) {
+        final String insertPlaces = String.format(INSERT_MAIN_ROWS, placeTable);
+        final String insertAltNames = String.format(INSERT_ALT_ROWS, altNameTable);
+        try (final GeoNamesTsvReader reader = new GeoNamesTsvReader(ResourceUtils.openLocation(location))) {
+            final LoadStatistics statistics = pipeline.load(placeTable, reader,
+                    line -> GeoNamesPlace.fromRow(TsvRow.forThread(line)),
+                    (template, chunk) -> writeChunk(template, chunk, insertPlaces, insertAltNames));
+            final long altNames = statistics.getRowsWritten() - statistics.getRecords();
+            LOGGER.info("Loaded {} records into table {} at {} alternate names/sec", altNames, altNameTable,
+                    statistics.getElapsedMillis() == 0 ? 0 : altNames * 1000 / statistics.getElapsedMillis());
+            return statistics;
+        } catch (final IOException | UncheckedIOException e) {
+            throw new InternalApplicationError(e);
+        }
+    }
+
+    /**
+     * Apply a day of changes to the live tables. Modified places replace the stored place and its alternate names
+     * unless the stored place was modified later, and new places are only added for countries already loaded. Each
+     * group of places is written in its own transaction.
+     * @param updates the changes.
+     * @return the normalized names the changed places had before and after the changes.
+     */
+    public Set<String> update(final PlaceUpdates updates) {
+        final long start = System.currentTimeMillis();
+        final Set<String> touchedNames = updates.getNames();
+        try {
+            final String upsert = UPSERT_MAP.get(DbPlatform.fromDataSource(dataSource));
+            if (upsert == null) {
+                throw new InternalApplicationError("No upsert statement for the current database");
+            }
+            final Set<String> countries = new HashSet<>(jdbcTemplate.getJdbcTemplate().queryForList(SELECT_COUNTRIES,
+                    String.class));
+            int written = 0;
+            for (final List<Integer> ids : DatabaseUtils.partition(updates.getModified().keySet(), MAX_IN_CLAUSE)) {
+                written += upsertPlaces(ids, updates.getModified(), countries, upsert, touchedNames);
+            }
+            for (final List<Integer> ids : DatabaseUtils.partition(updates.getDeleted(), MAX_IN_CLAUSE)) {
+                final MapSqlParameterSource ps = new MapSqlParameterSource("ids", ids);
+                collectNames(ps, touchedNames);
+                transactionTemplate.executeWithoutResult(status -> {
+                    jdbcTemplate.update(DELETE_ALT_NAMES, ps);
+                    jdbcTemplate.update(DELETE_PLACES, ps);
+                });
+            }
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(ADD_ALT_NAME, toParameterSources(updates.getAddedAlternateNames()));
+                jdbcTemplate.batchUpdate(DELETE_ALT_NAME, toParameterSources(updates.getDeletedAlternateNames()));
+            });
+            LOGGER.info("Applied {} of {} modified places and {} deletes to table {} in {} ms", written,
+                    updates.getModified().size(), updates.getDeleted().size(), TABLE_NAME,
+                    System.currentTimeMillis() - start);
+            return touchedNames;
+        } catch (final DataAccessException e) {
+            throw new InternalApplicationError(e);
+        }
+    }
+
+    /**
+     * Upsert a group of modified places and replace their alternate names.
+     * @param ids the ids of the places.
+     * @param modified the modified places by id.
+     * @param countries the countries already loaded.
+     * @param upsert the statement to insert or replace a place.
+     * @param touchedNames receives the names and alternate names of the places before the change.
+     * @return the number of places written.
+     */
+    private int upsertPlaces(final List<Integer> ids, final Map<Integer, GeoNamesPlace> modified,
+                             final Set<String> countries, final String upsert, final Set<String> touchedNames) {
+        final MapSqlParameterSource idSource = new MapSqlParameterSource("ids", ids);
+        final Map<Integer, LocalDate> existing = new HashMap<>();
+        jdbcTemplate.query(SELECT_EXISTING, idSource, (RowCallbackHandler) rs -> {
+            final Date lastModified = rs.getDate("lastModified");
+            existing.put(rs.getInt("geonamesId"), lastModified == null ? LocalDate.MIN : lastModified.toLocalDate());
+            PlaceUpdates.addName(touchedNames, rs.getString("name"));
+        });
+        final List<GeoNamesPlace> places = new ArrayList<>(ids.size());
+        for (final Integer id : ids) {
+            final GeoNamesPlace place = modified.get(id);
+            final LocalDate stored = existing.get(id);
+            if (stored == null ? countries.contains(place.getCountryCode()) :
+                    !stored.isAfter(LocalDate.parse(place.getLastModified()))) {
+                places.add(place);
+            }
+        }
+        if (places.isEmpty()) {
+            return 0;
+        }
+        final List<Integer> keptIds = new ArrayList<>(places.size());
+        places.forEach(p -> keptIds.add(p.getGeonamesId()));
+        final MapSqlParameterSource keptSource = new MapSqlParameterSource("ids", keptIds);
+        jdbcTemplate.query(SELECT_EXISTING_ALT_NAMES, keptSource,
+                (RowCallbackHandler) rs -> PlaceUpdates.addName(touchedNames, rs.getString(1)));
+        final MapSqlParameterSource[] rows = new MapSqlParameterSource[places.size()];
+        final List<PlaceUpdates.AlternateName> altNames = new ArrayList<>();
+        for (int i = 0; i < rows.length; i++) {
+            final GeoNamesPlace place = places.get(i);
+            rows[i] = place.toParameterSource();
+            for (final String name : place.getAlternateNameList()) {
+                altNames.add(new PlaceUpdates.AlternateName(place.getGeonamesId(), name));
+            }
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(upsert, rows);
+            jdbcTemplate.update(DELETE_ALT_NAMES, keptSource);
+            if (!altNames.isEmpty()) {
+                jdbcTemplate.batchUpdate(String.format(INSERT_ALT_ROWS, ALT_NAME_TABLE_NAME),
+                        toParameterSources(altNames));
+            }
+        });
+        return places.size();
+    }
+
+    /**
+     * Add the stored names and alternate names of places.
+     * @param idSource parameters holding the ids of the places.
+     * @param touchedNames receives the normalized names.
+     */
+    private void collectNames(final MapSqlParameterSource idSource, final Set<String> touchedNames) {
+        jdbcTemplate.query(SELECT_EXISTING_NAMES, idSource,
+                (RowCallbackHandler) rs -> PlaceUpdates.addName(touchedNames, rs.getString(1)));
+        jdbcTemplate.query(SELECT_EXISTING_ALT_NAMES, idSource,
+                (RowCallbackHandler) rs -> PlaceUpdates.addName(touchedNames, rs.getString(1)));
+    }
+
+    private static MapSqlParameterSource[] toParameterSources(final List<PlaceUpdates.AlternateName> names) {
+        final MapSqlParameterSource[] sources = new MapSqlParameterSource[names.size()];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = new MapSqlParameterSource("id", names.get(i).getGeonamesId())
+                    .addValue("name", names.get(i).getName())
+                    .addValue("nameKey", NameNormalizer.normalize(names.get(i).getName()));
+        }
+        return sources;
+    }
+
+    /**
+     * Insert a chunk of places and their alternate names as two batches.
+     * @param template the template of the writer's connection.
+     * @param chunk the places.
+     * @param insertPlaces the statement to insert a place.
+     * @param insertAltNames the statement to insert an alternate name.
+     * @return the number of rows written.
+     */
+    private static int writeChunk(final NamedParameterJdbcTemplate template, final List<GeoNamesPlace> chunk,
+                                  final String insertPlaces, final String insertAltNames) {
+        final MapSqlParameterSource[] rows = new MapSqlParameterSource[chunk.size()];
+        final List<MapSqlParameterSource> altRows = new ArrayList<>();
+        for (int i = 0; i < rows.length; i++) {
+            final GeoNamesPlace place = chunk.get(i);
+            rows[i] = place.toParameterSource();
+            for (final String name : place.getAlternateNameList()) {
+                final MapSqlParameterSource ps = new MapSqlParameterSource();
+                ps.addValue("id", place.getGeonamesId());
+                ps.addValue("name", name);
+                ps.addValue("nameKey", NameNormalizer.normalize(name));
+                altRows.add(ps);
+            }
+        }
+        template.batchUpdate(insertPlaces, rows);
+        if (!altRows.isEmpty()) {
+            template.batchUpdate(insertAltNames, altRows.toArray(new MapSqlParameterSource[0]));
+        }
+        return rows.length + altRows.size();
+    }
+}
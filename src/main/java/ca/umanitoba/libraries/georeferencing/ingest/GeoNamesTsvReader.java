@@ -0,0 +1,134 @@
+package ca.umanitoba.libraries.georeferencing.ingest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the lines of a GeoNames tab separated file as UTF-8 bytes, to be split into columns by a {@link TsvRow}.
+ * <p>
+ * The file is scanned for line endings in a byte buffer, so no characters are decoded and only one array is created
+ * per line. Line endings are removed.
+ * @author whikloj
+ */
+public class GeoNamesTsvReader implements Iterator<byte[]>, Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final InputStream input;
+
+    private byte[] buffer = new byte[BUFFER_SIZE];
+
+    /**
+     * Start of the next line in the buffer.
+     */
+    private int position = 0;
+
+    /**
+     * End of the data in the buffer.
+     */
+    private int limit = 0;
+
+    /**
+     * Where to continue looking for a line ending.
+     */
+    private int scanned = 0;
+
+    private boolean endOfInput = false;
+
+    private byte[] nextLine = null;
+
+    /**
+     * Constructor.
+     * @param input the file, which is closed with this reader.
+     */
+    public GeoNamesTsvReader(final InputStream input) {
+        this.input = input;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextLine == null) {
+            nextLine = readLine();
+        }
+        return nextLine != null;
+    }
+
+    @Override
+    public byte[] next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final byte[] line = nextLine;
+        nextLine = null;
+        return line;
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+
+    /**
+     * @return the next line, or null at the end of the file.
+     * @throws UncheckedIOException if the file cannot be read.
+     */
+    private byte[] readLine() {
+        while (true) {
+            for (int i = scanned; i < limit; i++) {
+                if (buffer[i] == '\n') {
+                    final byte[] line = copyLine(i);
+                    position = i + 1;
+                    scanned = position;
+                    return line;
+                }
+            }
+            scanned = limit;
+            if (endOfInput) {
+                if (position == limit) {
+                    return null;
+                }
+                final byte[] line = copyLine(limit);
+                position = limit;
+                return line;
+            }
+            fill();
+        }
+    }
+
+    /**
+     * Copy the line from the current position, dropping a carriage return before the end.
+     */
+    private byte[] copyLine(final int end) {
+        final int lineEnd = end > position && buffer[end - 1] == '\r' ? end - 1 : end;
+        return Arrays.copyOfRange(buffer, position, lineEnd);
+    }
+
+    /**
+     * Move the unread part of the buffer to the front, growing it if one line fills it, and read more.
+     */
+    private void fill() {
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            scanned -= position;
+            position = 0;
+        } else if (limit == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        try {
+            final int read = input.read(buffer, limit, buffer.length - limit);
+            if (read < 0) {
+                endOfInput = true;
+            } else {
+                limit += read;
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package ca.umanitoba.libraries.georeferencing.ingest;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import javax.sql.DataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import ca.umanitoba.libraries.georeferencing.exceptions.InternalApplicationError;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Loads a data file into the database with a reader thread, a pool of parser threads and a pool of writer threads
+ * joined by bounded queues.
+ * <p>
+ * The reader groups the source into chunks, the parsers turn each chunk into records and the writers insert each
+ * chunk of records and commit it. Every writer uses its own connection. Chunks are written in no particular order.
+ * @author whikloj
+ */
+@Component
+public class IngestPipeline {
+
+    private static final Logger LOGGER = getLogger(IngestPipeline.class);
+
+    @Autowired
+    @Lazy
+    private DataSource dataSource;
+
+    @Value("${datahub.loader.chunkSize:5000}")
+    private int chunkSize;
+
+    @Value("${datahub.loader.parserThreads:2}")
+    private int parserThreads;
+
+    @Value("${datahub.loader.writerThreads:2}")
+    private int writerThreads;
+
+    @Value("${datahub.loader.queueCapacity:8}")
+    private int queueCapacity;
+
+    @Value("${datahub.loader.progressInterval:100000}")
+    private long progressInterval;
+
+    /**
+     * Writes a chunk of records using a writer's connection.
+     * @param <T> the type of the records.
+     */
+    @FunctionalInterface
+    public interface ChunkWriter<T> {
+        /**
+         * Insert the records. The chunk is committed after this returns.
+         * @param template a template bound to the writer's connection.
+         * @param chunk the records.
+         * @return the number of rows written, including rows of related tables.
+         */
+        int write(NamedParameterJdbcTemplate template, List<T> chunk);
+    }
+
+    /**
+     * Basic constructor.
+     */
+    public IngestPipeline() {
+        // This constructor left intentionally blank.
+    }
+
+    /**
+     * Load a source into the database. Returns once every record is written.
+     * @param name the name of the data, used for logging and thread names.
+     * @param source the raw items, such as the lines of a file.
+     * @param parser turns a raw item into a record, or null to skip the item.
+     * @param writer inserts a chunk of records.
+     * @param <I> the type of the raw items.
+     * @param <T> the type of the records.
+     * @return the counts of the work done by each stage.
+     */
+    public <I, T> LoadStatistics load(final String name, final Iterator<I> source, final Function<I, T> parser,
+                                      final ChunkWriter<T> writer) {
+        final LoadStatistics statistics = new LoadStatistics(name, parserThreads, writerThreads);
+        final BlockingQueue<List<I>> rawQueue = new ArrayBlockingQueue<>(queueCapacity);
+        final BlockingQueue<List<T>> recordQueue = new ArrayBlockingQueue<>(queueCapacity);
+        final AtomicInteger threadCount = new AtomicInteger(0);
+        final ExecutorService executor = Executors.newFixedThreadPool(1 + parserThreads + writerThreads,
+                r -> new Thread(r, String.format("ingest-%s-%d", name, threadCount.incrementAndGet())));
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final AtomicInteger runningParsers = new AtomicInteger(parserThreads);
+
+        executor.execute(stage(executor, failure, () -> read(source, rawQueue, statistics)));
+        for (int i = 0; i < parserThreads; i++) {
+            executor.execute(stage(executor, failure, () -> {
+                parse(rawQueue, recordQueue, parser, statistics);
+                if (runningParsers.decrementAndGet() == 0) {
+                    for (int j = 0; j < writerThreads; j++) {
+                        recordQueue.put(Collections.emptyList());
+                    }
+                }
+            }));
+        }
+        for (int i = 0; i < writerThreads; i++) {
+            executor.execute(stage(executor, failure, () -> write(recordQueue, writer, statistics)));
+        }
+
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (final InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new InternalApplicationError(e);
+        }
+        statistics.finished();
+        final Throwable error = failure.get();
+        if (error instanceof InternalApplicationError) {
+            throw (InternalApplicationError) error;
+        } else if (error != null) {
+            throw new InternalApplicationError(error);
+        }
+        logStatistics(statistics);
+        return statistics;
+    }
+
+    /**
+     * Group the source into chunks, then tell each parser there are no more.
+     */
+    private <I> void read(final Iterator<I> source, final BlockingQueue<List<I>> rawQueue,
+                          final LoadStatistics statistics) throws InterruptedException {
+        long started = System.nanoTime();
+        List<I> chunk = new ArrayList<>(chunkSize);
+        while (source.hasNext()) {
+            chunk.add(source.next());
+            if (chunk.size() == chunkSize) {
+                statistics.getReader().chunkDone(chunk.size(), System.nanoTime() - started);
+                rawQueue.put(chunk);
+                started = System.nanoTime();
+                chunk = new ArrayList<>(chunkSize);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            statistics.getReader().chunkDone(chunk.size(), System.nanoTime() - started);
+            rawQueue.put(chunk);
+        }
+        for (int i = 0; i < parserThreads; i++) {
+            rawQueue.put(Collections.emptyList());
+        }
+    }
+
+    /**
+     * Parse chunks until an empty chunk marks the end of the source.
+     */
+    private <I, T> void parse(final BlockingQueue<List<I>> rawQueue, final BlockingQueue<List<T>> recordQueue,
+                              final Function<I, T> parser, final LoadStatistics statistics)
+            throws InterruptedException {
+        List<I> chunk;
+        while (!(chunk = rawQueue.take()).isEmpty()) {
+            final long started = System.nanoTime();
+            final List<T> records = new ArrayList<>(chunk.size());
+            for (final I item : chunk) {
+                final T record = parser.apply(item);
+                if (record != null) {
+                    records.add(record);
+                }
+            }
+            statistics.getParser().chunkDone(chunk.size(), System.nanoTime() - started);
+            if (!records.isEmpty()) {
+                recordQueue.put(records);
+            }
+        }
+    }
+
+    /**
+     * Write and commit chunks on this writer's own connection until an empty chunk marks the end of the records.
+     */
+    private <T> void write(final BlockingQueue<List<T>> recordQueue, final ChunkWriter<T> writer,
+                           final LoadStatistics statistics) throws InterruptedException, SQLException {
+        try (final Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                final NamedParameterJdbcTemplate template = new NamedParameterJdbcTemplate(
+                        new SingleConnectionDataSource(connection, true));
+                List<T> chunk;
+                while (!(chunk = recordQueue.take()).isEmpty()) {
+                    final long started = System.nanoTime();
+                    try {
+                        statistics.rowsWritten(writer.write(template, chunk));
+                        connection.commit();
+                    } catch (final RuntimeException | SQLException e) {
+                        connection.rollback();
+                        throw e;
+                    }
+                    final long written = statistics.getWriter().chunkDone(chunk.size(),
+                            System.nanoTime() - started);
+                    if (progressInterval > 0 && (written - chunk.size()) / progressInterval !=
+                            written / progressInterval) {
+                        LOGGER.info("Loaded {} records of {}, {} rows/sec", written, statistics.getName(),
+                                statistics.getRowsPerSecond());
+                    }
+                }
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Wrap a stage so the first failure is kept and stops every other stage.
+     */
+    private Runnable stage(final ExecutorService executor, final AtomicReference<Throwable> failure,
+                           final StageTask task) {
+        return () -> {
+            try {
+                task.run();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (final Throwable e) {
+                if (failure.compareAndSet(null, e)) {
+                    executor.shutdownNow();
+                }
+            }
+        };
+    }
+
+    private void logStatistics(final LoadStatistics statistics) {
+        LOGGER.info("Loaded {} records ({} rows) of {} in {} ms, {} rows/sec", statistics.getRecords(),
+                statistics.getRowsWritten(), statistics.getName(), statistics.getElapsedMillis(),
+                statistics.getRowsPerSecond());
+        for (final LoadStatistics.Stage stage : List.of(statistics.getReader(), statistics.getParser(),
+                statistics.getWriter())) {
+            LOGGER.info("  {} stage: {} threads, {} items, {} items/sec, {}% busy", stage.getStageName(),
+                    stage.getThreads(), stage.getItems(), stage.getItemsPerSecond(), stage.getBusyPercent());
+        }
+    }
+
+    /**
+     * The body of a pipeline stage.
+     */
+    @FunctionalInterface
+    private interface StageTask {
+        void run() throws Exception;
+    }
+}
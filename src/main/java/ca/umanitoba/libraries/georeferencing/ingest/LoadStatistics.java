@@ -0,0 +1,152 @@
+package ca.umanitoba.libraries.georeferencing.ingest;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts of the work done by each stage of a single run of an {@link IngestPipeline}.
+ * @author whikloj
+ */
+public class LoadStatistics {
+
+    private final String name;
+    private final long start = System.nanoTime();
+    private final Stage reader;
+    private final Stage parser;
+    private final Stage writer;
+    private final AtomicLong rowsWritten = new AtomicLong(0);
+    private volatile long finish = 0;
+
+    /**
+     * Constructor.
+     * @param name the name of the data being loaded.
+     * @param parserThreads the number of parser threads.
+     * @param writerThreads the number of writer threads.
+     */
+    LoadStatistics(final String name, final int parserThreads, final int writerThreads) {
+        this.name = name;
+        this.reader = new Stage("read", 1);
+        this.parser = new Stage("parse", parserThreads);
+        this.writer = new Stage("write", writerThreads);
+    }
+
+    /**
+     * Record the end of the load.
+     */
+    void finished() {
+        finish = System.nanoTime();
+    }
+
+    /**
+     * Record rows written to the database, including rows of related tables.
+     * @param rows the number of rows.
+     */
+    void rowsWritten(final long rows) {
+        rowsWritten.addAndGet(rows);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Stage getReader() {
+        return reader;
+    }
+
+    public Stage getParser() {
+        return parser;
+    }
+
+    public Stage getWriter() {
+        return writer;
+    }
+
+    /**
+     * @return the number of records written.
+     */
+    public long getRecords() {
+        return writer.getItems();
+    }
+
+    /**
+     * @return the number of rows written, including rows of related tables such as alternate names.
+     */
+    public long getRowsWritten() {
+        return rowsWritten.get();
+    }
+
+    /**
+     * @return rows written per second.
+     */
+    public long getRowsPerSecond() {
+        return rate(rowsWritten.get());
+    }
+
+    /**
+     * @return milliseconds since the load started, or the load took if it is finished.
+     */
+    public long getElapsedMillis() {
+        return elapsedNanos() / 1_000_000;
+    }
+
+    private long elapsedNanos() {
+        return (finish == 0 ? System.nanoTime() : finish) - start;
+    }
+
+    private long rate(final long count) {
+        final long nanos = elapsedNanos();
+        return nanos == 0 ? 0 : count * 1_000_000_000L / nanos;
+    }
+
+    /**
+     * Counts for one stage of the pipeline.
+     */
+    public class Stage {
+        private final String stageName;
+        private final int threads;
+        private final AtomicLong items = new AtomicLong(0);
+        private final AtomicLong busyNanos = new AtomicLong(0);
+
+        Stage(final String stageName, final int threads) {
+            this.stageName = stageName;
+            this.threads = threads;
+        }
+
+        /**
+         * Record a chunk handled by the stage.
+         * @param count the number of items in the chunk.
+         * @param nanos the time spent on the chunk, not counting time waiting on other stages.
+         * @return the number of items handled so far.
+         */
+        long chunkDone(final long count, final long nanos) {
+            busyNanos.addAndGet(nanos);
+            return items.addAndGet(count);
+        }
+
+        public String getStageName() {
+            return stageName;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public long getItems() {
+            return items.get();
+        }
+
+        /**
+         * @return items handled per second of the whole load.
+         */
+        public long getItemsPerSecond() {
+            return rate(items.get());
+        }
+
+        /**
+         * @return percent of the stage's thread time spent working instead of waiting on other stages.
+         */
+        public long getBusyPercent() {
+            final long available = elapsedNanos() * threads;
+            return available == 0 ? 0 : busyNanos.get() * 100 / available;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package ca.umanitoba.libraries.georeferencing.ingest;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import ca.umanitoba.libraries.georeferencing.GeoNamesPlace;
+import ca.umanitoba.libraries.georeferencing.exceptions.InternalApplicationError;
+import ca.umanitoba.libraries.georeferencing.utils.NameNormalizer;
+import ca.umanitoba.libraries.georeferencing.utils.ResourceUtils;
+
+/**
+ * The changes published by GeoNames for one day, read from the modifications, deletes, alternateNamesModifications
+ * and alternateNamesDeletes files.
+ * @author whikloj
+ */
+public class PlaceUpdates {
+
+    private static final String MODIFICATIONS = "modifications-%s.txt";
+    private static final String DELETES = "deletes-%s.txt";
+    private static final String ALT_NAME_MODIFICATIONS = "alternateNamesModifications-%s.txt";
+    private static final String ALT_NAME_DELETES = "alternateNamesDeletes-%s.txt";
+
+    /**
+     * Alternate name "languages" which hold links and codes instead of names.
+     */
+    private static final Set<String> NOT_NAMES = Set.of("link", "wkdt", "post", "iata", "icao", "faac", "tcid",
+            "unlc");
+
+    private final Map<Integer, GeoNamesPlace> modified = new LinkedHashMap<>();
+    private final Set<Integer> deleted = new LinkedHashSet<>();
+    private final List<AlternateName> addedAlternateNames = new ArrayList<>();
+    private final List<AlternateName> deletedAlternateNames = new ArrayList<>();
+    private int filesRead = 0;
+
+    /**
+     * Read the files for a day. Missing files are skipped.
+     * @param location the location of the directory holding the files, with a "classpath:" or "file:" prefix.
+     * @param date the day.
+     * @return the changes.
+     */
+    public static PlaceUpdates read(final String location, final LocalDate date) {
+        final String directory = location.endsWith("/") ? location : location + "/";
+        final PlaceUpdates updates = new PlaceUpdates();
+        updates.readFile(directory + String.format(MODIFICATIONS, date), row -> {
+            final GeoNamesPlace place = GeoNamesPlace.fromRow(row);
+            updates.modified.put(place.getGeonamesId(), place);
+        });
+        updates.readFile(directory + String.format(DELETES, date), row -> {
+            final int id = row.getInt(0);
+            updates.deleted.add(id);
+            updates.modified.remove(id);
+        });
+        updates.readFile(directory + String.format(ALT_NAME_MODIFICATIONS, date), row -> {
+            if (row.getColumnCount() > 3 && !NOT_NAMES.contains(row.getString(2)) && !row.isEmpty(3)) {
+                updates.addedAlternateNames.add(new AlternateName(row.getInt(1), row.getString(3)));
+            }
+        });
+        updates.readFile(directory + String.format(ALT_NAME_DELETES, date), row -> {
+            if (row.getColumnCount() > 2 && !row.isEmpty(2)) {
+                updates.deletedAlternateNames.add(new AlternateName(row.getInt(1), row.getString(2)));
+            }
+        });
+        return updates;
+    }
+
+    /**
+     * @return the new and changed places by id.
+     */
+    public Map<Integer, GeoNamesPlace> getModified() {
+        return Collections.unmodifiableMap(modified);
+    }
+
+    /**
+     * @return the ids of removed places.
+     */
+    public Set<Integer> getDeleted() {
+        return Collections.unmodifiableSet(deleted);
+    }
+
+    /**
+     * @return alternate names added to existing places.
+     */
+    public List<AlternateName> getAddedAlternateNames() {
+        return Collections.unmodifiableList(addedAlternateNames);
+    }
+
+    /**
+     * @return alternate names removed from places.
+     */
+    public List<AlternateName> getDeletedAlternateNames() {
+        return Collections.unmodifiableList(deletedAlternateNames);
+    }
+
+    /**
+     * @return the number of files which were found and read.
+     */
+    public int getFilesRead() {
+        return filesRead;
+    }
+
+    /**
+     * Every normalized name mentioned by the changes, the names a place had before a change are not included.
+     * @return the names.
+     */
+    public Set<String> getNames() {
+        final Set<String> names = new HashSet<>();
+        for (final GeoNamesPlace place : modified.values()) {
+            addName(names, place.getName());
+            for (final String name : place.getAlternateNameList()) {
+                addName(names, name);
+            }
+        }
+        addedAlternateNames.forEach(a -> addName(names, a.getName()));
+        deletedAlternateNames.forEach(a -> addName(names, a.getName()));
+        return names;
+    }
+
+    /**
+     * Add a normalized name to a set, skipping blank names.
+     * @param names the set.
+     * @param name the name.
+     */
+    public static void addName(final Set<String> names, final String name) {
+        final String key = NameNormalizer.normalize(name);
+        if (key != null && !key.isEmpty()) {
+            names.add(key);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d modified places, %d deleted places, %d added and %d deleted alternate names",
+                modified.size(), deleted.size(), addedAlternateNames.size(), deletedAlternateNames.size());
+    }
+
+    private void readFile(final String file, final Consumer<TsvRow> handler) {
+        if (!ResourceUtils.exists(file)) {
+            return;
+        }
+        filesRead += 1;
+        try (final GeoNamesTsvReader reader = new GeoNamesTsvReader(ResourceUtils.openLocation(file))) {
+            final TsvRow row = new TsvRow();
+            while (reader.hasNext()) {
+                final byte[] line = reader.next();
+                if (line.length > 0) {
+                    handler.accept(row.reset(line, line.length));
+                }
+            }
+        } catch (final IOException | UncheckedIOException e) {
+            throw new InternalApplicationError(e);
+        }
+    }
+
+    /**
+     * An alternate name of a place.
+     */
+    public static class AlternateName {
+        private final int geonamesId;
+        private final String name;
+
+        public AlternateName(final int geonamesId, final String name) {
+            this.geonamesId = geonamesId;
+            this.name = name;
+        }
+
+        public int getGeonamesId() {
+            return geonamesId;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package ca.umanitoba.libraries.georeferencing.ingest;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import javax.sql.DataSource;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import ca.umanitoba.libraries.georeferencing.exceptions.InternalApplicationError;
+import ca.umanitoba.libraries.georeferencing.utils.DbPlatform;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Reloads tables without interrupting lookups.
+ * <p>
+ * New data is loaded into an empty shadow copy of each table while lookups keep reading the live tables. On MySQL
+ * the shadows, created with the indexes and foreign keys of the live tables, then take the place of the live tables
+ * in one atomic RENAME TABLE. H2 cannot rename several tables at once, so there the shadow rows replace the live rows
+ * in a single transaction instead. Either way readers see the old data until the swap and the new data after, never
+ * an empty or partly loaded table.
+ * @author whikloj
+ */
+@Component
+public class ShadowTables {
+
+    private static final Logger LOGGER = getLogger(ShadowTables.class);
+
+    private static final String SHADOW_SUFFIX = "_shadow";
+
+    private static final String OLD_SUFFIX = "_old";
+
+    private static final String SELECT_FOREIGN_KEYS = "SELECT k.CONSTRAINT_NAME, k.COLUMN_NAME, " +
+            "k.REFERENCED_TABLE_NAME, k.REFERENCED_COLUMN_NAME, r.UPDATE_RULE, r.DELETE_RULE " +
+            "FROM information_schema.KEY_COLUMN_USAGE k JOIN information_schema.REFERENTIAL_CONSTRAINTS r " +
+            "ON r.CONSTRAINT_SCHEMA = k.CONSTRAINT_SCHEMA AND r.CONSTRAINT_NAME = k.CONSTRAINT_NAME " +
+            "WHERE k.TABLE_SCHEMA = DATABASE() AND LOWER(k.TABLE_NAME) = LOWER(?) " +
+            "AND k.REFERENCED_TABLE_NAME IS NOT NULL ORDER BY k.CONSTRAINT_NAME, k.ORDINAL_POSITION";
+
+    @Autowired
+    @Lazy
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    @Lazy
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private volatile DbPlatform platform;
+
+    /**
+     * Basic constructor.
+     */
+    public ShadowTables() {
+        // This constructor left intentionally blank.
+    }
+
+    /**
+     * @param table a live table.
+     * @return the name of its shadow table.
+     */
+    public static String shadowOf(final String table) {
+        return table + SHADOW_SUFFIX;
+    }
+
+    /**
+     * Create empty shadow copies of tables, replacing any left by an earlier failed reload. On MySQL they have the
+     * indexes and foreign keys of the live tables, a foreign key to one of the tables points to its shadow.
+     * @param tables the live tables, tables referenced by foreign keys before the tables which reference them.
+     */
+    public void prepare(final String... tables) {
+        try {
+            for (int i = tables.length - 1; i >= 0; i--) {
+                jdbcTemplate.execute(String.format("DROP TABLE IF EXISTS %s", shadowOf(tables[i])));
+            }
+            for (final String table : tables) {
+                if (isMysql()) {
+                    jdbcTemplate.execute(String.format("CREATE TABLE %s LIKE %s", shadowOf(table), table));
+                    copyForeignKeys(table, tables);
+                } else {
+                    jdbcTemplate.execute(String.format("CREATE TABLE %s AS SELECT * FROM %s WHERE 1 = 0",
+                            shadowOf(table), table));
+                }
+            }
+        } catch (final DataAccessException e) {
+            throw new InternalApplicationError(e);
+        }
+    }
+
+    /**
+     * Replace the live tables with their shadows, then drop the old data.
+     * @param tables the live tables, tables referenced by foreign keys before the tables which reference them.
+     */
+    public void swap(final String... tables) {
+        final long start = System.currentTimeMillis();
+        try {
+            if (isMysql()) {
+                renameSwap(tables);
+            } else {
+                copySwap(tables);
+            }
+        } catch (final DataAccessException e) {
+            throw new InternalApplicationError(e);
+        }
+        LOGGER.info("Swapped in new rows for {} in {} ms", List.of(tables), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Rename the live tables out of the way and the shadows into their place in one statement, MySQL applies all
+     * the renames of a RENAME TABLE atomically.
+     */
+    private void renameSwap(final String... tables) {
+        for (int i = tables.length - 1; i >= 0; i--) {
+            jdbcTemplate.execute(String.format("DROP TABLE IF EXISTS %s", tables[i] + OLD_SUFFIX));
+        }
+        final List<String> renames = new ArrayList<>();
+        for (final String table : tables) {
+            renames.add(String.format("%s TO %s", table, table + OLD_SUFFIX));
+            renames.add(String.format("%s TO %s", shadowOf(table), table));
+        }
+        jdbcTemplate.execute("RENAME TABLE " + String.join(", ", renames));
+        for (int i = tables.length - 1; i >= 0; i--) {
+            jdbcTemplate.execute(String.format("DROP TABLE IF EXISTS %s", tables[i] + OLD_SUFFIX));
+        }
+    }
+
+    /**
+     * Replace the rows of the live tables with the rows of their shadows in one transaction, then drop the shadows.
+     */
+    private void copySwap(final String... tables) {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = tables.length - 1; i >= 0; i--) {
+                jdbcTemplate.update(String.format("DELETE FROM %s", tables[i]));
+            }
+            for (final String table : tables) {
+                jdbcTemplate.update(String.format("INSERT INTO %s SELECT * FROM %s", table, shadowOf(table)));
+            }
+        });
+        for (int i = tables.length - 1; i >= 0; i--) {
+            jdbcTemplate.execute(String.format("DROP TABLE IF EXISTS %s", shadowOf(tables[i])));
+        }
+    }
+
+    /**
+     * Add the foreign keys of a live table to its shadow, which CREATE TABLE ... LIKE leaves out. Foreign key names
+     * are unique in a schema, so the shadow's are named after it and the time, they keep that name once swapped in.
+     * @param table the live table.
+     * @param tables the tables being reloaded together.
+     */
+    private void copyForeignKeys(final String table, final String... tables) {
+        final Map<String, List<Map<String, Object>>> keys = new LinkedHashMap<>();
+        for (final Map<String, Object> column : jdbcTemplate.queryForList(SELECT_FOREIGN_KEYS, table)) {
+            keys.computeIfAbsent((String) column.get("CONSTRAINT_NAME"), k -> new ArrayList<>()).add(column);
+        }
+        int count = 0;
+        for (final List<Map<String, Object>> columns : keys.values()) {
+            final List<String> from = new ArrayList<>();
+            final List<String> to = new ArrayList<>();
+            for (final Map<String, Object> column : columns) {
+                from.add((String) column.get("COLUMN_NAME"));
+                to.add((String) column.get("REFERENCED_COLUMN_NAME"));
+            }
+            final Map<String, Object> first = columns.get(0);
+            String referenced = (String) first.get("REFERENCED_TABLE_NAME");
+            for (final String reloaded : tables) {
+                if (reloaded.equalsIgnoreCase(referenced)) {
+                    referenced = shadowOf(reloaded);
+                }
+            }
+            jdbcTemplate.execute(String.format("ALTER TABLE %s ADD CONSTRAINT fk_%s_%d_%d FOREIGN KEY (%s) " +
+                    "REFERENCES %s (%s) ON UPDATE %s ON DELETE %s", shadowOf(table), table,
+                    System.currentTimeMillis(), ++count, String.join(", ", from), referenced, String.join(", ", to),
+                    first.get("UPDATE_RULE"), first.get("DELETE_RULE")));
+        }
+    }
+
+    private boolean isMysql() {
+        if (platform == null) {
+            platform = DbPlatform.fromDataSource(dataSource);
+        }
+        return platform == DbPlatform.MYSQL;
+    }
+}
@@ -0,0 +1,263 @@
+package ca.umanitoba.libraries.georeferencing.ingest;
+
+import java.nio.charset.StandardCharsets;
+
+import ca.umanitoba.libraries.georeferencing.exceptions.InternalApplicationError;
+
+/**
+ * The columns of one line of a tab separated file, read straight from the UTF-8 bytes of the line.
+ * <p>
+ * Numbers are parsed from the bytes and Strings are only created for the columns which are asked for. A row can be
+ * reset to another line so one instance can be reused by a thread.
+ * @author whikloj
+ */
+public class TsvRow {
+
+    private static final byte TAB = '\t';
+
+    /**
+     * Largest power of ten which is exactly representable as a double.
+     */
+    private static final int MAX_EXACT_POWER = 22;
+
+    private static final double[] POWERS_OF_TEN = new double[MAX_EXACT_POWER + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i <= MAX_EXACT_POWER; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private static final ThreadLocal<TsvRow> THREAD_ROWS = ThreadLocal.withInitial(TsvRow::new);
+
+    private byte[] line;
+    private int length;
+    private int columns;
+    private int[] starts = new int[20];
+    private int[] ends = new int[20];
+
+    /**
+     * Basic constructor, call {@link #reset(byte[], int)} before reading columns.
+     */
+    public TsvRow() {
+        // This constructor left intentionally blank.
+    }
+
+    /**
+     * Constructor.
+     * @param line the bytes of the line, without the line ending.
+     */
+    public TsvRow(final byte[] line) {
+        reset(line, line.length);
+    }
+
+    /**
+     * Split a line with the row belonging to the current thread, which saves creating a row per line when parsing
+     * a file. The row is only valid until the thread's next call.
+     * @param line the bytes of the line, without the line ending.
+     * @return the current thread's row.
+     */
+    public static TsvRow forThread(final byte[] line) {
+        return THREAD_ROWS.get().reset(line, line.length);
+    }
+
+    /**
+     * Point this row at a new line and find its columns.
+     * @param line the bytes of the line, without the line ending.
+     * @param length the number of bytes of the array which belong to the line.
+     * @return this row.
+     */
+    public TsvRow reset(final byte[] line, final int length) {
+        this.line = line;
+        this.length = length;
+        columns = 0;
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            if (line[i] == TAB) {
+                addColumn(start, i);
+                start = i + 1;
+            }
+        }
+        addColumn(start, length);
+        return this;
+    }
+
+    /**
+     * @return the number of columns in the line.
+     */
+    public int getColumnCount() {
+        return columns;
+    }
+
+    /**
+     * @param column the zero based column.
+     * @return true if the column is empty or only whitespace.
+     */
+    public boolean isEmpty(final int column) {
+        return trimmedStart(column) == trimmedEnd(column);
+    }
+
+    /**
+     * @param column the zero based column.
+     * @return the column with leading and trailing whitespace removed.
+     */
+    public String getString(final int column) {
+        final int start = trimmedStart(column);
+        return new String(line, start, trimmedEnd(column) - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param column the zero based column.
+     * @return the column as an int.
+     * @throws NumberFormatException if the column is not an int.
+     */
+    public int getInt(final int column) {
+        final long value = getLong(column);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new NumberFormatException(String.format("Value out of range for an int: %s", getString(column)));
+        }
+        return (int) value;
+    }
+
+    /**
+     * @param column the zero based column.
+     * @param defaultValue the value to use if the column is empty.
+     * @return the column as an int.
+     * @throws NumberFormatException if the column is not empty and is not an int.
+     */
+    public int getInt(final int column, final int defaultValue) {
+        return isEmpty(column) ? defaultValue : getInt(column);
+    }
+
+    /**
+     * @param column the zero based column.
+     * @return the column as a long.
+     * @throws NumberFormatException if the column is not a long.
+     */
+    public long getLong(final int column) {
+        final int start = trimmedStart(column);
+        final int end = trimmedEnd(column);
+        int i = start;
+        final boolean negative = i < end && line[i] == '-';
+        if (negative || (i < end && line[i] == '+')) {
+            i += 1;
+        }
+        // 18 digits can not overflow, leave anything longer to Long.parseLong.
+        if (i == end || end - i > 18) {
+            return Long.parseLong(getString(column));
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            final int digit = line[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException(String.format("For input string: \"%s\"", getString(column)));
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * @param column the zero based column.
+     * @param defaultValue the value to use if the column is empty.
+     * @return the column as a long.
+     * @throws NumberFormatException if the column is not empty and is not a long.
+     */
+    public long getLong(final int column, final long defaultValue) {
+        return isEmpty(column) ? defaultValue : getLong(column);
+    }
+
+    /**
+     * Parse a decimal column. Plain decimals with up to 15 significant digits, such as coordinates, are parsed from
+     * the bytes and give exactly the same value as {@link Double#parseDouble(String)}, anything else is passed to
+     * it.
+     * @param column the zero based column.
+     * @return the column as a double.
+     * @throws NumberFormatException if the column is not a number.
+     */
+    public double getDouble(final int column) {
+        final int start = trimmedStart(column);
+        final int end = trimmedEnd(column);
+        int i = start;
+        final boolean negative = i < end && line[i] == '-';
+        if (negative || (i < end && line[i] == '+')) {
+            i += 1;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        boolean sawDigit = false;
+        for (; i < end; i++) {
+            final byte b = line[i];
+            if (b == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else if (b >= '0' && b <= '9') {
+                sawDigit = true;
+                mantissa = mantissa * 10 + (b - '0');
+                if (mantissa != 0 && ++digits > 15) {
+                    return Double.parseDouble(getString(column));
+                }
+                if (fractionDigits >= 0) {
+                    fractionDigits += 1;
+                }
+            } else {
+                // Exponents, infinity and garbage.
+                return Double.parseDouble(getString(column));
+            }
+        }
+        if (!sawDigit || fractionDigits > MAX_EXACT_POWER) {
+            return Double.parseDouble(getString(column));
+        }
+        // Both numbers are exact so the division is correctly rounded.
+        final double value = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+        return negative ? -value : value;
+    }
+
+    @Override
+    public String toString() {
+        return new String(line, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private void addColumn(final int start, final int end) {
+        if (columns == starts.length) {
+            final int size = columns * 2;
+            final int[] newStarts = new int[size];
+            final int[] newEnds = new int[size];
+            System.arraycopy(starts, 0, newStarts, 0, columns);
+            System.arraycopy(ends, 0, newEnds, 0, columns);
+            starts = newStarts;
+            ends = newEnds;
+        }
+        starts[columns] = start;
+        ends[columns] = end;
+        columns += 1;
+    }
+
+    private int trimmedStart(final int column) {
+        checkColumn(column);
+        int start = starts[column];
+        final int end = ends[column];
+        while (start < end && (line[start] & 0xff) <= ' ') {
+            start += 1;
+        }
+        return start;
+    }
+
+    private int trimmedEnd(final int column) {
+        checkColumn(column);
+        final int start = starts[column];
+        int end = ends[column];
+        while (end > start && (line[end - 1] & 0xff) <= ' ') {
+            end -= 1;
+        }
+        return end;
+    }
+
+    private void checkColumn(final int column) {
+        if (column < 0 || column >= columns) {
+            throw new InternalApplicationError(String.format("Column %d requested but line has %d columns", column,
+                    columns));
+        }
+    }
+}
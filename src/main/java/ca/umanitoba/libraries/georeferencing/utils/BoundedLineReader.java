@@ -0,0 +1,77 @@
+package ca.umanitoba.libraries.georeferencing.utils;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads lines of text of at most a maximum length. The rest of a longer line is read past rather than held in
+ * memory, so one line without a newline cannot buffer a whole request.
+ * <p>
+ * Lines end at a newline, a carriage return before the newline is dropped.
+ * @author whikloj
+ */
+public class BoundedLineReader {
+
+    private final Reader reader;
+
+    private final int maxLength;
+
+    private final StringBuilder line = new StringBuilder();
+
+    private boolean tooLong = false;
+
+    private long lineNumber = 0;
+
+    /**
+     * Constructor.
+     * @param reader the text, it should be buffered.
+     * @param maxLength the most characters a line may have.
+     */
+    public BoundedLineReader(final Reader reader, final int maxLength) {
+        this.reader = reader;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Read the next line.
+     * @return the line, empty if it was longer than the maximum, or null at the end of the text.
+     * @throws IOException if the text cannot be read.
+     */
+    public String readLine() throws IOException {
+        line.setLength(0);
+        tooLong = false;
+        int c = reader.read();
+        if (c == -1) {
+            return null;
+        }
+        lineNumber += 1;
+        while (c != -1 && c != '\n') {
+            if (line.length() < maxLength + 1) {
+                line.append((char) c);
+            }
+            c = reader.read();
+        }
+        if (line.length() > 0 && line.charAt(line.length() - 1) == '\r') {
+            line.setLength(line.length() - 1);
+        }
+        if (line.length() > maxLength) {
+            tooLong = true;
+            line.setLength(0);
+        }
+        return line.toString();
+    }
+
+    /**
+     * @return true if the line last read was longer than the maximum.
+     */
+    public boolean isTooLong() {
+        return tooLong;
+    }
+
+    /**
+     * @return the number of the line last read, counting from one and including blank lines.
+     */
+    public long getLineNumber() {
+        return lineNumber;
+    }
+}
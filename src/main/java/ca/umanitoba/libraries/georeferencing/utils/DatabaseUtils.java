@@ -4,14 +4,22 @@ import static org.slf4j.LoggerFactory.getLogger;
 
 import javax.sql.DataSource;
 
+import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 import ca.umanitoba.libraries.georeferencing.exceptions.InternalApplicationError;
 import org.slf4j.Logger;
 import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.datasource.init.DatabasePopulatorUtils;
 import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
@@ -24,26 +32,95 @@ public class DatabaseUtils {
 
     private final static Logger LOGGER = getLogger(DatabaseUtils.class);
 
+    private static final int FILL_BATCH_SIZE = 1000;
+
     /**
-     * Check if the table exists in the database.
+     * Check if the table exists in the database, looking it up by name and matching it without regard to case.
+     * @param dataSource the current datasource.
+     * @param tableName the table.
      * @return true if the table exists.
      */
     public static boolean tableExists(final DataSource dataSource, final String tableName) {
-        try {
-            DatabaseMetaData meta = dataSource.getConnection().getMetaData();
-            ResultSet res = meta.getTables(null, null, null,
-                    new String[]{"TABLE"});
-            while (res.next()) {
-                if (res.getString("TABLE_NAME").startsWith(tableName)) {
-                    res.close();
-                    return true;
+        try (final Connection connection = dataSource.getConnection()) {
+            final DatabaseMetaData meta = connection.getMetaData();
+            // Databases store unquoted names in upper case, lower case or as written.
+            for (final String name : new LinkedHashSet<>(List.of(tableName, tableName.toUpperCase(Locale.ROOT),
+                    tableName.toLowerCase(Locale.ROOT)))) {
+                try (final ResultSet tables = meta.getTables(null, null, name, new String[]{"TABLE"})) {
+                    while (tables.next()) {
+                        if (tables.getString("TABLE_NAME").equalsIgnoreCase(tableName)) {
+                            return true;
+                        }
+                    }
                 }
             }
-            res.close();
             return false;
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
+        } catch (final SQLException e) {
+            throw new InternalApplicationError(e);
+        }
+    }
+
+    /**
+     * Check if a table exists and has a column.
+     * @param jdbcTemplate the current jdbcTemplate to perform the query.
+     * @param tableName the table.
+     * @param columnName the column, matched without regard to case.
+     * @return true if the table has the column, false if it does not or the table does not exist.
+     */
+    public static boolean hasColumn(final JdbcTemplate jdbcTemplate, final String tableName,
+                                    final String columnName) {
+        if (!tableExists(jdbcTemplate.getDataSource(), tableName)) {
+            return false;
+        }
+        try {
+            final Boolean found = jdbcTemplate.query(String.format("SELECT * FROM %s WHERE 1 = 0", tableName),
+                    rs -> {
+                        final ResultSetMetaData meta = rs.getMetaData();
+                        for (int i = 1; i <= meta.getColumnCount(); i++) {
+                            if (meta.getColumnName(i).equalsIgnoreCase(columnName)) {
+                                return true;
+                            }
+                        }
+                        return false;
+                    });
+            return found != null && found;
+        } catch (final DataAccessException e) {
+            throw new InternalApplicationError(e);
+        }
+    }
+
+    /**
+     * Add a normalized name column to a table created before it existed and fill it in from the name column, keeping
+     * the rows. A fill which was interrupted is finished. Nothing is done if the table does not exist.
+     * @param jdbcTemplate the current jdbcTemplate to perform the queries.
+     * @param tableName the table.
+     * @param nameColumn the column of names.
+     * @param keyColumn the column of the names normalized with {@link NameNormalizer}.
+     * @return true if any rows were filled in, so the indexes on the column may need to be created.
+     */
+    public static boolean fillKeyColumn(final JdbcTemplate jdbcTemplate, final String tableName,
+                                        final String nameColumn, final String keyColumn) {
+        if (!tableExists(jdbcTemplate.getDataSource(), tableName)) {
+            return false;
+        }
+        if (!hasColumn(jdbcTemplate, tableName, keyColumn)) {
+            LOGGER.info("Adding the {} column to table {}", keyColumn, tableName);
+            jdbcTemplate.execute(String.format("ALTER TABLE %s ADD %s varchar(200)", tableName, keyColumn));
+        } else if (jdbcTemplate.queryForList(String.format("SELECT 1 FROM %s WHERE %s IS NULL LIMIT 1", tableName,
+                keyColumn)).isEmpty()) {
+            return false;
+        }
+        final List<String> names = jdbcTemplate.queryForList(String.format("SELECT DISTINCT %s FROM %s WHERE %s IS " +
+                "NULL", nameColumn, tableName, keyColumn), String.class);
+        final String update = String.format("UPDATE %s SET %s = ? WHERE %s = ? AND %s IS NULL", tableName, keyColumn,
+                nameColumn, keyColumn);
+        for (final List<String> group : partition(names, FILL_BATCH_SIZE)) {
+            final List<Object[]> arguments = new ArrayList<>(group.size());
+            group.forEach(name -> arguments.add(new Object[]{NameNormalizer.normalize(name), name}));
+            jdbcTemplate.batchUpdate(update, arguments);
         }
+        LOGGER.info("Filled in the {} column of table {} for {} names", keyColumn, tableName, names.size());
+        return true;
     }
 
     /**
@@ -79,6 +156,29 @@ public class DatabaseUtils {
                 dataSource);
     }
 
+    /**
+     * Split values into groups small enough to bind to a single IN (...) clause.
+     * @param values the values.
+     * @param size the maximum size of each group.
+     * @param <T> the type of the values.
+     * @return the groups.
+     */
+    public static <T> List<List<T>> partition(final Collection<T> values, final int size) {
+        final List<List<T>> groups = new ArrayList<>();
+        List<T> current = new ArrayList<>(Math.min(size, values.size()));
+        for (final T value : values) {
+            if (current.size() == size) {
+                groups.add(current);
+                current = new ArrayList<>(size);
+            }
+            current.add(value);
+        }
+        if (!current.isEmpty()) {
+            groups.add(current);
+        }
+        return groups;
+    }
+
     private DatabaseUtils() {
         // This constructor left intentionally blank for static class.
     }
@@ -0,0 +1,41 @@
+package ca.umanitoba.libraries.georeferencing.utils;
+
+import java.util.Locale;
+
+/**
+ * Utility class to produce the normalized form of a place name used as a lookup key.
+ * @author whikloj
+ */
+public class NameNormalizer {
+
+    /**
+     * Normalize a name by case-folding, trimming and collapsing runs of whitespace to a single space.
+     * @param name the name to normalize.
+     * @return the normalized name or null if the name was null.
+     */
+    public static String normalize(final String name) {
+        if (name == null) {
+            return null;
+        }
+        final String lower = name.toLowerCase(Locale.ROOT);
+        final StringBuilder builder = new StringBuilder(lower.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < lower.length(); i++) {
+            final char c = lower.charAt(i);
+            if (Character.isWhitespace(c)) {
+                pendingSpace = builder.length() > 0;
+            } else {
+                if (pendingSpace) {
+                    builder.append(' ');
+                    pendingSpace = false;
+                }
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    private NameNormalizer() {
+        // This constructor left intentionally blank for static class.
+    }
+}
@@ -0,0 +1,57 @@
+package ca.umanitoba.libraries.georeferencing.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.util.Objects;
+
+import ca.umanitoba.libraries.georeferencing.exceptions.InternalApplicationError;
+
+/**
+ * Utility class to open the configured data files.
+ * @author whikloj
+ */
+public class ResourceUtils {
+
+    /**
+     * Open a stream to a location using either the "classpath:" or "file:" prefix.
+     * @param location the configured location.
+     * @return an input stream for the location.
+     * @throws FileNotFoundException if a "file:" location does not exist.
+     */
+    public static InputStream openLocation(final String location) throws FileNotFoundException {
+        if (location == null) {
+            throw new InternalApplicationError("Data file location cannot be blank.");
+        }
+        if (location.startsWith("classpath:")) {
+            final String relativePath = location.substring(10);
+            return Objects.requireNonNull(ResourceUtils.class.getClassLoader().getResourceAsStream(relativePath));
+        } else if (location.startsWith("file:")) {
+            final String relativePath = location.substring(5);
+            return new FileInputStream(relativePath);
+        }
+        throw new InternalApplicationError(String.format("Data file location (%s) must start with classpath: or " +
+                "file:", location));
+    }
+
+    /**
+     * Check whether a location using either the "classpath:" or "file:" prefix exists.
+     * @param location the location.
+     * @return true if it can be opened.
+     */
+    public static boolean exists(final String location) {
+        if (location == null) {
+            return false;
+        } else if (location.startsWith("classpath:")) {
+            return ResourceUtils.class.getClassLoader().getResource(location.substring(10)) != null;
+        } else if (location.startsWith("file:")) {
+            return new File(location.substring(5)).isFile();
+        }
+        return false;
+    }
+
+    private ResourceUtils() {
+        // This constructor left intentionally blank for static class.
+    }
+}
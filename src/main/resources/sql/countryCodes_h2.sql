@@ -4,5 +4,8 @@ CREATE TABLE IF NOT EXISTS countryCodes (
     continent varchar(100) NULL,
     iso3166_alpha2 varchar(2) NOT NULL,
     iso3166_alpha3 varchar(3) NOT NULL,
-    iso3166_numeric varchar(10) NOT NULL
- );
\ No newline at end of file
+    iso3166_numeric varchar(10) NOT NULL,
+    nameKey varchar(200) NOT NULL
+ );
+
+CREATE INDEX IF NOT EXISTS countryCodes_key_idx ON countryCodes (nameKey);
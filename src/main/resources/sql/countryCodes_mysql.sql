@@ -0,0 +1,17 @@
+CREATE TABLE IF NOT EXISTS countryCodes (
+    name varchar(200) NOT NULL PRIMARY KEY,
+    capital varchar(200) NULL,
+    continent varchar(100) NULL,
+    iso3166_alpha2 varchar(2) NOT NULL,
+    iso3166_alpha3 varchar(3) NOT NULL,
+    iso3166_numeric varchar(10) NOT NULL,
+    nameKey varchar(200) NOT NULL
+ );
+
+--- Create index on normalized name
+SET @exist := (SELECT COUNT(*) FROM information_schema.statistics
+    WHERE table_name = 'countryCodes' AND index_name = 'countryCodes_key_idx' AND table_schema = database());
+SET @sqlstmt := IF (@exist > 0, 'SELECT ''INFO: Index already exists.''',
+    'CREATE INDEX countryCodes_key_idx ON countryCodes (nameKey)');
+PREPARE stmt FROM @sqlstmt;
+EXECUTE stmt;
@@ -15,17 +15,19 @@ CREATE TABLE IF NOT EXISTS placeLookup (
     elevation INT,
     digitalElevationModel INT,
     timezone varchar(100),
-    lastModified date
+    lastModified date,
+    nameKey varchar(200) not null
 );
 
 CREATE TABLE IF NOT EXISTS placeLookupAltNames (
     geonamesId int not null,
     name varchar(200) not null,
+    nameKey varchar(200) not null,
     CONSTRAINT fk_geonamesId FOREIGN KEY (geonamesId) REFERENCES placeLookup(geonamesId) ON DELETE CASCADE
 );
 
---- index on name and countryCode
-CREATE INDEX IF NOT EXISTS placeLookup_idx1 ON placeLookup (name, countryCode);
+--- index on the normalized name, countryCode and adminCode1, matching lookups by name within a country and province
+CREATE INDEX IF NOT EXISTS placeLookup_key_idx ON placeLookup (nameKey, countryCode, adminCode1);
 
---- index on name, countryCode and adminCode1
-CREATE INDEX placeLookup_idx2 ON placeLookup (name, countryCode, adminCode1);
+--- index on the normalized alternate name, matching lookups which fall back to alternate names
+CREATE INDEX IF NOT EXISTS placeLookupAltNames_key_idx ON placeLookupAltNames (nameKey, geonamesId);
@@ -15,27 +15,30 @@ CREATE TABLE IF NOT EXISTS placeLookup (
     elevation INT,
     digitalElevationModel INT,
     timezone varchar(100),
-    lastModified date
+    lastModified date,
+    nameKey varchar(200) not null
 );
 
 CREATE TABLE IF NOT EXISTS placeLookupAltNames (
     geonamesId int not null,
     name varchar(200) not null,
+    nameKey varchar(200) not null,
     CONSTRAINT fk_geonamesId FOREIGN KEY (geonamesId) REFERENCES placeLookup(geonamesId) ON DELETE CASCADE
 );
 
---- index on name and countryCode
+--- index on the normalized name, countryCode and adminCode1, matching lookups by name within a country and province
 SET @exist := (SELECT COUNT(*) FROM information_schema.statistics
-    WHERE table_name = 'placeLookup' AND index_name = 'placeLookup_idx1' AND table_schema = database());
+    WHERE table_name = 'placeLookup' AND index_name = 'placeLookup_key_idx' AND table_schema = database());
 SET @sqlstmt := IF (@exist > 0, 'SELECT ''INFO: Index already exists.''',
-    'CREATE INDEX placeLookup_idx1 ON placeLookup (name, countryCode)');
+    'CREATE INDEX placeLookup_key_idx ON placeLookup (nameKey, countryCode, adminCode1)');
 PREPARE stmt FROM @sqlstmt;
 EXECUTE stmt;
 
---- index on name, countryCode and adminCode1
+--- index on the normalized alternate name, matching lookups which fall back to alternate names
 SET @exist := (SELECT COUNT(*) FROM information_schema.statistics
-    WHERE table_name = 'placeLookup' AND index_name = 'placeLookup_idx2' AND table_schema = database());
+    WHERE table_name = 'placeLookupAltNames' AND index_name = 'placeLookupAltNames_key_idx'
+    AND table_schema = database());
 SET @sqlstmt := IF (@exist > 0, 'SELECT ''INFO: Index already exists.''',
-    'CREATE INDEX placeLookup_idx2 ON placeLookup (name, countryCode, adminCode1)');
+    'CREATE INDEX placeLookupAltNames_key_idx ON placeLookupAltNames (nameKey, geonamesId)');
 PREPARE stmt FROM @sqlstmt;
 EXECUTE stmt;
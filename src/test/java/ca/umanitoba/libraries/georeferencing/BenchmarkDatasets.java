@@ -0,0 +1,114 @@
+package ca.umanitoba.libraries.georeferencing;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ca.umanitoba.libraries.georeferencing.ingest.GeoNamesTsvReader;
+import ca.umanitoba.libraries.georeferencing.ingest.TsvRow;
+import ca.umanitoba.libraries.georeferencing.utils.ResourceUtils;
+
+/**
+ * The place files the benchmarks and load tests are run against: the test fixture, a synthetic file of any size or a
+ * GeoNames file.
+ * @author whikloj
+ */
+public final class BenchmarkDatasets {
+
+    /**
+     * The place file of the tests.
+     */
+    public static final String FIXTURES = "fixtures";
+
+    /**
+     * A made up place file, see {@link #writeSyntheticPlaces(int, long)}.
+     */
+    public static final String SYNTHETIC = "synthetic";
+
+    private static final String FIXTURE_LOCATION = "classpath:cities.txt";
+
+    private BenchmarkDatasets() {
+        // Static methods only.
+    }
+
+    /**
+     * The location of the place file of a dataset.
+     * @param dataset {@link #FIXTURES}, {@link #SYNTHETIC} or the location of a GeoNames file, e.g.
+     *     file:/path/to/CA.txt
+     * @param syntheticRows the number of places of a synthetic file.
+     * @return the location, a synthetic file is written to a temporary file deleted on exit.
+     * @throws IOException if the synthetic file cannot be written.
+     */
+    public static String placesLocation(final String dataset, final int syntheticRows) throws IOException {
+        if (FIXTURES.equals(dataset)) {
+            return FIXTURE_LOCATION;
+        } else if (SYNTHETIC.equals(dataset)) {
+            return "file:" + writeSyntheticPlaces(syntheticRows, 42).toAbsolutePath();
+        }
+        return dataset;
+    }
+
+    /**
+     * Read the places of a place file.
+     * @param location the location of the file.
+     * @param limit the maximum number of places.
+     * @return the places in the order of the file.
+     * @throws IOException if the file cannot be read.
+     */
+    public static List<GeoNamesPlace> readPlaces(final String location, final int limit) throws IOException {
+        final List<GeoNamesPlace> places = new ArrayList<>();
+        try (final GeoNamesTsvReader reader = new GeoNamesTsvReader(ResourceUtils.openLocation(location))) {
+            final TsvRow row = new TsvRow();
+            while (reader.hasNext() && places.size() < limit) {
+                final byte[] line = reader.next();
+                places.add(GeoNamesPlace.fromRow(row.reset(line, line.length)));
+            }
+        }
+        return places;
+    }
+
+    /**
+     * Read the names of the provinces in admin1CodesASCII.txt.
+     * @return the names by their country and admin1 code, e.g. CA.03
+     * @throws IOException if the file cannot be read.
+     */
+    public static Map<String, String> readProvinceNames() throws IOException {
+        final Map<String, String> provinces = new HashMap<>();
+        try (final BufferedReader reader = new BufferedReader(new InputStreamReader(
+                ResourceUtils.openLocation("classpath:admin1CodesASCII.txt"), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String[] parts = line.split("\t");
+                if (parts.length > 1) {
+                    provinces.put(parts[0], parts[1]);
+                }
+            }
+        }
+        return provinces;
+    }
+
+    /**
+     * Write a made up Canadian place file, see {@link SyntheticGeoNames}.
+     * @param rows the number of places.
+     * @param seed the seed of the names and positions, the same seed writes the same file.
+     * @return the temporary file, deleted on exit.
+     * @throws IOException if the file cannot be written.
+     */
+    public static Path writeSyntheticPlaces(final int rows, final long seed) throws IOException {
+        final Path file = Files.createTempFile("places-" + rows + "-", ".txt");
+        file.toFile().deleteOnExit();
+        try (final BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            new SyntheticGeoNames(seed, Set.of("CA")).writePlaces(writer, rows);
+        }
+        return file;
+    }
+}
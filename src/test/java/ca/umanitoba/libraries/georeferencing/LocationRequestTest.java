@@ -2,6 +2,7 @@ package ca.umanitoba.libraries.georeferencing;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.util.HashMap;
@@ -137,4 +138,19 @@ public class LocationRequestTest {
         assertRequest(request);
         assertThrows(LocationRequestException.class, request::validateLocation);
     }
+
+    @Test
+    public void testHashIncludesPartNames() {
+        final LocationRequest state = new LocationRequest();
+        state.setCountry("United States");
+        state.setProvince("New York");
+        final LocationRequest city = new LocationRequest();
+        city.setCountry("United States");
+        city.setCity("New York");
+        final LocationRequest sameCity = new LocationRequest();
+        sameCity.setCountry("united states ");
+        sameCity.setCity("new york");
+        assertNotEquals(state.getHashString(), city.getHashString());
+        assertEquals(city.getHashString(), sameCity.getHashString());
+    }
 }
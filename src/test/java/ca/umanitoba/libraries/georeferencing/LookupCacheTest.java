@@ -0,0 +1,118 @@
+package ca.umanitoba.libraries.georeferencing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test of LookupCache.
+ * @author whikloj
+ */
+public class LookupCacheTest {
+
+    private AtomicLong now;
+
+    private LookupCache cache;
+
+    @BeforeEach
+    public void setUp() {
+        now = new AtomicLong(0);
+        cache = new LookupCache(16, 60, 5, now::get);
+    }
+
+    @Test
+    public void testHitAndMiss() {
+        assertNull(cache.get("a"));
+        cache.putFound("a", null, new Coordinates(49.8844, -97.14704));
+        final LookupCache.CachedResult result = cache.get("a");
+        assertNotNull(result);
+        assertTrue(result.isFound());
+        assertEquals(49.8844, result.getCoordinates().getLatitude());
+        assertEquals(-97.14704, result.getCoordinates().getLongitude());
+        assertEquals(1, cache.getStatistics().getHits());
+        assertEquals(1, cache.getStatistics().getMisses());
+        assertEquals(0.5, cache.getStatistics().getHitRatio());
+    }
+
+    @Test
+    public void testProvinceAndCityOfSameName() {
+        final LocationRequest state = new LocationRequest();
+        state.setCountry("United States");
+        state.setProvince("New York");
+        final LocationRequest city = new LocationRequest();
+        city.setCountry("United States");
+        city.setCity("New York");
+        cache.putFound(state.getHashString(), LookupCache.nameOf(state), new Coordinates(43.00035, -75.4999));
+        assertNull(cache.get(city.getHashString()));
+        cache.putFound(city.getHashString(), LookupCache.nameOf(city), new Coordinates(40.71427, -74.00597));
+        assertEquals(43.00035, cache.get(state.getHashString()).getCoordinates().getLatitude());
+        assertEquals(40.71427, cache.get(city.getHashString()).getCoordinates().getLatitude());
+    }
+
+    @Test
+    public void testNotFoundExpiresSooner() {
+        cache.putFound("found", null, new Coordinates(1, 1));
+        cache.putNotFound("missing", null, "Not found");
+        now.set(TimeUnit.SECONDS.toNanos(10));
+        assertNull(cache.get("missing"));
+        assertNotNull(cache.get("found"));
+        now.set(TimeUnit.SECONDS.toNanos(60));
+        assertNull(cache.get("found"));
+        assertEquals(2, cache.getStatistics().getExpirations());
+    }
+
+    @Test
+    public void testNotFound() {
+        cache.putNotFound("missing", null, "Not found");
+        final LookupCache.CachedResult result = cache.get("missing");
+        assertFalse(result.isFound());
+        assertEquals("Not found", result.getNotFoundMessage());
+        assertEquals(1, cache.getStatistics().getNegativeHits());
+    }
+
+    @Test
+    public void testSizeBound() {
+        for (int i = 0; i < 1000; i++) {
+            cache.putFound("key" + i, null, new Coordinates(i, i));
+        }
+        assertTrue(cache.getStatistics().getSize() <= 16);
+        assertEquals(1000 - cache.getStatistics().getSize(), cache.getStatistics().getEvictions());
+    }
+
+    @Test
+    public void testInvalidateAll() {
+        cache.putFound("a", null, new Coordinates(1, 1));
+        cache.invalidateAll();
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.getStatistics().getSize());
+    }
+
+    @Test
+    public void testInvalidateNames() {
+        cache.putFound("winnipeg|manitoba|canada", "winnipeg", new Coordinates(1, 1));
+        cache.putNotFound("brandon|manitoba|canada", "brandon", "Not found");
+        cache.putFound("toronto|ontario|canada", "toronto", new Coordinates(2, 2));
+        assertEquals(2, cache.invalidateNames(Set.of("brandon", "winnipeg")));
+        assertNull(cache.get("winnipeg|manitoba|canada"));
+        assertNull(cache.get("brandon|manitoba|canada"));
+        assertNotNull(cache.get("toronto|ontario|canada"));
+    }
+
+    @Test
+    public void testInvalidateMatchingNames() {
+        cache.putFound("winipeg|manitoba|canada", "winipeg", new Coordinates(1, 1));
+        cache.putFound("toronto|ontario|canada", "toronto", new Coordinates(2, 2));
+        assertEquals(1, cache.invalidateNames(n -> n.startsWith("win")));
+        assertNull(cache.get("winipeg|manitoba|canada"));
+        assertNotNull(cache.get("toronto|ontario|canada"));
+    }
+}
@@ -0,0 +1,31 @@
+package ca.umanitoba.libraries.georeferencing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test of ServerTiming.
+ * @author whikloj
+ */
+public class ServerTimingTest {
+
+    @Test
+    public void testTotalOnly() {
+        final ServerTiming timing = new ServerTiming(0);
+        assertEquals("total;dur=2.500", timing.toHeader(2_500_000));
+    }
+
+    @Test
+    public void testStagesInOrder() {
+        final ServerTiming timing = new ServerTiming(0);
+        timing.add(LookupMetrics.Stage.PLACE, TimeUnit.MICROSECONDS.toNanos(1500));
+        timing.add(LookupMetrics.Stage.COUNTRY, 20_000);
+        timing.add(LookupMetrics.Stage.ADMIN_CODE, 0);
+        timing.add(LookupMetrics.Stage.PLACE, TimeUnit.MICROSECONDS.toNanos(250));
+        assertEquals("country;dur=0.020, adminCode;dur=0.000, place;dur=1.750, total;dur=3.000",
+                timing.toHeader(TimeUnit.MILLISECONDS.toNanos(3)));
+    }
+}
@@ -0,0 +1,391 @@
+package ca.umanitoba.libraries.georeferencing;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.Normalizer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import ca.umanitoba.libraries.georeferencing.utils.ResourceUtils;
+
+/**
+ * Writes made up GeoNames files of any size for ingestion and lookup tests at scale, without a download: a place
+ * file in the format of CA.txt and the admin1CodesASCII.txt entries of its regions.
+ * <p>
+ * The regions are the real admin level one codes of the chosen countries, taken from the bundled
+ * admin1CodesASCII.txt, so the places also resolve against it. Names are built from syllables with the spread of
+ * lengths of real place names, from short single words to long hyphenated French names, and a share of them repeat
+ * in other regions. The same seed always writes the same files.
+ * <p>
+ * Run with {@code ./gradlew syntheticData -PsyntheticArgs="--rows=10000000 --output=/tmp/geonames"}, options:
+ * <ul>
+ *     <li>--output the directory to write places.txt and admin1CodesASCII.txt to, default build/synthetic</li>
+ *     <li>--rows the number of rows of the place file, default 1000000</li>
+ *     <li>--seed the seed, default 42</li>
+ *     <li>--countries the comma separated country codes of the regions, or all, default CA</li>
+ * </ul>
+ * @author whikloj
+ */
+public final class SyntheticGeoNames {
+
+    /**
+     * Name of the place file written by {@link #main(String[])}.
+     */
+    public static final String PLACES_FILE = "places.txt";
+
+    /**
+     * Name of the admin code file written by {@link #main(String[])}.
+     */
+    public static final String ADMIN_CODES_FILE = "admin1CodesASCII.txt";
+
+    /**
+     * Every country with admin codes.
+     */
+    public static final String ALL_COUNTRIES = "all";
+
+    private static final String BUNDLED_ADMIN_CODES = "classpath:admin1CodesASCII.txt";
+
+    /**
+     * Ids of the places start here, above the ids of real places.
+     */
+    private static final int FIRST_ID = 20_000_000;
+
+    private static final String[] SYLLABLES = {"ka", "ne", "wi", "pe", "to", "ri", "sa", "mo", "lu", "chi", "ba",
+            "tor", "ma", "na", "ho", "da", "gan", "ley", "mar", "bel", "ash", "ken", "ro", "vi", "ter", "lin", "dor",
+            "ham", "mont", "sel", "kir", "ot", "wa", "qua", "r\u00e9", "l\u00e9", "beau", "ch\u00e2", "rou"};
+
+    private static final String[] ENDINGS = {"ville", "ton", "burg", "ford", "field", "bury", "dale", "mouth",
+            "brook", "wood", "view", "ham", "stead", "worth"};
+
+    private static final String[] PREFIXES = {"Saint", "Sainte", "Fort", "Port", "Mount", "Lake", "Grand", "Little",
+            "New", "North", "South", "East", "West", "Upper", "Lower", "Old"};
+
+    private static final String[] SUFFIXES = {"Lake", "Falls", "River", "Creek", "Bay", "Hills", "Junction",
+            "Landing", "Crossing", "Corner", "Station", "Heights", "Point", "Harbour", "Settlement", "Beach"};
+
+    /**
+     * Feature class, code and weight in thousandths. Most rows are populated places, the rest are places the lookups
+     * skip.
+     */
+    private static final String[][] FEATURES = {
+            {"P", "PPL", "780"}, {"P", "PPLL", "60"}, {"P", "PPLA2", "30"}, {"P", "PPLA3", "20"},
+            {"P", "PPLX", "20"}, {"P", "PPLA", "2"}, {"H", "LK", "50"}, {"H", "STM", "10"}, {"T", "MT", "28"}};
+
+    private static final String[] REGION_FEATURE = {"A", "ADM1"};
+
+    private static final int RECENT_NAMES = 4096;
+
+    private static final int COMMON_NAMES = 256;
+
+    private static final LocalDate FIRST_MODIFIED = LocalDate.of(2015, 1, 1);
+
+    private static final int MODIFIED_DAYS = 2000;
+
+    private final long seed;
+
+    private final List<Region> regions = new ArrayList<>();
+
+    /**
+     * A region: an admin level one code and its line of admin1CodesASCII.txt.
+     */
+    private static final class Region {
+        private final String country;
+        private final String code;
+        private final String name;
+        private final String line;
+        private double latitude;
+        private double longitude;
+
+        private Region(final String country, final String code, final String name, final String line) {
+            this.country = country;
+            this.code = code;
+            this.name = name;
+            this.line = line;
+        }
+    }
+
+    /**
+     * Constructor.
+     * @param seed the seed, the same seed writes the same files.
+     * @param countries the country codes of the regions, or {@link #ALL_COUNTRIES}.
+     * @throws IOException if the bundled admin codes cannot be read.
+     */
+    public SyntheticGeoNames(final long seed, final Set<String> countries) throws IOException {
+        this.seed = seed;
+        try (final BufferedReader reader = new BufferedReader(new InputStreamReader(
+                ResourceUtils.openLocation(BUNDLED_ADMIN_CODES), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String[] parts = line.split("\t");
+                final int period = parts[0].indexOf('.');
+                if (parts.length < 2 || period < 0) {
+                    continue;
+                }
+                final String country = parts[0].substring(0, period);
+                if (countries.contains(ALL_COUNTRIES) || countries.contains(country)) {
+                    regions.add(new Region(country, parts[0].substring(period + 1), parts[1], line));
+                }
+            }
+        }
+        if (regions.isEmpty()) {
+            throw new IllegalArgumentException(String.format("No admin codes for the countries %s", countries));
+        }
+    }
+
+    public static void main(final String[] args) throws IOException {
+        final Map<String, String> options = new LinkedHashMap<>(Map.of(
+                "output", "build/synthetic",
+                "rows", "1000000",
+                "seed", "42",
+                "countries", "CA"));
+        for (final String arg : args) {
+            final int equals = arg.indexOf('=');
+            final String name = arg.startsWith("--") && equals > 2 ? arg.substring(2, equals) : null;
+            if (name == null || !options.containsKey(name)) {
+                throw new IllegalArgumentException(String.format("Invalid option (%s), see the documentation of %s",
+                        arg, SyntheticGeoNames.class.getName()));
+            }
+            options.put(name, arg.substring(equals + 1));
+        }
+        final Path output = Path.of(options.get("output")).toAbsolutePath();
+        final int rows = Integer.parseInt(options.get("rows"));
+        final SyntheticGeoNames generator = new SyntheticGeoNames(Long.parseLong(options.get("seed")),
+                new LinkedHashSet<>(Arrays.asList(options.get("countries").split(","))));
+        Files.createDirectories(output);
+        final long start = System.nanoTime();
+        try (final Writer writer = Files.newBufferedWriter(output.resolve(ADMIN_CODES_FILE), StandardCharsets.UTF_8)) {
+            generator.writeAdminCodes(writer);
+        }
+        try (final Writer writer = Files.newBufferedWriter(output.resolve(PLACES_FILE), StandardCharsets.UTF_8)) {
+            generator.writePlaces(writer, rows);
+        }
+        System.out.printf(Locale.ROOT, "Wrote %d places in %d regions in %.1f seconds, run with%n" +
+                "  datahub.locationfile=file:%s%n  datahub.admincodefile=file:%s%n", rows, generator.regions.size(),
+                (System.nanoTime() - start) / 1e9, output.resolve(PLACES_FILE), output.resolve(ADMIN_CODES_FILE));
+    }
+
+    /**
+     * Write the admin1CodesASCII.txt entries of the regions.
+     * @param writer where to write them.
+     * @throws IOException if they cannot be written.
+     */
+    public void writeAdminCodes(final Writer writer) throws IOException {
+        for (final Region region : regions) {
+            writer.write(region.line);
+            writer.write('\n');
+        }
+    }
+
+    /**
+     * Write the place file. It starts with the region itself (ADM1) for each region, then the places, spread over
+     * the regions unevenly as populations are.
+     * @param writer where to write it.
+     * @param rows the number of rows.
+     * @throws IOException if it cannot be written.
+     */
+    public void writePlaces(final Writer writer, final int rows) throws IOException {
+        if (rows < 0 || rows > Integer.MAX_VALUE - FIRST_ID) {
+            throw new IllegalArgumentException(String.format("Invalid number of rows (%d)", rows));
+        }
+        final Random random = new Random(seed);
+        final double[] cumulativeWeights = placeRegions(random);
+        final String[] modified = new String[MODIFIED_DAYS];
+        for (int i = 0; i < MODIFIED_DAYS; i++) {
+            modified[i] = FIRST_MODIFIED.plusDays(i).toString();
+        }
+        final String[] recent = new String[RECENT_NAMES];
+        final String[] common = new String[COMMON_NAMES];
+        for (int i = 0; i < COMMON_NAMES; i++) {
+            common[i] = newName(random);
+        }
+        int generated = 0;
+        final StringBuilder line = new StringBuilder(256);
+        for (int i = 0; i < rows; i++) {
+            final Region region;
+            final String name;
+            final String[] feature;
+            if (i < regions.size()) {
+                region = regions.get(i);
+                name = region.name;
+                feature = REGION_FEATURE;
+            } else {
+                int index = Arrays.binarySearch(cumulativeWeights, random.nextDouble());
+                index = index < 0 ? -index - 1 : index;
+                region = regions.get(Math.min(index, regions.size() - 1));
+                // Reuse a name so it appears in several regions, as Springfield or Saint-Louis do.
+                final int reuse = random.nextInt(100);
+                if (reuse < 3) {
+                    name = common[random.nextInt(COMMON_NAMES)];
+                } else if (reuse < 18 && generated > 0) {
+                    name = recent[random.nextInt(Math.min(generated, RECENT_NAMES))];
+                } else {
+                    name = newName(random);
+                    recent[generated++ % RECENT_NAMES] = name;
+                }
+                feature = pickFeature(random.nextInt(1000));
+            }
+            final String asciiName = toAscii(name);
+            line.setLength(0);
+            line.append(FIRST_ID + i).append('\t')
+                    .append(name).append('\t')
+                    .append(asciiName).append('\t');
+            appendAlternateNames(line, name, asciiName, random);
+            line.append('\t');
+            appendFixed(line, region.latitude + (random.nextDouble() - 0.5) * 6);
+            line.append('\t');
+            appendFixed(line, region.longitude + (random.nextDouble() - 0.5) * 10);
+            line.append('\t').append(feature[0])
+                    .append('\t').append(feature[1])
+                    .append('\t').append(region.country)
+                    .append("\t\t").append(region.code)
+                    .append("\t\t\t\t").append(population(random))
+                    .append("\t\t").append(random.nextInt(3000))
+                    .append("\tUTC\t").append(modified[random.nextInt(MODIFIED_DAYS)])
+                    .append('\n');
+            writer.append(line);
+        }
+    }
+
+    /**
+     * Place each region and weigh it, a few regions hold most places.
+     * @return the cumulative weights of the regions, ending at 1.
+     */
+    private double[] placeRegions(final Random random) {
+        final List<Integer> ranks = new ArrayList<>(regions.size());
+        for (int i = 0; i < regions.size(); i++) {
+            ranks.add(i + 1);
+        }
+        Collections.shuffle(ranks, random);
+        final double[] cumulative = new double[regions.size()];
+        double total = 0;
+        for (int i = 0; i < regions.size(); i++) {
+            final Region region = regions.get(i);
+            region.latitude = -50 + random.nextDouble() * 115;
+            region.longitude = -170 + random.nextDouble() * 340;
+            total += 1 / Math.pow(ranks.get(i), 0.8);
+            cumulative[i] = total;
+        }
+        for (int i = 0; i < cumulative.length; i++) {
+            cumulative[i] /= total;
+        }
+        return cumulative;
+    }
+
+    /**
+     * Make up a name. Most are one word of two to four syllables, some have a word before or after them and a few
+     * are long hyphenated names.
+     */
+    private static String newName(final Random random) {
+        final int shape = random.nextInt(100);
+        if (shape < 2) {
+            return "Saint-" + word(random) + "-de-" + word(random);
+        } else if (shape < 14) {
+            return PREFIXES[random.nextInt(PREFIXES.length)] + " " + word(random);
+        } else if (shape < 26) {
+            return word(random) + " " + SUFFIXES[random.nextInt(SUFFIXES.length)];
+        }
+        return word(random);
+    }
+
+    private static String word(final Random random) {
+        final StringBuilder word = new StringBuilder();
+        final int draw = random.nextInt(100);
+        final int syllables = draw < 8 ? 1 : draw < 55 ? 2 : draw < 88 ? 3 : 4;
+        for (int i = 0; i < syllables; i++) {
+            word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        if (random.nextBoolean()) {
+            word.append(ENDINGS[random.nextInt(ENDINGS.length)]);
+        }
+        word.setCharAt(0, Character.toUpperCase(word.charAt(0)));
+        return word.toString();
+    }
+
+    /**
+     * Append the comma separated alternate names of a third of the places: abbreviations, French forms, the ascii
+     * name and names in another language.
+     */
+    private static void appendAlternateNames(final StringBuilder line, final String name, final String asciiName,
+                                             final Random random) {
+        if (random.nextInt(3) != 0) {
+            return;
+        }
+        final Set<String> alternates = new LinkedHashSet<>();
+        if (name.startsWith("Saint ")) {
+            alternates.add("St. " + name.substring(6));
+        } else if (name.startsWith("Mount ")) {
+            alternates.add("Mt. " + name.substring(6));
+        } else if (name.endsWith(" Lake")) {
+            alternates.add("Lac " + name.substring(0, name.length() - 5));
+        } else if (name.endsWith(" River")) {
+            alternates.add("Rivi\u00e8re " + name.substring(0, name.length() - 6));
+        }
+        alternates.add(asciiName);
+        for (int i = random.nextInt(3); i >= 0; i--) {
+            alternates.add(word(random));
+        }
+        alternates.remove(name);
+        line.append(String.join(",", alternates));
+    }
+
+    private static String[] pickFeature(final int draw) {
+        int remaining = draw;
+        for (final String[] feature : FEATURES) {
+            remaining -= Integer.parseInt(feature[2]);
+            if (remaining < 0) {
+                return feature;
+            }
+        }
+        return FEATURES[0];
+    }
+
+    /**
+     * Populations: most places have none recorded and the rest follow a long tail.
+     */
+    private static long population(final Random random) {
+        if (random.nextInt(100) < 55) {
+            return 0;
+        }
+        return Math.min(5_000_000, (long) (50 / Math.pow(1 - random.nextDouble(), 1.1)));
+    }
+
+    private static String toAscii(final String name) {
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) > 127) {
+                return Normalizer.normalize(name, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+            }
+        }
+        return name;
+    }
+
+    /**
+     * Append a coordinate with five decimals, without the cost of String.format on millions of rows.
+     */
+    private static void appendFixed(final StringBuilder line, final double value) {
+        long scaled = Math.round(value * 100_000);
+        if (scaled < 0) {
+            line.append('-');
+            scaled = -scaled;
+        }
+        final long fraction = scaled % 100_000;
+        line.append(scaled / 100_000).append('.');
+        for (long digit = 10_000; digit > fraction && digit > 1; digit /= 10) {
+            line.append('0');
+        }
+        line.append(fraction);
+    }
+}
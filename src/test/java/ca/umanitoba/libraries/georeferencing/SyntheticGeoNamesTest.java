@@ -0,0 +1,63 @@
+package ca.umanitoba.libraries.georeferencing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import ca.umanitoba.libraries.georeferencing.ingest.TsvRow;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test of SyntheticGeoNames.
+ * @author whikloj
+ */
+public class SyntheticGeoNamesTest {
+
+    @Test
+    public void testSameSeedSameFile() throws IOException {
+        assertEquals(places(42, 2000), places(42, 2000));
+        assertNotEquals(places(42, 2000), places(43, 2000));
+    }
+
+    @Test
+    public void testPlacesMatchAdminCodes() throws IOException {
+        final SyntheticGeoNames generator = new SyntheticGeoNames(7, Set.of("CA", "US"));
+        final StringWriter adminCodes = new StringWriter();
+        generator.writeAdminCodes(adminCodes);
+        final Set<String> codes = new HashSet<>();
+        for (final String line : adminCodes.toString().split("\n")) {
+            codes.add(line.split("\t")[0]);
+        }
+        assertTrue(codes.contains("CA.03"));
+        assertTrue(codes.contains("US.NY"));
+
+        final StringWriter places = new StringWriter();
+        generator.writePlaces(places, 5000);
+        final String[] lines = places.toString().split("\n");
+        assertEquals(5000, lines.length);
+        final Map<String, Set<String>> regionsByName = new HashMap<>();
+        final TsvRow row = new TsvRow();
+        for (final String line : lines) {
+            final byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+            final GeoNamesPlace place = GeoNamesPlace.fromRow(row.reset(bytes, bytes.length));
+            final String code = place.getCountryCode() + "." + place.getAdminCode1();
+            assertTrue(codes.contains(code), "Unknown admin code " + code);
+            regionsByName.computeIfAbsent(place.getName(), k -> new HashSet<>()).add(code);
+        }
+        assertTrue(regionsByName.values().stream().anyMatch(r -> r.size() > 1), "No name in several regions");
+    }
+
+    private static String places(final long seed, final int rows) throws IOException {
+        final StringWriter writer = new StringWriter();
+        new SyntheticGeoNames(seed, Set.of("CA")).writePlaces(writer, rows);
+        return writer.toString();
+    }
+}
@@ -0,0 +1,68 @@
+package ca.umanitoba.libraries.georeferencing.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test of AdminCodeIndex.
+ * @author whikloj
+ */
+public class AdminCodeIndexTest {
+
+    private static AdminCodeIndex index;
+
+    @BeforeAll
+    public static void beforeClass() {
+        index = AdminCodeIndex.builder()
+                .add("CA", "03", "Manitoba")
+                .add("CA", "08", "Ontario")
+                .add("US", "MN", "Minnesota")
+                .add("US", "ON", "Not a state")
+                .alias("CA", "03", "MB")
+                .alias("CA", "08", "ON")
+                .alias("CA", "08", "Ont")
+                .alias("US", "MN", "Not a state")
+                .build();
+    }
+
+    @Test
+    public void testSize() {
+        assertEquals(4, index.size());
+        assertEquals(11, index.keyCount());
+    }
+
+    @Test
+    public void testByName() {
+        assertEquals("03", index.find("ca", "  MANITOBA "));
+        assertEquals("MN", index.find("US", "minnesota"));
+        assertNull(index.find("US", "Manitoba"));
+    }
+
+    @Test
+    public void testByAlias() {
+        assertEquals("03", index.find("CA", "mb"));
+        assertEquals("08", index.find("CA", "Ont."));
+        // A name wins over an alias and an alias over a code.
+        assertEquals("ON", index.find("US", "Not a state"));
+        assertEquals("08", index.find("CA", "ON"));
+    }
+
+    @Test
+    public void testByCode() {
+        assertEquals("MN", index.find("US", "MN"));
+        assertEquals("03", index.find("CA", "CA-MB"));
+        assertEquals("MN", index.find("US", "us-mn"));
+        assertNull(index.find("US", "CA-MB"));
+    }
+
+    @Test
+    public void testMissing() {
+        assertNull(index.find("CA", "Narnia"));
+        assertNull(index.find("CA", "."));
+        assertNull(index.find(null, "Manitoba"));
+        assertNull(index.find("CA", null));
+    }
+}
@@ -0,0 +1,65 @@
+package ca.umanitoba.libraries.georeferencing.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import ca.umanitoba.libraries.georeferencing.impl.DataHubCountryCode;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test of CountryIndex.
+ * @author whikloj
+ */
+public class CountryIndexTest {
+
+    private static CountryIndex index;
+
+    @BeforeAll
+    public static void beforeClass() {
+        index = CountryIndex.builder()
+                .add(new DataHubCountryCode("Canada", "Ottawa", "NA", "CA", "CAN", "124"))
+                .add(new DataHubCountryCode("UK", "London", "EU", "GB", "GBR", "826"))
+                .add(new DataHubCountryCode("Australia", "Canberra", "OC", "AU", "AUS", "036"))
+                .alias("Great Britain", "GB")
+                .alias("Can", "Australia")
+                .alias("Atlantis", "AT")
+                .build();
+    }
+
+    @Test
+    public void testSize() {
+        assertEquals(3, index.size());
+        assertEquals(13, index.keyCount());
+    }
+
+    @Test
+    public void testByName() {
+        assertEquals("CA", index.find("  CANADA ").getIso3316Alpha2());
+        assertEquals("GB", index.find("uk").getIso3316Alpha2());
+    }
+
+    @Test
+    public void testByCode() {
+        assertEquals("CA", index.find("ca").getIso3316Alpha2());
+        assertEquals("CA", index.find("CAN").getIso3316Alpha2());
+        assertEquals("CA", index.find("124").getIso3316Alpha2());
+        assertEquals("AU", index.find("36").getIso3316Alpha2());
+        assertEquals("AU", index.find("036").getIso3316Alpha2());
+    }
+
+    @Test
+    public void testByAlias() {
+        assertEquals("GB", index.find("Great  Britain").getIso3316Alpha2());
+        // An alias does not replace a code.
+        assertEquals("CA", index.find("Can").getIso3316Alpha2());
+        assertNull(index.find("Atlantis"));
+    }
+
+    @Test
+    public void testMissing() {
+        assertNull(index.find("Narnia"));
+        assertNull(index.find(""));
+        assertNull(index.find(null));
+    }
+}
@@ -0,0 +1,59 @@
+package ca.umanitoba.libraries.georeferencing.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test of FeatureCodeTable.
+ * @author whikloj
+ */
+public class FeatureCodeTableTest {
+
+    private static FeatureCodeTable table;
+
+    @BeforeAll
+    public static void beforeClass() {
+        final FeatureCodeTable.Builder builder = FeatureCodeTable.builder();
+        builder.add('P', "PPLC", "capital of a political entity", null);
+        builder.add('P', "PPL", "populated place", "a city, town, village, or other agglomeration of buildings");
+        builder.add('A', "ADM1", "first-order administrative division", null);
+        builder.add('P', "PPLA");
+        builder.add(' ', null);
+        assertEquals(1, builder.add('P', "PPL"));
+        table = builder.build();
+    }
+
+    @Test
+    public void testSize() {
+        assertEquals(5, table.size());
+    }
+
+    @Test
+    public void testIdOf() {
+        assertEquals(0, table.idOf('P', "PPLC"));
+        assertEquals(1, table.idOf('P', "PPL"));
+        assertEquals(2, table.idOf('A', "ADM1"));
+        assertEquals(3, table.idOf('P', "PPLA"));
+        assertEquals(4, table.idOf(' ', ""));
+    }
+
+    @Test
+    public void testMissing() {
+        assertEquals(-1, table.idOf('A', "PPL"));
+        assertEquals(-1, table.idOf('P', "PPLX"));
+        assertEquals(-1, table.idOf('H', "LK"));
+        assertEquals(-1, table.idOf('\u00e9', "PPL"));
+        assertEquals(-1, table.idOf('P', null));
+    }
+
+    @Test
+    public void testFeature() {
+        assertEquals('P', table.getFeatureClass(1));
+        assertEquals("PPL", table.getCode(1));
+        assertEquals("populated place", table.getName(1));
+        assertEquals("a city, town, village, or other agglomeration of buildings", table.getDescription(1));
+        assertEquals("", table.getCode(4));
+    }
+}
@@ -0,0 +1,102 @@
+package ca.umanitoba.libraries.georeferencing.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import ca.umanitoba.libraries.georeferencing.GeoNamesPlace;
+import ca.umanitoba.libraries.georeferencing.LocationRequest;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test of GazetteerIndex.
+ * @author whikloj
+ */
+public class GazetteerIndexTest {
+
+    private static GazetteerIndex index;
+
+    private static final List<GeoNamesPlace> places = new ArrayList<>();
+
+    @BeforeAll
+    public static void beforeClass() throws Exception {
+        final GazetteerIndex.Builder builder = GazetteerIndex.builder();
+        try (final BufferedReader reader = new BufferedReader(new InputStreamReader(Objects.requireNonNull(
+                GazetteerIndexTest.class.getClassLoader().getResourceAsStream("cities.txt")),
+                StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                builder.add(GeoNamesPlace.fromLine(line));
+                places.add(GeoNamesPlace.fromLine(line));
+            }
+        }
+        index = builder.build();
+    }
+
+    @Test
+    public void testSize() {
+        assertEquals(7, index.size());
+    }
+
+    @Test
+    public void testFindCity() {
+        final int row = index.findCity("  WINNIPEG ", "CA", "03");
+        assertEquals(6183235, index.getGeonamesId(row));
+        assertEquals(49.8844, index.getLatitude(row));
+        assertEquals(-97.14704, index.getLongitude(row));
+    }
+
+    @Test
+    public void testFindCityAnyProvince() {
+        assertEquals(6183235, index.getGeonamesId(index.findCity("winnipeg", "CA", null)));
+    }
+
+    @Test
+    public void testWrongProvince() {
+        assertEquals(-1, index.findCity("winnipeg", "CA", "01"));
+    }
+
+    @Test
+    public void testWrongFeature() {
+        // Virgin Rocks is an undersea feature, not a populated place.
+        assertEquals(-1, index.findCity("virgin rocks", "CA", null));
+    }
+
+    @Test
+    public void testMissing() {
+        assertEquals(-1, index.findCity("portage la prairie", "CA", null));
+    }
+
+    @Test
+    public void testAlternateName() {
+        assertEquals(6183235, index.getGeonamesId(index.findCity("Winnipeg  City", "CA", "03")));
+        assertEquals(-1, index.findCity("bassin kane", "CA", null));
+    }
+
+    @Test
+    public void testFindLocationInCandidates() {
+        assertEquals(6183235, GazetteerIndex.findLocation(places, city("  WINNIPEG "), "03").getGeonamesId());
+        assertEquals(6183235, GazetteerIndex.findLocation(places, city("Winnipeg  City"), null).getGeonamesId());
+        assertNull(GazetteerIndex.findLocation(places, city("winnipeg"), "01"));
+        assertNull(GazetteerIndex.findLocation(places, city("virgin rocks"), null));
+        assertNull(GazetteerIndex.findLocation(places, city("bassin kane"), null));
+        final LocationRequest province = new LocationRequest();
+        province.setIso3361Alpha2("CA");
+        province.setProvince("winnipeg");
+        assertNull(GazetteerIndex.findLocation(places, province, null));
+    }
+
+    private static LocationRequest city(final String name) {
+        final LocationRequest location = new LocationRequest();
+        location.setIso3361Alpha2("CA");
+        location.setCity(name);
+        return location;
+    }
+}
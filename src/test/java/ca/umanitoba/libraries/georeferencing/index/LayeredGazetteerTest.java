@@ -0,0 +1,97 @@
+package ca.umanitoba.libraries.georeferencing.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+
+import ca.umanitoba.libraries.georeferencing.Coordinates;
+import ca.umanitoba.libraries.georeferencing.GeoNamesPlace;
+import ca.umanitoba.libraries.georeferencing.LocationRequest;
+import ca.umanitoba.libraries.georeferencing.ingest.PlaceUpdates;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test of LayeredGazetteer.
+ * @author whikloj
+ */
+public class LayeredGazetteerTest {
+
+    private static LayeredGazetteer original;
+
+    private static LayeredGazetteer updated;
+
+    private static final Set<String> touchedNames = new HashSet<>();
+
+    @BeforeAll
+    public static void beforeClass() throws Exception {
+        final GazetteerIndex.Builder builder = GazetteerIndex.builder();
+        try (final BufferedReader reader = new BufferedReader(new InputStreamReader(Objects.requireNonNull(
+                LayeredGazetteerTest.class.getClassLoader().getResourceAsStream("cities.txt")),
+                StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                builder.add(GeoNamesPlace.fromLine(line));
+            }
+        }
+        original = new LayeredGazetteer(builder.build());
+        updated = original.withUpdates(PlaceUpdates.read("classpath:updates", LocalDate.of(2020, 6, 1)),
+                touchedNames);
+    }
+
+    @Test
+    public void testModified() {
+        final Coordinates coordinates = updated.findLocation(city("Winnipeg", "CA"), "03");
+        assertEquals(49.9, coordinates.getLatitude());
+        assertEquals(49.8844, original.findLocation(city("Winnipeg", "CA"), "03").getLatitude());
+    }
+
+    @Test
+    public void testAdded() {
+        assertEquals(-99.95306, updated.findLocation(city("Brandon", "CA"), null).getLongitude());
+        assertNull(original.findLocation(city("Brandon", "CA"), null));
+    }
+
+    @Test
+    public void testUnknownCountryIgnored() {
+        assertNull(updated.findLocation(city("Fargo", "US"), null));
+    }
+
+    @Test
+    public void testDeleted() {
+        assertNull(updated.findLocation(city("Cross Lake", "CA"), null));
+        assertEquals(7, original.size());
+        assertEquals(7, updated.size());
+    }
+
+    @Test
+    public void testAlternateNames() {
+        final LayeredGazetteer renamed = original.withUpdates(PlaceUpdates.read("classpath:updates",
+                LocalDate.of(2020, 6, 2)), new HashSet<>());
+        assertNull(original.findLocation(city("Peg City", "CA"), null));
+        assertEquals(49.8844, renamed.findLocation(city("Peg City", "CA"), "03").getLatitude());
+        assertEquals(49.8844, original.findLocation(city("Winnipeg City", "CA"), null).getLatitude());
+        assertNull(renamed.findLocation(city("Winnipeg City", "CA"), null));
+        assertEquals(49.8844, renamed.findLocation(city("Winnipeg", "CA"), null).getLatitude());
+    }
+
+    @Test
+    public void testTouchedNames() {
+        assertTrue(touchedNames.containsAll(Set.of("winnipeg", "brandon", "cross lake")));
+    }
+
+    private static LocationRequest city(final String name, final String countryCode) {
+        final LocationRequest request = new LocationRequest();
+        request.setCity(name);
+        request.setIso3361Alpha2(countryCode);
+        return request;
+    }
+}
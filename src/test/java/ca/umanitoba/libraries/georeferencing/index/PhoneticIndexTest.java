@@ -0,0 +1,69 @@
+package ca.umanitoba.libraries.georeferencing.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test of PhoneticIndex.
+ * @author whikloj
+ */
+public class PhoneticIndexTest {
+
+    private static PhoneticIndex index;
+
+    @BeforeAll
+    public static void beforeClass() {
+        index = PhoneticIndex.builder()
+                .add("Winnipeg")
+                .add("Thompson")
+                .add("Thomson")
+                .add("Tomson")
+                .add("Saskatoon")
+                .add("Qu\u00e9bec")
+                .build();
+    }
+
+    @Test
+    public void testSoundAlike() {
+        assertEquals(List.of("winnipeg"), index.find("Winnepeg", 5));
+        assertEquals(List.of("saskatoon"), index.find("saskatune", 5));
+        assertEquals(List.of("qu\u00e9bec"), index.find("Kebek", 5));
+    }
+
+    @Test
+    public void testClosestFirst() {
+        assertEquals(List.of("tomson", "thomson"), index.find("Tomsen", 5));
+        assertEquals(List.of("tomson"), index.find("Tomsen", 1));
+    }
+
+    @Test
+    public void testNotTheSameName() {
+        assertTrue(index.find("winnipeg", 5).isEmpty());
+    }
+
+    @Test
+    public void testWithNames() {
+        final PhoneticIndex more = index.withNames(Set.of("Winnipeg Beach"));
+        assertEquals(List.of("winnipeg beach"), more.find("Winipeg Beech", 5));
+        assertTrue(index.find("Winipeg Beech", 5).isEmpty());
+        assertEquals(List.of("winnipeg"), more.find("Winnepeg", 5));
+        assertEquals(List.of("winnipeg"), index.withNames(Set.of("Winnipeg")).find("Winnepeg", 5));
+    }
+
+    @Test
+    public void testSoundsLikeAny() {
+        final Predicate<String> soundsLike = PhoneticIndex.soundsLikeAny(Set.of("winnipeg"));
+        assertTrue(soundsLike.test("winnepeg"));
+        assertTrue(soundsLike.test("winnipeg"));
+        assertFalse(soundsLike.test("brandon"));
+        assertFalse(soundsLike.test(""));
+    }
+}
@@ -0,0 +1,38 @@
+package ca.umanitoba.libraries.georeferencing.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import ca.umanitoba.libraries.georeferencing.GeoNamesPlace;
+import ca.umanitoba.libraries.georeferencing.ingest.PlaceUpdates;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test of PlaceChanges.
+ * @author whikloj
+ */
+public class PlaceChangesTest {
+
+    @Test
+    public void testUpdates() {
+        final PlaceChanges original = new PlaceChanges(Set.of("CA"));
+        assertTrue(original.isEmpty());
+        final PlaceChanges updated = original.withUpdates(PlaceUpdates.read("classpath:updates",
+                LocalDate.of(2020, 6, 1)));
+        assertFalse(updated.isEmpty());
+        // Winnipeg is modified and Brandon added, Fargo is in a country which is not loaded.
+        assertEquals(Set.of(6183235, 5907896), updated.getPlaces().stream().map(GeoNamesPlace::getGeonamesId)
+                .collect(Collectors.toSet()));
+        assertTrue(updated.isHidden(6183235));
+        assertFalse(updated.isHidden(5059836));
+        // Cross Lake is deleted.
+        assertTrue(updated.isHidden(5933126));
+        assertFalse(updated.isHidden(3424953));
+        assertTrue(original.isEmpty());
+    }
+}
@@ -0,0 +1,104 @@
+package ca.umanitoba.libraries.georeferencing.index;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+
+import ca.umanitoba.libraries.georeferencing.GeoNamesPlace;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test of PlaceGrid.
+ * @author whikloj
+ */
+public class PlaceGridTest {
+
+    private static PlaceGrid grid;
+
+    @BeforeAll
+    public static void beforeClass() {
+        grid = PlaceGrid.builder()
+                .add(place(6183235, "Winnipeg", "P", "PPLA", 49.8844, -97.14704, 749534))
+                .add(place(6065171, "Manitoba", "A", "ADM1", 55.00019, -97.00049, 1278365))
+                .add(place(6183229, "Winnipeg Beach", "P", "PPL", 50.5058, -96.97015, 1011))
+                .add(place(5907896, "Brandon", "P", "PPL", 49.84692, -99.95306, 48859))
+                .add(place(4031574, "Suva", "P", "PPLC", -18.14161, 178.44149, 77366))
+                .add(place(4032243, "Nuku'alofa", "P", "PPLC", -21.13938, -175.2018, 22400))
+                .add(place(6269210, "Alert", "P", "PPL", 82.50178, -62.34809, 0))
+                .build();
+    }
+
+    @Test
+    public void testSize() {
+        assertEquals(7, grid.size());
+        assertEquals(7, grid.cellCount());
+    }
+
+    @Test
+    public void testNearestFirst() {
+        assertArrayEquals(new int[]{6183235, 6183229, 5907896}, ids(grid.findNearest(49.9, -97.1, 3, null)));
+        final int row = grid.findNearest(49.9, -97.1, 1, null)[0];
+        assertEquals(3.8, grid.distanceKm(row, 49.9, -97.1), 0.1);
+    }
+
+    @Test
+    public void testFilter() {
+        assertArrayEquals(new int[]{6065171},
+                ids(grid.findNearest(49.9, -97.1, 1, row -> grid.getFeatureClass(row) == 'A')));
+        assertArrayEquals(new int[]{6183229, 5907896},
+                ids(grid.findNearest(49.9, -97.1, 5, row -> "PPL".equals(grid.getFeature(row)) &&
+                        grid.getLatitude(row) < 60)));
+    }
+
+    @Test
+    public void testAcrossAntimeridian() {
+        assertArrayEquals(new int[]{4031574, 4032243}, ids(grid.findNearest(-19, -179.9, 2, null)));
+    }
+
+    @Test
+    public void testNearPole() {
+        assertArrayEquals(new int[]{6269210}, ids(grid.findNearest(89.9, 100, 1, null)));
+        assertEquals(7, grid.findNearest(-89.9, 0, 10, null).length);
+    }
+
+    @Test
+    public void testWithin() {
+        assertArrayEquals(new int[]{6183235, 6183229}, ids(grid.findWithin(49.9, -97.1, 100, null)));
+        assertArrayEquals(new int[]{6183235, 6183229, 5907896}, ids(grid.findWithin(49.9, -97.1, 210, null)));
+        assertEquals(0, grid.findWithin(49.9, -97.1, 1, null).length);
+    }
+
+    @Test
+    public void testInBox() {
+        assertArrayEquals(new int[]{6183235, 5907896, 6183229},
+                ids(grid.findInBox(49, -100, 51, -96, null)));
+        assertArrayEquals(new int[]{4031574, 4032243}, ids(grid.findInBox(-22, 170, -18, -170, null)));
+        assertEquals(0, grid.findInBox(-22, -170, -18, 170, row -> false).length);
+    }
+
+    @Test
+    public void testDistance() {
+        assertEquals(0, PlaceGrid.distanceKm(49.8844, -97.14704, 49.8844, -97.14704), 0.000001);
+        assertEquals(201.2, PlaceGrid.distanceKm(49.8844, -97.14704, 49.84692, -99.95306), 0.1);
+    }
+
+    private static int[] ids(final int[] rows) {
+        return Arrays.stream(rows).map(grid::getGeonamesId).toArray();
+    }
+
+    private static GeoNamesPlace place(final int id, final String name, final String featureClass,
+                                       final String feature, final double latitude, final double longitude,
+                                       final long population) {
+        final GeoNamesPlace place = new GeoNamesPlace();
+        place.setGeonamesId(id);
+        place.setName(name);
+        place.setFeatureClass(featureClass);
+        place.setFeature(feature);
+        place.setPopulation(population);
+        place.setLatitude(latitude);
+        place.setLongitude(longitude);
+        return place;
+    }
+}
@@ -0,0 +1,113 @@
+package ca.umanitoba.libraries.georeferencing.index;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import ca.umanitoba.libraries.georeferencing.GeoNamesPlace;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test of PrefixIndex.
+ * @author whikloj
+ */
+public class PrefixIndexTest {
+
+    private static PrefixIndex index;
+
+    @BeforeAll
+    public static void beforeClass() {
+        index = PrefixIndex.builder()
+                .add(place(6183235, "Winnipeg", "CA", "03", 749534))
+                .add(place(6183229, "Winnipeg Beach", "CA", "03", 1011))
+                .add(place(5125771, "Winona", "US", "MN", 27592))
+                .add(place(6173331, "Windsor", "CA", "08", 278013))
+                .add(place(5907896, "Brandon", "CA", "03", 48859))
+                .add(place(6183230, "Winkler", "CA", "03", 12660))
+                .build();
+    }
+
+    @Test
+    public void testSize() {
+        assertEquals(6, index.size());
+    }
+
+    @Test
+    public void testMostPopulousFirst() {
+        assertArrayEquals(new int[]{6183235, 6173331, 5125771, 6183230, 6183229},
+                ids(index.findByPrefix("win", null, null, 10)));
+        assertArrayEquals(new int[]{6183235, 6183229}, ids(index.findByPrefix(" WINNIPEG", null, null, 10)));
+    }
+
+    @Test
+    public void testLimit() {
+        assertArrayEquals(new int[]{6183235, 6173331}, ids(index.findByPrefix("w", null, null, 2)));
+    }
+
+    @Test
+    public void testFilters() {
+        assertArrayEquals(new int[]{5125771}, ids(index.findByPrefix("win", "us", null, 10)));
+        assertArrayEquals(new int[]{6183235, 6183230, 6183229}, ids(index.findByPrefix("win", "CA", "03", 10)));
+        assertArrayEquals(new int[]{6173331}, ids(index.findByPrefix("w", "ca", "08", 10)));
+        assertEquals(0, index.findByPrefix("w", "LI", null, 10).length);
+        assertEquals(0, index.findByPrefix("w", "US", "03", 10).length);
+    }
+
+    @Test
+    public void testProvinceOfLargeCountry() {
+        final PrefixIndex.Builder builder = PrefixIndex.builder();
+        for (int id = 1; id <= 12000; id++) {
+            builder.add(place(id, "Place " + id, "CA", id % 3 == 0 ? "08" : "03", id));
+        }
+        final PrefixIndex large = builder.add(place(12001, "Portage", "CA", "03", 13000)).build();
+        final int[] rows = large.findByPrefix("p", "CA", "08", 2);
+        assertArrayEquals(new int[]{12000, 11997}, Arrays.stream(rows).map(large::getGeonamesId).toArray());
+        assertEquals(12001, large.getGeonamesId(large.findByPrefix("p", "CA", "03", 1)[0]));
+        assertEquals(12001, large.getGeonamesId(large.findByPrefix("p", null, null, 1)[0]));
+        assertEquals(0, large.findByPrefix("p", "CA", "01", 1).length);
+    }
+
+    @Test
+    public void testExcluded() {
+        assertArrayEquals(new int[]{6173331, 5125771, 6183230},
+                ids(index.findByPrefix("win", null, null, 3, id -> id == 6183235)));
+    }
+
+    @Test
+    public void testNoMatch() {
+        assertEquals(0, index.findByPrefix("regina", null, null, 10).length);
+        assertEquals(0, index.findByPrefix("", null, null, 10).length);
+        assertEquals(0, index.findByPrefix("zz", null, null, 10).length);
+    }
+
+    @Test
+    public void testRow() {
+        final int row = index.findByPrefix("brand", null, null, 1)[0];
+        assertEquals("Brandon", index.getName(row));
+        assertEquals("CA", index.getCountryCode(row));
+        assertEquals("03", index.getAdminCode1(row));
+        assertEquals(48859, index.getPopulation(row));
+        assertEquals(49.84692, index.getLatitude(row), 0.000001);
+        assertTrue(index.estimateBytes() > 0);
+    }
+
+    private static int[] ids(final int[] rows) {
+        return Arrays.stream(rows).map(index::getGeonamesId).toArray();
+    }
+
+    private static GeoNamesPlace place(final int id, final String name, final String countryCode,
+                                       final String adminCode1, final long population) {
+        final GeoNamesPlace place = new GeoNamesPlace();
+        place.setGeonamesId(id);
+        place.setName(name);
+        place.setCountryCode(countryCode);
+        place.setAdminCode1(adminCode1);
+        place.setPopulation(population);
+        place.setLatitude(49.84692);
+        place.setLongitude(-99.95306);
+        return place;
+    }
+}
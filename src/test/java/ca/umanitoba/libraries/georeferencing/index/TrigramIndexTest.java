@@ -0,0 +1,110 @@
+package ca.umanitoba.libraries.georeferencing.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test of TrigramIndex.
+ * @author whikloj
+ */
+public class TrigramIndexTest {
+
+    private static final long NO_DEADLINE = Long.MAX_VALUE / 2;
+
+    private static TrigramIndex index;
+
+    @BeforeAll
+    public static void beforeClass() {
+        index = TrigramIndex.builder()
+                .add("Winnipeg")
+                .add("  WINNIPEG ")
+                .add("Winnipeg Beach")
+                .add("Thompson")
+                .add("Thomson")
+                .add("Brandon")
+                .build();
+    }
+
+    @Test
+    public void testSize() {
+        assertEquals(5, index.size());
+    }
+
+    @Test
+    public void testMisspelled() {
+        final List<TrigramIndex.Match> matches = index.search("Winipeg", 2, 0.4, 5, deadline());
+        assertEquals("winnipeg", matches.get(0).getName());
+        assertEquals(1, matches.get(0).getEdits());
+    }
+
+    @Test
+    public void testClosestFirst() {
+        final List<TrigramIndex.Match> matches = index.search("Thompsen", 2, 0.4, 5, deadline());
+        assertEquals(2, matches.size());
+        assertEquals("thompson", matches.get(0).getName());
+        assertEquals("thomson", matches.get(1).getName());
+    }
+
+    @Test
+    public void testLimit() {
+        assertEquals(1, index.search("Thompsen", 2, 0.4, 1, deadline()).size());
+    }
+
+    @Test
+    public void testBestKeptPastLimit() {
+        // All the matches are first seen in the "eg " posting list, in the order they are added, with the closest
+        // last. The names starting with "inn" only make that list longer than the "eg " one.
+        final TrigramIndex many = TrigramIndex.builder()
+                .add("xxnnipeg")
+                .add("yynnipeg")
+                .add("zznnipeg")
+                .add("qqnnipeg")
+                .add("innipeg")
+                .add("innaaaaaaaaaaaaaaaa")
+                .add("innbbbbbbbbbbbbbbbb")
+                .add("inncccccccccccccccc")
+                .add("innddddddddddddddddd")
+                .add("inneeeeeeeeeeeeeeee")
+                .build();
+        final List<TrigramIndex.Match> matches = many.search("winnipeg", 2, 0.1, 1, deadline());
+        assertEquals(1, matches.size());
+        assertEquals("innipeg", matches.get(0).getName());
+    }
+
+    @Test
+    public void testManyCandidates() {
+        // More names than the set of checked names starts with, each must be checked once.
+        final TrigramIndex.Builder builder = TrigramIndex.builder();
+        for (int i = 0; i < 10000; i++) {
+            builder.add("x" + i);
+        }
+        assertEquals(10000, builder.build().search("x", 4, 0, 20000, deadline()).size());
+    }
+
+    @Test
+    public void testDeadlinePassed() {
+        assertTrue(index.search("Winipeg", 2, 0.4, 5, System.nanoTime() - 1).isEmpty());
+    }
+
+    @Test
+    public void testTooFar() {
+        assertTrue(index.search("Regina", 2, 0.4, 5, deadline()).isEmpty());
+        assertTrue(index.search("Wpg", 2, 0.4, 5, deadline()).isEmpty());
+    }
+
+    @Test
+    public void testEditDistance() {
+        assertEquals(0, TrigramIndex.editDistance("brandon", "brandon", 2));
+        assertEquals(2, TrigramIndex.editDistance("brandon", "brnadon", 2));
+        assertEquals(3, TrigramIndex.editDistance("brandon", "winnipeg", 2));
+    }
+
+    private static long deadline() {
+        return System.nanoTime() + NO_DEADLINE;
+    }
+}
@@ -0,0 +1,84 @@
+package ca.umanitoba.libraries.georeferencing.ingest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test of GeoNamesTsvReader and TsvRow.
+ * @author whikloj
+ */
+public class GeoNamesTsvReaderTest {
+
+    @Test
+    public void testLineEndings() throws IOException {
+        final List<String> lines = readAll("first\r\nsecond\n\nlast");
+        assertEquals(List.of("first", "second", "", "last"), lines);
+    }
+
+    @Test
+    public void testLinesLongerThanBuffer() throws IOException {
+        final String longLine = "x".repeat(200_000);
+        final List<String> lines = readAll("short\n" + longLine + "\nafter\n");
+        assertEquals(List.of("short", longLine, "after"), lines);
+    }
+
+    @Test
+    public void testColumns() {
+        final TsvRow row = new TsvRow(" Winnipeg \t\tSaint-Bonif\u00e1ce\t705244".getBytes(StandardCharsets.UTF_8));
+        assertEquals(4, row.getColumnCount());
+        assertEquals("Winnipeg", row.getString(0));
+        assertTrue(row.isEmpty(1));
+        assertEquals("Saint-Bonif\u00e1ce", row.getString(2));
+        assertEquals(705244, row.getInt(3));
+        assertEquals(7, row.getLong(1, 7));
+    }
+
+    @Test
+    public void testNumbers() {
+        final TsvRow row = new TsvRow("-97.14704\t49.8844\t-0.5\t1.5E-4\t12\tabc\t-42".getBytes(
+                StandardCharsets.UTF_8));
+        assertEquals(-97.14704, row.getDouble(0));
+        assertEquals(49.8844, row.getDouble(1));
+        assertEquals(-0.5, row.getDouble(2));
+        assertEquals(1.5E-4, row.getDouble(3));
+        assertEquals(12.0, row.getDouble(4));
+        assertThrows(NumberFormatException.class, () -> row.getDouble(5));
+        assertThrows(NumberFormatException.class, () -> row.getInt(5));
+        assertEquals(-42, row.getInt(6));
+    }
+
+    @Test
+    public void testCoordinatesMatchParseDouble() {
+        final Random random = new Random(42);
+        final TsvRow row = new TsvRow();
+        for (int i = 0; i < 100_000; i++) {
+            final String value = String.format(Locale.ROOT, "%.5f", random.nextDouble() * 360 - 180);
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            assertEquals(Double.parseDouble(value), row.reset(bytes, bytes.length).getDouble(0), value);
+        }
+    }
+
+    private static List<String> readAll(final String text) throws IOException {
+        final List<String> lines = new ArrayList<>();
+        try (final GeoNamesTsvReader reader = new GeoNamesTsvReader(new ByteArrayInputStream(
+                text.getBytes(StandardCharsets.UTF_8)))) {
+            while (reader.hasNext()) {
+                lines.add(new String(reader.next(), StandardCharsets.UTF_8));
+            }
+            assertFalse(reader.hasNext());
+        }
+        return lines;
+    }
+}
@@ -1,9 +1,20 @@
 package ca.umanitoba.libraries.georeferencing.integration;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import ca.umanitoba.libraries.georeferencing.Coordinates;
 import ca.umanitoba.libraries.georeferencing.LocationRequest;
+import ca.umanitoba.libraries.georeferencing.LookupResult;
+import ca.umanitoba.libraries.georeferencing.NearbyPlace;
+import ca.umanitoba.libraries.georeferencing.PlacePage;
+import ca.umanitoba.libraries.georeferencing.Suggestion;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -11,6 +22,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.ActiveProfiles;
 
@@ -73,4 +87,222 @@ public class DereferencingApplicationIT {
         assertEquals(49.8844, coordinates.getLatitude());
         assertEquals(-97.14704, coordinates.getLongitude());
     }
+
+    @Test
+    public void testFoundByCountryCode() {
+        final LocationRequest request = new LocationRequest();
+        request.setCountry("CAN");
+        request.setProvince("manitoba");
+        request.setCity("Winnipeg");
+        final Coordinates coordinates = this.restTemplate.postForObject(lookupUri, request, Coordinates.class);
+        assertEquals(49.8844, coordinates.getLatitude());
+        assertEquals(-97.14704, coordinates.getLongitude());
+    }
+
+    @Test
+    public void testFoundByProvinceAbbreviation() {
+        final LocationRequest request = new LocationRequest();
+        request.setCountry("Canada");
+        request.setProvince("Man.");
+        request.setCity("Winnipeg");
+        final Coordinates coordinates = this.restTemplate.postForObject(lookupUri, request, Coordinates.class);
+        assertEquals(49.8844, coordinates.getLatitude());
+        assertEquals(-97.14704, coordinates.getLongitude());
+    }
+
+    @Test
+    public void testFoundByAlternateName() {
+        final LocationRequest request = new LocationRequest();
+        request.setCountry("Canada");
+        request.setProvince("manitoba");
+        request.setCity("Winnipeg City");
+        final Coordinates coordinates = this.restTemplate.postForObject(lookupUri, request, Coordinates.class);
+        assertEquals(49.8844, coordinates.getLatitude());
+        assertEquals(-97.14704, coordinates.getLongitude());
+    }
+
+    @Test
+    public void testNoSoundAlikeByDefault() {
+        final LocationRequest request = new LocationRequest();
+        request.setCountry("Canada");
+        request.setProvince("manitoba");
+        request.setCity("Winnepeg");
+        assertEquals(404, this.restTemplate.postForEntity(lookupUri, request, String.class).getStatusCodeValue());
+    }
+
+    @Test
+    public void testFoundByClosestName() {
+        final LocationRequest request = new LocationRequest();
+        request.setCountry("Canada");
+        request.setProvince("manitoba");
+        // Neither an alternate name of Winnipeg nor a sound-alike of it, so only the trigram index finds it.
+        request.setCity("Wimnipeg");
+        assertEquals(404, this.restTemplate.postForEntity(lookupUri, request, String.class).getStatusCodeValue());
+        final Coordinates coordinates = this.restTemplate.postForObject(lookupUri + "?fuzzy=true", request,
+                Coordinates.class);
+        assertEquals(49.8844, coordinates.getLatitude());
+        assertEquals(-97.14704, coordinates.getLongitude());
+    }
+
+    @Test
+    public void testSuggest() {
+        final Suggestion[] suggestions = this.restTemplate.getForObject("http://localhost:" + port +
+                "/suggest?q=winn&country=CA", Suggestion[].class);
+        assertEquals(6183235, suggestions[0].getGeonamesId());
+        assertEquals("Winnipeg", suggestions[0].getName());
+        assertEquals(0, this.restTemplate.getForObject("http://localhost:" + port + "/suggest?q=winn&country=US",
+                Suggestion[].class).length);
+    }
+
+    @Test
+    public void testReverse() {
+        final NearbyPlace[] places = this.restTemplate.getForObject("http://localhost:" + port +
+                "/reverse?lat=49.8844&lon=-97.14704&featureClass=P", NearbyPlace[].class);
+        assertEquals(1, places.length);
+        assertEquals(6183235, places[0].getGeonamesId());
+        assertEquals(0, places[0].getDistanceKm(), 0.001);
+        assertEquals(400, this.restTemplate.getForEntity("http://localhost:" + port + "/reverse?lat=91&lon=0",
+                String.class).getStatusCodeValue());
+    }
+
+    @Test
+    public void testPlacesWithin() {
+        final PlacePage page = this.restTemplate.getForObject("http://localhost:" + port +
+                "/places/within?lat=49.8844&lon=-97.14704&radiusKm=50&featureClass=P&limit=1", PlacePage.class);
+        assertTrue(page.getTotal() >= 1);
+        assertEquals(1, page.getPlaces().size());
+        assertEquals(6183235, page.getPlaces().get(0).getGeonamesId());
+        assertEquals(400, this.restTemplate.getForEntity("http://localhost:" + port +
+                "/places/within?lat=49.8844&lon=-97.14704&radiusKm=5000", String.class).getStatusCodeValue());
+        assertEquals(400, this.restTemplate.getForEntity("http://localhost:" + port +
+                "/places/box?south=-90&west=-180&north=90&east=180", String.class).getStatusCodeValue());
+    }
+
+    @Test
+    public void testServerTiming() {
+        final LocationRequest request = new LocationRequest();
+        request.setCountry("Canada");
+        request.setProvince("manitoba");
+        request.setCity("Brandon");
+        final ResponseEntity<Coordinates> responseEntity = this.restTemplate
+                .postForEntity(lookupUri, request, Coordinates.class);
+        assertEquals(200, responseEntity.getStatusCodeValue());
+        final String timing = responseEntity.getHeaders().getFirst("Server-Timing");
+        assertTrue(timing.contains("cache;dur="));
+        assertTrue(timing.contains("total;dur="));
+    }
+
+    @Test
+    public void testPrometheus() {
+        final LocationRequest request = new LocationRequest();
+        request.setCountry("Canada");
+        request.setProvince("manitoba");
+        request.setCity("Winnipeg");
+        this.restTemplate.postForEntity(lookupUri, request, Coordinates.class);
+        final ResponseEntity<String> responseEntity = this.restTemplate.getForEntity("http://localhost:" + port +
+                "/actuator/prometheus", String.class);
+        assertEquals(200, responseEntity.getStatusCodeValue());
+        assertTrue(responseEntity.getBody().contains("georeference_lookup_stage_seconds_count{stage=\"cache\""));
+        assertTrue(responseEntity.getBody().contains("georeference_lookup_results_total{endpoint=\"lookup\""));
+        assertTrue(responseEntity.getBody().contains("georeference_cache_gets_total"));
+    }
+
+    @Test
+    public void testReady() {
+        final ResponseEntity<String> responseEntity = this.restTemplate.getForEntity("http://localhost:" + port +
+                "/ready", String.class);
+        assertEquals(200, responseEntity.getStatusCodeValue());
+        assertTrue(responseEntity.getBody().contains("\"places\":\"READY\""));
+    }
+
+    @Test
+    public void testLookupsDuringReset() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<ResponseEntity<String>> reset = executor.submit(() -> this.restTemplate
+                    .postForEntity("http://localhost:" + port + "/reset", null, String.class));
+            // Change the case of the city each time so the lookup is not answered from the cache.
+            int variant = 0;
+            do {
+                final LocationRequest request = new LocationRequest();
+                request.setCountry("Canada");
+                request.setProvince("manitoba");
+                request.setCity(mixedCase("winnipeg", variant++));
+                final ResponseEntity<Coordinates> responseEntity = this.restTemplate
+                        .postForEntity(lookupUri, request, Coordinates.class);
+                assertEquals(200, responseEntity.getStatusCodeValue());
+            } while (!reset.isDone() && variant < 256);
+            assertEquals(200, reset.get().getStatusCodeValue());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testBatch() {
+        final LocationRequest found = new LocationRequest();
+        found.setCountry("Canada");
+        found.setProvince("manitoba");
+        found.setCity("Winnipeg");
+        final LocationRequest duplicate = new LocationRequest();
+        duplicate.setCountry("canada");
+        duplicate.setProvince("Manitoba");
+        duplicate.setCity("winnipeg");
+        final LocationRequest missing = new LocationRequest();
+        missing.setCountry("Canada");
+        missing.setProvince("manitoba");
+        missing.setCity("Portage la prairie");
+        final LocationRequest noCountry = new LocationRequest();
+        noCountry.setProvince("manitoba");
+        noCountry.setCity("Winnipeg");
+        // Same name as the city but asked for as a province, of which there is none.
+        final LocationRequest province = new LocationRequest();
+        province.setCountry("Canada");
+        province.setProvince("Winnipeg");
+        final LocationRequest city = new LocationRequest();
+        city.setCountry("Canada");
+        city.setCity("Winnipeg");
+        final LookupResult[] results = this.restTemplate.postForObject(lookupUri + "/batch",
+                List.of(found, duplicate, missing, noCountry, province, city), LookupResult[].class);
+        assertEquals(6, results.length);
+        assertEquals(200, results[0].getStatus());
+        assertEquals(49.8844, results[0].getCoordinates().getLatitude());
+        assertEquals(-97.14704, results[0].getCoordinates().getLongitude());
+        assertEquals(200, results[1].getStatus());
+        assertEquals(49.8844, results[1].getCoordinates().getLatitude());
+        assertEquals(404, results[2].getStatus());
+        assertNull(results[2].getCoordinates());
+        assertEquals(400, results[3].getStatus());
+        assertEquals(404, results[4].getStatus());
+        assertEquals(200, results[5].getStatus());
+        assertEquals(49.8844, results[5].getCoordinates().getLatitude());
+    }
+
+    @Test
+    public void testStream() {
+        final String body = "{\"country\": \"Canada\", \"province\": \"manitoba\", \"city\": \"Winnipeg\"}\n" +
+                "not json\n" +
+                "\n" +
+                "{\"country\": \"Canada\", \"province\": \"manitoba\", \"city\": \"Portage la prairie\"}\n";
+        final HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType("application/x-ndjson"));
+        final ResponseEntity<String> responseEntity = this.restTemplate.postForEntity(lookupUri + "/stream",
+                new HttpEntity<>(body, headers), String.class);
+        assertEquals(200, responseEntity.getStatusCodeValue());
+        final String[] lines = responseEntity.getBody().split("\n");
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].contains("\"status\":200"));
+        assertTrue(lines[0].contains("49.8844"));
+        assertTrue(lines[1].contains("\"status\":400"));
+        assertTrue(lines[2].contains("\"status\":404"));
+    }
+
+    private static String mixedCase(final String value, final int variant) {
+        final StringBuilder builder = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            builder.append((variant & (1 << i)) != 0 ? Character.toUpperCase(c) : c);
+        }
+        return builder.toString();
+    }
 }
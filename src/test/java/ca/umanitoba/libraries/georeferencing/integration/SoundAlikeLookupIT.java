@@ -0,0 +1,43 @@
+package ca.umanitoba.libraries.georeferencing.integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import ca.umanitoba.libraries.georeferencing.Coordinates;
+import ca.umanitoba.libraries.georeferencing.LocationRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * Test of the sound-alike fallback, which is off unless lookup.phonetic.enabled is set.
+ * @author whikloj
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "lookup.phonetic.enabled=true")
+@ActiveProfiles("test")
+public class SoundAlikeLookupIT {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    public void testFoundBySoundAlike() {
+        final LocationRequest request = new LocationRequest();
+        request.setCountry("Canada");
+        request.setProvince("manitoba");
+        // Not an alternate name of Winnipeg, but it has the same Double Metaphone key.
+        request.setCity("Winnepeg");
+        final ResponseEntity<Coordinates> response = this.restTemplate.postForEntity("http://localhost:" + port +
+                "/lookup", request, Coordinates.class);
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals(49.8844, response.getBody().getLatitude());
+        assertEquals(-97.14704, response.getBody().getLongitude());
+    }
+}
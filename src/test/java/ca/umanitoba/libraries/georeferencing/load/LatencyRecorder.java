@@ -0,0 +1,80 @@
+package ca.umanitoba.libraries.georeferencing.load;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Latencies and response statuses of the requests of one kind, safe to record from many threads.
+ * @author whikloj
+ */
+public class LatencyRecorder {
+
+    /**
+     * The status recorded for a request which failed without a response.
+     */
+    public static final int NO_RESPONSE = -1;
+
+    private long[] latencies = new long[1024];
+
+    private int count = 0;
+
+    private final Map<Integer, Long> statuses = new TreeMap<>();
+
+    /**
+     * Record a request.
+     * @param nanos the latency in nanoseconds.
+     * @param status the response status, or {@link #NO_RESPONSE}.
+     */
+    public synchronized void record(final long nanos, final int status) {
+        if (count == latencies.length) {
+            latencies = Arrays.copyOf(latencies, count * 2);
+        }
+        latencies[count++] = nanos;
+        statuses.merge(status, 1L, Long::sum);
+    }
+
+    /**
+     * Add the requests of another recorder to this one.
+     * @param other the other recorder.
+     */
+    public synchronized void addAll(final LatencyRecorder other) {
+        synchronized (other) {
+            if (count + other.count > latencies.length) {
+                latencies = Arrays.copyOf(latencies, Math.max(latencies.length * 2, count + other.count));
+            }
+            System.arraycopy(other.latencies, 0, latencies, count, other.count);
+            count += other.count;
+            other.statuses.forEach((status, n) -> statuses.merge(status, n, Long::sum));
+        }
+    }
+
+    /**
+     * @return the number of requests.
+     */
+    public synchronized int getCount() {
+        return count;
+    }
+
+    /**
+     * @return the number of requests by their response status.
+     */
+    public synchronized Map<Integer, Long> getStatuses() {
+        return new TreeMap<>(statuses);
+    }
+
+    /**
+     * The latency which a share of the requests were as fast or faster than, by the nearest rank.
+     * @param percent the share in percent, 100 for the slowest request.
+     * @return the latency in nanoseconds, 0 if there are no requests.
+     */
+    public synchronized long percentile(final double percent) {
+        if (count == 0) {
+            return 0;
+        }
+        final long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        final int rank = (int) Math.ceil(percent / 100 * count);
+        return sorted[Math.max(0, Math.min(count, rank) - 1)];
+    }
+}
@@ -0,0 +1,50 @@
+package ca.umanitoba.libraries.georeferencing.load;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test of LatencyRecorder.
+ * @author whikloj
+ */
+public class LatencyRecorderTest {
+
+    @Test
+    public void testPercentiles() {
+        final LatencyRecorder recorder = new LatencyRecorder();
+        for (int i = 100; i >= 1; i--) {
+            recorder.record(i, 200);
+        }
+        assertEquals(100, recorder.getCount());
+        assertEquals(50, recorder.percentile(50));
+        assertEquals(95, recorder.percentile(95));
+        assertEquals(99, recorder.percentile(99));
+        assertEquals(100, recorder.percentile(100));
+        assertEquals(1, recorder.percentile(0));
+    }
+
+    @Test
+    public void testEmpty() {
+        assertEquals(0, new LatencyRecorder().percentile(99));
+    }
+
+    @Test
+    public void testAddAll() {
+        final LatencyRecorder found = new LatencyRecorder();
+        final LatencyRecorder notFound = new LatencyRecorder();
+        for (int i = 0; i < 1500; i++) {
+            found.record(10, 200);
+        }
+        notFound.record(30, 404);
+        notFound.record(20, LatencyRecorder.NO_RESPONSE);
+        final LatencyRecorder all = new LatencyRecorder();
+        all.addAll(found);
+        all.addAll(notFound);
+        assertEquals(1502, all.getCount());
+        assertEquals(30, all.percentile(100));
+        assertEquals(Map.of(LatencyRecorder.NO_RESPONSE, 1L, 200, 1500L, 404, 1L), all.getStatuses());
+    }
+}
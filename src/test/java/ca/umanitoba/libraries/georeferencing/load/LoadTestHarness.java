@@ -0,0 +1,283 @@
+package ca.umanitoba.libraries.georeferencing.load;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import ca.umanitoba.libraries.georeferencing.BenchmarkDatasets;
+import ca.umanitoba.libraries.georeferencing.DereferencingApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Replays a corpus of /lookup requests against the application and reports the throughput and latency percentiles
+ * of each kind of request, to compare configurations under the same workload.
+ * <p>
+ * The application is started on an embedded H2 database with the places of a dataset, unless the url of a running
+ * one is given. Requests are sent either by a fixed number of clients each waiting for its response (closed loop),
+ * or at a fixed rate whatever the responses. At a fixed rate the latency is measured from when a request was due to
+ * be sent, so a stall counts against every request it held up.
+ * <p>
+ * Run with {@code ./gradlew loadTest -PloadArgs="--engine=memory --mode=rate --rate=2000"}, options:
+ * <ul>
+ *     <li>--url the url of a running application, otherwise one is started</li>
+ *     <li>--dataset fixtures, synthetic or the location of a GeoNames file, default synthetic</li>
+ *     <li>--rows the number of places of a synthetic dataset, default 100000</li>
+ *     <li>--engine sql or memory, default sql</li>
+ *     <li>--cache whether to cache lookup results, default true</li>
+ *     <li>--poolSize the largest number of database connections, default 10</li>
+ *     <li>--property another application property as name=value, may be repeated</li>
+ *     <li>--corpus a file of one JSON request per line to replay, otherwise one is generated</li>
+ *     <li>--mix the kinds of generated request and their shares, default {@value RequestCorpus#DEFAULT_MIX}</li>
+ *     <li>--requests the number of generated requests, default 100000</li>
+ *     <li>--distinct the number of distinct places of the generated requests, default 5000</li>
+ *     <li>--mode closed or rate, default closed</li>
+ *     <li>--concurrency the number of clients of a closed loop, default 8</li>
+ *     <li>--rate the requests per second of a fixed rate, default 1000</li>
+ *     <li>--warmup seconds of requests not measured, default 10</li>
+ *     <li>--duration seconds of requests measured, default 30</li>
+ * </ul>
+ * @author whikloj
+ */
+public class LoadTestHarness {
+
+    private static final String ALL = "all";
+
+    private static final long SEED = 42;
+
+    /**
+     * Largest number of requests waiting for a response at a fixed rate.
+     */
+    private static final int MAX_OUTSTANDING = 4096;
+
+    private final Map<String, String> options;
+
+    private final List<String> properties;
+
+    private final HttpClient client;
+
+    private Map<String, LatencyRecorder> recorders;
+
+    private LoadTestHarness(final Map<String, String> options, final List<String> properties) {
+        this.options = options;
+        this.properties = properties;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(Executors.newCachedThreadPool())
+                .build();
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final Map<String, String> options = new LinkedHashMap<>(Map.ofEntries(
+                Map.entry("url", ""),
+                Map.entry("dataset", BenchmarkDatasets.SYNTHETIC),
+                Map.entry("rows", "100000"),
+                Map.entry("engine", "sql"),
+                Map.entry("cache", "true"),
+                Map.entry("poolSize", "10"),
+                Map.entry("corpus", ""),
+                Map.entry("mix", RequestCorpus.DEFAULT_MIX),
+                Map.entry("requests", "100000"),
+                Map.entry("distinct", "5000"),
+                Map.entry("mode", "closed"),
+                Map.entry("concurrency", "8"),
+                Map.entry("rate", "1000"),
+                Map.entry("warmup", "10"),
+                Map.entry("duration", "30")));
+        final List<String> properties = new ArrayList<>();
+        for (final String arg : args) {
+            final int equals = arg.indexOf('=');
+            final String name = arg.startsWith("--") && equals > 2 ? arg.substring(2, equals) : null;
+            if (name == null || !(options.containsKey(name) || name.equals("property"))) {
+                throw new IllegalArgumentException(String.format("Invalid option (%s), see the documentation of %s",
+                        arg, LoadTestHarness.class.getName()));
+            }
+            if (name.equals("property")) {
+                properties.add(arg.substring(equals + 1));
+            } else {
+                options.put(name, arg.substring(equals + 1));
+            }
+        }
+        new LoadTestHarness(options, properties).run();
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        final String placesLocation = options.get("url").isEmpty() || options.get("corpus").isEmpty() ?
+                BenchmarkDatasets.placesLocation(options.get("dataset"), intOption("rows")) : null;
+        final RequestCorpus corpus = options.get("corpus").isEmpty() ?
+                RequestCorpus.generate(placesLocation, options.get("mix"), intOption("requests"),
+                        intOption("distinct"), SEED) :
+                RequestCorpus.read(Path.of(options.get("corpus")));
+        ConfigurableApplicationContext context = null;
+        try {
+            final String baseUrl;
+            if (options.get("url").isEmpty()) {
+                final long start = System.nanoTime();
+                context = startApplication(placesLocation);
+                baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+                System.out.printf("Started the application in %d s%n",
+                        TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start));
+            } else {
+                baseUrl = options.get("url");
+            }
+            final URI lookupUri = URI.create(baseUrl + "/lookup");
+            final boolean closedLoop = options.get("mode").equals("closed");
+            if (!closedLoop && !options.get("mode").equals("rate")) {
+                throw new IllegalArgumentException(String.format("Invalid mode (%s)", options.get("mode")));
+            }
+            final AtomicInteger next = new AtomicInteger(0);
+            for (final boolean measured : new boolean[]{false, true}) {
+                recorders = new LinkedHashMap<>();
+                corpus.getKinds().forEach(kind -> recorders.put(kind, new LatencyRecorder()));
+                final long seconds = intOption(measured ? "duration" : "warmup");
+                final long start = System.nanoTime();
+                if (closedLoop) {
+                    runClosedLoop(corpus, lookupUri, next, start + TimeUnit.SECONDS.toNanos(seconds));
+                } else {
+                    runFixedRate(corpus, lookupUri, next, start + TimeUnit.SECONDS.toNanos(seconds));
+                }
+                if (measured) {
+                    report(System.nanoTime() - start);
+                }
+            }
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+        }
+    }
+
+    private ConfigurableApplicationContext startApplication(final String placesLocation) {
+        final List<String> applicationProperties = new ArrayList<>(List.of(
+                "server.port=0",
+                "database.jdbcUrl=jdbc:h2:mem:load;DB_CLOSE_DELAY=-1",
+                "database.username=load",
+                "database.password=load",
+                "database.maximumPoolSize=" + intOption("poolSize"),
+                "datahub.countrycodefile=classpath:test-country-codes.json",
+                "datahub.locationfile=" + placesLocation,
+                "lookup.engine=" + options.get("engine"),
+                "lookup.cache.enabled=" + options.get("cache"),
+                "logging.level.ca.umanitoba=WARN"));
+        applicationProperties.addAll(properties);
+        return new SpringApplicationBuilder(DereferencingApplication.class)
+                .properties(applicationProperties.toArray(new String[0]))
+                .run();
+    }
+
+    /**
+     * Each client sends the next request of the corpus once it has the response to its last one.
+     */
+    private void runClosedLoop(final RequestCorpus corpus, final URI lookupUri, final AtomicInteger next,
+                               final long end) throws InterruptedException {
+        final int concurrency = intOption("concurrency");
+        final ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            clients.execute(() -> {
+                while (System.nanoTime() < end) {
+                    final int index = next.getAndIncrement() & Integer.MAX_VALUE;
+                    final long start = System.nanoTime();
+                    int status;
+                    try {
+                        status = client.send(request(lookupUri, corpus.getBody(index)),
+                                HttpResponse.BodyHandlers.discarding()).statusCode();
+                    } catch (final IOException e) {
+                        status = LatencyRecorder.NO_RESPONSE;
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    recorders.get(corpus.getKind(index)).record(System.nanoTime() - start, status);
+                }
+            });
+        }
+        clients.shutdown();
+        clients.awaitTermination(1, TimeUnit.HOURS);
+    }
+
+    /**
+     * Send a request every interval, whether or not the earlier ones have responses.
+     */
+    private void runFixedRate(final RequestCorpus corpus, final URI lookupUri, final AtomicInteger next,
+                              final long end) throws InterruptedException {
+        if (intOption("rate") < 1) {
+            throw new IllegalArgumentException(String.format("Invalid rate (%s)", options.get("rate")));
+        }
+        final long interval = TimeUnit.SECONDS.toNanos(1) / intOption("rate");
+        final Semaphore outstanding = new Semaphore(MAX_OUTSTANDING);
+        final long start = System.nanoTime();
+        for (long due = start; due < end; due += interval) {
+            final long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            outstanding.acquire();
+            final int index = next.getAndIncrement() & Integer.MAX_VALUE;
+            final long sendAt = due;
+            client.sendAsync(request(lookupUri, corpus.getBody(index)), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        recorders.get(corpus.getKind(index)).record(System.nanoTime() - sendAt,
+                                error == null ? response.statusCode() : LatencyRecorder.NO_RESPONSE);
+                        outstanding.release();
+                    });
+        }
+        // Wait for the last responses.
+        outstanding.acquire(MAX_OUTSTANDING);
+    }
+
+    private static HttpRequest request(final URI lookupUri, final byte[] body) {
+        return HttpRequest.newBuilder(lookupUri)
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(30))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+    }
+
+    private void report(final long elapsedNanos) {
+        final LatencyRecorder all = new LatencyRecorder();
+        recorders.values().forEach(all::addAll);
+        final Map<String, LatencyRecorder> rows = new LinkedHashMap<>(recorders);
+        rows.put(ALL, all);
+        final double seconds = elapsedNanos / 1e9;
+        System.out.printf("%nengine=%s cache=%s poolSize=%s dataset=%s mode=%s %s%n", options.get("engine"),
+                options.get("cache"), options.get("poolSize"), options.get("corpus").isEmpty() ?
+                        options.get("dataset") : options.get("corpus"), options.get("mode"),
+                options.get("mode").equals("closed") ? "concurrency=" + options.get("concurrency") :
+                        "rate=" + options.get("rate") + "/s");
+        System.out.printf("%-14s %9s %12s %9s %9s %9s %9s  %s%n", "kind", "requests", "requests/s", "p50 ms",
+                "p95 ms", "p99 ms", "max ms", "statuses");
+        rows.forEach((kind, recorder) -> System.out.printf(Locale.ROOT,
+                "%-14s %9d %12.1f %9.2f %9.2f %9.2f %9.2f  %s%n", kind, recorder.getCount(),
+                recorder.getCount() / seconds, millis(recorder.percentile(50)), millis(recorder.percentile(95)),
+                millis(recorder.percentile(99)), millis(recorder.percentile(100)), recorder.getStatuses()));
+    }
+
+    private static double millis(final long nanos) {
+        return nanos / 1e6;
+    }
+
+    private int intOption(final String name) {
+        try {
+            return Integer.parseInt(options.get(name));
+        } catch (final NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("Invalid %s (%s)", name, options.get(name)));
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package ca.umanitoba.libraries.georeferencing.load;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import ca.umanitoba.libraries.georeferencing.BenchmarkDatasets;
+import ca.umanitoba.libraries.georeferencing.GeoNamesPlace;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The /lookup request bodies replayed by a load test, each labelled with its kind.
+ * <p>
+ * A corpus is either generated from a place file as a mix of kinds, or read from a newline delimited JSON file of
+ * requests, such as one taken from the logs.
+ * @author whikloj
+ */
+public class RequestCorpus {
+
+    /**
+     * Kind of a request with a city, its province and country, usually found.
+     */
+    public static final String CITY_PROVINCE = "cityProvince";
+
+    /**
+     * Kind of a request with a city and country.
+     */
+    public static final String CITY = "city";
+
+    /**
+     * Kind of a request with a province and country.
+     */
+    public static final String PROVINCE = "province";
+
+    /**
+     * Kind of a request with only a country.
+     */
+    public static final String COUNTRY = "country";
+
+    /**
+     * Kind of a request for a city which does not exist.
+     */
+    public static final String MISS = "miss";
+
+    /**
+     * Kind of the requests read from a file.
+     */
+    public static final String REPLAY = "replay";
+
+    /**
+     * The default mix of kinds, in percent.
+     */
+    public static final String DEFAULT_MIX = "cityProvince:55,city:15,province:10,country:5,miss:15";
+
+    private static final String COUNTRY_NAME = "Canada";
+
+    private final List<String> kinds;
+
+    private final List<byte[]> bodies;
+
+    private RequestCorpus(final List<String> kinds, final List<byte[]> bodies) {
+        this.kinds = kinds;
+        this.bodies = bodies;
+    }
+
+    /**
+     * Generate a corpus from the places of a place file. The places are drawn from a smaller set of distinct places
+     * so requests repeat, as they do in practice.
+     * @param placesLocation the location of the place file.
+     * @param mix the kinds of request and their share, e.g. {@link #DEFAULT_MIX}.
+     * @param size the number of requests.
+     * @param distinct the number of distinct places.
+     * @param seed the seed, the same seed generates the same corpus.
+     * @return the corpus.
+     * @throws IOException if the place file cannot be read.
+     */
+    public static RequestCorpus generate(final String placesLocation, final String mix, final int size,
+                                         final int distinct, final long seed) throws IOException {
+        final Map<String, Integer> shares = parseMix(mix);
+        final Map<String, String> provinceNames = BenchmarkDatasets.readProvinceNames();
+        final List<GeoNamesPlace> places = BenchmarkDatasets.readPlaces(placesLocation, distinct * 10).stream()
+                .filter(GeoNamesPlace::isLookupFeature)
+                .filter(p -> provinceNames.containsKey(p.getCountryCode() + "." + p.getAdminCode1()))
+                .collect(Collectors.toList());
+        if (places.isEmpty()) {
+            throw new IllegalArgumentException("No places with a known province in " + placesLocation);
+        }
+        final Random random = new Random(seed);
+        final List<GeoNamesPlace> pool = new ArrayList<>(distinct);
+        for (int i = 0; i < distinct; i++) {
+            pool.add(places.get(random.nextInt(places.size())));
+        }
+        final int total = shares.values().stream().mapToInt(Integer::intValue).sum();
+        final ObjectMapper objectMapper = new ObjectMapper();
+        final List<String> kinds = new ArrayList<>(size);
+        final List<byte[]> bodies = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            final String kind = pickKind(shares, random.nextInt(total));
+            final GeoNamesPlace place = pool.get(random.nextInt(pool.size()));
+            final String province = provinceNames.get(place.getCountryCode() + "." + place.getAdminCode1());
+            final Map<String, String> request = new LinkedHashMap<>();
+            request.put("country", COUNTRY_NAME);
+            if (CITY_PROVINCE.equals(kind)) {
+                request.put("province", province);
+                request.put("city", place.getName());
+            } else if (CITY.equals(kind)) {
+                request.put("city", place.getName());
+            } else if (PROVINCE.equals(kind)) {
+                request.put("province", province);
+            } else if (MISS.equals(kind)) {
+                request.put("province", province);
+                request.put("city", place.getName() + " Nowhere " + random.nextInt(distinct));
+            }
+            kinds.add(kind);
+            bodies.add(objectMapper.writeValueAsBytes(request));
+        }
+        return new RequestCorpus(kinds, bodies);
+    }
+
+    /**
+     * Read a corpus of one JSON request per line, blank lines are skipped.
+     * @param file the file.
+     * @return the corpus, with every request of the kind {@link #REPLAY}.
+     * @throws IOException if the file cannot be read.
+     */
+    public static RequestCorpus read(final Path file) throws IOException {
+        final List<String> kinds = new ArrayList<>();
+        final List<byte[]> bodies = new ArrayList<>();
+        try (final BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    kinds.add(REPLAY);
+                    bodies.add(line.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        }
+        if (bodies.isEmpty()) {
+            throw new IllegalArgumentException("No requests in " + file);
+        }
+        return new RequestCorpus(kinds, bodies);
+    }
+
+    /**
+     * @return the number of requests.
+     */
+    public int size() {
+        return bodies.size();
+    }
+
+    /**
+     * @param index the index of the request, it wraps around the end of the corpus.
+     * @return the kind of the request.
+     */
+    public String getKind(final int index) {
+        return kinds.get(index % kinds.size());
+    }
+
+    /**
+     * @param index the index of the request, it wraps around the end of the corpus.
+     * @return the JSON body of the request.
+     */
+    public byte[] getBody(final int index) {
+        return bodies.get(index % bodies.size());
+    }
+
+    /**
+     * @return the kinds of request in the corpus, in order of first appearance.
+     */
+    public Set<String> getKinds() {
+        return new LinkedHashSet<>(kinds);
+    }
+
+    /**
+     * Parse a mix of kinds, e.g. cityProvince:60,miss:40
+     */
+    private static Map<String, Integer> parseMix(final String mix) {
+        final List<String> known = List.of(CITY_PROVINCE, CITY, PROVINCE, COUNTRY, MISS);
+        final Map<String, Integer> shares = new LinkedHashMap<>();
+        for (final String part : mix.split(",")) {
+            final String[] kindAndShare = part.trim().split(":");
+            if (kindAndShare.length != 2 || !known.contains(kindAndShare[0])) {
+                throw new IllegalArgumentException(String.format("Invalid mix (%s), expected kinds of %s with " +
+                        "their shares, e.g. %s", mix, known, DEFAULT_MIX));
+            }
+            shares.put(kindAndShare[0], Integer.parseInt(kindAndShare[1]));
+        }
+        if (shares.values().stream().mapToInt(Integer::intValue).sum() <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid mix (%s), the shares add up to nothing", mix));
+        }
+        return shares;
+    }
+
+    private static String pickKind(final Map<String, Integer> shares, final int draw) {
+        int remaining = draw;
+        for (final Map.Entry<String, Integer> share : shares.entrySet()) {
+            remaining -= share.getValue();
+            if (remaining < 0) {
+                return share.getKey();
+            }
+        }
+        throw new IllegalStateException("Draw outside the mix");
+    }
+}
@@ -0,0 +1,46 @@
+package ca.umanitoba.libraries.georeferencing.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test reading lines of a bounded length.
+ * @author whikloj
+ */
+public class BoundedLineReaderTest {
+
+    @Test
+    public void testReadLines() throws IOException {
+        final BoundedLineReader reader = new BoundedLineReader(new StringReader("one\r\n\ntwo"), 10);
+        assertEquals("one", reader.readLine());
+        assertEquals(1, reader.getLineNumber());
+        assertEquals("", reader.readLine());
+        assertEquals("two", reader.readLine());
+        assertEquals(3, reader.getLineNumber());
+        assertFalse(reader.isTooLong());
+        assertNull(reader.readLine());
+        assertEquals(3, reader.getLineNumber());
+    }
+
+    @Test
+    public void testTooLong() throws IOException {
+        final BoundedLineReader reader = new BoundedLineReader(new StringReader("abcde\r\nabcdef\nabc\nabcdefgh"), 5);
+        assertEquals("abcde", reader.readLine());
+        assertFalse(reader.isTooLong());
+        assertEquals("", reader.readLine());
+        assertTrue(reader.isTooLong());
+        assertEquals("abc", reader.readLine());
+        assertFalse(reader.isTooLong());
+        assertEquals(3, reader.getLineNumber());
+        assertEquals("", reader.readLine());
+        assertTrue(reader.isTooLong());
+        assertNull(reader.readLine());
+    }
+}
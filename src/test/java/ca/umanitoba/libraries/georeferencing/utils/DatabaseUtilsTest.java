@@ -0,0 +1,60 @@
+package ca.umanitoba.libraries.georeferencing.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+/**
+ * Test of DatabaseUtils.
+ * @author whikloj
+ */
+public class DatabaseUtilsTest {
+
+    private static SingleConnectionDataSource dataSource;
+
+    @BeforeAll
+    public static void beforeClass() {
+        dataSource = new SingleConnectionDataSource("jdbc:h2:mem:database_utils;DB_CLOSE_DELAY=-1", "sa", "", true);
+        DatabaseUtils.loadDDL(dataSource, Map.of(DbPlatform.H2, "sql/featureCodes_h2.sql"));
+    }
+
+    @AfterAll
+    public static void afterClass() {
+        dataSource.destroy();
+    }
+
+    @Test
+    public void testTableExists() {
+        assertTrue(DatabaseUtils.tableExists(dataSource, "featureCodes"));
+        assertTrue(DatabaseUtils.tableExists(dataSource, "FEATURECODES"));
+    }
+
+    @Test
+    public void testTableDoesNotExist() {
+        assertFalse(DatabaseUtils.tableExists(dataSource, "feature"));
+        assertFalse(DatabaseUtils.tableExists(dataSource, "placeLookup"));
+    }
+
+    @Test
+    public void testFillKeyColumn() {
+        final JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE oldPlaces (id int not null primary key, name varchar(200) not null)");
+        jdbcTemplate.update("INSERT INTO oldPlaces VALUES (1, ' Winnipeg  Beach'), (2, 'Brandon'), (3, 'Brandon')");
+        assertFalse(DatabaseUtils.hasColumn(jdbcTemplate, "oldPlaces", "nameKey"));
+        assertTrue(DatabaseUtils.fillKeyColumn(jdbcTemplate, "oldPlaces", "name", "nameKey"));
+        assertTrue(DatabaseUtils.hasColumn(jdbcTemplate, "oldPlaces", "nameKey"));
+        assertEquals(List.of("winnipeg beach", "brandon", "brandon"),
+                jdbcTemplate.queryForList("SELECT nameKey FROM oldPlaces ORDER BY id", String.class));
+        assertFalse(DatabaseUtils.fillKeyColumn(jdbcTemplate, "oldPlaces", "name", "nameKey"));
+        assertFalse(DatabaseUtils.fillKeyColumn(jdbcTemplate, "missing", "name", "nameKey"));
+    }
+}
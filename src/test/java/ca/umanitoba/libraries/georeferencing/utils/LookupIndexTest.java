@@ -0,0 +1,57 @@
+package ca.umanitoba.libraries.georeferencing.utils;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import ca.umanitoba.libraries.georeferencing.impl.NameLookupServiceImpl;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+/**
+ * Test that the name lookups are answered by index seeks on H2.
+ * @author whikloj
+ */
+public class LookupIndexTest {
+
+    private static SingleConnectionDataSource dataSource;
+
+    private static NamedParameterJdbcTemplate template;
+
+    @BeforeAll
+    public static void beforeClass() {
+        dataSource = new SingleConnectionDataSource("jdbc:h2:mem:lookup_index;DB_CLOSE_DELAY=-1", "sa", "", true);
+        DatabaseUtils.loadDDL(dataSource, Map.of(DbPlatform.H2, "sql/placeLookup_h2.sql"));
+        template = new NamedParameterJdbcTemplate(dataSource);
+    }
+
+    @AfterAll
+    public static void afterClass() {
+        dataSource.destroy();
+    }
+
+    @Test
+    public void testPlaceCandidates() {
+        final String plan = explain(NameLookupServiceImpl.SELECT_CANDIDATES_IN_COUNTRIES,
+                new MapSqlParameterSource("names", List.of("winnipeg", "st. boniface"))
+                        .addValue("countryCodes", List.of("CA")));
+        assertIndexSeek("PLACELOOKUP_KEY_IDX", plan);
+        assertIndexSeek("PLACELOOKUPALTNAMES_KEY_IDX", plan);
+    }
+
+    private static String explain(final String query, final MapSqlParameterSource parameters) {
+        return template.queryForObject("EXPLAIN " + query, parameters, String.class).toUpperCase(Locale.ROOT);
+    }
+
+    private static void assertIndexSeek(final String index, final String plan) {
+        assertTrue(plan.contains(index), plan);
+        assertFalse(plan.contains("TABLESCAN"), plan);
+    }
+}